@@ -0,0 +1,16 @@
+import org.junit.platform.launcher.*;
+import org.junit.platform.launcher.core.*;
+import org.junit.platform.launcher.listeners.*;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+public class Run {
+  public static void main(String[] a) throws Exception {
+    LauncherDiscoveryRequestBuilder b = LauncherDiscoveryRequestBuilder.request();
+    for (String c : a) b.selectors(selectClass(Class.forName(c)));
+    Launcher l = LauncherFactory.create();
+    SummaryGeneratingListener s = new SummaryGeneratingListener();
+    l.execute(b.build(), s);
+    s.getSummary().printTo(new java.io.PrintWriter(System.out));
+    s.getSummary().printFailuresTo(new java.io.PrintWriter(System.out));
+    System.exit(s.getSummary().getTotalFailureCount() == 0 ? 0 : 1);
+  }
+}
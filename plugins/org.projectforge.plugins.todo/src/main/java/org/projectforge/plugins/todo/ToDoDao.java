@@ -39,6 +39,7 @@ import org.projectforge.framework.persistence.user.entities.GroupDO;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.mail.Mail;
 import org.projectforge.mail.SendMail;
+import org.projectforge.menu.MenuBadgeCounterService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -76,7 +77,8 @@ public class ToDoDao extends BaseDao<ToDoDO> {
 
   private transient TaskTree taskTree;
 
-  private final ToDoCache toDoCache = new ToDoCache(this);
+  @Autowired
+  private MenuBadgeCounterService menuBadgeCounterService;
 
   public ToDoDao() {
     super(ToDoDO.class);
@@ -240,7 +242,7 @@ public class ToDoDao extends BaseDao<ToDoDO> {
 
   @Override
   protected void afterSaveOrModify(final ToDoDO obj) {
-    toDoCache.setExpired(); // Force reload of the menu item counters for open to-do entrie.
+    menuBadgeCounterService.invalidate(ToDoPlugin.ID); // Force reload of the menu item counters for open to-do entries.
   }
 
   public void setAssignee(final ToDoDO todo, final Integer userId) {
@@ -266,7 +268,7 @@ public class ToDoDao extends BaseDao<ToDoDO> {
   /**
    * Get the number of open to-do entries for the given user. Entries are open (in this context) when they're not
    * deleted or closed. <br/>
-   * The result is cached (therefore you can call this method very often).
+   * Not cached, the menu badge counter is cached by {@link MenuBadgeCounterService}.
    *
    * @param userId If null then the current logged in user is assumed.
    * @return Number of open to-do entries.
@@ -275,23 +277,11 @@ public class ToDoDao extends BaseDao<ToDoDO> {
     if (userId == null) {
       userId = ThreadLocalUserContext.getUserId();
     }
-    return toDoCache.getOpenToDoEntries(userId);
-  }
-
-  /**
-   * Called by ToDoCache to get the number of open entries for the given users.
-   *
-   * @param userId
-   * @return Number of open to-do entries.
-   */
-  int internalGetOpenEntries(final Integer userId) {
     final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
     try {
       return jdbc.queryForObject("SELECT COUNT(*) FROM "
               + table.getName()
-              + " where assignee_fk="
-              + userId
-              + " and recent=true and deleted=false", Integer.class);
+              + " where assignee_fk=? and recent=true and deleted=false", Integer.class, userId);
     } catch (final Exception ex) {
       log.error(ex.getMessage(), ex);
       return 0;
@@ -26,6 +26,7 @@ package org.projectforge.plugins.todo;
 import org.projectforge.business.user.UserPrefAreaRegistry;
 import org.projectforge.continuousdb.UpdateEntry;
 import org.projectforge.framework.persistence.user.api.UserPrefArea;
+import org.projectforge.menu.MenuBadgeCounterService;
 import org.projectforge.menu.builder.MenuItemDef;
 import org.projectforge.menu.builder.MenuItemDefId;
 import org.projectforge.plugins.core.AbstractPlugin;
@@ -56,6 +57,9 @@ public class ToDoPlugin extends AbstractPlugin {
   @Autowired
   private PluginWicketRegistrationService pluginWicketRegistrationService;
 
+  @Autowired
+  private MenuBadgeCounterService menuBadgeCounterService;
+
   public ToDoPlugin() {
     super("todo", "To-do", "To-do's may shared by users, groups etc. with notification per e-mail on changes.");
   }
@@ -76,7 +80,8 @@ public class ToDoPlugin extends AbstractPlugin {
 
     // Register the menu entry as sub menu entry of the misc menu:
     MenuItemDef todomenu = MenuItemDef.create(ID, "plugins.todo.menu");
-    todomenu.setBadgeCounter(() -> toDoDao.getOpenToDoEntries(null));
+    menuBadgeCounterService.register(ID, userId -> toDoDao.getOpenToDoEntries(userId));
+    todomenu.setBadgeCounter(() -> menuBadgeCounterService.getCounter(ID));
     pluginWicketRegistrationService.registerMenuItem(MenuItemDefId.MISC, todomenu, ToDoListPage.class);
 
     // Define the access management:
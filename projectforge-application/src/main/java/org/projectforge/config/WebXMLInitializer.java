@@ -71,14 +71,17 @@ public class WebXMLInitializer implements ServletContextInitializer {
 
   @Override
   public void onStartup(ServletContext sc) throws ServletException {
-    final FilterRegistration securityHeaderFilter = sc.addFilter("SecurityHeaderFilter", SecurityHeaderFilter.class);
+    final FilterRegistration.Dynamic securityHeaderFilter = sc.addFilter("SecurityHeaderFilter", SecurityHeaderFilter.class);
+    securityHeaderFilter.setAsyncSupported(true); // Needed for asynchronous requests, such as server sent events.
     securityHeaderFilter.addMappingForUrlPatterns(null, false, "/*");
     securityHeaderFilter.setInitParameter(SecurityHeaderFilter.PARAM_CSP_HEADER_VALUE, cspHeaderValue);
 
     /*
      * Redirect orphaned links from former versions of ProjectForge (e. g. if link in e-mails were changed due to migrations or refactoring.
      */
-    sc.addFilter("redirectOrphanedLinks", new OrphanedLinkFilter()).addMappingForUrlPatterns(null, false, "/*");
+    final FilterRegistration.Dynamic orphanedLinkFilter = sc.addFilter("redirectOrphanedLinks", new OrphanedLinkFilter());
+    orphanedLinkFilter.setAsyncSupported(true);
+    orphanedLinkFilter.addMappingForUrlPatterns(null, false, "/*");
 
     pfMiltonInit.init(sc);
 
@@ -100,7 +103,9 @@ public class WebXMLInitializer implements ServletContextInitializer {
               .log("Don't deliver this app in dev mode due to security reasons!")
               .log("(cross origin allowed)")
               .logEnd();
-      sc.addFilter("cors", new CORSFilter()).addMappingForUrlPatterns(null, false,
+      final FilterRegistration.Dynamic corsFilter = sc.addFilter("cors", new CORSFilter());
+      corsFilter.setAsyncSupported(true);
+      corsFilter.addMappingForUrlPatterns(null, false,
               "/" + RestPaths.REST_WEB_APP + "/*",
               "/" + RestPaths.REST_WEB_APP_PUBLIC + "/*"); // Needed for login service.
     }
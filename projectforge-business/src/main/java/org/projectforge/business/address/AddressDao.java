@@ -85,6 +85,9 @@ public class AddressDao extends BaseDao<AddressDO> {
   @Autowired
   private AddressbookCache addressbookCache;
 
+  @Autowired
+  private AddressDuplicateIndex addressDuplicateIndex;
+
   @Autowired
   private UserRightService userRights;
 
@@ -137,7 +140,7 @@ public class AddressDao extends BaseDao<AddressDO> {
   public List<AddressDO> getList(QueryFilter filter) throws AccessException {
     final List<CustomResultFilter<AddressDO>> filters = new ArrayList<>();
     if (filter.getExtendedBooleanValue("doublets")) {
-      filters.add(new DoubletsResultFilter());
+      filters.add(new DoubletsResultFilter(addressDuplicateIndex));
     }
     if (filter.getExtendedBooleanValue("favorites")) {
       filters.add(new FavoritesResultFilter(personalAddressDao));
@@ -225,19 +228,17 @@ public class AddressDao extends BaseDao<AddressDO> {
   }
 
   private List<AddressDO> filterDoublets(List<AddressDO> result) {
-    final HashSet<String> fullnames = new HashSet<>();
-    final HashSet<String> doubletFullnames = new HashSet<>();
+    final Set<Integer> ids = new HashSet<>();
     for (final AddressDO address : result) {
-      final String fullname = getNormalizedFullname(address);
-      if (fullnames.contains(fullname)) {
-        doubletFullnames.add(fullname);
-      }
-      fullnames.add(fullname);
+      ids.add(address.getId());
     }
     final List<AddressDO> doublets = new ArrayList<>();
     for (final AddressDO address : result) {
-      if (doubletFullnames.contains(getNormalizedFullname(address))) {
-        doublets.add(address);
+      for (final Integer doubletId : addressDuplicateIndex.getDoublets(address.getId())) {
+        if (ids.contains(doubletId)) {
+          doublets.add(address);
+          break;
+        }
       }
     }
     return doublets;
@@ -281,7 +282,7 @@ public class AddressDao extends BaseDao<AddressDO> {
     switch (operationType) {
       case SELECT:
         for (AddressbookDO ab : getAddressCache().getAddressbooks(obj)) {
-          if (addressbookRight.checkGlobal(ab) || addressbookRight.getAccessType(ab, user.getId()).hasAnyAccess()) {
+          if (hasSelectAccess(user, ab)) {
             return true;
           }
         }
@@ -309,6 +310,30 @@ public class AddressDao extends BaseDao<AddressDO> {
     }
   }
 
+  /**
+   * The select access to an address is given, if the user has select access to any of its address books.
+   *
+   * @see #getAddressbooksForAccessCheck(AddressDO)
+   */
+  public boolean hasSelectAccess(final PFUserDO user, final AddressbookDO addressbook) {
+    if (addressbookRight == null) {
+      addressbookRight = (AddressbookRight) userRights.getRight(UserRightId.MISC_ADDRESSBOOK);
+    }
+    return addressbookRight.checkGlobal(addressbook) || addressbookRight.getAccessType(addressbook, user.getId()).hasAnyAccess();
+  }
+
+  /**
+   * @return The address books to check for select access or null, if there is nothing to check (access is granted).
+   * @see #hasSelectAccess(PFUserDO, AddressbookDO)
+   */
+  Set<AddressbookDO> getAddressbooksForAccessCheck(final AddressDO address) {
+    if (address.getAddressbookList() == null) {
+      return null;
+    }
+    final Set<AddressbookDO> addressbooks = getAddressCache().getAddressbooks(address);
+    return addressbooks != null ? addressbooks : Collections.emptySet();
+  }
+
   @Override
   protected void beforeSaveOrModify(final AddressDO obj) {
     if (obj.getId() == null) {
@@ -379,17 +404,6 @@ public class AddressDao extends BaseDao<AddressDO> {
     TenantRegistryMap.getCache(BirthdayCache.class).setExpired();
   }
 
-  protected static String getNormalizedFullname(final AddressDO address) {
-    final StringBuilder builder = new StringBuilder();
-    if (address.getFirstName() != null) {
-      builder.append(address.getFirstName().toLowerCase().trim());
-    }
-    if (address.getName() != null) {
-      builder.append(address.getName().toLowerCase().trim());
-    }
-    return builder.toString();
-  }
-
   /**
    * Get the birthdays of address entries.
    *
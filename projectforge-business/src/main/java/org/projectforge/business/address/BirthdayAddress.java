@@ -63,6 +63,18 @@ public class BirthdayAddress implements Comparable<BirthdayAddress>, Serializabl
     compareString = dateOfYear + " " + address.getName() + ", " + address.getFirstName();
   }
 
+  /**
+   * Copy of the given (cached) birthday address without favorite flag and age.
+   */
+  public BirthdayAddress(final BirthdayAddress birthdayAddress)
+  {
+    this.address = birthdayAddress.address;
+    this.month = birthdayAddress.month;
+    this.dayOfMonth = birthdayAddress.dayOfMonth;
+    this.dateOfYear = birthdayAddress.dateOfYear;
+    this.compareString = birthdayAddress.compareString;
+  }
+
   @Override
   public boolean equals(final Object obj)
   {
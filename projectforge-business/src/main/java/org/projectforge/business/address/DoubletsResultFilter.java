@@ -26,37 +26,56 @@ package org.projectforge.business.address;
 import org.jetbrains.annotations.NotNull;
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Shows only addresses of the result list having doublets in the same result list. The doublets are served by the
+ * precomputed {@link AddressDuplicateIndex}, so every element is checked without rescanning the already processed
+ * elements.
+ */
 public class DoubletsResultFilter implements CustomResultFilter<AddressDO> {
-  final Set<String> fullnames = new HashSet<>();
-  final Set<String> doubletFullnames = new HashSet<>();
-  final List<AddressDO> all = new ArrayList<>(); // Already processed addresses to add doublets.
-  final Set<Integer> addedDoublets = new HashSet<>();
+  private final AddressDuplicateIndex addressDuplicateIndex;
+  /**
+   * Already processed addresses with doublets, not yet added to the result list (no doublet found in result so far).
+   */
+  private final Map<Integer, AddressDO> pending = new HashMap<>();
+  private final Set<Integer> added = new HashSet<>();
+
+  public DoubletsResultFilter(final AddressDuplicateIndex addressDuplicateIndex) {
+    this.addressDuplicateIndex = addressDuplicateIndex;
+  }
 
   @Override
   public boolean match(@NotNull List<AddressDO> list, @NotNull AddressDO element) {
     if (element.isDeleted()) {
       return false;
     }
-    final String fullname = AddressDao.getNormalizedFullname(element);
-    if (fullnames.contains(fullname)) {
-      doubletFullnames.add(fullname);
-      for (final AddressDO adr : all) {
-        if (addedDoublets.contains(adr.getId())) {
-          continue; // Already added.
-        } else if (doubletFullnames.contains(AddressDao.getNormalizedFullname(adr))) {
-          list.add(adr);
-          addedDoublets.add(adr.getId()); // Mark this address as already added.
-        }
+    final Set<Integer> doublets = addressDuplicateIndex.getDoublets(element.getId());
+    if (doublets.isEmpty()) {
+      return false;
+    }
+    boolean match = false;
+    for (final Integer doubletId : doublets) {
+      if (added.contains(doubletId)) {
+        match = true;
+        continue;
+      }
+      final AddressDO doublet = pending.remove(doubletId);
+      if (doublet != null) {
+        list.add(doublet);
+        added.add(doubletId); // Mark this address as already added.
+        match = true;
       }
+    }
+    if (match) {
+      added.add(element.getId());
       return true;
     }
-    all.add(element);
-    fullnames.add(fullname);
+    pending.put(element.getId(), element);
     return false;
   }
 }
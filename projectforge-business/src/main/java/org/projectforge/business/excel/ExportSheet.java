@@ -25,6 +25,7 @@ package org.projectforge.business.excel;
 
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -46,8 +47,18 @@ public class ExportSheet
 
   private final Sheet poiSheet;
 
+  /**
+   * All rows of this sheet or, for streaming sheets, only the rows not yet styled.
+   */
   private final List<ExportRow> rows;
 
+  private final boolean streaming;
+
+  /**
+   * The first row (head row) remains accessible for streaming sheets (e. g. for auto filters).
+   */
+  private ExportRow headRow;
+
   private final String name;
 
   private String[] propertyNames;
@@ -65,6 +76,7 @@ public class ExportSheet
     this.contentProvider = contentProvider;
     this.name = name;
     this.poiSheet = poiSheet;
+    this.streaming = poiSheet instanceof SXSSFSheet;
     this.rows = new ArrayList<>();
     initRowList();
     final PrintSetup printSetup = getPrintSetup();
@@ -142,8 +154,14 @@ public class ExportSheet
     return poiSheet.getPrintSetup();
   }
 
+  /**
+   * @throws UnsupportedOperationException for streaming sheets (the rows below the target row may be already flushed).
+   */
   public ExportRow copyRow(ExportRow targetRow)
   {
+    if (streaming) {
+      throw new UnsupportedOperationException("Rows of streaming sheet '" + name + "' can't be copied.");
+    }
     final Row poiRow = copyRow(targetRow.getSheet().getPoiSheet(), targetRow.getRowNum());
     initRowList();
     return rows.get(poiRow.getRowNum());
@@ -151,9 +169,16 @@ public class ExportSheet
 
   public ExportRow addRow()
   {
+    if (streaming) {
+      // Style the previous rows now, they may be flushed by poi while creating the new row.
+      updatePendingRowStyles();
+    }
     final Row poiRow = poiSheet.createRow(rowCounter);
     final ExportRow row = new ExportRow(contentProvider, this, poiRow, rowCounter++);
     this.rows.add(row);
+    if (row.getRowNum() == 0) {
+      headRow = row;
+    }
     return row;
   }
 
@@ -205,9 +230,23 @@ public class ExportSheet
     return name;
   }
 
+  /**
+   * @throws UnsupportedOperationException if the requested row of a streaming sheet was already styled and flushed.
+   */
   public ExportRow getRow(final int row)
   {
-    return this.rows.get(row);
+    if (!streaming) {
+      return this.rows.get(row);
+    }
+    if (row == 0 && headRow != null) {
+      return headRow;
+    }
+    for (final ExportRow pendingRow : rows) {
+      if (pendingRow.getRowNum() == row) {
+        return pendingRow;
+      }
+    }
+    throw new UnsupportedOperationException("Row " + row + " of streaming sheet '" + name + "' was already flushed.");
   }
 
   /**
@@ -218,6 +257,9 @@ public class ExportSheet
     return rowCounter;
   }
 
+  /**
+   * @return All rows, for streaming sheets only the rows not yet flushed.
+   */
   public List<ExportRow> getRows()
   {
     return rows;
@@ -243,6 +285,13 @@ public class ExportSheet
 
   public void updateStyles()
   {
+    if (streaming) {
+      if (contentProvider != null) {
+        contentProvider.updateSheetStyle(this);
+      }
+      updatePendingRowStyles();
+      return;
+    }
     if (contentProvider != null) {
       contentProvider.updateSheetStyle(this);
       for (final ExportRow row : rows) {
@@ -251,6 +300,27 @@ public class ExportSheet
     }
   }
 
+  /**
+   * Streaming sheets only: styles all rows not yet styled and releases them. The cell styles are reused through the
+   * content provider, so the number of created cell styles doesn't depend on the number of rows.
+   */
+  private void updatePendingRowStyles()
+  {
+    for (final ExportRow row : rows) {
+      row.updateStyles(contentProvider);
+    }
+    rows.clear();
+  }
+
+  /**
+   * @return true, if this sheet is part of a streaming workbook.
+   * @see ExportWorkbook#createStreaming(int)
+   */
+  public boolean isStreaming()
+  {
+    return streaming;
+  }
+
   public ContentProvider getContentProvider()
   {
     return contentProvider;
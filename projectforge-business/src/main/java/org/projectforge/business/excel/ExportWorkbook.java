@@ -26,6 +26,7 @@ package org.projectforge.business.excel;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -37,6 +38,11 @@ public class ExportWorkbook
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ExportWorkbook.class);
 
+  /**
+   * Number of rows held in memory per sheet by streaming workbooks. All older rows are flushed to a temporary file.
+   */
+  public static final int DEFAULT_ROW_WINDOW_SIZE = 100;
+
   private Workbook poiWorkbook;
 
   private List<ExportSheet> sheets;
@@ -57,6 +63,39 @@ public class ExportWorkbook
     poiWorkbook = new HSSFWorkbook();
   }
 
+  /**
+   * Creates a streaming xlsx workbook with a row window of {@link #DEFAULT_ROW_WINDOW_SIZE}.
+   *
+   * @see #createStreaming(int)
+   */
+  public static ExportWorkbook createStreaming()
+  {
+    return createStreaming(DEFAULT_ROW_WINDOW_SIZE);
+  }
+
+  /**
+   * Creates a streaming xlsx workbook (SXSSF): Only the last rowWindowSize rows of each sheet are held in memory, all
+   * other rows are flushed to a temporary file. Therefore the memory footprint is independent of the number of rows.
+   * Rows are styled on flush, so a row can't be modified after its successor was added (only the head row remains
+   * accessible).
+   *
+   * @param rowWindowSize Number of rows kept in memory per sheet.
+   * @see ExportSheet#isStreaming()
+   */
+  public static ExportWorkbook createStreaming(final int rowWindowSize)
+  {
+    final SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindowSize);
+    // Temporary sheet files may become large for huge exports:
+    workbook.setCompressTempFiles(true);
+    return new ExportWorkbook(workbook);
+  }
+
+  private ExportWorkbook(final Workbook poiWorkbook)
+  {
+    sheets = new ArrayList<>();
+    this.poiWorkbook = poiWorkbook;
+  }
+
   public ExportWorkbook(final File excelFile) throws FileNotFoundException, IOException
   {
     this(new FileInputStream(excelFile));
@@ -126,7 +165,16 @@ public class ExportWorkbook
   }
 
   /**
-   * Calls updateStyles first. The OutputStream will be closed by this method.
+   * @return true, if this workbook was created by {@link #createStreaming(int)}.
+   */
+  public boolean isStreaming()
+  {
+    return poiWorkbook instanceof SXSSFWorkbook;
+  }
+
+  /**
+   * Calls updateStyles first. The OutputStream will be closed by this method. Temporary files of streaming workbooks
+   * are deleted after writing, so a streaming workbook can only be written once.
    *
    * @param out
    * @throws IOException
@@ -145,6 +193,9 @@ public class ExportWorkbook
       }
     } finally {
       out.close();
+      if (poiWorkbook instanceof SXSSFWorkbook) {
+        ((SXSSFWorkbook) poiWorkbook).dispose();
+      }
     }
   }
 
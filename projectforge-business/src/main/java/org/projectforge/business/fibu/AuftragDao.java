@@ -45,6 +45,8 @@ import org.projectforge.framework.utils.NumberHelper;
 import org.projectforge.framework.xstream.XmlObjectWriter;
 import org.projectforge.mail.Mail;
 import org.projectforge.mail.SendMail;
+import org.projectforge.menu.MenuBadgeCounterService;
+import org.projectforge.menu.builder.MenuItemDefId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -83,8 +85,6 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Autowired
   private SendMail sendMail;
 
-  private Integer abgeschlossenNichtFakturiert;
-
   @Autowired
   private TaskDao taskDao;
 
@@ -94,6 +94,9 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Autowired
   private ConfigurationService configurationService;
 
+  @Autowired
+  private MenuBadgeCounterService menuBadgeCounterService;
+
   private TaskTree taskTree;
 
   public AuftragDao() {
@@ -271,17 +274,18 @@ public class AuftragDao extends BaseDao<AuftragDO> {
     return auftrag != null ? auftrag.getPosition(positionNummer) : null;
   }
 
-  public synchronized int getAbgeschlossenNichtFakturiertAnzahl() {
-    if (abgeschlossenNichtFakturiert != null) {
-      return abgeschlossenNichtFakturiert;
-    }
+  /**
+   * Not cached, the menu badge counter is cached by {@link MenuBadgeCounterService}.
+   *
+   * @return Number of closed, but not (fully) invoiced orders.
+   */
+  public int getAbgeschlossenNichtFakturiertAnzahl() {
     final AuftragFilter filter = new AuftragFilter();
     filter.getAuftragsStatuses().add(AuftragsStatus.ABGESCHLOSSEN);
     filter.setAuftragFakturiertFilterStatus(AuftragFakturiertFilterStatus.NICHT_FAKTURIERT);
     try {
       final List<AuftragDO> list = getList(filter, false);
-      abgeschlossenNichtFakturiert = list != null ? list.size() : 0;
-      return abgeschlossenNichtFakturiert;
+      return list != null ? list.size() : 0;
     } catch (final Exception ex) {
       log.error("Exception ocurred while getting number of closed and not invoiced orders: " + ex.getMessage(), ex);
       // Exception e. g. if data-base update is needed.
@@ -453,7 +457,6 @@ public class AuftragDao extends BaseDao<AuftragDO> {
         position.checkVollstaendigFakturiert();
       }
     }
-    abgeschlossenNichtFakturiert = null;
     final String uiStatusAsXml = XmlObjectWriter.writeAsXml(obj.getUiStatus());
     obj.setUiStatusAsXml(uiStatusAsXml);
     final List<PaymentScheduleDO> paymentSchedules = obj.getPaymentSchedules();
@@ -533,6 +536,7 @@ public class AuftragDao extends BaseDao<AuftragDO> {
     if (taskTree != null) {
       taskTree.refreshOrderPositionReferences();
     }
+    menuBadgeCounterService.invalidate(MenuItemDefId.ORDER_LIST.getId());
   }
 
   /**
@@ -640,38 +644,43 @@ public class AuftragDao extends BaseDao<AuftragDO> {
     if (!hasLoggedInUserHistoryAccess(obj, false)) {
       return list;
     }
+    final List<BaseDO<?>> children = new ArrayList<>(getHistoryObjects(obj));
+    children.remove(obj);
+    if (!children.isEmpty()) {
+      // One query for all positions and payment schedules:
+      list.addAll(internalGetDisplayHistoryEntries(children));
+    }
+    list.sort((o1, o2) -> (o2.getTimestamp().compareTo(o1.getTimestamp())));
+    return list;
+  }
+
+  /**
+   * The history of an order includes the history of its positions and payment schedules.
+   */
+  @Override
+  protected List<? extends BaseDO<?>> getHistoryObjects(final AuftragDO obj) {
+    final List<BaseDO<?>> list = new ArrayList<>();
+    list.add(obj);
     if (CollectionUtils.isNotEmpty(obj.getPositionenIncludingDeleted())) {
-      for (final AuftragsPositionDO position : obj.getPositionenIncludingDeleted()) {
-        final List<DisplayHistoryEntry> entries = internalGetDisplayHistoryEntries(position);
-        for (final DisplayHistoryEntry entry : entries) {
-          final String propertyName = entry.getPropertyName();
-          if (propertyName != null) {
-            entry.setPropertyName("Pos#" + position.getNumber() + ":" + entry.getPropertyName()); // Prepend number of positon.
-          } else {
-            entry.setPropertyName("Pos#" + position.getNumber());
-          }
-        }
-        list.addAll(entries);
-      }
+      list.addAll(obj.getPositionenIncludingDeleted());
     }
     if (CollectionUtils.isNotEmpty(obj.getPaymentSchedules())) {
-      for (final PaymentScheduleDO schedule : obj.getPaymentSchedules()) {
-        final List<DisplayHistoryEntry> entries = internalGetDisplayHistoryEntries(schedule);
-        for (final DisplayHistoryEntry entry : entries) {
-          final String propertyName = entry.getPropertyName();
-          if (propertyName != null) {
-            entry.setPropertyName("PaymentSchedule#" + schedule.getNumber() + ":" + entry.getPropertyName()); // Prepend number of positon.
-          } else {
-            entry.setPropertyName("PaymentSchedule#" + schedule.getNumber());
-          }
-        }
-        list.addAll(entries);
-      }
+      list.addAll(obj.getPaymentSchedules());
     }
-    list.sort((o1, o2) -> (o2.getTimestamp().compareTo(o1.getTimestamp())));
     return list;
   }
 
+  @Override
+  protected String getHistoryPropertyPrefix(final BaseDO<?> historyObject) {
+    if (historyObject instanceof AuftragsPositionDO) {
+      return "Pos#" + ((AuftragsPositionDO) historyObject).getNumber(); // Prepend number of positon.
+    }
+    if (historyObject instanceof PaymentScheduleDO) {
+      return "PaymentSchedule#" + ((PaymentScheduleDO) historyObject).getNumber();
+    }
+    return null;
+  }
+
   @Override
   protected Class<?>[] getAdditionalHistorySearchDOs() {
     return ADDITIONAL_HISTORY_SEARCH_DOS;
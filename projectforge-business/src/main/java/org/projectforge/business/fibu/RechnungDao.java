@@ -41,6 +41,8 @@ import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
 import org.projectforge.framework.persistence.utils.SQLHelper;
 import org.projectforge.framework.time.PFDateTime;
 import org.projectforge.framework.xstream.XmlObjectWriter;
+import org.projectforge.menu.MenuBadgeCounterService;
+import org.projectforge.menu.builder.MenuItemDefId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -73,6 +75,9 @@ public class RechnungDao extends BaseDao<RechnungDO> {
   @Autowired
   private RechnungCache rechnungCache;
 
+  @Autowired
+  private MenuBadgeCounterService menuBadgeCounterService;
+
   public RechnungDao() {
     super(RechnungDO.class);
     userRightId = USER_RIGHT_ID;
@@ -245,6 +250,7 @@ public class RechnungDao extends BaseDao<RechnungDO> {
   @Override
   protected void afterSaveOrModify(final RechnungDO obj) {
     getRechnungCache().setExpired(); // Expire the cache because assignments to order position may be changed.
+    menuBadgeCounterService.invalidate(MenuItemDefId.ORDER_LIST.getId()); // Orders may be invoiced now.
   }
 
   @Override
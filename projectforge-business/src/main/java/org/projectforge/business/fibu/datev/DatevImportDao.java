@@ -47,6 +47,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -145,6 +148,29 @@ public class DatevImportDao {
     return storage;
   }
 
+  /**
+   * Streaming import of huge DATEV files (xlsx only): The accounting records are read sheet by sheet through the event
+   * API and written in batches, the workbook isn't held in memory. Other than {@link #importBuchungsdaten(InputStream,
+   * String)} there is no interactive reconciling: existing records (same year, month and satznr) are updated, invalid
+   * rows are skipped and reported in the result.
+   *
+   * @param is               The xlsx file (will be closed).
+   * @param dryRun           If true, the file is read and validated, but nothing is written to the data base.
+   * @param progressListener Called after every processed batch, may be null.
+   * @return The statistics of the import.
+   */
+  public BuchungssatzStreamingImporter.Result importBuchungsdatenStreaming(final InputStream is, final String filename,
+                                                                          final boolean dryRun,
+                                                                          final Consumer<BuchungssatzStreamingImporter.Result> progressListener)
+          throws Exception {
+    checkLoggeinUserRight(accessChecker);
+    log.info("importBuchungsdatenStreaming called (dryRun=" + dryRun + "): " + filename);
+    final DatevImportLookups lookups = new DatevImportLookups(kontoDao, kost1Dao, kost2Dao);
+    final BuchungssatzStreamingImporter imp = new BuchungssatzStreamingImporter(buchungssatzDao, lookups, dryRun,
+            progressListener, BuchungssatzStreamingImporter.DEFAULT_BATCH_SIZE);
+    return imp.doImport(is);
+  }
+
   /**
    * Der ImportStorage wird verprobt, dass heißt ein Schreiben der importierten Werte in die Datenbank wird getestet.
    * Ergebnis sind mögliche Fehler und Statistiken, welche Werte neu geschrieben und welche geändert werden. Der User
@@ -204,10 +230,14 @@ public class DatevImportDao {
   private void reconcileBuchungsdaten(final ImportedSheet<BuchungssatzDO> sheet) {
     log.info("Reconcile Buchungsdaten called");
     if (sheet.getElements() != null) {
+      // All records of a sheet belong normally to one month, so load the existing records per month with one query:
+      final Map<String, Map<Integer, BuchungssatzDO>> dbMonths = new HashMap<>();
       for (final ImportedElement<BuchungssatzDO> el : sheet.getElements()) {
         final BuchungssatzDO satz = el.getValue();
         if (satz.getYear() != null && satz.getMonth() != null && satz.getSatznr() != null) {
-          final BuchungssatzDO dbSatz = buchungssatzDao.getBuchungssatz(satz.getYear(), satz.getMonth(), satz.getSatznr());
+          final Map<Integer, BuchungssatzDO> dbMonth = dbMonths.computeIfAbsent(satz.getYear() + "-" + satz.getMonth(),
+                  key -> buchungssatzDao.getBuchungssaetze(satz.getYear(), satz.getMonth()));
+          final BuchungssatzDO dbSatz = dbMonth.get(satz.getSatznr());
           if (dbSatz != null) {
             el.setOldValue(dbSatz);
           }
@@ -52,17 +52,69 @@ public class KostCache extends AbstractCache {
   /**
    * The key is the kost2-id.
    */
-  private Map<Integer, Kost2DO> kost2Map;
+  private volatile Map<Integer, Kost2DO> kost2Map;
 
   /**
    * The key is the kost2-id.
    */
-  private Map<Integer, Kost1DO> kost1Map;
+  private volatile Map<Integer, Kost1DO> kost1Map;
+
+  /**
+   * Indexes of kost1 and kost2 entries by their numbers, rebuilt on every modification (copy on write).
+   */
+  private volatile KostIndex kostIndex = new KostIndex(Collections.emptyList(), Collections.emptyList());
 
   private List<Kost2Art> allKost2Arts;
 
   private boolean kost2EntriesExists = false;
 
+  /**
+   * Incremented on every modification, usable by other caches for detecting outdated entries.
+   */
+  private volatile long version;
+
+  /**
+   * Immutable indexes of the kost1 and kost2 entries. The numbers (nummernkreis, bereich, teilbereich, endziffer or
+   * kost2art) are packed into one long key.
+   */
+  private static class KostIndex {
+    private final Map<Long, Kost2DO> kost2ByNumber = new HashMap<>();
+
+    /**
+     * Key is the number without kost2art.
+     */
+    private final Map<Long, List<Kost2DO>> activeKost2ByPrefix = new HashMap<>();
+
+    private final Map<Integer, List<Kost2DO>> kost2ByProjekt = new HashMap<>();
+
+    private final Map<Long, Kost1DO> kost1ByNumber = new HashMap<>();
+
+    private KostIndex(final Collection<Kost1DO> kost1List, final Collection<Kost2DO> kost2List) {
+      for (final Kost1DO kost1 : kost1List) {
+        kost1ByNumber.putIfAbsent(key(kost1.getNummernkreis(), kost1.getBereich(), kost1.getTeilbereich(), kost1.getEndziffer()), kost1);
+      }
+      for (final Kost2DO kost2 : kost2List) {
+        final Integer kost2ArtId = kost2.getKost2ArtId();
+        if (kost2ArtId != null) {
+          kost2ByNumber.putIfAbsent(key(kost2.getNummernkreis(), kost2.getBereich(), kost2.getTeilbereich(), kost2ArtId), kost2);
+        }
+        if (kost2.getKostentraegerStatus() == KostentraegerStatus.ACTIVE || kost2.getKostentraegerStatus() == null) {
+          activeKost2ByPrefix.computeIfAbsent(key(kost2.getNummernkreis(), kost2.getBereich(), kost2.getTeilbereich(), 0),
+                  k -> new ArrayList<>()).add(kost2);
+        }
+        final Integer projektId = kost2.getProjektId();
+        if (projektId != null) {
+          kost2ByProjekt.computeIfAbsent(projektId, k -> new ArrayList<>()).add(kost2);
+        }
+      }
+    }
+
+    private static long key(final int nummernkreis, final int bereich, final int teilbereich, final int endziffer) {
+      return ((long) nummernkreis << 48) | ((long) (bereich & 0xffff) << 32) | ((long) (teilbereich & 0xffff) << 16)
+              | (endziffer & 0xffff);
+    }
+  }
+
   public Kost2DO getKost2(final Integer kost2Id) {
     if (!NumberHelper.greaterZero(kost2Id)) {
       return null;
@@ -83,31 +135,17 @@ public class KostCache extends AbstractCache {
   }
 
   public Kost2DO getKost2(final int nummernkreis, final int bereich, final int teilbereich, final int kost2art) {
-    for (final Kost2DO kost : getKost2Map().values()) {
-      if (kost.getNummernkreis() == nummernkreis
-              && kost.getBereich() == bereich
-              && kost.getTeilbereich() == teilbereich
-              && kost.getKost2ArtId() == kost2art) {
-        return kost;
-      }
-    }
-    return null;
+    checkRefresh();
+    return kostIndex.kost2ByNumber.get(KostIndex.key(nummernkreis, bereich, teilbereich, kost2art));
   }
 
   public List<Kost2DO> getActiveKost2(final int nummernkreis, final int bereich, final int teilbereich) {
-    final List<Kost2DO> list = new ArrayList<>();
-    for (final Kost2DO kost : getKost2Map().values()) {
-      if (kost.getNummernkreis() == nummernkreis
-              && kost.getBereich() == bereich
-              && kost.getTeilbereich() == teilbereich
-              && (kost.getKostentraegerStatus() == KostentraegerStatus.ACTIVE || kost.getKostentraegerStatus() == null)) {
-        list.add(kost);
-      }
-    }
+    checkRefresh();
+    final List<Kost2DO> list = kostIndex.activeKost2ByPrefix.get(KostIndex.key(nummernkreis, bereich, teilbereich, 0));
     if (CollectionUtils.isEmpty(list)) {
       return null;
     }
-    return list;
+    return new ArrayList<>(list);
   }
 
   public Kost1DO getKost1(final Integer kost1Id) {
@@ -123,15 +161,8 @@ public class KostCache extends AbstractCache {
    */
   public Kost1DO getKost1(final String kostString) {
     final int[] kost = KostHelper.parseKostString(kostString);
-    for (final Kost1DO kost1 : getKost1Map().values()) {
-      if (kost[0] == kost1.getNummernkreis() &&
-              kost[1] == kost1.getBereich() &&
-              kost[2] == kost1.getTeilbereich() &&
-              kost[3] == kost1.getEndziffer()) {
-        return kost1;
-      }
-    }
-    return null;
+    checkRefresh();
+    return kostIndex.kost1ByNumber.get(KostIndex.key(kost[0], kost[1], kost[2], kost[3]));
   }
 
   /**
@@ -145,15 +176,17 @@ public class KostCache extends AbstractCache {
     if (projektId == null) {
       return set;
     }
-    for (final Kost2DO kost : getKost2Map().values()) {
+    final List<Kost2DO> list = kostIndex.kost2ByProjekt.get(projektId);
+    if (list == null) {
+      return set;
+    }
+    for (final Kost2DO kost : list) {
       if (kost.isDeleted()) {
         continue;
       }
-      if (Objects.equals(projektId, kost.getProjektId())) {
-        final Kost2ArtDO kost2Art = kost.getKost2Art();
-        if (kost2Art != null) {
-          set.add(kost2Art);
-        }
+      final Kost2ArtDO kost2Art = kost.getKost2Art();
+      if (kost2Art != null) {
+        set.add(kost2Art);
       }
     }
     return set;
@@ -202,18 +235,34 @@ public class KostCache extends AbstractCache {
     return kost2EntriesExists;
   }
 
+  /**
+   * @return The version of this cache, incremented on every modification of kost1, kost2 or kost2art entries.
+   */
+  public long getVersion() {
+    checkRefresh();
+    return version;
+  }
+
   /**
    * Should be called after user modifications.
    */
-  void updateKost2(final Kost2DO kost2) {
-    getKost2Map().put(kost2.getId(), kost2);
+  synchronized void updateKost2(final Kost2DO kost2) {
+    final Map<Integer, Kost2DO> map = new HashMap<>(getKost2Map());
+    map.put(kost2.getId(), kost2);
+    this.kost2Map = map;
+    this.kostIndex = new KostIndex(kost1Map.values(), map.values());
+    ++version;
   }
 
   /**
    * Should be called after user modifications.
    */
-  void updateKost1(final Kost1DO kost1) {
-    getKost1Map().put(kost1.getId(), kost1);
+  synchronized void updateKost1(final Kost1DO kost1) {
+    final Map<Integer, Kost1DO> map = new HashMap<>(getKost1Map());
+    map.put(kost1.getId(), kost1);
+    this.kost1Map = map;
+    this.kostIndex = new KostIndex(map.values(), kost2Map.values());
+    ++version;
   }
 
   void updateKost2Arts() {
@@ -228,6 +277,7 @@ public class KostCache extends AbstractCache {
     }
     // This method must not be synchronized because it works with a new copy of list.
     this.allKost2Arts = list;
+    ++version;
   }
 
   private Map<Integer, Kost2DO> getKost2Map() {
@@ -267,6 +317,7 @@ public class KostCache extends AbstractCache {
       map2.put(kost2.getId(), kost2);
     }
     this.kost2Map = map2;
+    this.kostIndex = new KostIndex(list1, list2);
     updateKost2Arts();
     log.info("Initializing of KostCache done.");
   }
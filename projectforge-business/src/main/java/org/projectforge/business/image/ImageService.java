@@ -53,6 +53,34 @@ public class ImageService
     return createBytesFromImage(bufferedImage);
   }
 
+  /**
+   * Scales the image down (never up) to fit into a square of the given size, the aspect ratio is preserved.
+   *
+   * @return The scaled png image or null, if the given image couldn't be read.
+   */
+  public byte[] resizeImageToFit(byte[] originalImage, int maxSize)
+  {
+    BufferedImage imageFromBytes = createImageFromBytes(originalImage);
+    if (imageFromBytes == null) {
+      return null;
+    }
+    int width = imageFromBytes.getWidth();
+    int height = imageFromBytes.getHeight();
+    if (width > maxSize || height > maxSize) {
+      double scale = Math.min((double) maxSize / width, (double) maxSize / height);
+      width = Math.max(1, (int) Math.round(width * scale));
+      height = Math.max(1, (int) Math.round(height * scale));
+    }
+    int type = imageFromBytes.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : imageFromBytes.getType();
+    BufferedImage resizedImage = new BufferedImage(width, height, type);
+    Graphics2D g = resizedImage.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g.drawImage(imageFromBytes, 0, 0, width, height, null);
+    g.dispose();
+    return createBytesFromImage(resizedImage);
+  }
+
   private BufferedImage compressImage(BufferedImage originalImage, int width, int height)
   {
     if (originalImage != null) {
@@ -31,6 +31,8 @@ import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.PFDay;
+import org.projectforge.menu.MenuBadgeCounterService;
+import org.projectforge.menu.builder.MenuItemDefId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -54,10 +56,11 @@ public class MebDao extends BaseDao<MebEntryDO> {
   public static final UserRightId USER_RIGHT_ID = UserRightId.MISC_MEB;
   public static final String DATE_FORMAT = "yyyyMMddHHmmss";
   private static org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MebDao.class);
-  private final MebCache mebCache = new MebCache(this);
   @Autowired
   private DataSource dataSource;
   @Autowired
+  private MenuBadgeCounterService menuBadgeCounterService;
+  @Autowired
   private UserDao userDao;
 
   public MebDao() {
@@ -121,9 +124,9 @@ public class MebDao extends BaseDao<MebEntryDO> {
   }
 
   /**
-   * Get the number of recent MEB entries for the logged in user. If the user is member of the admin group then the
+   * Get the number of recent MEB entries for the given user. If the user is member of the admin group then the
    * number of unassigned entries (owner not set) will be added. <br/>
-   * The result is cached (therefore you can call this method very often).
+   * Not cached, the menu badge counter is cached by {@link MenuBadgeCounterService}.
    *
    * @param userId If null then the current logged in user is assumed.
    * @return Number of recent (and unassigned) MEB entries.
@@ -132,25 +135,14 @@ public class MebDao extends BaseDao<MebEntryDO> {
     if (userId == null) {
       userId = ThreadLocalUserContext.getUserId();
     }
-    return mebCache.getRecentMEBEntries(userId);
-  }
-
-  /**
-   * Called by MebCache to get the number of recent entries for the given users. For administrative users the number of
-   * unassigned entries (without owner) is added.
-   *
-   * @param userId
-   * @return Number of recent (and unassigned) MEB entries.
-   */
-  int internalGetRecentMEBEntries(final Integer userId) {
     final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
     try {
-      int counter = jdbc.queryForObject(
-              "SELECT COUNT(*) FROM t_meb_entry where owner_fk=" + userId + " and status='RECENT'", Integer.class);
-      if (accessChecker.isLoggedInUserMemberOfAdminGroup()) {
-        counter += jdbc.queryForObject("SELECT COUNT(*) FROM t_meb_entry where owner_fk is null", Integer.class);
+      if (getUserGroupCache().isUserMemberOfAdminGroup(userId)) {
+        return jdbc.queryForObject(
+                "SELECT COUNT(*) FROM t_meb_entry WHERE (owner_fk=? AND status='RECENT') OR owner_fk IS NULL", Integer.class, userId);
       }
-      return counter;
+      return jdbc.queryForObject(
+              "SELECT COUNT(*) FROM t_meb_entry WHERE owner_fk=? AND status='RECENT'", Integer.class, userId);
     } catch (final Exception ex) {
       log.error(ex.getMessage(), ex);
       return 0;
@@ -239,7 +231,7 @@ public class MebDao extends BaseDao<MebEntryDO> {
 
   @Override
   protected void afterSaveOrModify(final MebEntryDO obj) {
-    mebCache.setExpired();
+    menuBadgeCounterService.invalidate(MenuItemDefId.MEB.getId());
   }
 
   @Override
@@ -143,6 +143,16 @@ public class TenantRegistry
     return taskTree;
   }
 
+  /**
+   * Writes the task durations of the task tree (if loaded) for the next start-up.
+   */
+  public void writeTaskDurationSnapshot()
+  {
+    if (taskTree != null) {
+      taskTree.writeDurationSnapshot();
+    }
+  }
+
   /**
    * @return the userGroupCache
    */
@@ -229,6 +229,20 @@ public class TenantRegistryMap extends AbstractCache {
     }
   }
 
+  /**
+   * Writes the task durations of all loaded task trees (called on shutdown).
+   */
+  public void writeTaskDurationSnapshots() {
+    synchronized (this) {
+      if (singleTenantRegistry != null) {
+        singleTenantRegistry.writeTaskDurationSnapshot();
+      }
+      for (final TenantRegistry registry : tenantRegistryMap.values()) {
+        registry.writeTaskDurationSnapshot();
+      }
+    }
+  }
+
   public void setApplicationContext(ApplicationContext applicationContext) {
     this.applicationContext = applicationContext;
     this.tenantChecker = applicationContext.getBean(TenantChecker.class);
@@ -36,6 +36,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import java.util.*;
 
@@ -77,6 +78,15 @@ public class TenantsCache extends AbstractCache {
     tenantRegistryMap.setApplicationContext(applicationContext);
   }
 
+  @PreDestroy
+  public void shutdown() {
+    try {
+      TenantRegistryMap.getInstance().writeTaskDurationSnapshots();
+    } catch (final Exception ex) {
+      log.error("Can't write snapshot of task durations on shutdown: " + ex.getMessage(), ex);
+    }
+  }
+
   public boolean isEmpty() {
     checkRefresh();
     return CollectionUtils.isEmpty(tenants);
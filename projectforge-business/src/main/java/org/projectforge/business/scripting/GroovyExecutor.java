@@ -52,6 +52,13 @@ public class GroovyExecutor
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(GroovyExecutor.class);
 
+  private static final int MAX_CACHED_SCRIPTS = 100;
+
+  /**
+   * Compiled script classes (shared by all instances). A new script object is created for every execution.
+   */
+  private static final ScriptCache<Class<?>> compiledScripts = new ScriptCache<>(MAX_CACHED_SCRIPTS);
+
   @Autowired
   private RefactoringService refService;
 
@@ -126,6 +133,45 @@ public class GroovyExecutor
   public Script compileGroovy(final ScriptExecutionResult result, final String script, final boolean bindScriptResult)
   {
     securityChecks(script);
+    final String cacheKey = ScriptCache.hash(script);
+    Class<?> groovyClass = compiledScripts.get(cacheKey);
+    if (groovyClass == null) {
+      groovyClass = parseClass(result, script);
+      if (groovyClass == null) {
+        return null;
+      }
+      compiledScripts.put(cacheKey, groovyClass);
+    }
+    Script groovyObject;
+    try {
+      groovyObject = (Script) groovyClass.newInstance();
+    } catch (final InstantiationException | IllegalAccessException ex) {
+      log.error(ex.getMessage(), ex);
+      if (result != null) {
+        result.setException(ex);
+      }
+      return null;
+    }
+    if (bindScriptResult) {
+      final Binding binding = groovyObject.getBinding();
+      final ScriptExecutionResult scriptResult = new ScriptExecutionResult();
+      binding.setVariable("scriptResult", scriptResult);
+    }
+    return groovyObject;
+  }
+
+  /**
+   * Removes the compiled class of the given script from the cache (e. g. if the script was modified).
+   */
+  public static void removeFromCache(final String script)
+  {
+    if (script != null) {
+      compiledScripts.remove(script);
+    }
+  }
+
+  private Class<?> parseClass(final ScriptExecutionResult result, final String script)
+  {
     final GroovyClassLoader gcl = new GroovyClassLoader()
     {
       @SuppressWarnings("rawtypes")
@@ -154,9 +200,8 @@ public class GroovyExecutor
       }
     };
 
-    Class<?> groovyClass;
     try {
-      groovyClass = gcl.parseClass(script);
+      return gcl.parseClass(script);
     } catch (final CompilationFailedException ex) {
       log.info("Groovy-CompilationFailedException: " + ex.getMessage());
       if (result != null) {
@@ -164,22 +209,6 @@ public class GroovyExecutor
       }
       return null;
     }
-    Script groovyObject;
-    try {
-      groovyObject = (Script) groovyClass.newInstance();
-    } catch (final InstantiationException | IllegalAccessException ex) {
-      log.error(ex.getMessage(), ex);
-      if (result != null) {
-        result.setException(ex);
-      }
-      return null;
-    }
-    if (bindScriptResult) {
-      final Binding binding = groovyObject.getBinding();
-      final ScriptExecutionResult scriptResult = new ScriptExecutionResult();
-      binding.setVariable("scriptResult", scriptResult);
-    }
-    return groovyObject;
   }
 
   public ScriptExecutionResult execute(final Script groovyScript)
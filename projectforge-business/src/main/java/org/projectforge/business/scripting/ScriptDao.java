@@ -40,6 +40,8 @@ import org.projectforge.framework.time.PFDateTime;
 import org.projectforge.registry.Registry;
 import org.projectforge.registry.RegistryEntry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 
 import java.io.File;
@@ -64,13 +66,14 @@ public class ScriptDao extends BaseDao<ScriptDO> {
   }
 
   /**
-   * Copy old script as script backup if modified.
+   * Copy old script as script backup if modified. The compiled old script is removed from the script caches.
    *
    * @see org.projectforge.framework.persistence.api.BaseDao#onChange(ExtendedBaseDO, ExtendedBaseDO)
    */
   @Override
   protected void onChange(final ScriptDO obj, final ScriptDO dbObj) {
     if (!Arrays.equals(dbObj.getScript(), obj.getScript())) {
+      removeFromCache(dbObj);
       obj.setScriptBackup(dbObj.getScript());
       final String filename = ReplaceUtils.encodeFilename(dbObj.getName() + "_" + PFDateTime.now().getIsoStringSeconds() + ".groovy", true);
       final File backupDir = new File(ConfigXml.getInstance().getBackupDirectory(), "scripts");
@@ -124,16 +127,40 @@ public class ScriptDao extends BaseDao<ScriptDO> {
 
     scriptVariables.put("i18n", new I18n());
 
-    String scriptContent = script.getScriptAsString();
+    final String scriptContent = script.getScriptAsString();
     if (script.getType() == ScriptDO.ScriptType.KOTLIN) {
       return KotlinScriptExecutor.execute(scriptContent, scriptVariables, script.getFile(), script.getFilename());
     }
+    return groovyExecutor.execute(new ScriptExecutionResult(), getGroovyScript(scriptContent), scriptVariables);
+  }
+
+  private String getGroovyScript(final String scriptContent) {
     if (scriptContent.contains("import org.projectforge.export")) {
       // Package was renamed in version 5.2 and 6.13:
-      scriptContent = scriptContent.replace("import org.projectforge.export",
+      return scriptContent.replace("import org.projectforge.export",
               "import org.projectforge.export.*\nimport org.projectforge.business.excel");
     }
-    return groovyExecutor.execute(new ScriptExecutionResult(), scriptContent, scriptVariables);
+    return scriptContent;
+  }
+
+  private void removeFromCache(final ScriptDO script) {
+    final String scriptContent = script.getScriptAsString();
+    if (scriptContent == null) {
+      return;
+    }
+    if (script.getType() == ScriptDO.ScriptType.KOTLIN) {
+      KotlinScriptExecutor.removeFromCache(scriptContent);
+    } else {
+      GroovyExecutor.removeFromCache(getGroovyScript(scriptContent));
+    }
+  }
+
+  /**
+   * The Kotlin compiler needs several seconds for warm-up, so the script engines are prepared in the background.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void prewarmScriptEngines() {
+    KotlinScriptExecutor.prewarm();
   }
 
   /**
@@ -164,6 +164,20 @@ public class TaskDao extends BaseDao<TaskDO> {
     return list;
   }
 
+  /**
+   * Number of all time sheets (including deleted ones) and their max. last update (epoch millis). Used for detecting
+   * modifications of time sheets since the last snapshot of the task durations.
+   *
+   * @return long[] {count, maxLastUpdate}.
+   */
+  public long[] readTimesheetStatistics() {
+    final Tuple tuple = em.createQuery("select count(id), max(lastUpdate) from TimesheetDO", Tuple.class)
+            .getSingleResult();
+    final Number count = (Number) tuple.get(0);
+    final Date maxLastUpdate = (Date) tuple.get(1);
+    return new long[]{count != null ? count.longValue() : 0L, maxLastUpdate != null ? maxLastUpdate.getTime() : 0L};
+  }
+
   /**
    * Gets the total duration of all time sheets of the given task (excluding the child tasks).
    */
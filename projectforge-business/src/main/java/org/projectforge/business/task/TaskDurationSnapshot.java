@@ -0,0 +1,144 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.task;
+
+import org.projectforge.framework.configuration.ConfigXml;
+import org.projectforge.framework.persistence.user.entities.TenantDO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact snapshot of the time sheet durations of all tasks (excluding child tasks), written to the working directory.
+ * The snapshot is only valid, if the number of time sheets and their max. last update are unchanged, so the time sheet
+ * table needn't to be aggregated on every start.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class TaskDurationSnapshot
+{
+  private static final Logger log = LoggerFactory.getLogger(TaskDurationSnapshot.class);
+
+  private static final int FILE_VERSION = 1;
+
+  /**
+   * Number of time sheets (including deleted ones).
+   */
+  final long timesheetCount;
+
+  /**
+   * Max. last update of all time sheets.
+   */
+  final long maxLastUpdate;
+
+  /**
+   * Time of aggregation of the durations from the data base.
+   */
+  final long aggregationTime;
+
+  /**
+   * Durations in seconds by task id.
+   */
+  final Map<Integer, Long> durations;
+
+  TaskDurationSnapshot(final long[] timesheetStatistics, final long aggregationTime, final Map<Integer, Long> durations)
+  {
+    this.timesheetCount = timesheetStatistics[0];
+    this.maxLastUpdate = timesheetStatistics[1];
+    this.aggregationTime = aggregationTime;
+    this.durations = durations;
+  }
+
+  boolean matches(final long[] timesheetStatistics)
+  {
+    return timesheetCount == timesheetStatistics[0] && maxLastUpdate == timesheetStatistics[1];
+  }
+
+  void write(final TenantDO tenant)
+  {
+    final File file = getFile(tenant);
+    if (file == null) {
+      return;
+    }
+    final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.writeInt(FILE_VERSION);
+      out.writeLong(timesheetCount);
+      out.writeLong(maxLastUpdate);
+      out.writeLong(aggregationTime);
+      out.writeInt(durations.size());
+      for (final Map.Entry<Integer, Long> entry : durations.entrySet()) {
+        out.writeInt(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    } catch (final IOException ex) {
+      log.error("Can't write task durations to '" + tmpFile.getAbsolutePath() + "': " + ex.getMessage(), ex);
+      return;
+    }
+    if (!tmpFile.renameTo(file)) {
+      file.delete();
+      tmpFile.renameTo(file);
+    }
+  }
+
+  /**
+   * @return The snapshot or null, if not exist or not readable.
+   */
+  static TaskDurationSnapshot read(final TenantDO tenant)
+  {
+    final File file = getFile(tenant);
+    if (file == null || !file.exists()) {
+      return null;
+    }
+    try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FILE_VERSION) {
+        return null;
+      }
+      final long[] timesheetStatistics = {in.readLong(), in.readLong()};
+      final long aggregationTime = in.readLong();
+      final int size = in.readInt();
+      final Map<Integer, Long> durations = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        durations.put(in.readInt(), in.readLong());
+      }
+      return new TaskDurationSnapshot(timesheetStatistics, aggregationTime, durations);
+    } catch (final IOException ex) {
+      log.error("Can't read task durations from '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+      return null;
+    }
+  }
+
+  private static File getFile(final TenantDO tenant)
+  {
+    if (!ConfigXml.isInitialized() || ConfigXml.getInstance().getWorkingDirectory() == null) {
+      return null;
+    }
+    final ConfigXml configXml = ConfigXml.getInstance();
+    final String suffix = tenant != null && tenant.getId() != null ? String.valueOf(tenant.getId()) : "default";
+    return new File(configXml.getWorkingDirectory(), "task-durations-" + suffix + ".bin");
+  }
+}
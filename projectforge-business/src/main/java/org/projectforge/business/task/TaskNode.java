@@ -41,9 +41,10 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a single task as part of the TaskTree. The data of a task node is stored in the database.
@@ -70,6 +71,12 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    */
   long totalDuration = 0;
 
+  /**
+   * Total duration of all time sheets of this task including all descendant tasks in seconds. Maintained by
+   * {@link #addDuration(long)} and {@link #setParent(TaskNode)}.
+   */
+  long recursiveDuration = 0;
+
   /**
    * Sum of all ordered person days excluding descendant nodes. Ordered person days are defined by the sum of all
    * assigned order position's person days. Used and set by task tree.
@@ -89,9 +96,17 @@ public class TaskNode implements IdObject<Integer>, Serializable {
   boolean bookableForTimesheets;
 
   /**
-   * For every group with access to this node the permissions will be stored here.
+   * For every group with access to this node the permissions will be stored here. The key is the group id.
+   */
+  private final Map<Integer, GroupTaskAccessDO> groupTaskAccessMap = new ConcurrentHashMap<>();
+
+  /**
+   * The effective permissions (explicit or inherited) of the groups (key) for this node as bit set (value). Entries
+   * are calculated on demand and are invalidated for this node and all descendants after modifications.
+   *
+   * @see #getPermissionBit(AccessType, OperationType)
    */
-  private final List<GroupTaskAccessDO> groupTaskAccessList = new ArrayList<>();
+  private volatile Map<Integer, Integer> effectivePermissions = new ConcurrentHashMap<>();
 
   public TaskNode() {
   }
@@ -339,8 +354,47 @@ public class TaskNode implements IdObject<Integer>, Serializable {
         log.error("Oups, cyclic reference detection: taskId = " + getId() + ", parentTaskId = " + parent.getId());
         throw new UserException(TaskDao.I18N_KEY_ERROR_CYCLIC_REFERENCE);
       }
+      if (this.parent != parent && recursiveDuration != 0) {
+        // Move the durations of this sub tree from the old to the new ancestors:
+        addRecursiveDurationToAncestors(this.parent, -recursiveDuration);
+        addRecursiveDurationToAncestors(parent, recursiveDuration);
+      }
       this.parent = parent;
       this.task.setParentTask(parent.getTask());
+      invalidatePermissions(null);
+    }
+  }
+
+  /**
+   * Adds the given delta to the duration of this task and to the recursive durations of this task and all ancestors.
+   *
+   * @param seconds The duration to add (or to subtract, if negative).
+   */
+  void addDuration(final long seconds) {
+    totalDuration += seconds;
+    addRecursiveDurationToAncestors(this, seconds);
+  }
+
+  /**
+   * Sets the total and recursive durations of this sub tree, should only be called after reading the durations of all
+   * tasks (own durations).
+   *
+   * @return The recursive duration of this task.
+   */
+  long calculateRecursiveDuration() {
+    long duration = totalDuration;
+    if (children != null) {
+      for (final TaskNode child : children) {
+        duration += child.calculateRecursiveDuration();
+      }
+    }
+    recursiveDuration = duration;
+    return duration;
+  }
+
+  private static void addRecursiveDurationToAncestors(final TaskNode node, final long seconds) {
+    for (TaskNode ancestor = node; ancestor != null; ancestor = ancestor.parent) {
+      ancestor.recursiveDuration += seconds;
     }
   }
 
@@ -388,15 +442,81 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    * @see OperationType
    */
   public boolean hasPermission(final Integer groupId, final AccessType accessType, final OperationType opType) {
+    return (getEffectivePermissions(groupId) & getPermissionBit(accessType, opType)) != 0;
+  }
+
+  /**
+   * @return The bit set of the permissions of the given group (explicit or inherited by the ancestor nodes).
+   */
+  private int getEffectivePermissions(final Integer groupId) {
+    Validate.notNull(groupId);
+    final Map<Integer, Integer> permissions = this.effectivePermissions;
+    final Integer cached = permissions.get(groupId);
+    if (cached != null) {
+      return cached;
+    }
+    final int result;
     final GroupTaskAccessDO groupAccess = getGroupTaskAccess(groupId);
-    if (groupAccess == null) {
-      if (parent != null) {
-        return parent.isPermissionRecursive(groupId) && parent.hasPermission(groupId, accessType, opType);
+    if (groupAccess != null) {
+      int bits = 0;
+      for (final AccessType accessType : AccessType.values()) {
+        for (final OperationType opType : OperationType.values()) {
+          if (groupAccess.hasPermission(accessType, opType)) {
+            bits |= getPermissionBit(accessType, opType);
+          }
+        }
       }
-      // This is the root node.
-      return false;
+      result = bits;
+    } else if (parent != null && parent.isPermissionRecursive(groupId)) {
+      result = parent.getEffectivePermissions(groupId);
+    } else {
+      // This is the root node or the access of the parent node isn't recursive.
+      result = 0;
+    }
+    // If the permissions were invalidated in the meantime, the result is put into the discarded map.
+    permissions.put(groupId, result);
+    return result;
+  }
+
+  /**
+   * Invalidates the calculated permissions of this node and all descendant nodes.
+   *
+   * @param groupId The group to invalidate or null for invalidating all groups.
+   */
+  void invalidatePermissions(final Integer groupId) {
+    if (groupId == null) {
+      this.effectivePermissions = new ConcurrentHashMap<>();
+    } else {
+      final Map<Integer, Integer> permissions = new ConcurrentHashMap<>(this.effectivePermissions);
+      permissions.remove(groupId);
+      this.effectivePermissions = permissions;
+    }
+    if (this.children != null) {
+      for (final TaskNode child : this.children) {
+        child.invalidatePermissions(groupId);
+      }
+    }
+  }
+
+  /**
+   * DELETE and UNDELETE share the same bit as defined by {@link org.projectforge.framework.access.AccessEntryDO#hasPermission(OperationType)}.
+   */
+  private static int getPermissionBit(final AccessType accessType, final OperationType opType) {
+    final int opIndex;
+    switch (opType) {
+      case SELECT:
+        opIndex = 0;
+        break;
+      case INSERT:
+        opIndex = 1;
+        break;
+      case UPDATE:
+        opIndex = 2;
+        break;
+      default:
+        opIndex = 3;
     }
-    return groupAccess.hasPermission(accessType, opType);
+    return 1 << (accessType.ordinal() * 4 + opIndex);
   }
 
   public boolean isPermissionRecursive(final Integer groupId) {
@@ -412,12 +532,7 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    */
   GroupTaskAccessDO getGroupTaskAccess(final Integer groupId) {
     Validate.notNull(groupId);
-    for (final GroupTaskAccessDO access : groupTaskAccessList) {
-      if (groupId.equals(access.getGroupId())) {
-        return access;
-      }
-    }
-    return null;
+    return groupTaskAccessMap.get(groupId);
   }
 
   /**
@@ -432,10 +547,8 @@ public class TaskNode implements IdObject<Integer>, Serializable {
     if (log.isInfoEnabled()) {
       log.debug("Set explicit access, taskId = " + getTaskId() + ", groupId = " + groupTaskAccess.getGroupId());
     }
-    synchronized (groupTaskAccessList) {
-      removeGroupTaskAccess(groupTaskAccess.getGroupId());
-      groupTaskAccessList.add(groupTaskAccess);
-    }
+    groupTaskAccessMap.put(groupTaskAccess.getGroupId(), groupTaskAccess);
+    invalidatePermissions(groupTaskAccess.getGroupId());
   }
 
   /**
@@ -447,17 +560,8 @@ public class TaskNode implements IdObject<Integer>, Serializable {
   boolean removeGroupTaskAccess(final Integer groupId) {
     // TODO: Should be called after deleting from database.
     Validate.notNull(groupId);
-    boolean result = false;
-    synchronized (groupTaskAccessList) {
-      final Iterator<GroupTaskAccessDO> it = groupTaskAccessList.iterator();
-      while (it.hasNext()) {
-        final GroupTaskAccessDO access = it.next();
-        if (groupId.equals(access.getGroupId())) {
-          it.remove();
-          result = true;
-        }
-      }
-    }
+    final boolean result = groupTaskAccessMap.remove(groupId) != null;
+    invalidatePermissions(groupId);
     return result;
   }
 
@@ -468,17 +572,7 @@ public class TaskNode implements IdObject<Integer>, Serializable {
    * @return
    */
   public long getDuration(final TaskTree taskTree, final boolean recursive) {
-    if (totalDuration < 0) {
-      taskTree.readTotalDuration(this.getId());
-    }
-    if (!recursive || children == null) {
-      return totalDuration;
-    }
-    long duration = totalDuration;
-    for (final TaskNode child : children) {
-      duration += child.getDuration(taskTree, true);
-    }
-    return duration;
+    return recursive ? recursiveDuration : totalDuration;
   }
 
   @Override
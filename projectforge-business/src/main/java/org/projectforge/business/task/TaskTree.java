@@ -57,6 +57,7 @@ import java.io.Serializable;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Holds the complete task list in a tree. It will be initialized by the values read from the database. Any changes will
@@ -110,6 +111,23 @@ public class TaskTree extends AbstractCache implements Serializable
 
   private boolean orderPositionReferencesDirty = true;
 
+  /**
+   * The durations of the tasks are maintained incrementally, but aggregated from the data base at least once a day.
+   */
+  private static final long MAX_DURATION_AGGREGATION_AGE = TICKS_PER_DAY;
+
+  private long durationAggregationTime;
+
+  /**
+   * Incremented on every modification of the task tree or of the assigned projects, for detecting outdated entries
+   * of the kost2 caches.
+   */
+  private volatile long kost2TreeVersion;
+
+  private final Map<Integer, Kost2CacheEntry> kost2ListCache = new ConcurrentHashMap<>();
+
+  private final Map<Integer, Kost2CacheEntry> descendantsKost2Cache = new ConcurrentHashMap<>();
+
   public TaskNode getRootTaskNode()
   {
     checkRefresh();
@@ -134,7 +152,7 @@ public class TaskTree extends AbstractCache implements Serializable
    * Adds a new node with the given data. The given Task holds all data and the information (id) of the parent node of
    * the node to add. Will be called by TaskDAO after inserting a new task.
    */
-  TaskNode addTaskNode(final TaskDO task)
+  synchronized TaskNode addTaskNode(final TaskDO task)
   {
     checkRefresh();
     final TaskNode node = new TaskNode();
@@ -230,13 +248,14 @@ public class TaskTree extends AbstractCache implements Serializable
     }
   }
 
-  public void internalSetProject(final Integer taskId, final ProjektDO projekt)
+  public synchronized void internalSetProject(final Integer taskId, final ProjektDO projekt)
   {
     final TaskNode node = getTaskNodeById(taskId);
     if (node == null) {
       throw new InternalErrorException("Could not found task with id " + taskId + " in internalSetProject");
     }
     node.projekt = projekt;
+    ++kost2TreeVersion;
   }
 
   /**
@@ -268,6 +287,58 @@ public class TaskTree extends AbstractCache implements Serializable
     return getKost2List(node, recursive);
   }
 
+  /**
+   * Checks if any descendant task has kost2 entries (including kost2 entries inherited from the tasks between the
+   * given task and the descendant). The result is cached until the task tree or the kost entries are modified.
+   *
+   * @param taskId
+   * @return true, if at least one descendant task of the given task has a non-empty kost2 list.
+   */
+  public boolean hasKost2InDescendants(final Integer taskId)
+  {
+    final TaskNode node = getTaskNodeById(taskId);
+    if (node == null) {
+      return false;
+    }
+    final long kostVersion = kostCache.getVersion();
+    final long treeVersion = this.kost2TreeVersion;
+    final Kost2CacheEntry entry = descendantsKost2Cache.get(taskId);
+    if (entry != null && entry.kostVersion == kostVersion && entry.treeVersion == treeVersion) {
+      return entry.hasKost2InDescendants;
+    }
+    boolean result = false;
+    for (final Integer descendantId : node.getDescendantIds()) {
+      if (CollectionUtils.isNotEmpty(getKost2List(descendantId))) {
+        result = true;
+        break;
+      }
+    }
+    descendantsKost2Cache.put(taskId, new Kost2CacheEntry(kostVersion, treeVersion, null, result));
+    return result;
+  }
+
+  private static class Kost2CacheEntry implements Serializable
+  {
+    private static final long serialVersionUID = -2125395584314893946L;
+
+    private final long kostVersion;
+
+    private final long treeVersion;
+
+    private final List<Kost2DO> kost2List;
+
+    private final boolean hasKost2InDescendants;
+
+    private Kost2CacheEntry(final long kostVersion, final long treeVersion, final List<Kost2DO> kost2List,
+        final boolean hasKost2InDescendants)
+    {
+      this.kostVersion = kostVersion;
+      this.treeVersion = treeVersion;
+      this.kost2List = kost2List;
+      this.hasKost2InDescendants = hasKost2InDescendants;
+    }
+  }
+
   /**
    * @param projekt          If not initialized then the project is get from the data base.
    * @param task             Only needed for output if an entry (Kost2) of the blackWhiteList cannot be found.
@@ -349,6 +420,24 @@ public class TaskTree extends AbstractCache implements Serializable
     if (node == null) {
       return null;
     }
+    if (recursive) {
+      // The effective kost2 lists of the tasks are cached until the task tree or the kost entries are modified:
+      final long kostVersion = kostCache.getVersion();
+      final long treeVersion = this.kost2TreeVersion;
+      final Kost2CacheEntry entry = kost2ListCache.get(node.getId());
+      if (entry != null && entry.kostVersion == kostVersion && entry.treeVersion == treeVersion) {
+        return entry.kost2List != null ? new ArrayList<>(entry.kost2List) : null;
+      }
+      final List<Kost2DO> list = readKost2List(node, true);
+      kost2ListCache.put(node.getId(), new Kost2CacheEntry(kostVersion, treeVersion,
+          list != null ? new ArrayList<>(list) : null, false));
+      return list;
+    }
+    return readKost2List(node, false);
+  }
+
+  private List<Kost2DO> readKost2List(final TaskNode node, final boolean recursive)
+  {
     final TaskDO task = node.getTask();
     final String[] blackWhiteList = task.getKost2BlackWhiteItems();
     final ProjektDO projekt = node.getProjekt(blackWhiteList != null); // If black-white-list is null then do not search for projekt of
@@ -357,25 +446,40 @@ public class TaskTree extends AbstractCache implements Serializable
     if (list != null) {
       return list;
     } else if (node.parent != null && recursive) {
-      return getKost2List(node.parent, recursive);
+      return getKost2List(node.parent, true);
     } else {
       return null;
     }
   }
 
   /**
-   * Should be called after modification of a time sheet assigned to the given task id.
+   * Should be called after inserting, modifying, deleting or undeleting a time sheet assigned to the given task id.
+   * The duration of the task and the recursive durations of the task and all its ancestors will be updated.
    *
    * @param taskId
+   * @param seconds The duration to add (or to subtract, if negative).
    */
-  public void resetTotalDuration(final Integer taskId)
+  public synchronized void addTimesheetDuration(final Integer taskId, final long seconds)
   {
+    if (seconds == 0) {
+      return;
+    }
     final TaskNode node = getTaskNodeById(taskId);
     if (node == null) {
       log.error("Task id '" + taskId + "' not found.");
       return;
     }
-    node.totalDuration = -1;
+    node.addDuration(seconds);
+  }
+
+  /**
+   * Re-reads the total duration of the given task from the data base.
+   *
+   * @param taskId
+   */
+  public void resetTotalDuration(final Integer taskId)
+  {
+    readTotalDuration(taskId);
   }
 
   /**
@@ -383,7 +487,7 @@ public class TaskTree extends AbstractCache implements Serializable
    *
    * @param task Updating the existing task in the taskTree. If not exist, a new task will be added.
    */
-  TaskNode addOrUpdateTaskNode(final TaskDO task)
+  synchronized TaskNode addOrUpdateTaskNode(final TaskDO task)
   {
     checkRefresh();
     Validate.notNull(task);
@@ -414,7 +518,7 @@ public class TaskTree extends AbstractCache implements Serializable
    *
    * @see GroupTaskAccess
    */
-  public void setGroupTaskAccess(final GroupTaskAccessDO groupTaskAccess)
+  public synchronized void setGroupTaskAccess(final GroupTaskAccessDO groupTaskAccess)
   {
     checkRefresh();
     final Integer taskId = groupTaskAccess.getTaskId();
@@ -428,7 +532,7 @@ public class TaskTree extends AbstractCache implements Serializable
    *
    * @see GroupTaskAccess
    */
-  public void removeGroupTaskAccess(final GroupTaskAccessDO groupTaskAccess)
+  public synchronized void removeGroupTaskAccess(final GroupTaskAccessDO groupTaskAccess)
   {
     checkRefresh();
     final Integer taskId = groupTaskAccess.getTaskId();
@@ -785,37 +889,86 @@ public class TaskTree extends AbstractCache implements Serializable
   }
 
   /**
-   * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
+   * Sets the total duration of all task nodes. The durations are taken (in this order of preference):
+   * <ol>
+   * <li>from the previous task tree (they are maintained incrementally), if not older than one day,</li>
+   * <li>from the snapshot file, if no time sheet was modified since,</li>
+   * <li>by aggregating all time sheets from the data base.</li>
+   * </ol>
+   * The snapshot file is only written after aggregating (and by {@link #writeDurationSnapshot()} on shutdown).
+   * <br/>
+   * Called by {@link #refresh()} while holding the monitor of this tree. {@link #addTimesheetDuration(Integer, long)}
+   * is synchronized on the same monitor, so deltas of committed time sheets are applied either to the old durations
+   * before they are carried over or to the new task nodes afterwards, but never get lost in between.
+   *
+   * @param oldTaskMap The task nodes of the previous task tree (if any).
    */
-  private void readTotalDurations()
+  private void readTotalDurations(final Map<Integer, TaskNode> oldTaskMap)
   {
-    final List<Object[]> list = taskDao.readTotalDurations();
-    for (final Object[] res : list) {
-      final Integer taskId = (Integer) res[1];
-      final TaskNode node = getTaskNodeById(taskId);
+    final long[] timesheetStatistics = taskDao.readTimesheetStatistics();
+    final long now = System.currentTimeMillis();
+    TaskDurationSnapshot snapshot = null;
+    if (MapUtils.isNotEmpty(oldTaskMap) && now - durationAggregationTime < MAX_DURATION_AGGREGATION_AGE) {
+      final Map<Integer, Long> durations = new HashMap<>();
+      for (final TaskNode oldNode : oldTaskMap.values()) {
+        durations.put(oldNode.getId(), oldNode.totalDuration);
+      }
+      snapshot = new TaskDurationSnapshot(timesheetStatistics, durationAggregationTime, durations);
+    } else if (oldTaskMap == null) {
+      snapshot = TaskDurationSnapshot.read(tenant);
+      if (snapshot != null && (!snapshot.matches(timesheetStatistics) || now - snapshot.aggregationTime >= MAX_DURATION_AGGREGATION_AGE)) {
+        log.info("Snapshot of task durations is outdated.");
+        snapshot = null;
+      }
+    }
+    if (snapshot == null) {
+      log.info("Aggregating durations of all time sheets ...");
+      final Map<Integer, Long> durations = new HashMap<>();
+      for (final Object[] res : taskDao.readTotalDurations()) {
+        durations.put((Integer) res[1], ((Number) res[0]).longValue());
+      }
+      snapshot = new TaskDurationSnapshot(timesheetStatistics, now, durations);
+      snapshot.write(tenant);
+    }
+    durationAggregationTime = snapshot.aggregationTime;
+    for (final Map.Entry<Integer, Long> entry : snapshot.durations.entrySet()) {
+      final TaskNode node = getTaskNodeById(entry.getKey());
       if (node == null) {
-        log.warn("Task not found: " + taskId);
+        log.warn("Task not found: " + entry.getKey());
       } else {
-        if (res[0] instanceof Integer) {
-          node.totalDuration = (Integer) res[0];
-        } else {
-          node.totalDuration = (Long) res[0];
-        }
+        node.totalDuration = entry.getValue();
       }
     }
+    root.calculateRecursiveDuration();
+  }
+
+  /**
+   * Writes the current (incrementally maintained) durations of all tasks to the snapshot file, so they can be used on
+   * the next start-up. Should be called on shutdown.
+   */
+  public synchronized void writeDurationSnapshot()
+  {
+    if (MapUtils.isEmpty(taskMap)) {
+      return;
+    }
+    final Map<Integer, Long> durations = new HashMap<>();
+    for (final TaskNode node : taskMap.values()) {
+      durations.put(node.getId(), node.totalDuration);
+    }
+    new TaskDurationSnapshot(taskDao.readTimesheetStatistics(), durationAggregationTime, durations).write(tenant);
   }
 
   /**
-   * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
+   * Reads the sum of all time sheet durations of the given task and updates the durations of the task and its ancestors.
    */
-  public void readTotalDuration(final Integer taskId)
+  public synchronized void readTotalDuration(final Integer taskId)
   {
     final long duration = taskDao.readTotalDuration(taskId);
     final TaskNode node = getTaskNodeById(taskId);
     if (node == null) {
       log.warn("Task not found: " + taskId);
     } else {
-      node.totalDuration = duration;
+      node.addDuration(duration - node.totalDuration);
     }
   }
 
@@ -828,6 +981,15 @@ public class TaskTree extends AbstractCache implements Serializable
     this.setExpired();
   }
 
+  /**
+   * The task tree is built and its durations are carried over in place, so readers have to wait for a running refresh.
+   */
+  @Override
+  protected boolean isBackgroundRefreshEnabled()
+  {
+    return false;
+  }
+
   /**
    * All tasks from database will be read and cached into this TaskTree. Also all explicit group task access' will be
    * read from database and will be cached in this tree (implicit access' will be created too).<br/>
@@ -848,6 +1010,7 @@ public class TaskTree extends AbstractCache implements Serializable
       return;
     }
     TaskNode newRoot = null;
+    final Map<Integer, TaskNode> oldTaskMap = taskMap;
     taskMap = new HashMap<>();
     final List<TaskDO> taskList;
     if (tenant != null) {
@@ -943,7 +1106,8 @@ public class TaskTree extends AbstractCache implements Serializable
     if (log.isDebugEnabled()) {
       log.debug(this.toString());
     }
-    readTotalDurations();
+    readTotalDurations(oldTaskMap);
+    ++kost2TreeVersion;
     refreshOrderPositionReferences();
     // Now update the status: bookable for time sheets:
     final TimesheetDO timesheet = new TimesheetDO();
@@ -959,5 +1123,6 @@ public class TaskTree extends AbstractCache implements Serializable
   private void updateTimeOfLastModification()
   {
     this.timeOfLastModification = new Date().getTime();
+    ++kost2TreeVersion;
   }
 }
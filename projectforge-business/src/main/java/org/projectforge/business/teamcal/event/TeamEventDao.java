@@ -23,9 +23,7 @@
 
 package org.projectforge.business.teamcal.event;
 
-import net.fortuna.ical4j.model.DateList;
 import net.fortuna.ical4j.model.Recur;
-import net.fortuna.ical4j.model.parameter.Value;
 import net.fortuna.ical4j.model.property.RRule;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -106,6 +104,9 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
   @Autowired
   private TenantService tenantService;
 
+  @Autowired
+  private TeamEventRecurrenceCache teamEventRecurrenceCache;
+
   public TeamEventDao() {
     super(TeamEventDO.class);
     userRightId = UserRightId.PLUGIN_CALENDAR_EVENT;
@@ -712,68 +713,21 @@ public class TeamEventDao extends BaseDao<TeamEventDO> {
       log.debug("---------- startDate=" + DateHelper.formatIsoTimestamp(eventStartDate, timeZone) + ", timeZone="
               + timeZone.getID());
     }
-    net.fortuna.ical4j.model.TimeZone ical4jTimeZone;
-    try {
-      ical4jTimeZone = ICal4JUtils.getTimeZone(timeZone4Calc);
-    } catch (final Exception e) {
-      log.error("Error getting timezone from ical4j.");
-      ical4jTimeZone = ICal4JUtils.getUserTimeZone();
-    }
-
-    final net.fortuna.ical4j.model.DateTime ical4jStartDate = new net.fortuna.ical4j.model.DateTime(startDate);
-    ical4jStartDate.setTimeZone(ical4jTimeZone);
-    final net.fortuna.ical4j.model.DateTime ical4jEndDate = new net.fortuna.ical4j.model.DateTime(endDate);
-    ical4jEndDate.setTimeZone(ICal4JUtils.getTimeZone(timeZone4Calc));
-    final net.fortuna.ical4j.model.DateTime seedDate = new net.fortuna.ical4j.model.DateTime(eventStartDate);
-    seedDate.setTimeZone(ICal4JUtils.getTimeZone(timeZone4Calc));
+    // Recurrence rule, ex-dates and the expanded occurrences are cached per event:
+    final long[] occurrences = teamEventRecurrenceCache.getOccurrences(event, startDate, endDate, timeZone4Calc);
 
-    // get ex dates of event
-    final List<Date> exDates = ICal4JUtils.parseCSVDatesAsJavaUtilDates(event.getRecurrenceExDate(), DateHelper.UTC);
-
-    // get events in time range
-    final DateList dateList = recur.getDates(seedDate, ical4jStartDate, ical4jEndDate, Value.DATE_TIME);
-
-    // remove ex range values
     final Collection<ICalendarEvent> col = new ArrayList<>();
-    if (dateList != null) {
-      OuterLoop:
-      for (final Object obj : dateList) {
-        final net.fortuna.ical4j.model.DateTime dateTime = (net.fortuna.ical4j.model.DateTime) obj;
+    if (occurrences != null) {
+      for (final long occurrence : occurrences) {
+        final java.util.Date dateTime = new java.util.Date(occurrence);
         final String isoDateString = event.getAllDay() ? DateHelper.formatIsoDate(dateTime, timeZone)
                 : DateHelper.formatIsoTimestamp(dateTime, DateHelper.UTC);
-        if (exDates != null && exDates.size() > 0) {
-          for (Date exDate : exDates) {
-            if (!event.getAllDay()) {
-              Date recurDateJavaUtil = new Date(dateTime.getTime());
-              if (recurDateJavaUtil.equals(exDate)) {
-                if (log.isDebugEnabled()) {
-                  log.debug("= ex-dates equals: " + isoDateString + " == " + exDate);
-                }
-                // this date is part of ex dates, so don't use it.
-                continue OuterLoop;
-              }
-            } else {
-              // Allday event.
-              final String isoExDateString = DateHelper.formatIsoDate(exDate, DateHelper.UTC);
-              if (isoDateString.equals(isoExDateString)) {
-                if (log.isDebugEnabled()) {
-                  log.debug(String.format("= ex-dates equals: %s == %s", isoDateString, isoExDateString));
-                }
-                // this date is part of ex dates, so don't use it.
-                continue OuterLoop;
-              }
-            }
-            if (log.isDebugEnabled()) {
-              log.debug("ex-dates not equals: " + isoDateString + " != " + exDate);
-            }
-          }
-        }
         if (isoDateString.equals(eventStartDateString)) {
           // Put event itself to the list.
           col.add(event);
         } else {
           // Now we need this event as date with the user's time-zone.
-          final PFDateTime date = PFDateTime.from(dateTime.getTime(), timeZone.toZoneId(), null, PFDateTime.NumberFormat.EPOCH_MILLIS);
+          final PFDateTime date = PFDateTime.from(occurrence, timeZone.toZoneId(), null, PFDateTime.NumberFormat.EPOCH_MILLIS);
           final TeamRecurrenceEvent recurEvent = new TeamRecurrenceEvent(event, date);
           col.add(recurEvent);
         }
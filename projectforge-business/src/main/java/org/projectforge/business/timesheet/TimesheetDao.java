@@ -58,9 +58,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -85,9 +88,12 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
   private UserDao userDao;
   @Autowired
   private Kost2Dao kost2Dao;
+  @Autowired
+  private TimesheetIntervalCache timesheetIntervalCache;
 
   public TimesheetDao() {
     super(TimesheetDO.class);
+    this.supportAfterUpdate = true;
   }
 
   public boolean showTimesheetsOfOtherUsers() {
@@ -212,21 +218,8 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
   }
 
   public List<TimesheetDO> internalGetList(final BaseSearchFilter filter, boolean checkAccess) {
-    final TimesheetFilter myFilter;
-    if (filter instanceof TimesheetFilter) {
-      myFilter = (TimesheetFilter) filter;
-    } else {
-      myFilter = new TimesheetFilter(filter);
-    }
-    if (myFilter.getStopTime() != null) {
-      PFDateTime dateTime = PFDateTime.from(myFilter.getStopTime()).getEndOfDay();
-      myFilter.setStopTime(dateTime.getUtilDate());
-    }
-    final QueryFilter queryFilter = buildQueryFilter(myFilter);
-    if (accessChecker.isLoggedInUserMemberOfGroup(ProjectForgeGroup.CONTROLLING_GROUP, ProjectForgeGroup.FINANCE_GROUP)) {
-      // Financial staff needs sometimes to query a lot of time sheets for exporting, statistics etc.
-      queryFilter.setMaxRows(100000);
-    }
+    final TimesheetFilter myFilter = asTimesheetFilter(filter);
+    final QueryFilter queryFilter = buildListQueryFilter(myFilter);
 
     List<TimesheetDO> result;
     if (checkAccess) {
@@ -241,7 +234,7 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
       final List<TimesheetDO> list = result;
       result = new ArrayList<>();
       for (final TimesheetDO entry : list) {
-        if (entry.getKost2() != null && entry.getKost2().getKost2Art() != null && entry.getKost2().getKost2Art().getFakturiert()) {
+        if (isBillable(entry)) {
           result.add(entry);
         }
       }
@@ -250,12 +243,139 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
   }
 
   /**
-   * Rechecks the time sheet overlaps.
+   * Streams the time sheets matching the given filter to the consumer instead of building the result list (same
+   * filter semantics and max rows as {@link #getList(BaseSearchFilter)}). Used for exports of huge lists.
+   *
+   * @return The number of time sheets passed to the consumer.
+   */
+  public int forEach(final BaseSearchFilter filter, final Consumer<TimesheetDO> consumer) {
+    final TimesheetFilter myFilter = asTimesheetFilter(filter);
+    final QueryFilter queryFilter = buildListQueryFilter(myFilter);
+    if (!myFilter.isOnlyBillable()) {
+      return forEach(queryFilter, consumer);
+    }
+    final int[] counter = {0};
+    forEach(queryFilter, entry -> {
+      if (isBillable(entry)) {
+        ++counter[0];
+        consumer.accept(entry);
+      }
+    });
+    return counter[0];
+  }
+
+  private TimesheetFilter asTimesheetFilter(final BaseSearchFilter filter) {
+    final TimesheetFilter myFilter;
+    if (filter instanceof TimesheetFilter) {
+      myFilter = (TimesheetFilter) filter;
+    } else {
+      myFilter = new TimesheetFilter(filter);
+    }
+    if (myFilter.getStopTime() != null) {
+      PFDateTime dateTime = PFDateTime.from(myFilter.getStopTime()).getEndOfDay();
+      myFilter.setStopTime(dateTime.getUtilDate());
+    }
+    return myFilter;
+  }
+
+  private QueryFilter buildListQueryFilter(final TimesheetFilter filter) {
+    final QueryFilter queryFilter = buildQueryFilter(filter);
+    if (accessChecker.isLoggedInUserMemberOfGroup(ProjectForgeGroup.CONTROLLING_GROUP, ProjectForgeGroup.FINANCE_GROUP)) {
+      // Financial staff needs sometimes to query a lot of time sheets for exporting, statistics etc.
+      queryFilter.setMaxRows(100000);
+    }
+    return queryFilter;
+  }
+
+  private boolean isBillable(final TimesheetDO entry) {
+    return entry.getKost2() != null && entry.getKost2().getKost2Art() != null && entry.getKost2().getKost2Art().getFakturiert();
+  }
+
+  /**
+   * Adds the duration of the new time sheet to the task tree.
+   */
+  @Override
+  protected void afterSave(final TimesheetDO obj) {
+    super.afterSave(obj);
+    addDurationToTaskTree(obj, 1);
+  }
+
+  /**
+   * Moves the duration of the time sheet in the task tree, if the task or the time period was changed. The deleted flag
+   * isn't modified by updates.
+   *
+   * @param obj   The persisted values.
+   * @param dbObj The values before the update (already added to the task tree).
+   */
+  @Override
+  protected void afterUpdate(final TimesheetDO obj, final TimesheetDO dbObj, final boolean isModified) {
+    super.afterUpdate(obj, dbObj, isModified);
+    if (!isModified || dbObj == null || dbObj.isDeleted()) {
+      return;
+    }
+    if (!Objects.equals(obj.getTaskId(), dbObj.getTaskId()) || obj.getDuration() != dbObj.getDuration()) {
+      addDurationToTaskTree(dbObj, -1);
+      addDurationToTaskTree(obj, 1);
+    }
+  }
+
+  /**
+   * Subtracts the duration of the time sheet from the task tree. The values of the data base object are used, because
+   * these were added to the task tree (the given object may contain further modifications, which are written as well).
+   */
+  @Override
+  public void internalMarkAsDeleted(final TimesheetDO obj) {
+    final TimesheetDO dbObj = internalGetById(obj.getId());
+    final Integer taskId = dbObj != null && !dbObj.isDeleted() ? dbObj.getTaskId() : null;
+    final long seconds = dbObj != null ? getDurationInSeconds(dbObj) : 0;
+    super.internalMarkAsDeleted(obj);
+    if (taskId != null) {
+      addDurationToTaskTree(TaskTreeHelper.getTaskTree(obj), taskId, -seconds);
+    }
+  }
+
+  /**
+   * Adds the duration of the undeleted time sheet to the task tree.
    */
   @Override
-  protected void afterSaveOrModify(final TimesheetDO obj) {
-    super.afterSaveOrModify(obj);
-    TaskTreeHelper.getTaskTree(obj).resetTotalDuration(obj.getTaskId());
+  protected void afterUndelete(final TimesheetDO obj) {
+    super.afterUndelete(obj);
+    addDurationToTaskTree(obj, 1);
+  }
+
+  private void addDurationToTaskTree(final TimesheetDO timesheet, final int sign) {
+    if (timesheet.getTaskId() == null) {
+      return;
+    }
+    addDurationToTaskTree(TaskTreeHelper.getTaskTree(timesheet), timesheet.getTaskId(), sign * getDurationInSeconds(timesheet));
+  }
+
+  /**
+   * The duration is added after the commit of the current transaction (if any), so the task tree contains only
+   * committed durations. The values are taken immediately, so later modifications of the time sheet object don't
+   * matter.
+   */
+  private void addDurationToTaskTree(final TaskTree taskTree, final Integer taskId, final long seconds) {
+    if (seconds == 0) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          taskTree.addTimesheetDuration(taskId, seconds);
+        }
+      });
+      return;
+    }
+    taskTree.addTimesheetDuration(taskId, seconds);
+  }
+
+  private long getDurationInSeconds(final TimesheetDO timesheet) {
+    if (timesheet.getStartTime() == null || timesheet.getStopTime() == null) {
+      return 0;
+    }
+    return timesheet.getDuration() / 1000;
   }
 
   /**
@@ -277,17 +397,10 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
       final Integer kost2Id = obj.getKost2Id();
       if (kost2Id == null) {
         // Check, if there is any cost definition in any descendant task:
-        TaskTree taskTree = TaskTreeHelper.getTaskTree(obj);
-        TaskNode taskNode = taskTree.getTaskNodeById(obj.getTaskId());
-        if (taskNode != null) {
-          List<Integer> descendents = taskNode.getDescendantIds();
-          for (Integer taskId : descendents) {
-            if (CollectionUtils.isNotEmpty(taskTree.getKost2List(taskId))) {
-              // But Kost2 is available for sub task, so user should book his time sheet
-              // on a sub task with kost2s.
-              throw new UserException("timesheet.error.kost2NeededChooseSubTask");
-            }
-          }
+        if (TaskTreeHelper.getTaskTree(obj).hasKost2InDescendants(obj.getTaskId())) {
+          // But Kost2 is available for sub task, so user should book his time sheet
+          // on a sub task with kost2s.
+          throw new UserException("timesheet.error.kost2NeededChooseSubTask");
         }
       }
       if (CollectionUtils.isNotEmpty(kost2List)) {
@@ -312,13 +425,6 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
     }
   }
 
-  @Override
-  protected void onChange(final TimesheetDO obj, final TimesheetDO dbObj) {
-    if (obj.getTaskId().compareTo(dbObj.getTaskId()) != 0) {
-      TaskTreeHelper.getTaskTree(obj).resetTotalDuration(dbObj.getTaskId());
-    }
-  }
-
   @Override
   protected void prepareHibernateSearch(final TimesheetDO obj, final OperationType operationType) {
     final PFUserDO user = obj.getUser();
@@ -353,6 +459,24 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
     long begin = System.currentTimeMillis();
     Validate.notNull(timesheet);
     Validate.notNull(timesheet.getUser());
+    final Integer userId = timesheet.getUserId();
+    if (userId != null && timesheet.getStartTime() != null && timesheet.getStopTime() != null
+            && timesheetIntervalCache.isIndexed(timesheet.getStartTime())) {
+      // Time sheets of the last months are indexed, no data base query needed:
+      final TimesheetIntervalCache.TimesheetInterval overlap = timesheetIntervalCache.getOverlap(userId,
+              timesheet.getStartTime(), timesheet.getStopTime(), timesheet.getId());
+      if (log.isDebugEnabled()) {
+        log.debug("TimesheetDao.hasTimeOverlap (cached) took: " + (System.currentTimeMillis() - begin) + " ms.");
+      }
+      if (overlap == null) {
+        return false;
+      }
+      if (throwException) {
+        log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet #" + overlap.getId());
+        throw createTimeOverlapException(overlap.getId(), new Date(overlap.getStartTime()), new Date(overlap.getStopTime()));
+      }
+      return true;
+    }
     final QueryFilter queryFilter = new QueryFilter();
     queryFilter.add(QueryFilter.eq("user", timesheet.getUser()));
     queryFilter.add(QueryFilter.eq("deleted", false));
@@ -367,21 +491,25 @@ public class TimesheetDao extends BaseDao<TimesheetDO> {
       final TimesheetDO ts = list.get(0);
       if (throwException) {
         log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + ts);
-        final String startTime = DateHelper.formatIsoTimestamp(ts.getStartTime());
-        final String stopTime = DateHelper.formatIsoTimestamp(ts.getStopTime());
-        throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(ts.getId()),
-                new MessageParam(startTime),
-                new MessageParam(stopTime));
+        throw createTimeOverlapException(ts.getId(), ts.getStartTime(), ts.getStopTime());
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("TimesheetDao.hasTimeOverlap took: " + (System.currentTimeMillis() - begin) + " ms.");
       }
-      long end = System.currentTimeMillis();
-      log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
       return true;
     }
-    long end = System.currentTimeMillis();
-    log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
+    if (log.isDebugEnabled()) {
+      log.debug("TimesheetDao.hasTimeOverlap took: " + (System.currentTimeMillis() - begin) + " ms.");
+    }
     return false;
   }
 
+  private UserException createTimeOverlapException(final Integer id, final Date startTime, final Date stopTime) {
+    return new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(id),
+            new MessageParam(DateHelper.formatIsoTimestamp(startTime)),
+            new MessageParam(DateHelper.formatIsoTimestamp(stopTime)));
+  }
+
   /**
    * return Always true, no generic select access needed for address objects.
    */
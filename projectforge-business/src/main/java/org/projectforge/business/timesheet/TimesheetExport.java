@@ -45,6 +45,8 @@ import org.projectforge.framework.time.PFDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
@@ -62,6 +64,9 @@ public class TimesheetExport {
   @Autowired
   private DateTimeFormatter dateTimeFormatter;
 
+  @Autowired
+  private TimesheetDao timesheetDao;
+
   private class MyContentProvider extends MyXlsContentProvider {
     public MyContentProvider(final ExportWorkbook workbook) {
       super(workbook);
@@ -107,50 +112,84 @@ public class TimesheetExport {
   public byte[] export(final List<TimesheetDO> list) {
     log.info("Exporting timesheet list.");
     final ExportWorkbook xls = new ExportWorkbook();
-    final ContentProvider contentProvider = new MyContentProvider(xls);
-    // create a default Date format and currency column
-    xls.setContentProvider(contentProvider);
-
-    final String sheetTitle = ThreadLocalUserContext.getLocalizedString("timesheet.timesheets");
-    final ExportSheet sheet = xls.addSheet(sheetTitle);
-    sheet.createFreezePane(8, 1);
-
-    final ExportColumn[] cols = new ExportColumn[]{ //
-            new I18nExportColumn(Col.USER, "timesheet.user", MyXlsContentProvider.LENGTH_USER),
-            new I18nExportColumn(Col.KUNDE, "fibu.kunde", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.PROJEKT, "fibu.projekt", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.KOST2, "fibu.kost2", MyXlsContentProvider.LENGTH_KOSTENTRAEGER),
-            new I18nExportColumn(Col.WEEK_OF_YEAR, "calendar.weekOfYearShortLabel", 4),
-            new I18nExportColumn(Col.DAY_OF_WEEK, "calendar.dayOfWeekShortLabel", 4),
-            new I18nExportColumn(Col.START_TIME, "timesheet.startTime", MyXlsContentProvider.LENGTH_DATETIME),
-            new I18nExportColumn(Col.STOP_TIME, "timesheet.stopTime", MyXlsContentProvider.LENGTH_TIMESTAMP),
-            new I18nExportColumn(Col.DURATION, "timesheet.duration", MyXlsContentProvider.LENGTH_DURATION),
-            new I18nExportColumn(Col.HOURS, "hours", MyXlsContentProvider.LENGTH_DURATION),
-            new I18nExportColumn(Col.LOCATION, "timesheet.location", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.TASK_TITLE, "task.title", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.REFERENCE, "task.reference", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.SHORT_DESCRIPTION, "shortDescription", MyXlsContentProvider.LENGTH_STD),
-            new I18nExportColumn(Col.DESCRIPTION, "timesheet.description", MyXlsContentProvider.LENGTH_EXTRA_LONG),
-            new I18nExportColumn(Col.TASK_PATH, "task.path", MyXlsContentProvider.LENGTH_EXTRA_LONG),
-            new I18nExportColumn(Col.ID, "id", MyXlsContentProvider.LENGTH_ID),
-            new I18nExportColumn(Col.CREATED, "created", MyXlsContentProvider.LENGTH_TIMESTAMP),
-            new I18nExportColumn(Col.LAST_UPDATE, "lastUpdate", MyXlsContentProvider.LENGTH_TIMESTAMP)};
-    // column property names
-    sheet.setColumns(cols);
-
-    final ContentProvider sheetProvider = sheet.getContentProvider();
-    sheetProvider.putFormat(Col.START_TIME, "yyyy-MM-dd HH:mm");
-    sheetProvider.putFormat(Col.STOP_TIME, "HH:mm");
-    sheetProvider.putFormat(Col.DURATION, "[h]:mm");
-    sheetProvider.putFormat(Col.HOURS, "#,##0.00");
-    sheetProvider.putFormat(Col.ID, "0");
-    sheetProvider.putFormat(Col.CREATED, "yyyy-MM-dd HH:mm");
-    sheetProvider.putFormat(Col.LAST_UPDATE, "yyyy-MM-dd HH:mm");
-
-    final PropertyMapping mapping = new PropertyMapping();
-    final TaskTree taskTree = TaskTreeHelper.getTaskTree();
-    final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
+    final SheetWriter writer = new SheetWriter(xls);
     for (final TimesheetDO timesheet : list) {
+      writer.addRow(timesheet);
+    }
+    writer.finish();
+    return xls.getAsByteArray();
+  }
+
+  /**
+   * Exports all time sheets matching the given filter as xlsx file with the same columns as {@link #export(List)}.
+   * The time sheets are streamed from the data base into a streaming workbook, so neither the time sheets nor the
+   * rows of the sheet are held in memory.
+   *
+   * @param out The stream to write the xlsx file to (will be closed).
+   * @return The number of exported time sheets.
+   */
+  public int export(final TimesheetFilter filter, final OutputStream out) throws IOException {
+    log.info("Exporting timesheet list (streaming).");
+    final ExportWorkbook xls = ExportWorkbook.createStreaming();
+    final SheetWriter writer = new SheetWriter(xls);
+    final int counter = timesheetDao.forEach(filter, writer::addRow);
+    writer.finish();
+    xls.write(out);
+    return counter;
+  }
+
+  private class SheetWriter {
+    private final ExportSheet sheet;
+
+    private final PropertyMapping mapping = new PropertyMapping();
+
+    private final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+
+    private final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
+
+    private SheetWriter(final ExportWorkbook xls) {
+      final ContentProvider contentProvider = new MyContentProvider(xls);
+      // create a default Date format and currency column
+      xls.setContentProvider(contentProvider);
+
+      final String sheetTitle = ThreadLocalUserContext.getLocalizedString("timesheet.timesheets");
+      sheet = xls.addSheet(sheetTitle);
+      sheet.createFreezePane(8, 1);
+
+      final ExportColumn[] cols = new ExportColumn[]{ //
+              new I18nExportColumn(Col.USER, "timesheet.user", MyXlsContentProvider.LENGTH_USER),
+              new I18nExportColumn(Col.KUNDE, "fibu.kunde", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.PROJEKT, "fibu.projekt", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.KOST2, "fibu.kost2", MyXlsContentProvider.LENGTH_KOSTENTRAEGER),
+              new I18nExportColumn(Col.WEEK_OF_YEAR, "calendar.weekOfYearShortLabel", 4),
+              new I18nExportColumn(Col.DAY_OF_WEEK, "calendar.dayOfWeekShortLabel", 4),
+              new I18nExportColumn(Col.START_TIME, "timesheet.startTime", MyXlsContentProvider.LENGTH_DATETIME),
+              new I18nExportColumn(Col.STOP_TIME, "timesheet.stopTime", MyXlsContentProvider.LENGTH_TIMESTAMP),
+              new I18nExportColumn(Col.DURATION, "timesheet.duration", MyXlsContentProvider.LENGTH_DURATION),
+              new I18nExportColumn(Col.HOURS, "hours", MyXlsContentProvider.LENGTH_DURATION),
+              new I18nExportColumn(Col.LOCATION, "timesheet.location", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.TASK_TITLE, "task.title", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.REFERENCE, "task.reference", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.SHORT_DESCRIPTION, "shortDescription", MyXlsContentProvider.LENGTH_STD),
+              new I18nExportColumn(Col.DESCRIPTION, "timesheet.description", MyXlsContentProvider.LENGTH_EXTRA_LONG),
+              new I18nExportColumn(Col.TASK_PATH, "task.path", MyXlsContentProvider.LENGTH_EXTRA_LONG),
+              new I18nExportColumn(Col.ID, "id", MyXlsContentProvider.LENGTH_ID),
+              new I18nExportColumn(Col.CREATED, "created", MyXlsContentProvider.LENGTH_TIMESTAMP),
+              new I18nExportColumn(Col.LAST_UPDATE, "lastUpdate", MyXlsContentProvider.LENGTH_TIMESTAMP)};
+      // column property names
+      sheet.setColumns(cols);
+
+      final ContentProvider sheetProvider = sheet.getContentProvider();
+      sheetProvider.putFormat(Col.START_TIME, "yyyy-MM-dd HH:mm");
+      sheetProvider.putFormat(Col.STOP_TIME, "HH:mm");
+      sheetProvider.putFormat(Col.DURATION, "[h]:mm");
+      sheetProvider.putFormat(Col.HOURS, "#,##0.00");
+      sheetProvider.putFormat(Col.ID, "0");
+      sheetProvider.putFormat(Col.CREATED, "yyyy-MM-dd HH:mm");
+      sheetProvider.putFormat(Col.LAST_UPDATE, "yyyy-MM-dd HH:mm");
+    }
+
+    private void addRow(final TimesheetDO timesheet) {
       final TaskNode node = taskTree.getTaskNodeById(timesheet.getTaskId());
       final PFUserDO user = userGroupCache.getUser(timesheet.getUserId());
       mapping.add(Col.USER, user.getFullname());
@@ -196,9 +235,10 @@ public class TimesheetExport {
       mapping.add(Col.LAST_UPDATE, timesheet.getLastUpdate());
       sheet.addRow(mapping.getMapping(), 0);
     }
-    sheet.setZoom(75); // 75%
 
-    return xls.getAsByteArray();
+    private void finish() {
+      sheet.setZoom(75); // 75%
+    }
   }
 
   public void setDateTimeFormatter(final DateTimeFormatter dateTimeFormatter) {
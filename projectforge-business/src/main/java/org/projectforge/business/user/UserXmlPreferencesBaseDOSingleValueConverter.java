@@ -61,6 +61,11 @@ public class UserXmlPreferencesBaseDOSingleValueConverter implements SingleValue
     this.doClass = doClass;
   }
 
+  Class<? extends BaseDO<?>> getDoClass()
+  {
+    return doClass;
+  }
+
   @SuppressWarnings("rawtypes")
   @Override
   public boolean canConvert(final Class type)
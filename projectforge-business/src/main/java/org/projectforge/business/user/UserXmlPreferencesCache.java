@@ -25,20 +25,23 @@ package org.projectforge.business.user;
 
 import org.projectforge.framework.access.AccessChecker;
 import org.projectforge.framework.cache.AbstractCache;
-import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
-import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Stores all user persistent objects such as filter settings, personal settings and persists them to the database.
+ * Modified entries are written behind (on expiry of this cache and asynchronously after the user's logout), the
+ * preferences of each user are guarded by their own lock.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -50,13 +53,21 @@ public class UserXmlPreferencesCache extends AbstractCache
 
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(UserXmlPreferencesCache.class);
 
-  private final Map<Integer, UserXmlPreferencesMap> allPreferences = new HashMap<>();
+  private final Map<Integer, UserXmlPreferencesMap> allPreferences = new ConcurrentHashMap<>();
+
+  private final Map<Integer, Object> userLocks = new ConcurrentHashMap<>();
+
+  private final ExecutorService writeBehindExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "UserXmlPreferencesWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   @Autowired
   private UserXmlPreferencesDao userXmlPreferencesDao;
 
   @Autowired
-  private PfEmgrFactory emgrFactory;
+  private AccessChecker accessChecker;
 
   /**
    * Please use UserPreferenceHelper instead for correct handling of demo user's preferences!
@@ -109,27 +120,43 @@ public class UserXmlPreferencesCache extends AbstractCache
    * @param userId
    * @return
    */
-  public synchronized UserXmlPreferencesMap ensureAndGetUserPreferencesData(final Integer userId)
+  public UserXmlPreferencesMap ensureAndGetUserPreferencesData(final Integer userId)
   {
     UserXmlPreferencesMap data = getUserPreferencesData(userId);
-    if (data == null) {
-      data = new UserXmlPreferencesMap();
-      data.setUserId(userId);
-      final List<UserXmlPreferencesDO> userPrefs = userXmlPreferencesDao.getUserPreferencesByUserId(userId);
-      for (final UserXmlPreferencesDO userPref : userPrefs) {
-        final Object value = userXmlPreferencesDao.deserialize(userId, userPref, true);
-        data.putEntry(userPref.getKey(), value, true);
+    if (data != null) {
+      return data;
+    }
+    synchronized (getUserLock(userId)) {
+      data = getUserPreferencesData(userId);
+      if (data == null) {
+        data = new UserXmlPreferencesMap();
+        data.setUserId(userId);
+        final List<UserXmlPreferencesDO> userPrefs = userXmlPreferencesDao.getUserPreferencesByUserId(userId);
+        for (final UserXmlPreferencesDO userPref : userPrefs) {
+          final Object value = userXmlPreferencesDao.deserialize(userId, userPref, true);
+          data.putEntry(userPref.getKey(), value, true);
+          // Unmodified entries will not be written again (entries in older formats will be rewritten):
+          data.setPersistedSettings(userPref.getKey(), userPref.getSerializedSettings());
+        }
+        this.allPreferences.put(userId, data);
       }
-      this.allPreferences.put(userId, data);
     }
     return data;
   }
 
   UserXmlPreferencesMap getUserPreferencesData(final Integer userId)
   {
+    if (userId == null) {
+      return null;
+    }
     return this.allPreferences.get(userId);
   }
 
+  private Object getUserLock(final Integer userId)
+  {
+    return userLocks.computeIfAbsent(userId, id -> new Object());
+  }
+
   void setUserPreferencesData(final Integer userId, final UserXmlPreferencesMap data)
   {
     this.allPreferences.put(userId, data);
@@ -137,35 +164,42 @@ public class UserXmlPreferencesCache extends AbstractCache
 
   /**
    * Flushes the user settings to the database (independent from the expire mechanism). Should be used after the user's
-   * logout. If the user data isn't modified, then nothing will be done.
+   * logout. If the user data isn't modified, then nothing will be done. The data is written asynchronously.
    */
   public void flushToDB(final Integer userId)
   {
-    flushToDB(userId, true);
+    if (!userId.equals(ThreadLocalUserContext.getUserId())) {
+      log.error("User '" + ThreadLocalUserContext.getUserId()
+          + "' has no access to write user preferences of other user '" + userId + "'.");
+      // No access.
+      return;
+    }
+    if (accessChecker.isDemoUser(userId)) {
+      // Do nothing for demo user.
+      return;
+    }
+    final UserXmlPreferencesMap data = allPreferences.get(userId);
+    if (data == null || !data.isModified()) {
+      return;
+    }
+    try {
+      // Access is checked above, so the write-behind thread doesn't need the user context:
+      writeBehindExecutor.execute(() -> flushToDB(userId, false));
+    } catch (final RuntimeException ex) {
+      // Executor is shut down.
+      flushToDB(userId, false);
+    }
   }
 
-  private synchronized void flushToDB(final Integer userId, final boolean checkAccess)
+  private void flushToDB(final Integer userId, final boolean checkAccess)
   {
-    if (checkAccess) {
-      if (!userId.equals(ThreadLocalUserContext.getUserId())) {
-        log.error("User '" + ThreadLocalUserContext.getUserId()
-            + "' has no access to write user preferences of other user '" + userId + "'.");
-        // No access.
+    synchronized (getUserLock(userId)) {
+      final UserXmlPreferencesMap data = allPreferences.get(userId);
+      if (data == null || !data.isModified()) {
         return;
       }
-      PFUserDO user = emgrFactory.runInTrans(emgr -> {
-        return emgr.selectByPk(PFUserDO.class, userId);
-      });
-      if (AccessChecker.isDemoUser(user)) {
-        // Do nothing for demo user.
-        return;
-      }
-    }
-    final UserXmlPreferencesMap data = allPreferences.get(userId);
-    if (data == null || !data.isModified()) {
-      return;
+      userXmlPreferencesDao.saveOrUpdateUserEntries(userId, data, checkAccess);
     }
-    userXmlPreferencesDao.saveOrUpdateUserEntries(userId, data, checkAccess);
   }
 
   /**
@@ -208,6 +242,12 @@ public class UserXmlPreferencesCache extends AbstractCache
   public void preDestroy()
   {
     log.info("Syncing all user preferences to database.");
+    writeBehindExecutor.shutdown();
+    try {
+      writeBehindExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
     this.forceReload();
   }
 }
@@ -23,6 +23,14 @@
 
 package org.projectforge.business.user;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.thoughtworks.xstream.XStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -40,6 +48,7 @@ import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.GroupDO;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.projectforge.framework.persistence.user.entities.TenantDO;
 import org.projectforge.framework.utils.GZIPHelper;
 import org.projectforge.framework.xstream.XStreamHelper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,21 +56,34 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.PostConstruct;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Stores all user persistent objects such as filter settings, personal settings and persists them to the database as
- * xml (compressed (gzip and base64) for larger xml content).
+ * json (compressed (gzip and base64) for larger content). Objects which can't be restored from json without loss are
+ * stored as xml (XStream). Entries of older versions (xml) are converted to json on their next write.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 @Repository
 public class UserXmlPreferencesDao {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(UserXmlPreferencesDao.class);
+  /**
+   * Format of json entries: ^JSON:&lt;class name&gt;:&lt;json&gt;
+   */
+  private static final String MAGIC_JSON_START = "^JSON:";
+  private static final int COMPRESS_THRESHOLD = 1000;
   private final XStream xstream = XStreamHelper.createXStream();
+  private final List<UserXmlPreferencesBaseDOSingleValueConverter> doConverters = new CopyOnWriteArrayList<>();
+  private volatile ObjectMapper jsonMapper;
+  /**
+   * Verdict per value class, whether its values are restorable from json (see {@link #toJson(Object)}). Verified only
+   * once per class, reset on registering new converters.
+   */
+  private final Map<Class<?>, Boolean> jsonSafeClasses = new ConcurrentHashMap<>();
   @Autowired
   private AccessChecker accessChecker;
   @Autowired
@@ -102,8 +124,45 @@ public class UserXmlPreferencesDao {
    */
   public void registerConverter(final Class<? extends BaseDao<?>> daoClass, final Class<? extends BaseDO<?>> doClass,
                                 final int priority) {
-    xstream.registerConverter(new UserXmlPreferencesBaseDOSingleValueConverter(applicationContext, daoClass, doClass),
-            priority);
+    final UserXmlPreferencesBaseDOSingleValueConverter converter = new UserXmlPreferencesBaseDOSingleValueConverter(applicationContext, daoClass, doClass);
+    xstream.registerConverter(converter, priority);
+    doConverters.add(converter);
+    jsonMapper = null; // Force rebuild with new converter.
+    jsonSafeClasses.clear();
+  }
+
+  /**
+   * The json mapper of the user preferences serializes registered BaseDOs as ids (as the XStream converters do).
+   */
+  private ObjectMapper getJsonMapper() {
+    ObjectMapper mapper = jsonMapper;
+    if (mapper == null) {
+      mapper = UserPrefDao.getObjectMapper().copy();
+      final SimpleModule module = new SimpleModule("UserXmlPreferencesBaseDOs");
+      for (final UserXmlPreferencesBaseDOSingleValueConverter converter : doConverters) {
+        addBaseDOConverter(module, converter);
+      }
+      mapper.registerModule(module);
+      jsonMapper = mapper;
+    }
+    return mapper;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static void addBaseDOConverter(final SimpleModule module, final UserXmlPreferencesBaseDOSingleValueConverter converter) {
+    final Class doClass = converter.getDoClass();
+    module.addSerializer(doClass, new JsonSerializer() {
+      @Override
+      public void serialize(final Object value, final JsonGenerator gen, final SerializerProvider serializers) throws IOException {
+        gen.writeString(converter.toString(value));
+      }
+    });
+    module.addDeserializer(doClass, new JsonDeserializer() {
+      @Override
+      public Object deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        return converter.fromString(p.getValueAsString());
+      }
+    });
   }
 
   /**
@@ -181,6 +240,11 @@ public class UserXmlPreferencesDao {
         final String uncompressed = GZIPHelper.uncompress(xml.substring(1));
         xml = uncompressed;
       }
+      if (xml.startsWith(MAGIC_JSON_START)) {
+        final int pos = xml.indexOf(':', MAGIC_JSON_START.length());
+        final Class<?> valueClass = Class.forName(xml.substring(MAGIC_JSON_START.length(), pos));
+        return getJsonMapper().readValue(xml.substring(pos + 1), valueClass);
+      }
       String sourceClassName = getSourceClassName(xml);
       String oldPackageName = null;
       String newPackageName = null;
@@ -225,29 +289,142 @@ public class UserXmlPreferencesDao {
   }
 
   public String serialize(final UserXmlPreferencesDO userPrefs, final Object value) {
-    final String xml = XStreamHelper.toXml(xstream, value);
+    final String serialized = serialize(value);
+    userPrefs.setSerializedSettings(serialized);
+    return serialized;
+  }
 
-    if (xml.length() > 1000) {
+  /**
+   * @return The value as json (or as xml, if the value can't be restored from json without loss), compressed for
+   * larger content.
+   */
+  public String serialize(final Object value) {
+    final String json = value != null ? toJson(value) : null;
+    final String str = json != null ? MAGIC_JSON_START + value.getClass().getName() + ":" + json : XStreamHelper.toXml(xstream, value);
+    if (str.length() > COMPRESS_THRESHOLD) {
       // Compress value:
-      final String compressed = GZIPHelper.compress(xml);
-      userPrefs.setSerializedSettings("!" + compressed);
-    } else {
-      userPrefs.setSerializedSettings(xml);
+      return "!" + GZIPHelper.compress(str);
     }
-    return xml;
+    return str;
   }
 
-  // REQUIRES_NEW needed for avoiding a lot of new data base connections from HibernateFilter.
+  /**
+   * @return The json representation or null, if the json representation doesn't restore the value completely (e. g.
+   * untyped collections or polymorphic fields). For the first value of a class the xml representations of the value and
+   * of the restored value are compared (XStream writes all types), the verdict is reused for all further values of this
+   * class. Collections, maps and arrays are verified every time, because their restorability depends on their elements.
+   */
+  private String toJson(final Object value) {
+    final Class<?> valueClass = value.getClass();
+    final boolean cacheVerdict = !(value instanceof Collection || value instanceof Map || valueClass.isArray());
+    final Boolean jsonSafe = cacheVerdict ? jsonSafeClasses.get(valueClass) : null;
+    if (Boolean.FALSE.equals(jsonSafe)) {
+      return null;
+    }
+    try {
+      final String json = getJsonMapper().writeValueAsString(value);
+      if (jsonSafe != null) {
+        return json;
+      }
+      final Object restored = getJsonMapper().readValue(json, valueClass);
+      final boolean restorable = XStreamHelper.toXml(xstream, value).equals(XStreamHelper.toXml(xstream, restored));
+      if (cacheVerdict) {
+        jsonSafeClasses.put(valueClass, restorable);
+      }
+      if (restorable) {
+        return json;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Object of type '" + valueClass.getName() + "' isn't restorable from json, xml is used: " + json);
+      }
+    } catch (final Exception ex) {
+      if (cacheVerdict) {
+        jsonSafeClasses.put(valueClass, false);
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Object of type '" + valueClass.getName() + "' isn't serializable as json, xml is used: " + ex.getMessage());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes all modified persistent entries of the given user within one transaction. Entries are only written, if
+   * their serialized form differs from the stored one ({@link UserXmlPreferencesMap#getEntry(String)} marks entries as
+   * modified, because the caller may modify the returned objects). Entries still stored as xml are written as json.
+   */
   public void saveOrUpdateUserEntries(final Integer userId, final UserXmlPreferencesMap data, final boolean checkAccess) {
-    for (final Map.Entry<String, Object> prefEntry : data.getPersistentData().entrySet()) {
-      final String key = prefEntry.getKey();
-      if (data.isModified(key)) {
-        try {
-          saveOrUpdate(userId, key, prefEntry.getValue(), checkAccess);
-        } catch (final Throwable ex) {
-          log.warn(ex.getMessage(), ex);
-        }
+    if (checkAccess) {
+      checkAccess(userId);
+    }
+    if (accessChecker.isDemoUser(userId)) {
+      // Do nothing.
+      return;
+    }
+    final Map<String, Object> modifiedValues = new HashMap<>();
+    synchronized (data) {
+      for (final String key : new ArrayList<>(data.getModifiedObjects())) {
         data.setModified(key, false);
+        if (data.getPersistentData().containsKey(key)) {
+          modifiedValues.put(key, data.getPersistentData().get(key));
+        }
+      }
+    }
+    final Map<String, String> modifiedSettings = new HashMap<>();
+    for (final Map.Entry<String, Object> entry : modifiedValues.entrySet()) {
+      final String key = entry.getKey();
+      try {
+        final String serialized = serialize(entry.getValue());
+        if (!serialized.equals(data.getPersistedSettings(key))) {
+          modifiedSettings.put(key, serialized);
+        }
+      } catch (final Throwable ex) {
+        log.warn(ex.getMessage(), ex);
+      }
+    }
+    if (modifiedSettings.isEmpty()) {
+      return;
+    }
+    final Date date = new Date();
+    final TenantDO tenant = tenantDao.getDefaultTenant();
+    try {
+      emgrFactory.runInTrans(emgr -> {
+        final Map<String, UserXmlPreferencesDO> dbEntries = new HashMap<>();
+        for (final UserXmlPreferencesDO dbEntry : emgr.selectAttached(UserXmlPreferencesDO.class,
+                "select u from UserXmlPreferencesDO u where u.user.id = :userid", "userid", userId)) {
+          dbEntries.put(dbEntry.getKey(), dbEntry);
+        }
+        for (final Map.Entry<String, String> entry : modifiedSettings.entrySet()) {
+          UserXmlPreferencesDO userPrefs = dbEntries.get(entry.getKey());
+          final boolean isNew = userPrefs == null;
+          if (isNew) {
+            userPrefs = new UserXmlPreferencesDO();
+            userPrefs.setTenant(tenant);
+            userPrefs.setCreated(date);
+            userPrefs.setUser(emgr.selectByPkAttached(PFUserDO.class, userId));
+            userPrefs.setKey(entry.getKey());
+          }
+          userPrefs.setSerializedSettings(entry.getValue());
+          userPrefs.setLastUpdate(date);
+          userPrefs.setVersion();
+          if (isNew) {
+            emgr.insert(userPrefs);
+          } else {
+            emgr.update(userPrefs);
+          }
+        }
+        return null;
+      });
+      for (final Map.Entry<String, String> entry : modifiedSettings.entrySet()) {
+        data.setPersistedSettings(entry.getKey(), entry.getValue());
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Stored " + modifiedSettings.size() + " user preference(s) of user '" + userId + "': " + modifiedSettings.keySet());
+      }
+    } catch (final Throwable ex) {
+      log.warn("Can't store user preferences of user '" + userId + "': " + ex.getMessage(), ex);
+      for (final String key : modifiedSettings.keySet()) {
+        data.setModified(key, true); // Retry on next flush.
       }
     }
   }
@@ -52,6 +52,12 @@ public class UserXmlPreferencesMap
   @XStreamOmitField
   private transient Map<String, Object> volatileData;
 
+  /**
+   * The serialized settings of the persistent entries as stored in the data base (for detecting real modifications).
+   */
+  @XStreamOmitField
+  private transient Map<String, String> persistedSettings;
+
   protected Map<String, Object> getPersistentData()
   {
     synchronized (this) {
@@ -87,7 +93,7 @@ public class UserXmlPreferencesMap
    * @param value
    * @param persistent If true, the object will be persisted in the database.
    */
-  public void putEntry(String key, Object value, boolean persistent)
+  public synchronized void putEntry(String key, Object value, boolean persistent)
   {
     if (persistent) {
       setModified(key, true);
@@ -104,7 +110,7 @@ public class UserXmlPreferencesMap
    * @return Return a persistent object with this key, if existing, or if not a volatile object with this key, if
    *         existing, otherwise null;
    */
-  public Object getEntry(String key)
+  public synchronized Object getEntry(String key)
   {
     Object value = getPersistentData().get(key);
     if (value != null) {
@@ -121,8 +127,11 @@ public class UserXmlPreferencesMap
    * @param key
    * @return the removed value if found.
    */
-  public Object removeEntry(String key)
+  public synchronized Object removeEntry(String key)
   {
+    if (persistedSettings != null) {
+      persistedSettings.remove(key);
+    }
     Object value = getPersistentData().remove(key);
     if (value == null) {
       value = getVolatileData().remove(key);
@@ -142,12 +151,12 @@ public class UserXmlPreferencesMap
     this.userId = userId;
   }
 
-  public boolean isModified()
+  public synchronized boolean isModified()
   {
     return !getModifiedObjects().isEmpty();
   }
 
-  protected void setModified(String key, boolean isModified)
+  protected synchronized void setModified(String key, boolean isModified)
   {
     if (isModified) {
       getModifiedObjects().add(key);
@@ -156,15 +165,31 @@ public class UserXmlPreferencesMap
     }
   }
 
-  protected boolean isModified(String key)
+  protected synchronized boolean isModified(String key)
   {
     return getModifiedObjects().contains(key);
   }
 
+  /**
+   * @return The serialized settings of the given key as stored in the data base or null, if not (yet) persisted.
+   */
+  synchronized String getPersistedSettings(String key)
+  {
+    return persistedSettings != null ? persistedSettings.get(key) : null;
+  }
+
+  synchronized void setPersistedSettings(String key, String serializedSettings)
+  {
+    if (persistedSettings == null) {
+      persistedSettings = new HashMap<>();
+    }
+    persistedSettings.put(key, serializedSettings);
+  }
+
   /**
    * Clear all volatile data (after logout). Forces refreshing of volatile data after re-login.
    */
-  public void clear()
+  public synchronized void clear()
   {
     if (volatileData != null) {
       volatileData.clear();
@@ -24,10 +24,26 @@
 package org.projectforge.framework.cache;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class is usefull, if the stored object of derived classes has to be cached. After reaching expireTime during a
  * request, the method refresh will be called.
+ * <br/>
+ * Reading a non-expired cache doesn't acquire any lock. If the cache is outdated only by its expire time, the
+ * refresh is done by a background thread and readers will get the previous data until the refresh is finished
+ * (stale while revalidate). If the cache is marked as expired (e. g. after modifications via {@link #setExpired()})
+ * or the cache wasn't initialized yet, the refresh is done synchronously by the reading thread.
+ * <br/>
+ * {@link #refresh()} is called while holding the monitor of this cache, so synchronized methods of derived classes
+ * never run concurrently to a refresh. Derived classes with background refresh enabled must build their data in new
+ * objects during {@link #refresh()} and assign them at the end, so readers never see half-built data. Derived classes
+ * modifying their data in place must override {@link #isBackgroundRefreshEnabled()}: readers of these caches wait
+ * until a running refresh is finished.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -57,13 +73,34 @@ public abstract class AbstractCache implements Serializable
    */
   public static final long TICKS_PER_DAY = 24 * TICKS_PER_HOUR;
 
-  protected long expireTime = 60 * TICKS_PER_MINUTE;
+  private static final AtomicInteger refreshThreadCounter = new AtomicInteger();
 
-  private transient long timeOfLastRefresh = -1;
+  /**
+   * Shared executor for background refreshes of all caches.
+   */
+  private static final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2, runnable -> {
+    final Thread thread = new Thread(runnable, "AbstractCache-refresh-" + refreshThreadCounter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  protected volatile long expireTime = 60 * TICKS_PER_MINUTE;
+
+  private transient volatile long timeOfLastRefresh = -1;
+
+  private transient volatile boolean isExpired = true;
+
+  private transient volatile boolean refreshInProgress = false;
+
+  private transient volatile long lastRefreshDuration = -1;
+
+  private final AtomicBoolean backgroundRefreshScheduled = new AtomicBoolean();
 
-  private transient boolean isExpired = true;
+  private final LongAdder hitCounter = new LongAdder();
 
-  private transient boolean refreshInProgress = false;
+  private final LongAdder staleHitCounter = new LongAdder();
+
+  private final LongAdder refreshCounter = new LongAdder();
 
   protected AbstractCache()
   {
@@ -110,28 +147,90 @@ public abstract class AbstractCache implements Serializable
   }
 
   /**
-   * Checks the expire time and calls refresh, if cache is expired.
+   * Checks the expire time and calls refresh, if cache is expired. A non-expired cache is checked without any
+   * locking.
    */
-  protected synchronized void checkRefresh()
+  protected void checkRefresh()
   {
-    if (refreshInProgress) {
-      // Do nothing because refreshing is already in progress.
+    hitCounter.increment();
+    if (!this.isExpired && !isOutdated() && (!this.refreshInProgress || isBackgroundRefreshEnabled())) {
       return;
     }
-    if (this.isExpired || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
-      try {
-        refreshInProgress = true;
-        this.timeOfLastRefresh = System.currentTimeMillis();
-        try {
-          this.refresh();
-        } catch (final Throwable ex) {
-          log.error(ex.getMessage(), ex);
+    if (this.refreshInProgress && Thread.holdsLock(this)) {
+      // Do nothing because refreshing is already in progress (called by refresh() itself).
+      return;
+    }
+    if (this.isExpired || this.timeOfLastRefresh < 0 || !isBackgroundRefreshEnabled()) {
+      // Cache is marked as expired (modifications), not yet initialized or can't be read while refreshing, so the
+      // refresh is needed (or has to be waited for) before reading.
+      synchronized (this) {
+        if (this.isExpired || isOutdated()) {
+          doRefresh();
         }
-        this.isExpired = false;
-      } finally {
-        refreshInProgress = false;
       }
+      return;
     }
+    // Cache is outdated: deliver the current data and refresh it in the background.
+    staleHitCounter.increment();
+    if (backgroundRefreshScheduled.compareAndSet(false, true)) {
+      try {
+        refreshExecutor.execute(() -> {
+          try {
+            synchronized (this) {
+              if (this.isExpired || isOutdated()) {
+                doRefresh();
+              }
+            }
+          } finally {
+            backgroundRefreshScheduled.set(false);
+          }
+        });
+      } catch (final RuntimeException ex) {
+        backgroundRefreshScheduled.set(false);
+        log.error("Can't schedule refresh of " + getClass().getName() + ": " + ex.getMessage(), ex);
+      }
+    }
+  }
+
+  /**
+   * Must be called while holding the monitor of this cache.
+   */
+  private void doRefresh()
+  {
+    try {
+      refreshInProgress = true;
+      // Reset expired flag before refreshing: modifications during the refresh will force the next refresh.
+      this.isExpired = false;
+      final long begin = System.currentTimeMillis();
+      try {
+        this.refresh();
+      } catch (final Throwable ex) {
+        log.error(ex.getMessage(), ex);
+      }
+      final long end = System.currentTimeMillis();
+      this.lastRefreshDuration = end - begin;
+      refreshCounter.increment();
+      // Volatile write after refresh publishes the new data of derived classes to all reading threads.
+      this.timeOfLastRefresh = begin;
+    } finally {
+      refreshInProgress = false;
+    }
+  }
+
+  private boolean isOutdated()
+  {
+    return System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime;
+  }
+
+  /**
+   * Override this method and return false, if the refresh of your cache modifies the cached data in place or can't
+   * run outside the request threads.
+   *
+   * @return true (default) if outdated caches should be refreshed in the background.
+   */
+  protected boolean isBackgroundRefreshEnabled()
+  {
+    return true;
   }
 
   /**
@@ -142,6 +241,47 @@ public abstract class AbstractCache implements Serializable
     return refreshInProgress;
   }
 
+  /**
+   * @return Duration of the last refresh in milliseconds or -1, if the cache wasn't refreshed yet.
+   */
+  public long getLastRefreshDuration()
+  {
+    return lastRefreshDuration;
+  }
+
+  /**
+   * @return Age of the cached data in milliseconds or -1, if the cache wasn't refreshed yet.
+   */
+  public long getStaleness()
+  {
+    final long lastRefresh = this.timeOfLastRefresh;
+    return lastRefresh < 0 ? -1 : System.currentTimeMillis() - lastRefresh;
+  }
+
+  /**
+   * @return Number of cache accesses (calls of {@link #checkRefresh()}).
+   */
+  public long getHitCount()
+  {
+    return hitCounter.sum();
+  }
+
+  /**
+   * @return Number of cache accesses served with outdated data while refreshing in the background.
+   */
+  public long getStaleHitCount()
+  {
+    return staleHitCounter.sum();
+  }
+
+  /**
+   * @return Number of refreshes done.
+   */
+  public long getRefreshCount()
+  {
+    return refreshCounter.sum();
+  }
+
   /**
    * Please implement this method refreshing the stored object _data. Do not forget to call checkRefresh in your cache
    * methods.
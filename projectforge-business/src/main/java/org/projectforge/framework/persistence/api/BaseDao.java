@@ -30,6 +30,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.PredicateUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.hibernate.Hibernate;
 import org.hibernate.search.jpa.Search;
 import org.projectforge.business.multitenancy.TenantChecker;
 import org.projectforge.business.multitenancy.TenantRegistry;
@@ -48,6 +49,7 @@ import org.projectforge.framework.persistence.database.DatabaseDao;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
 import org.projectforge.framework.persistence.history.HibernateSearchDependentObjectsReindexer;
 import org.projectforge.framework.persistence.history.HistoryBaseDaoAdapter;
+import org.projectforge.framework.persistence.history.HistoryCursor;
 import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
@@ -68,6 +70,7 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -319,6 +322,18 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return dbQuery.getList(this, filter, null, false, filter.getIgnoreTenant());
   }
 
+  /**
+   * Streams all entries matching the given filter to the consumer without building the result list (e. g. for huge
+   * exports). Select access is checked for every entry.
+   *
+   * @return The number of entries passed to the consumer.
+   * @see DBQuery#forEach(BaseDao, QueryFilter, Consumer)
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public int forEach(final QueryFilter filter, final Consumer<O> consumer) throws AccessException {
+    return dbQuery.forEach(this, filter, consumer, true, filter.getIgnoreTenant());
+  }
+
   /**
    * idSet.contains(entry.getId()) at default.
    */
@@ -424,6 +439,68 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return HistoryBaseDaoAdapter.getHistoryFor(obj);
   }
 
+  /**
+   * Gets one page of the history entries of the object and of its dependent objects (see
+   * {@link #getHistoryObjects(ExtendedBaseDO)}), newest first.
+   *
+   * @param cursor     The cursor of the last entry of the previous page or null for the first page.
+   * @param maxResults The page size.
+   * @see HistoryCursor#of(PfHistoryMasterDO)
+   */
+  public List<PfHistoryMasterDO> getHistoryEntries(final O obj, final HistoryCursor cursor, final int maxResults) {
+    accessChecker.checkRestrictedUser();
+    checkPartOfCurrentTenant(obj, OperationType.SELECT);
+    checkLoggedInUserHistoryAccess(obj);
+    return HistoryBaseDaoAdapter.getHistoryEntries(getHistoryObjects(obj), cursor, maxResults);
+  }
+
+  /**
+   * The prefixes of the property names of the history entries of the given object and its dependent objects (see
+   * {@link #getHistoryPropertyPrefix(BaseDO)}), as used by the display history entries.
+   *
+   * @return The prefixes by history object key (see {@link #getHistoryObjectKey(String, Object)}).
+   */
+  public Map<String, String> getHistoryPropertyPrefixes(final O obj) {
+    return getHistoryPropertyPrefixes(getHistoryObjects(obj));
+  }
+
+  /**
+   * @return The key of a history object, e. g. "org.projectforge.business.fibu.AuftragsPositionDO#42".
+   */
+  public static String getHistoryObjectKey(final String entityName, final Object entityId) {
+    return entityName + "#" + entityId;
+  }
+
+  private Map<String, String> getHistoryPropertyPrefixes(final Collection<? extends BaseDO<?>> objects) {
+    final Map<String, String> prefixes = new HashMap<>();
+    for (final BaseDO<?> obj : objects) {
+      final String prefix = getHistoryPropertyPrefix(obj);
+      if (prefix != null && obj.getId() != null) {
+        prefixes.put(getHistoryObjectKey(Hibernate.getClass(obj).getName(), obj.getId()), prefix);
+      }
+    }
+    return prefixes;
+  }
+
+  /**
+   * The history of these objects is shown as history of the given object. At default only the object itself, but e. g.
+   * orders include their positions.
+   *
+   * @see #getHistoryPropertyPrefix(BaseDO)
+   */
+  protected List<? extends BaseDO<?>> getHistoryObjects(final O obj) {
+    return Collections.singletonList(obj);
+  }
+
+  /**
+   * @param historyObject One of the objects of {@link #getHistoryObjects(ExtendedBaseDO)}.
+   * @return The prefix for the property names of the display history entries of the given object, e. g. "Pos#1" or
+   * null (default).
+   */
+  protected String getHistoryPropertyPrefix(final BaseDO<?> historyObject) {
+    return null;
+  }
+
   /**
    * Gets the history entries of the object in flat format.<br/>
    * Please note: If user has no access an empty list will be returned.
@@ -445,6 +522,28 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return convertAll(entries, em);
   }
 
+  /**
+   * Gets the display history entries of all given objects with only one query. The property names are prefixed by
+   * {@link #getHistoryPropertyPrefix(BaseDO)}.
+   */
+  protected List<DisplayHistoryEntry> internalGetDisplayHistoryEntries(final Collection<? extends BaseDO<?>> objects) {
+    accessChecker.checkRestrictedUser();
+    final Map<String, String> prefixes = getHistoryPropertyPrefixes(objects);
+    final List<DisplayHistoryEntry> list = new ArrayList<>();
+    for (final PfHistoryMasterDO entry : HistoryBaseDaoAdapter.getHistoryEntries(objects, null, 0)) {
+      final List<DisplayHistoryEntry> l = convert(entry, em);
+      final String prefix = prefixes.get(getHistoryObjectKey(entry.getEntityName(), entry.getEntityId()));
+      if (prefix != null) {
+        for (final DisplayHistoryEntry displayEntry : l) {
+          final String propertyName = displayEntry.getPropertyName();
+          displayEntry.setPropertyName(propertyName != null ? prefix + ":" + propertyName : prefix);
+        }
+      }
+      list.addAll(l);
+    }
+    return list;
+  }
+
   @SuppressWarnings("rawtypes")
   private List<DisplayHistoryEntry> convertAll(final HistoryEntry[] entries, final EntityManager em) {
     final List<DisplayHistoryEntry> list = new ArrayList<>();
@@ -1278,16 +1377,20 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
       throw new UserException(MAX_MASS_UPDATE_EXCEEDED_EXCEPTION_I18N, MAX_MASS_UPDATE);
     }
     final Object store = prepareMassUpdateStore(list, master);
-    for (final O entry : list) {
-      if (massUpdateEntry(entry, master, store)) {
-        try {
-          update(entry);
-        } catch (final IllegalArgumentException ex) {
-          log.error("Exception occured while updating entry inside mass update: " + entry + ex.getMessage());
-          throw new UserException("error", ex.getMessage());
+    // History entries are written after the commit of each update by the AsyncHistoryWriter:
+    HistoryBaseDaoAdapter.runWithDeferredHistory(() -> {
+      for (final O entry : list) {
+        if (massUpdateEntry(entry, master, store)) {
+          try {
+            update(entry);
+          } catch (final IllegalArgumentException ex) {
+            log.error("Exception occured while updating entry inside mass update: " + entry + ex.getMessage());
+            throw new UserException("error", ex.getMessage());
+          }
         }
       }
-    }
+      return null;
+    });
   }
 
   /**
@@ -0,0 +1,196 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history;
+
+import de.micromata.genome.db.jpa.history.api.HistProp;
+import de.micromata.genome.db.jpa.history.api.HistoryService;
+import de.micromata.genome.db.jpa.history.api.HistoryServiceManager;
+import org.projectforge.framework.persistence.jpa.PfEmgr;
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+import org.projectforge.framework.persistence.user.api.UserContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Writes history entries of committed modifications in the background: The queued entries are written in batches,
+ * each batch in one transaction (the inserts of the history masters and attributes are JDBC batched by Hibernate).
+ * <br/>
+ * Used by {@link HistoryBaseDaoAdapter#runWithDeferredHistory(java.util.function.Supplier)} for mass updates and
+ * imports.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+@Component
+public class AsyncHistoryWriter {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AsyncHistoryWriter.class);
+
+  /**
+   * Maximum number of history updates written in one transaction.
+   */
+  static final int BATCH_SIZE = 100;
+
+  @Autowired
+  private PfEmgrFactory emgrFactory;
+
+  private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+  private volatile boolean running;
+
+  private Thread worker;
+
+  @PostConstruct
+  public void init() {
+    running = true;
+    worker = new Thread(this::run, "AsyncHistoryWriter");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Writes the remaining entries before shutdown.
+   */
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    if (worker != null) {
+      worker.interrupt();
+      try {
+        worker.join(10000);
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    final List<Entry> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      log.info("Writing " + remaining.size() + " remaining history entries before shutdown.");
+      write(remaining);
+    }
+  }
+
+  /**
+   * @param entries History updates of committed modifications.
+   */
+  void enqueue(final Collection<Entry> entries) {
+    if (!running) {
+      // Not (or no more) running: write synchronously.
+      write(new ArrayList<>(entries));
+      return;
+    }
+    queue.addAll(entries);
+  }
+
+  /**
+   * @return The number of history updates waiting to be written.
+   */
+  public int getBacklogSize() {
+    return queue.size();
+  }
+
+  private void run() {
+    final List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+    while (running) {
+      try {
+        batch.add(queue.take());
+        queue.drainTo(batch, BATCH_SIZE - 1);
+        write(batch);
+      } catch (final InterruptedException ex) {
+        // Shutdown: remaining entries are written by shutdown().
+        break;
+      } catch (final Exception ex) {
+        log.error("Error while writing history entries: " + ex.getMessage(), ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(final List<Entry> entries) {
+    final HistoryService historyService = HistoryServiceManager.get().getHistoryService();
+    try {
+      emgrFactory.runInTrans(emgr -> {
+        for (final Entry entry : entries) {
+          write(historyService, emgr, entry);
+        }
+        return null;
+      });
+    } catch (final Exception ex) {
+      if (entries.size() == 1) {
+        log.error("Can't write history entry of " + entries.get(0).entClassName + "#" + entries.get(0).pk + ": "
+                + ex.getMessage(), ex);
+        return;
+      }
+      log.warn("Error while writing batch of " + entries.size() + " history entries, writing them one by one: "
+              + ex.getMessage());
+      for (final Entry entry : entries) {
+        final List<Entry> single = new ArrayList<>(1);
+        single.add(entry);
+        write(single);
+      }
+    }
+  }
+
+  private void write(final HistoryService historyService, final PfEmgr emgr,
+                     final Entry entry) {
+    // The modifier of the history entry is taken from the thread local user:
+    final UserContext userContext = ThreadLocalUserContext.getUserContext();
+    try {
+      ThreadLocalUserContext.setUserContext(entry.userContext);
+      historyService.internalOnUpdate(emgr, entry.entClassName, entry.pk, entry.oldProps, entry.newProps);
+    } finally {
+      ThreadLocalUserContext.setUserContext(userContext);
+    }
+  }
+
+  /**
+   * History properties of one entity before and after a modification.
+   */
+  static final class Entry {
+    private final String entClassName;
+    private final Serializable pk;
+    private final Map<String, HistProp> oldProps;
+    private final Map<String, HistProp> newProps;
+    private final UserContext userContext;
+
+    Entry(final String entClassName, final Serializable pk, final Map<String, HistProp> oldProps,
+          final Map<String, HistProp> newProps, final UserContext userContext) {
+      this.entClassName = entClassName;
+      this.pk = pk;
+      this.oldProps = oldProps;
+      this.newProps = newProps;
+      this.userContext = userContext;
+    }
+  }
+}
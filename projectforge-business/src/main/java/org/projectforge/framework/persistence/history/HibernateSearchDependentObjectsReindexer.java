@@ -36,15 +36,23 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.FlushModeType;
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Hotfix: Hibernate-search does not update index of dependent objects.
+ * <br/>
+ * The objects to process are queued (de-duplicated by class and id), coalesced within a short time window and
+ * re-indexed in batches by a fixed pool of workers.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -61,11 +69,108 @@ public class HibernateSearchDependentObjectsReindexer {
    */
   final Map<Class<? extends BaseDO<?>>, List<Entry>> map = new HashMap<>();
 
+  /**
+   * Changes of the same object within this period are coalesced to one re-indexing.
+   */
+  static final long COALESCING_WINDOW_MILLIS = 1000;
+
+  /**
+   * Number of queued objects processed by one worker in one transaction (also the number of indexed objects after
+   * which the index work is flushed).
+   */
+  static final int BATCH_SIZE = 100;
+
+  /**
+   * If this number of objects is queued, the coalescing window is skipped and the queue is processed immediately.
+   */
+  static final int MAX_PENDING = 10000;
+
+  private static final int NUMBER_OF_WORKERS = 2;
+
+  /**
+   * Maximum number of batches waiting for a worker. If exceeded, the batch is processed by the submitting thread.
+   */
+  private static final int MAX_QUEUED_BATCHES = 100;
+
+  /**
+   * Queued objects with the time of their first queuing (insertion order is preserved).
+   */
+  private final Map<ReindexKey, Long> pending = new LinkedHashMap<>();
+
+  private boolean flushScheduled;
+
+  private final AtomicInteger batchBacklog = new AtomicInteger();
+
+  private final AtomicLong reindexedObjectsCounter = new AtomicLong();
+
+  private final AtomicLong batchCounter = new AtomicLong();
+
+  private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+  private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+  private ScheduledExecutorService scheduler;
+
+  private ThreadPoolExecutor workers;
+
   @PostConstruct
   public void init() {
     for (final RegistryEntry registryEntry : Registry.getInstance().getOrderedList()) {
       register(registryEntry);
     }
+    scheduler = Executors.newSingleThreadScheduledExecutor(createThreadFactory("HibernateSearchReindexScheduler"));
+    workers = new ThreadPoolExecutor(NUMBER_OF_WORKERS, NUMBER_OF_WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES), createThreadFactory("HibernateSearchReindexer"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    if (workers != null) {
+      workers.shutdown();
+    }
+  }
+
+  private static ThreadFactory createThreadFactory(final String name) {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Key (class, id) of a queued object, the queued objects are de-duplicated by this key.
+   */
+  private static class ReindexKey {
+    final Class<? extends BaseDO> clazz;
+
+    final Serializable id;
+
+    long queuedAt;
+
+    ReindexKey(final Class<? extends BaseDO> clazz, final Serializable id) {
+      this.clazz = clazz;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof ReindexKey)) {
+        return false;
+      }
+      final ReindexKey o = (ReindexKey) obj;
+      return clazz.equals(o.clazz) && id.equals(o.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * clazz.hashCode() + id.hashCode();
+    }
   }
 
   class Entry {
@@ -113,28 +218,142 @@ public class HibernateSearchDependentObjectsReindexer {
 
   }
 
+  /**
+   * Queues the dependent objects of the given object for re-indexing. The objects are re-indexed asynchronously:
+   * Multiple changes of the same object within {@link #COALESCING_WINDOW_MILLIS} are coalesced and the queued objects
+   * are re-indexed in batches by a fixed pool of workers. Objects without registered dependents are ignored.
+   */
   public void reindexDependents(final BaseDO<?> obj) {
-    new Thread() {
-      @Override
-      public void run() {
-        emgrFactory.runInTrans(emgr -> {
-                  final EntityManager em = emgr.getEntityManager();
-                  final Set<String> alreadyReindexed = new HashSet<>();
-                  final List<Entry> entryList = map.get(obj.getClass());
-                  reindexDependents(em, obj, entryList, alreadyReindexed);
-                  final int size = alreadyReindexed.size();
-                  if (size >= 10) {
-                    log.info("Re-indexing of " + size + " objects done after updating " + obj.getClass().getName() + ":"
-                            + obj.getId());
-                  }
-                  return null;
-                }
-        );
+    if (obj == null || obj.getId() == null || CollectionUtils.isEmpty(map.get(obj.getClass()))) {
+      // Nothing to do.
+      return;
+    }
+    final ReindexKey key = new ReindexKey(obj.getClass(), obj.getId());
+    List<ReindexKey> overflow = null;
+    synchronized (pending) {
+      pending.putIfAbsent(key, System.currentTimeMillis());
+      if (pending.size() >= MAX_PENDING) {
+        // Don't wait for the coalescing window if the backlog is too large:
+        overflow = drainPending();
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        scheduler.schedule(this::flush, COALESCING_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
       }
-    }.start();
+    }
+    if (overflow != null) {
+      submit(overflow);
+    }
   }
 
-  private void reindexDependents(final EntityManager em, final BaseDO<?> obj,
+  /**
+   * @return The number of objects waiting for re-indexing of their dependents (coalescing queue and worker queue).
+   */
+  public int getBacklogSize() {
+    final int queued;
+    synchronized (pending) {
+      queued = pending.size();
+    }
+    return queued + batchBacklog.get();
+  }
+
+  /**
+   * @return The total number of re-indexed objects (dependents).
+   */
+  public long getReindexedObjectsCount() {
+    return reindexedObjectsCounter.get();
+  }
+
+  /**
+   * @return The average time in millis between queuing an object and finishing the re-indexing of its dependents.
+   */
+  public long getAverageLatencyMillis() {
+    final long batches = batchCounter.get();
+    return batches > 0 ? totalLatencyMillis.get() / batches : 0;
+  }
+
+  /**
+   * @return The maximum time in millis between queuing an object and finishing the re-indexing of its dependents.
+   */
+  public long getMaxLatencyMillis() {
+    return maxLatencyMillis.get();
+  }
+
+  private void flush() {
+    final List<ReindexKey> keys;
+    synchronized (pending) {
+      flushScheduled = false;
+      keys = drainPending();
+    }
+    submit(keys);
+  }
+
+  /**
+   * Must be called inside synchronized(pending).
+   */
+  private List<ReindexKey> drainPending() {
+    final List<ReindexKey> keys = new ArrayList<>(pending.size());
+    for (final Map.Entry<ReindexKey, Long> entry : pending.entrySet()) {
+      entry.getKey().queuedAt = entry.getValue();
+      keys.add(entry.getKey());
+    }
+    pending.clear();
+    return keys;
+  }
+
+  private void submit(final List<ReindexKey> keys) {
+    for (int i = 0; i < keys.size(); i += BATCH_SIZE) {
+      final List<ReindexKey> batch = keys.subList(i, Math.min(i + BATCH_SIZE, keys.size()));
+      batchBacklog.addAndGet(batch.size());
+      try {
+        workers.execute(() -> reindexBatch(batch));
+      } catch (final RejectedExecutionException ex) {
+        // Shutdown in progress.
+        batchBacklog.addAndGet(-batch.size());
+        log.info("Re-indexing of " + batch.size() + " objects skipped: " + ex.getMessage());
+      }
+    }
+  }
+
+  private void reindexBatch(final List<ReindexKey> batch) {
+    try {
+      emgrFactory.runInTrans(emgr -> {
+        final EntityManager em = emgr.getEntityManager();
+        final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(em);
+        fullTextEntityManager.setFlushMode(FlushModeType.AUTO);
+        final Set<String> alreadyReindexed = new HashSet<>();
+        for (final ReindexKey key : batch) {
+          final BaseDO<?> obj = em.find(key.clazz, key.id);
+          if (obj == null) {
+            continue;
+          }
+          reindexDependents(fullTextEntityManager, obj, map.get(key.clazz), alreadyReindexed);
+        }
+        fullTextEntityManager.flushToIndexes();
+        final int size = alreadyReindexed.size();
+        reindexedObjectsCounter.addAndGet(size);
+        if (size >= 10) {
+          log.info("Re-indexing of " + size + " objects done after updating " + batch.size() + " objects.");
+        }
+        return null;
+      });
+    } catch (final Exception ex) {
+      // Don't fail if any exception while re-indexing occurs.
+      log.error("Fail to re-index dependents of " + batch.size() + " objects: " + ex.getMessage(), ex);
+    } finally {
+      batchBacklog.addAndGet(-batch.size());
+      final long now = System.currentTimeMillis();
+      long queuedAt = now;
+      for (final ReindexKey key : batch) {
+        queuedAt = Math.min(queuedAt, key.queuedAt);
+      }
+      final long latency = now - queuedAt;
+      batchCounter.incrementAndGet();
+      totalLatencyMillis.addAndGet(latency);
+      maxLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+  }
+
+  private void reindexDependents(final FullTextEntityManager em, final BaseDO<?> obj,
                                  final List<Entry> entryList, final Set<String> alreadyReindexed) {
     if (CollectionUtils.isEmpty(entryList)) {
       // Nothing to do.
@@ -160,34 +379,27 @@ public class HibernateSearchDependentObjectsReindexer {
     }
   }
 
-  private void reindexDependents(final EntityManager em, final BaseDO<?> obj,
+  private void reindexDependents(final FullTextEntityManager em, final BaseDO<?> obj,
                                  final Set<String> alreadyReindexed) {
-    if (alreadyReindexed.contains(getReindexId(obj))) {
+    if (!alreadyReindexed.add(getReindexId(obj))) {
       if (log.isDebugEnabled()) {
         log.debug("Object already re-indexed (skipping): " + getReindexId(obj));
       }
       return;
     }
-    em.flush(); // Needed to flush the object changes!
-    final FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(em);
-
-    fullTextEntityManager.setFlushMode(FlushModeType.AUTO);
-    //HibernateCompatUtils.setCacheMode(fullTextSession, CacheMode.IGNORE);
     try {
-      BaseDO<?> dbObj = em.find(obj.getClass(), obj.getId());
-      if (dbObj == null) {
-        dbObj = em.find(obj.getClass(), obj.getId());
-      }
-      fullTextEntityManager.index(dbObj);
-      alreadyReindexed.add(getReindexId(dbObj));
+      em.index(obj);
       if (log.isDebugEnabled()) {
-        log.debug("Object added to index: " + getReindexId(dbObj));
+        log.debug("Object added to index: " + getReindexId(obj));
+      }
+      if (alreadyReindexed.size() % BATCH_SIZE == 0) {
+        // Don't collect the index work of all dependents in memory:
+        em.flushToIndexes();
       }
     } catch (final Exception ex) {
       // Don't fail if any exception while re-indexing occurs.
       log.info("Fail to re-index " + obj.getClass() + ": " + ex.getMessage());
     }
-    // em.flush(); // clear every batchSize since the queue is processed
     final List<Entry> entryList = map.get(obj.getClass());
     reindexDependents(em, obj, entryList, alreadyReindexed);
   }
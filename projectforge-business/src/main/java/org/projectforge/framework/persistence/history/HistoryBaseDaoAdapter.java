@@ -33,21 +33,29 @@ import de.micromata.genome.jpa.events.EmgrUpdateCopyFilterEvent;
 import de.micromata.genome.util.runtime.ClassUtils;
 import de.micromata.hibernate.history.delta.PropertyDelta;
 import de.micromata.hibernate.history.delta.SimplePropertyDelta;
+import org.hibernate.Hibernate;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.persistence.api.BaseDO;
 import org.projectforge.framework.persistence.api.ExtendedBaseDO;
 import org.projectforge.framework.persistence.api.ModificationStatus;
 import org.projectforge.framework.persistence.api.PFPersistancyBehavior;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.persistence.jpa.PfEmgr;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+import org.projectforge.framework.persistence.user.api.UserContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.TypedQuery;
 import java.io.Serializable;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -61,6 +69,16 @@ public class HistoryBaseDaoAdapter {
 
   private static final HistoryEntry[] HISTORY_ARR_TEMPL = new HistoryEntry[]{};
 
+  /**
+   * The historization plans of all classes, computed on first usage.
+   */
+  private static final Map<Class<?>, HistorizationPlan> historizationPlans = new ConcurrentHashMap<>();
+
+  /**
+   * If set, history entries of updates are written by the {@link AsyncHistoryWriter} after commit.
+   */
+  private static final ThreadLocal<Boolean> deferHistory = new ThreadLocal<>();
+
   public static HistoryEntry[] getHistoryFor(BaseDO<?> obj) {
     //long begin = System.currentTimeMillis();
     HistoryEntry[] result = getHistoryEntries(obj).toArray(HISTORY_ARR_TEMPL);
@@ -83,6 +101,60 @@ public class HistoryBaseDaoAdapter {
     return nret;
   }
 
+  /**
+   * Gets one page of the history entries of the given objects, newest first (ordered by modification date and pk
+   * descending). All objects are queried at once.
+   *
+   * @param objects    The objects (e. g. an order and its positions).
+   * @param cursor     The cursor of the last entry of the previous page or null for the first page.
+   * @param maxResults The page size. If not positive, all entries (after the cursor) are returned.
+   */
+  public static List<PfHistoryMasterDO> getHistoryEntries(final Collection<? extends BaseDO<?>> objects,
+                                                          final HistoryCursor cursor, final int maxResults) {
+    final Map<String, Set<Long>> idsByEntityName = new LinkedHashMap<>();
+    for (final BaseDO<?> obj : objects) {
+      if (obj == null || !(obj.getId() instanceof Number)) {
+        continue;
+      }
+      idsByEntityName.computeIfAbsent(Hibernate.getClass(obj).getName(), name -> new LinkedHashSet<>())
+              .add(((Number) obj.getId()).longValue());
+    }
+    if (idsByEntityName.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final StringBuilder sb = new StringBuilder();
+    sb.append("select h from ").append(PfHistoryMasterDO.class.getName()).append(" h where (");
+    for (int i = 0; i < idsByEntityName.size(); i++) {
+      if (i > 0) {
+        sb.append(" or ");
+      }
+      sb.append("(h.entityName = :entityName").append(i).append(" and h.entityId in :entityIds").append(i).append(")");
+    }
+    sb.append(")");
+    if (cursor != null) {
+      sb.append(" and (h.modifiedAt < :modifiedAt or (h.modifiedAt = :modifiedAt and h.pk < :pk))");
+    }
+    sb.append(" order by h.modifiedAt desc, h.pk desc");
+    final PfEmgrFactory emf = ApplicationContextProvider.getApplicationContext().getBean(PfEmgrFactory.class);
+    return emf.runRoTrans((emgr) -> {
+      final TypedQuery<PfHistoryMasterDO> query = emgr.getEntityManager().createQuery(sb.toString(), PfHistoryMasterDO.class);
+      int i = 0;
+      for (final Map.Entry<String, Set<Long>> entry : idsByEntityName.entrySet()) {
+        query.setParameter("entityName" + i, entry.getKey());
+        query.setParameter("entityIds" + i, entry.getValue());
+        ++i;
+      }
+      if (cursor != null) {
+        query.setParameter("modifiedAt", cursor.getModifiedAt());
+        query.setParameter("pk", cursor.getPk());
+      }
+      if (maxResults > 0) {
+        query.setMaxResults(maxResults);
+      }
+      return query.getResultList();
+    });
+  }
+
   public static PropertyDelta diffEntryToPropertyDelta(DiffEntry de) {
     //long begin = System.currentTimeMillis();
     SimplePropertyDelta ret = new SimplePropertyDelta(de.getPropertyName(), String.class, de.getOldValue(),
@@ -190,13 +262,30 @@ public class HistoryBaseDaoAdapter {
     new HistoryEmgrAfterInsertedEventHandler().onEvent(event);
   }
 
+  /**
+   * Runs the given callback (e. g. a mass update or an import). The history entries of all updates done inside the
+   * callback by this thread aren't written inline, but by the {@link AsyncHistoryWriter} after the commit of the
+   * update's transaction (entries of rolled back transactions are discarded).
+   */
+  public static <T> T runWithDeferredHistory(final Supplier<T> callback) {
+    if (deferHistory.get() != null) {
+      // Nested call.
+      return callback.get();
+    }
+    deferHistory.set(Boolean.TRUE);
+    try {
+      return callback.get();
+    } finally {
+      deferHistory.remove();
+    }
+  }
+
   public static ModificationStatus wrapHistoryUpdate(BaseDO<?> dbo, Supplier<ModificationStatus> callback) {
     final HistoryService historyService = HistoryServiceManager.get().getHistoryService();
-    final List<WithHistory> whanots = historyService.internalFindWithHistoryEntity(dbo);
+    final List<WithHistory> whanots = getHistorizationPlan(historyService, dbo).whanots;
     if (whanots.isEmpty()) {
       return callback.get();
     }
-    final List<BaseDO<?>> entitiesToHistoricize = getSubEntitiesToHistoricizeDeep(dbo);
     final PfEmgrFactory emf = ApplicationContextProvider.getApplicationContext().getBean(PfEmgrFactory.class);
     final ModificationStatus result = emf.runInTrans((emgr) -> {
       return wrapHistoryUpdate(emgr, historyService, whanots, dbo, callback);
@@ -209,7 +298,7 @@ public class HistoryBaseDaoAdapter {
 
   public static ModificationStatus wrapHistoryUpdate(PfEmgr emgr, BaseDO<?> dbo, Supplier<ModificationStatus> callback) {
     final HistoryService historyService = HistoryServiceManager.get().getHistoryService();
-    final List<WithHistory> whanots = historyService.internalFindWithHistoryEntity(dbo);
+    final List<WithHistory> whanots = getHistorizationPlan(historyService, dbo).whanots;
     if (whanots.isEmpty()) {
       return callback.get();
     }
@@ -239,6 +328,11 @@ public class HistoryBaseDaoAdapter {
             }
     );
 
+    if (deferHistory.get() != null) {
+      deferHistoryEntries(emgr, props);
+      return result;
+    }
+
     // create history entries with the diff resulting from the old and new history properties
     props.forEach(
             (pk, p) -> {
@@ -253,6 +347,65 @@ public class HistoryBaseDaoAdapter {
     return result;
   }
 
+  /**
+   * Hands the history properties to the {@link AsyncHistoryWriter} after the commit of the current transaction.
+   */
+  private static void deferHistoryEntries(final PfEmgr emgr, final Map<Serializable, HistoryProperties> props) {
+    final UserContext userContext = ThreadLocalUserContext.getUserContext();
+    final List<AsyncHistoryWriter.Entry> entries = new ArrayList<>(props.size());
+    props.forEach(
+            (pk, p) -> {
+              if (p.oldProps != null && p.newProps != null) {
+                entries.add(new AsyncHistoryWriter.Entry(p.entClassName, pk, p.oldProps, p.newProps, userContext));
+              }
+            }
+    );
+    if (entries.isEmpty()) {
+      return;
+    }
+    final AsyncHistoryWriter writer = ApplicationContextProvider.getApplicationContext().getBean(AsyncHistoryWriter.class);
+    emgr.getEntityManager().unwrap(SessionImplementor.class).getActionQueue().registerProcess(
+            (AfterTransactionCompletionProcess) (success, session) -> {
+              if (success) {
+                writer.enqueue(entries);
+              }
+            });
+  }
+
+  /**
+   * Holds the (class dependent) information needed for historizing objects of one class.
+   */
+  private static final class HistorizationPlan {
+    /**
+     * The history annotations of the class (empty, if the class isn't historized).
+     */
+    private final List<WithHistory> whanots;
+
+    /**
+     * The (accessible) fields annotated with "@PFPersistancyBehavior(autoUpdateCollectionEntries = true)".
+     */
+    private final Field[] autoUpdateCollectionFields;
+
+    private HistorizationPlan(final List<WithHistory> whanots, final Field[] autoUpdateCollectionFields) {
+      this.whanots = whanots;
+      this.autoUpdateCollectionFields = autoUpdateCollectionFields;
+    }
+  }
+
+  private static HistorizationPlan getHistorizationPlan(final HistoryService historyService, final Object entity) {
+    return historizationPlans.computeIfAbsent(entity.getClass(), clazz -> {
+      final Field[] fields = ClassUtils.getAllFields(clazz).values()
+              .stream()
+              .filter(field -> {
+                final PFPersistancyBehavior behavior = field.getAnnotation(PFPersistancyBehavior.class);
+                return behavior != null && behavior.autoUpdateCollectionEntries();
+              })
+              .toArray(Field[]::new);
+      AccessibleObject.setAccessible(fields, true);
+      return new HistorizationPlan(historyService.internalFindWithHistoryEntity(entity), fields);
+    });
+  }
+
   /**
    * Nested class just to hold some temporary history data.
    */
@@ -298,15 +451,11 @@ public class HistoryBaseDaoAdapter {
    * @return The List of DOs.
    */
   private static List<BaseDO<?>> getSubEntitiesToHistoricize(final BaseDO<?> entity) {
-    final Collection<Field> fields = ClassUtils.getAllFields(entity.getClass()).values();
-    AccessibleObject.setAccessible(fields.toArray(new Field[0]), true);
-
-    return fields
-            .stream()
-            .filter(field -> {
-              final PFPersistancyBehavior behavior = field.getAnnotation(PFPersistancyBehavior.class);
-              return behavior != null && behavior.autoUpdateCollectionEntries();
-            })
+    final Field[] fields = getHistorizationPlan(HistoryServiceManager.get().getHistoryService(), entity).autoUpdateCollectionFields;
+    if (fields.length == 0) {
+      return Collections.emptyList();
+    }
+    return Arrays.stream(fields)
             .map(field -> {
               try {
                 return (Collection<BaseDO<?>>) field.get(entity);
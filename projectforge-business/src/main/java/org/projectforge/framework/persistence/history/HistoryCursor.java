@@ -0,0 +1,90 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history;
+
+import org.apache.commons.lang3.StringUtils;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Position in the history timeline of an object (newest first) for paging: The next page starts with the entry following
+ * the entry this cursor was created of (ordered by modification date and pk descending).
+ * <br/>
+ * The string representation (e. g. for rest calls) is "&lt;modifiedAt millis&gt;:&lt;pk&gt;".
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class HistoryCursor implements Serializable {
+  private static final long serialVersionUID = -3466853212307946112L;
+
+  private final Date modifiedAt;
+
+  private final Long pk;
+
+  public HistoryCursor(final Date modifiedAt, final Long pk) {
+    this.modifiedAt = modifiedAt;
+    this.pk = pk;
+  }
+
+  /**
+   * @param entry The last entry of the current page.
+   * @return The cursor for the next page.
+   */
+  public static HistoryCursor of(final PfHistoryMasterDO entry) {
+    return new HistoryCursor(entry.getModifiedAt(), entry.getPk());
+  }
+
+  /**
+   * @return The cursor or null, if the given string is blank or not a valid cursor.
+   */
+  public static HistoryCursor parse(final String str) {
+    if (StringUtils.isBlank(str)) {
+      return null;
+    }
+    final String[] parts = StringUtils.split(str, ':');
+    if (parts.length != 2) {
+      return null;
+    }
+    try {
+      return new HistoryCursor(new Date(Long.parseLong(parts[0])), Long.parseLong(parts[1]));
+    } catch (final NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  public Date getModifiedAt() {
+    return modifiedAt;
+  }
+
+  public Long getPk() {
+    return pk;
+  }
+
+  @Override
+  public String toString() {
+    return modifiedAt.getTime() + ":" + pk;
+  }
+}
@@ -45,8 +45,8 @@ import java.util.Map;
  */
 @Entity()
 @Table(name = "t_pf_history", indexes = {
-    @Index(name = "ix_pf_history_ent", columnList = "ENTITY_ID,ENTITY_NAME"),
-    @Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT")
+    @Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT"),
+    @Index(name = "ix_pf_history_ent_mod", columnList = "ENTITY_ID,ENTITY_NAME,MODIFIEDAT")
 })
 @Indexed()
 @ClassBridge(impl = HistoryMasterClassBridge.class)
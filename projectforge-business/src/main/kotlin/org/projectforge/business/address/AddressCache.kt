@@ -30,6 +30,7 @@ import org.projectforge.framework.persistence.api.BaseDOChangedListener
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
 import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
 import javax.annotation.PostConstruct
 
 private val log = KotlinLogging.logger {}
@@ -47,7 +48,8 @@ open class AddressCache : AbstractCache(), BaseDOChangedListener<AddressDO> {
     /**
      * List of address books per address (by address.id).
      */
-    private val addressMap = mutableMapOf<Int, MutableSet<AddressbookDO>>()
+    @Volatile
+    private var addressMap = ConcurrentHashMap<Int, MutableSet<AddressbookDO>>()
 
     /**
      * @param address: must be attqched to entity manager for lazy loading of address books.
@@ -58,16 +60,12 @@ open class AddressCache : AbstractCache(), BaseDOChangedListener<AddressDO> {
             return it
         }
         val result = address.addressbookList ?: mutableSetOf()
-        synchronized(addressMap) {
-            addressMap[id] = result
-        }
+        addressMap[id] = result
         return result
     }
 
     internal fun setAddressExpired(addressId: Int) {
-        synchronized(addressMap) {
-            addressMap.remove(addressId)
-        }
+        addressMap.remove(addressId)
     }
 
     @PostConstruct
@@ -76,9 +74,7 @@ open class AddressCache : AbstractCache(), BaseDOChangedListener<AddressDO> {
     }
 
     override fun afterSaveOrModifify(changedObject: AddressDO, operationType: OperationType) {
-        synchronized(addressMap) {
-            addressMap.remove(changedObject.id)
-        }
+        addressMap.remove(changedObject.id)
     }
 
     /**
@@ -86,8 +82,7 @@ open class AddressCache : AbstractCache(), BaseDOChangedListener<AddressDO> {
      */
     override fun refresh() {
         log.info("Refreshing AddressCache ...")
-        synchronized(addressMap) {
-            addressMap.clear()
-        }
+        // Don't clear the map in place, readers may use it concurrently.
+        addressMap = ConcurrentHashMap()
     }
 }
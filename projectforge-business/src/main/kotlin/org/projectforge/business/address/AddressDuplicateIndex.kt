@@ -0,0 +1,378 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import mu.KotlinLogging
+import org.apache.commons.lang3.StringUtils
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.api.QueryFilter
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.util.ArrayDeque
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Precomputed index of address doublets (potential duplicates). Addresses are grouped by normalized blocking keys
+ * (phonetic name, e-mail, phone number and organization) and only addresses sharing a block are compared with each
+ * other (exact name, phonetic name or trigram similarity of the names, a shared e-mail address, phone number or
+ * organization lowers the required similarity). The index is built once and
+ * then updated incrementally on every modification of an address, so the doublets filter of the address list is only
+ * a lookup.
+ */
+@Service
+open class AddressDuplicateIndex : AbstractCache(), BaseDOChangedListener<AddressDO> {
+    @Autowired
+    private lateinit var addressDao: AddressDao
+
+    internal class Entry(val id: Int,
+                        val fullname: String,
+                        val phoneticName: String,
+                        val phoneticFirstName: String,
+                        val organization: String,
+                        val emails: Set<String>,
+                        val phones: Set<String>,
+                        val trigrams: Set<String>,
+                        val keys: Set<String>)
+
+    private val lock = Any()
+
+    private var entries = HashMap<Int, Entry>()
+
+    /**
+     * Address ids by blocking key.
+     */
+    private var blocks = HashMap<String, MutableSet<Int>>()
+
+    /**
+     * Direct doublets of an address (only addresses with at least one doublet are part of this map).
+     */
+    private var doublets = HashMap<Int, MutableSet<Int>>()
+
+    /**
+     * @return true, if the given address has at least one doublet.
+     */
+    fun isDoublet(addressId: Int?): Boolean {
+        addressId ?: return false
+        checkRefresh()
+        synchronized(lock) {
+            return doublets.containsKey(addressId)
+        }
+    }
+
+    /**
+     * @return The ids of the direct doublets of the given address (empty if none).
+     */
+    fun getDoublets(addressId: Int?): Set<Int> {
+        addressId ?: return emptySet()
+        checkRefresh()
+        synchronized(lock) {
+            return doublets[addressId]?.toSet() ?: emptySet()
+        }
+    }
+
+    /**
+     * @return All ids of the cluster of the given address (transitive doublets, including the given address itself)
+     * or an empty set, if the address has no doublets.
+     */
+    fun getCluster(addressId: Int?): Set<Int> {
+        addressId ?: return emptySet()
+        checkRefresh()
+        synchronized(lock) {
+            if (!doublets.containsKey(addressId)) {
+                return emptySet()
+            }
+            val cluster = mutableSetOf(addressId)
+            val queue = ArrayDeque<Int>()
+            queue.add(addressId)
+            while (queue.isNotEmpty()) {
+                doublets[queue.removeFirst()]?.forEach {
+                    if (cluster.add(it)) {
+                        queue.add(it)
+                    }
+                }
+            }
+            return cluster
+        }
+    }
+
+    /**
+     * @return The ids of all addresses having at least one doublet.
+     */
+    fun getDoubletIds(): Set<Int> {
+        checkRefresh()
+        synchronized(lock) {
+            return doublets.keys.toSet()
+        }
+    }
+
+    @PostConstruct
+    private fun postConstruct() {
+        addressDao.register(this)
+    }
+
+    override fun afterSaveOrModifify(changedObject: AddressDO, operationType: OperationType) {
+        val id = changedObject.id ?: return
+        if (isRefreshInProgress) {
+            // Modification may be missed by the running refresh.
+            setExpired()
+            return
+        }
+        synchronized(lock) {
+            remove(id, entries, blocks, doublets)
+            if (operationType != OperationType.DELETE && !changedObject.isDeleted) {
+                add(createEntry(id, changedObject), entries, blocks, doublets)
+            }
+        }
+    }
+
+    /**
+     * This method will be called by CacheHelper and is synchronized via getData();
+     */
+    override fun refresh() {
+        log.info("Refreshing AddressDuplicateIndex ...")
+        val filter = QueryFilter()
+        filter.deleted = false
+        val addressList = addressDao.internalGetList(filter)
+        val newEntries = HashMap<Int, Entry>(addressList.size * 2)
+        val newBlocks = HashMap<String, MutableSet<Int>>()
+        val newDoublets = HashMap<Int, MutableSet<Int>>()
+        addressList.forEach {
+            val id = it.id ?: return@forEach
+            add(createEntry(id, it), newEntries, newBlocks, newDoublets)
+        }
+        synchronized(lock) {
+            entries = newEntries
+            blocks = newBlocks
+            doublets = newDoublets
+        }
+        log.info("Refreshing AddressDuplicateIndex done (${newDoublets.size} of ${newEntries.size} addresses with doublets).")
+    }
+
+    internal fun add(entry: Entry, entries: MutableMap<Int, Entry>, blocks: MutableMap<String, MutableSet<Int>>, doublets: MutableMap<Int, MutableSet<Int>>) {
+        entries[entry.id] = entry
+        val compared = mutableSetOf<Int>()
+        entry.keys.forEach { key ->
+            val block = blocks.getOrPut(key) { mutableSetOf() }
+            if (block.size < MAX_BLOCK_SIZE) {
+                block.forEach { otherId ->
+                    if (compared.add(otherId)) {
+                        val other = entries[otherId]
+                        if (other != null && isDoublet(entry, other)) {
+                            doublets.getOrPut(entry.id) { mutableSetOf() }.add(otherId)
+                            doublets.getOrPut(otherId) { mutableSetOf() }.add(entry.id)
+                        }
+                    }
+                }
+            } else if (block.size == MAX_BLOCK_SIZE) {
+                log.info("Block '$key' of AddressDuplicateIndex exceeds $MAX_BLOCK_SIZE addresses, further addresses of this block aren't compared.")
+            }
+            block.add(entry.id)
+        }
+    }
+
+    internal fun remove(id: Int, entries: MutableMap<Int, Entry>, blocks: MutableMap<String, MutableSet<Int>>, doublets: MutableMap<Int, MutableSet<Int>>) {
+        val entry = entries.remove(id) ?: return
+        entry.keys.forEach { key ->
+            val block = blocks[key] ?: return@forEach
+            block.remove(id)
+            if (block.isEmpty()) {
+                blocks.remove(key)
+            }
+        }
+        doublets.remove(id)?.forEach { otherId ->
+            val otherDoublets = doublets[otherId] ?: return@forEach
+            otherDoublets.remove(id)
+            if (otherDoublets.isEmpty()) {
+                doublets.remove(otherId)
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Addresses of larger blocks (e. g. a common switchboard number) aren't compared anymore.
+         */
+        private const val MAX_BLOCK_SIZE = 1000
+
+        private const val SIMILAR_NAMES = 0.8
+
+        /**
+         * Threshold of name similarity for addresses sharing an e-mail address, phone number or organization.
+         */
+        private const val SIMILAR_NAMES_SAME_CONTACT = 0.5
+
+        /**
+         * Only the trailing digits of phone numbers are compared, so different prefixes (+49 vs. 0) don't matter.
+         */
+        private const val PHONE_DIGITS = 9
+
+        private const val MIN_PHONE_DIGITS = 6
+
+        internal fun createEntry(id: Int, address: AddressDO): Entry {
+            val firstName = normalize(address.firstName)
+            val name = normalize(address.name)
+            val phoneticName = colognePhonetic(name)
+            val phoneticFirstName = colognePhonetic(firstName)
+            val organization = normalize(address.organization)
+            val emails = listOf(address.email, address.privateEmail)
+                    .mapNotNull { it?.trim()?.toLowerCase() }
+                    .filter { it.isNotEmpty() }
+                    .toSet()
+            val phones = listOf(address.businessPhone, address.mobilePhone, address.privatePhone, address.privateMobilePhone)
+                    .mapNotNull { normalizePhone(it) }
+                    .toSet()
+            val keys = mutableSetOf<String>()
+            if (phoneticName.isNotEmpty()) {
+                keys.add("n:$phoneticName")
+            }
+            emails.forEach { keys.add("e:$it") }
+            phones.forEach { keys.add("p:$it") }
+            if (organization.isNotEmpty()) {
+                keys.add("o:$organization")
+            }
+            val fullname = "$firstName $name".trim()
+            return Entry(id, fullname, phoneticName, phoneticFirstName, organization, emails, phones, trigrams(fullname), keys)
+        }
+
+        private fun isDoublet(entry: Entry, other: Entry): Boolean {
+            if (entry.fullname.isNotEmpty() && entry.fullname == other.fullname) {
+                return true
+            }
+            if (entry.phoneticName.isNotEmpty() && entry.phoneticFirstName.isNotEmpty()
+                    && entry.phoneticName == other.phoneticName && entry.phoneticFirstName == other.phoneticFirstName) {
+                return true
+            }
+            val similarity = similarity(entry.trigrams, other.trigrams)
+            if (similarity >= SIMILAR_NAMES) {
+                return true
+            }
+            // A shared e-mail address isn't sufficient itself (generic addresses such as info@company):
+            return similarity >= SIMILAR_NAMES_SAME_CONTACT &&
+                    (entry.emails.any { other.emails.contains(it) } ||
+                            entry.phones.any { other.phones.contains(it) } ||
+                            entry.organization.isNotEmpty() && entry.organization == other.organization)
+        }
+
+        /**
+         * Lower case, without accents and without any characters other than letters, digits and single blanks.
+         */
+        internal fun normalize(str: String?): String {
+            if (str.isNullOrBlank()) {
+                return ""
+            }
+            val stripped = StringUtils.stripAccents(str.toLowerCase().replace("ß", "ss"))
+            val sb = StringBuilder()
+            stripped.forEach {
+                if (it.isLetterOrDigit()) {
+                    sb.append(it)
+                } else if (sb.isNotEmpty() && sb.last() != ' ') {
+                    sb.append(' ')
+                }
+            }
+            return sb.toString().trim()
+        }
+
+        internal fun normalizePhone(phone: String?): String? {
+            phone ?: return null
+            val digits = phone.filter { it.isDigit() }
+            if (digits.length < MIN_PHONE_DIGITS) {
+                return null
+            }
+            return digits.takeLast(PHONE_DIGITS)
+        }
+
+        internal fun trigrams(str: String): Set<String> {
+            if (str.isEmpty()) {
+                return emptySet()
+            }
+            val padded = "  $str "
+            return (0..padded.length - 3).map { padded.substring(it, it + 3) }.toSet()
+        }
+
+        /**
+         * Dice coefficient of both trigram sets.
+         */
+        internal fun similarity(trigrams: Set<String>, other: Set<String>): Double {
+            if (trigrams.isEmpty() || other.isEmpty()) {
+                return 0.0
+            }
+            val common = trigrams.count { other.contains(it) }
+            return 2.0 * common / (trigrams.size + other.size)
+        }
+
+        /**
+         * Cologne phonetics (Kölner Phonetik) of the given normalized string, suitable for German names: Meier, Meyer
+         * and Maier result in the same code.
+         */
+        internal fun colognePhonetic(str: String): String {
+            val chars = str.filter { it in 'a'..'z' }
+            if (chars.isEmpty()) {
+                return ""
+            }
+            val codes = StringBuilder()
+            for (i in chars.indices) {
+                val ch = chars[i]
+                val prev = if (i > 0) chars[i - 1] else null
+                val next = if (i + 1 < chars.length) chars[i + 1] else null
+                val code = when (ch) {
+                    'a', 'e', 'i', 'j', 'o', 'u', 'y' -> "0"
+                    'h' -> ""
+                    'b' -> "1"
+                    'p' -> if (next == 'h') "3" else "1"
+                    'd', 't' -> if (next == 'c' || next == 's' || next == 'z') "8" else "2"
+                    'f', 'v', 'w' -> "3"
+                    'g', 'k', 'q' -> "4"
+                    'c' -> if (prev == null) {
+                        if (next != null && next in "ahkloqrux") "4" else "8"
+                    } else {
+                        if (prev != 's' && prev != 'z' && next != null && next in "ahkoqux") "4" else "8"
+                    }
+                    'x' -> if (prev == 'c' || prev == 'k' || prev == 'q') "8" else "48"
+                    'l' -> "5"
+                    'm', 'n' -> "6"
+                    'r' -> "7"
+                    's', 'z' -> "8"
+                    else -> ""
+                }
+                codes.append(code)
+            }
+            val result = StringBuilder()
+            for (i in codes.indices) {
+                val code = codes[i]
+                if (i > 0 && code == codes[i - 1]) {
+                    continue // Collapse repeated codes.
+                }
+                if (code == '0' && i > 0) {
+                    continue // Vowels are only coded at the beginning.
+                }
+                result.append(code)
+            }
+            return result.toString()
+        }
+    }
+}
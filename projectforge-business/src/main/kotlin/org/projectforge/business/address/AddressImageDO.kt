@@ -32,7 +32,8 @@ import javax.persistence.*
  */
 @NamedQueries(
         NamedQuery(name = AddressImageDO.SELECT_IMAGE, query = "select image from AddressImageDO where address.id = :addressId"),
-        NamedQuery(name = AddressImageDO.SELECT_IMAGE_PREVIEW, query = "select imagePreview from AddressImageDO where address.id = :addressId"))
+        NamedQuery(name = AddressImageDO.SELECT_IMAGE_HASH, query = "select imageHash from AddressImageDO where address.id = :addressId"),
+        NamedQuery(name = AddressImageDO.COUNT_IMAGE_HASH, query = "select count(*) from AddressImageDO where imageHash = :imageHash"))
 @Entity
 @Table(name = "T_ADDRESS_IMAGE")
 open class AddressImageDO : DbRecord<Int> {
@@ -53,6 +54,13 @@ open class AddressImageDO : DbRecord<Int> {
     @get:Basic(fetch = FetchType.LAZY)
     open var imagePreview: ByteArray? = null
 
+    /**
+     * Hex encoded sha-256 of [image], used as key of the renditions in the file system.
+     * @see AddressImageRenditionService
+     */
+    @get:Column(name = "image_hash", length = 64)
+    open var imageHash: String? = null
+
     @javax.persistence.Transient
     override fun getPk(): Int? {
         return id
@@ -64,6 +72,7 @@ open class AddressImageDO : DbRecord<Int> {
 
     companion object {
         internal const val SELECT_IMAGE = "AddressImageDO.selectImage"
-        internal const val SELECT_IMAGE_PREVIEW = "AddressImageDO.selectImagePreview"
+        internal const val SELECT_IMAGE_HASH = "AddressImageDO.selectImageHash"
+        internal const val COUNT_IMAGE_HASH = "AddressImageDO.countImageHash"
     }
 }
@@ -24,11 +24,13 @@
 package org.projectforge.business.address
 
 import mu.KotlinLogging
-import org.projectforge.business.image.ImageService
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory
 import org.projectforge.framework.persistence.utils.SQLHelper.ensureUniqueResult
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Repository
+import java.io.File
+import java.io.IOException
+import java.util.*
 import javax.persistence.EntityManager
 import javax.persistence.PersistenceContext
 
@@ -49,37 +51,55 @@ open class AddressImageDao {
     private lateinit var emgrFactory: PfEmgrFactory
 
     @Autowired
-    private lateinit var imageService: ImageService
+    private lateinit var addressImageRenditionService: AddressImageRenditionService
 
     /**
      * Does the access checking. The user may only get images, if he has the select access to the given address.
      */
     open fun getImage(addressId: Int): ByteArray? {
-        addressDao.getById(addressId) ?: return null // For access checking!
-        return ensureUniqueResult(em.createNamedQuery(AddressImageDO.SELECT_IMAGE, ByteArray::class.java)
-                .setParameter("addressId", addressId))
+        return getImage(addressId, AddressImageRendition.ORIGINAL)
     }
 
     /**
      * Does the access checking. The user may only get images, if he has the select access to the given address.
      */
     open fun getPreviewImage(addressId: Int): ByteArray? {
-        addressDao.getById(addressId) ?: return null // For access checking!
-        return ensureUniqueResult(em.createNamedQuery(AddressImageDO.SELECT_IMAGE_PREVIEW, ByteArray::class.java)
-                .setParameter("addressId", addressId))
+        return getImage(addressId, AddressImageRendition.PREVIEW)
+    }
+
+    /**
+     * Does the access checking. The user may only get images, if he has the select access to the given address.
+     */
+    open fun getImage(addressId: Int, rendition: AddressImageRendition): ByteArray? {
+        return getImageFile(addressId, rendition)?.file?.readBytes()
+    }
+
+    /**
+     * Does the access checking. The user may only get images, if he has the select access to the given address.
+     * The image is served from the file system, the blobs of the data base are only read, if the rendition doesn't yet
+     * exist in the file system.
+     */
+    open fun getImageFile(addressId: Int, rendition: AddressImageRendition): AddressImageFile? {
+        val address = addressDao.getById(addressId) ?: return null // For access checking!
+        val hash = getImageHash(addressId) ?: return null
+        val file = addressImageRenditionService.getRendition(hash, rendition) { loadImage(addressId) } ?: return null
+        return AddressImageFile(hash, rendition, file, address.imageLastUpdate)
     }
 
     /**
      * Does the access checking. The user may only modify images, if he has the access to modify the given address.
+     * The address (imageLastUpdate) is updated after the image is committed, so listeners of the address (e. g. the
+     * vcard cache) never get the old image for the new modification date.
      */
     open fun saveOrUpdate(addressId: Int, image: ByteArray): Boolean {
         val address = addressDao.getById(addressId)
-        addressDao.internalModifyImageData(address, true)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
+        checkUpdateAccess(address) // Throws an exception if the logged-in user has no access.
         val addressImage = get(address.id) ?: AddressImageDO()
+        val oldHash = addressImage.imageHash
         addressImage.address = address
         addressImage.image = image
-        addressImage.imagePreview = imageService.resizeImage(image)
+        addressImage.imageHash = addressImageRenditionService.store(image) // Renditions are created asynchronously.
+        addressImage.imagePreview = null // Renditions are served from the file system.
         emgrFactory.runInTrans { emgr ->
             if (addressImage.id != null) {
                 // Update
@@ -91,18 +111,24 @@ open class AddressImageDao {
                 emgr.flush()
             }
         }
+        addressDao.internalModifyImageData(address, true)
+        addressDao.update(address)
+        if (oldHash != null && oldHash != addressImage.imageHash) {
+            deleteRenditionsIfUnused(oldHash)
+        }
         log.info("New image for address ${address.id} (${address.fullName}) saved.")
         return true
     }
 
     /**
      * Does the access checking. The user may only delete images, if he has the access to modify the given address.
+     * The address is updated after the deletion of the image is committed (see [saveOrUpdate]).
      */
     open fun delete(addressId: Int): Boolean {
         val address = addressDao.getById(addressId)
-        addressDao.internalModifyImageData(address, false)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
-        return emgrFactory.runInTrans { emgr ->
+        checkUpdateAccess(address) // Throws an exception if the logged-in user has no access.
+        val hash = get(address.id)?.imageHash
+        val deleted = emgrFactory.runInTrans { emgr ->
             val addressImage = emgr.find(AddressImageDO::class.java, address.id)
             if (addressImage != null) {
                 emgr.deleteAttached(addressImage)
@@ -112,6 +138,50 @@ open class AddressImageDao {
                 false
             }
         }
+        addressDao.internalModifyImageData(address, false)
+        addressDao.update(address)
+        if (deleted && hash != null) {
+            deleteRenditionsIfUnused(hash)
+        }
+        return deleted
+    }
+
+    private fun checkUpdateAccess(address: AddressDO) {
+        addressDao.hasLoggedInUserUpdateAccess(address, address, true)
+    }
+
+    private fun loadImage(addressId: Int): ByteArray? {
+        return ensureUniqueResult(em.createNamedQuery(AddressImageDO.SELECT_IMAGE, ByteArray::class.java)
+                .setParameter("addressId", addressId))
+    }
+
+    private fun getImageHash(addressId: Int): String? {
+        ensureUniqueResult(em.createNamedQuery(AddressImageDO.SELECT_IMAGE_HASH, String::class.java)
+                .setParameter("addressId", addressId))?.let {
+            return it
+        }
+        // Images saved without hash (before renditions were introduced): hash it once.
+        val image = loadImage(addressId) ?: return null
+        val hash = addressImageRenditionService.store(image)
+        emgrFactory.runInTrans { emgr ->
+            emgr.entityManager.createQuery("update ${AddressImageDO::class.java.name} set imageHash = :imageHash where address.id = :addressId")
+                    .setParameter("imageHash", hash)
+                    .setParameter("addressId", addressId)
+                    .executeUpdate()
+        }
+        return hash
+    }
+
+    /**
+     * Images are content-addressed, so other addresses may share the same image files.
+     */
+    private fun deleteRenditionsIfUnused(hash: String) {
+        val count = em.createNamedQuery(AddressImageDO.COUNT_IMAGE_HASH, Long::class.javaObjectType)
+                .setParameter("imageHash", hash)
+                .singleResult
+        if (count == 0L) {
+            addressImageRenditionService.delete(hash)
+        }
     }
 
     private fun get(addressId: Int): AddressImageDO? {
@@ -126,3 +196,59 @@ open class AddressImageDao {
         }
     }
 }
+
+/**
+ * A rendition of an address image in the file system.
+ * @param imageLastUpdate The current modification date of the address image (used as version by the clients).
+ */
+class AddressImageFile(val hash: String, val rendition: AddressImageRendition, val file: File, val imageLastUpdate: Date?) {
+    /**
+     * Strong ETag: the file is content-addressed, so hash and rendition identify the content.
+     */
+    val eTag: String
+        get() = "\"$hash-${rendition.name.toLowerCase()}\""
+
+    /**
+     * Renditions are always png images. The original image is stored as uploaded, so its type is detected by its
+     * signature (application/octet-stream, if unknown).
+     */
+    val imageType: ImageType by lazy {
+        if (rendition != AddressImageRendition.ORIGINAL) ImageType.PNG else detectImageType(file)
+    }
+
+    enum class ImageType(val contentType: String, val extension: String) {
+        PNG("image/png", "png"), JPEG("image/jpeg", "jpg"), GIF("image/gif", "gif"), UNKNOWN("application/octet-stream", "bin")
+    }
+
+    companion object {
+        private val PNG_SIGNATURE = byteArrayOf(0x89.toByte(), 'P'.toByte(), 'N'.toByte(), 'G'.toByte(), 0x0D, 0x0A, 0x1A, 0x0A)
+        private val JPEG_SIGNATURE = byteArrayOf(0xFF.toByte(), 0xD8.toByte(), 0xFF.toByte())
+        private val GIF_SIGNATURE = "GIF8".toByteArray()
+
+        @JvmStatic
+        fun detectImageType(file: File): ImageType {
+            val head = ByteArray(PNG_SIGNATURE.size)
+            val length = try {
+                file.inputStream().use { it.read(head) }
+            } catch (ex: IOException) {
+                log.error("Can't read address image file '${file.absolutePath}': ${ex.message}")
+                return ImageType.UNKNOWN
+            }
+            return detectImageType(if (length > 0) head.copyOf(length) else ByteArray(0))
+        }
+
+        @JvmStatic
+        fun detectImageType(head: ByteArray): ImageType {
+            return when {
+                startsWith(head, PNG_SIGNATURE) -> ImageType.PNG
+                startsWith(head, JPEG_SIGNATURE) -> ImageType.JPEG
+                startsWith(head, GIF_SIGNATURE) -> ImageType.GIF
+                else -> ImageType.UNKNOWN
+            }
+        }
+
+        private fun startsWith(bytes: ByteArray, prefix: ByteArray): Boolean {
+            return bytes.size >= prefix.size && prefix.indices.all { bytes[it] == prefix[it] }
+        }
+    }
+}
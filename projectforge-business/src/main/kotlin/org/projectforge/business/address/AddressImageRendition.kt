@@ -0,0 +1,41 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+/**
+ * Sizes of address images served to the clients.
+ * @param maxSize The maximum width and height of the rendition, or null for the original image.
+ */
+enum class AddressImageRendition(val maxSize: Int?) {
+    ORIGINAL(null),
+    /**
+     * Used by the address list.
+     */
+    PREVIEW(25),
+    SMALL(120),
+    /**
+     * Used by vCards (CardDAV).
+     */
+    MEDIUM(320)
+}
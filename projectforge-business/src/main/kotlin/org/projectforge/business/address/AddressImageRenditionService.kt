@@ -0,0 +1,178 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import mu.KotlinLogging
+import org.projectforge.business.configuration.ConfigurationService
+import org.projectforge.business.image.ImageService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Stores address images and their renditions (scaled versions) content-addressed in the file system:
+ * <projectforge.base.dir>/imageRenditions/address/<first two chars of hash>/<sha-256 of original image>-<rendition>.png
+ * (the original image is stored as uploaded, so its real type may differ from the extension, see [AddressImageFile.imageType]).
+ *
+ * The data base (AddressImageDO) is still the master of the original image, the files are only a cache, which may be
+ * deleted any time and will be rebuilt on demand. Renditions of new images are generated asynchronously.
+ * Access checking is done by [AddressImageDao].
+ */
+@Service
+open class AddressImageRenditionService {
+    @Autowired
+    private lateinit var configurationService: ConfigurationService
+
+    @Autowired
+    private lateinit var imageService: ImageService
+
+    private lateinit var storageDir: File
+
+    private lateinit var executor: ExecutorService
+
+    @PostConstruct
+    private fun postConstruct() {
+        storageDir = File(configurationService.applicationHomeDir, "imageRenditions${File.separator}address")
+        executor = Executors.newFixedThreadPool(RENDITION_THREADS) { runnable ->
+            val thread = Thread(runnable, "AddressImageRenditions")
+            thread.isDaemon = true
+            thread.priority = Thread.MIN_PRIORITY
+            thread
+        }
+    }
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+
+    /**
+     * Stores the original image and generates all renditions asynchronously.
+     * @return The hash of the image (hex encoded sha-256).
+     */
+    open fun store(image: ByteArray): String {
+        val hash = hash(image)
+        try {
+            writeIfAbsent(getFile(hash, AddressImageRendition.ORIGINAL), image)
+        } catch (ex: Exception) {
+            log.error("Can't store address image '$hash': ${ex.message}", ex)
+            return hash // Renditions will be created on demand from data base.
+        }
+        executor.execute {
+            AddressImageRendition.values().forEach {
+                if (it != AddressImageRendition.ORIGINAL) {
+                    try {
+                        getRendition(hash, it) { image }
+                    } catch (ex: Exception) {
+                        log.error("Can't create rendition $it of address image '$hash': ${ex.message}", ex)
+                    }
+                }
+            }
+        }
+        return hash
+    }
+
+    /**
+     * Gets the file of the rendition. Missing files are created synchronously.
+     * @param hash The hash of the original image.
+     * @param loadOriginal Loads the original image from the data base, if not available in the file system.
+     * @return The file or null, if the image isn't available.
+     */
+    open fun getRendition(hash: String, rendition: AddressImageRendition, loadOriginal: () -> ByteArray?): File? {
+        val file = getFile(hash, rendition)
+        if (file.exists()) {
+            return file
+        }
+        val originalFile = getFile(hash, AddressImageRendition.ORIGINAL)
+        val original = if (originalFile.exists()) {
+            originalFile.readBytes()
+        } else {
+            val bytes = loadOriginal() ?: return null
+            writeIfAbsent(originalFile, bytes)
+            bytes
+        }
+        if (rendition == AddressImageRendition.ORIGINAL) {
+            return originalFile
+        }
+        val bytes = imageService.resizeImageToFit(original, rendition.maxSize!!) ?: return null
+        writeIfAbsent(file, bytes)
+        return file
+    }
+
+    /**
+     * Deletes all files of the given image. The caller has to ensure that no other address uses the same image.
+     */
+    open fun delete(hash: String) {
+        AddressImageRendition.values().forEach {
+            val file = getFile(hash, it)
+            if (file.exists() && !file.delete()) {
+                log.warn("Can't delete address image file '${file.absolutePath}'.")
+            }
+        }
+    }
+
+    private fun getFile(hash: String, rendition: AddressImageRendition): File {
+        return File(File(storageDir, hash.substring(0, 2)), "$hash-${rendition.name.toLowerCase()}.png")
+    }
+
+    /**
+     * Content-addressed files are never modified, so an existing file is kept. Written to a temporary file first, so
+     * concurrent readers never see partial files.
+     */
+    private fun writeIfAbsent(file: File, bytes: ByteArray) {
+        if (file.exists()) {
+            return
+        }
+        val dir = file.parentFile
+        dir.mkdirs()
+        val tmpFile = File.createTempFile(file.name, ".tmp", dir)
+        try {
+            tmpFile.writeBytes(bytes)
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            tmpFile.delete()
+        }
+    }
+
+    companion object {
+        private const val RENDITION_THREADS = 2
+
+        @JvmStatic
+        fun hash(image: ByteArray): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(image)
+            return digest.joinToString("") { String.format("%02x", it) }
+        }
+    }
+}
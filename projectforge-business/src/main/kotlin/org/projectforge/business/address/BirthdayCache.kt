@@ -25,15 +25,20 @@ package org.projectforge.business.address
 
 import org.projectforge.framework.cache.AbstractCache
 import org.projectforge.framework.persistence.api.QueryFilter
-import org.projectforge.framework.time.DateHelper
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.time.PFDateTime
 import org.projectforge.registry.Registry
+import java.time.LocalDate
 import java.util.*
 
+/**
+ * The birthdays of all addresses, bucketed by day of year (index 0 is January 1st, 59 is February 29th, 365 is
+ * December 31st). Range queries only touch the buckets of the range.
+ */
 class BirthdayCache() : AbstractCache() {
     private var addressDao: AddressDao
 
-    private var cacheList = mutableListOf<BirthdayAddress>()
+    private var buckets: Array<List<BirthdayAddress>> = createBuckets()
 
     init {
         val registryEntry = Registry.instance.getEntry(AddressDao::class.java)
@@ -51,34 +56,41 @@ class BirthdayCache() : AbstractCache() {
     fun getBirthdays(fromDate: Date, toDate: Date, all: Boolean, favorites: List<Int>)
             : Set<BirthdayAddress> {
         checkRefresh()
+        val buckets = this.buckets
         // Uses not Collections.sort because every comparison needs Calendar.getDayOfYear().
         val set = TreeSet<BirthdayAddress>()
         val from = PFDateTime.from(fromDate) // not null
         val to = PFDateTime.from(toDate) // not null
-        var dh: PFDateTime
-        val fromMonth = from.month
-        val fromDayOfMonth = from.dayOfMonth
-        val toMonth = to.month
-        val toDayOfMonth = to.dayOfMonth
-        for (birthdayAddress in cacheList) {
-            val address = birthdayAddress.address
-            if (!addressDao.hasLoggedInUserSelectAccess(address,false)) {
-                // User has no access to the given address.
-                continue
-            }
-            if (!all && !favorites.contains(address.id)) {
-                // Address is not a favorite address, so ignore it.
-                continue
-            }
-            dh = PFDateTime.fromOrNull(address.birthday) ?: continue
-            val month = dh.month
-            val dayOfMonth = dh.dayOfMonth
-            if (!DateHelper.dateOfYearBetween(month.value, dayOfMonth, fromMonth.value, fromDayOfMonth, toMonth.value, toDayOfMonth)) {
-                continue
+        if (from.month == to.month && from.dayOfMonth > to.dayOfMonth) {
+            // Same as DateHelper.dateOfYearBetween: no year-spanning ranges within the same month.
+            return set
+        }
+        val fromIndex = getDayOfYearIndex(from.monthValue, from.dayOfMonth)
+        val toIndex = getDayOfYearIndex(to.monthValue, to.dayOfMonth)
+        val favoriteIds = favorites.toHashSet()
+        val accessChecker = AddressbookAccessChecker()
+        val visit = { index: Int ->
+            for (birthdayAddress in buckets[index]) {
+                val address = birthdayAddress.address
+                if (!all && !favoriteIds.contains(address.id)) {
+                    // Address is not a favorite address, so ignore it.
+                    continue
+                }
+                if (!accessChecker.hasSelectAccess(address)) {
+                    // User has no access to the given address.
+                    continue
+                }
+                val ba = BirthdayAddress(birthdayAddress)
+                ba.isFavorite = favoriteIds.contains(address.id)
+                set.add(ba)
             }
-            val ba = BirthdayAddress(address)
-            ba.isFavorite = favorites.contains(address.getId())
-            set.add(ba)
+        }
+        if (fromIndex <= toIndex) {
+            (fromIndex..toIndex).forEach(visit)
+        } else {
+            // e. g. December - January
+            (fromIndex until DAYS_OF_YEAR).forEach(visit)
+            (0..toIndex).forEach(visit)
         }
         return set
     }
@@ -88,12 +100,58 @@ class BirthdayCache() : AbstractCache() {
         filter.add(QueryFilter.isNotNull("birthday"))
         filter.deleted = false
         val addressList = addressDao.internalGetList(filter)
-        val newList = mutableListOf<BirthdayAddress>()
+        val newBuckets = Array(DAYS_OF_YEAR) { mutableListOf<BirthdayAddress>() }
         addressList.forEach {
             if (!it.isDeleted) { // deleted shouldn't occur, already filtered above.
-                newList.add(BirthdayAddress(it))
+                val birthdayAddress = BirthdayAddress(it)
+                newBuckets[getDayOfYearIndex(birthdayAddress.month.value, birthdayAddress.dayOfMonth)].add(birthdayAddress)
             }
         }
-        cacheList = newList
+        buckets = createBuckets(newBuckets)
+    }
+
+    /**
+     * Checks the select access of the logged-in user to addresses. The access to every address book is only checked once
+     * (bitmaps by address book id).
+     */
+    private inner class AddressbookAccessChecker {
+        private val user = ThreadLocalUserContext.getUser()
+        private val checked = BitSet()
+        private val granted = BitSet()
+
+        fun hasSelectAccess(address: AddressDO): Boolean {
+            val addressbooks = addressDao.getAddressbooksForAccessCheck(address) ?: return true // Nothing to check.
+            for (addressbook in addressbooks) {
+                val id = addressbook.id ?: return addressDao.hasLoggedInUserSelectAccess(address, false)
+                if (!checked.get(id)) {
+                    checked.set(id)
+                    if (addressDao.hasSelectAccess(user, addressbook)) {
+                        granted.set(id)
+                    }
+                }
+                if (granted.get(id)) {
+                    return true
+                }
+            }
+            return false
+        }
+    }
+
+    companion object {
+        /**
+         * Including February 29th.
+         */
+        private const val DAYS_OF_YEAR = 366
+
+        private fun createBuckets(buckets: Array<out List<BirthdayAddress>>? = null): Array<List<BirthdayAddress>> {
+            return Array(DAYS_OF_YEAR) { buckets?.get(it) ?: emptyList() }
+        }
+
+        /**
+         * @return The index of the given day in a leap year (0-365).
+         */
+        private fun getDayOfYearIndex(month: Int, dayOfMonth: Int): Int {
+            return LocalDate.of(2000, month, dayOfMonth).dayOfYear - 1
+        }
     }
 }
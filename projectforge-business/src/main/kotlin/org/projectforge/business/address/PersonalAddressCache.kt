@@ -30,6 +30,7 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
 import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
 import javax.annotation.PostConstruct
 
 private val log = KotlinLogging.logger {}
@@ -47,7 +48,8 @@ class PersonalAddressCache : AbstractCache() {
     /**
      * Map key is the user id, the entry is a map (key = address id, entry is the PersonalAddressDO).
      */
-    private var ownersMap = mutableMapOf<Int, Map<Int, PersonalAddressDO>>()
+    @Volatile
+    private var ownersMap = ConcurrentHashMap<Int, Map<Int, PersonalAddressDO>>()
 
     @JvmOverloads
     fun getByAddressId(addressId: Int, owner: PFUserDO? = ThreadLocalUserContext.getUser()): PersonalAddressDO? {
@@ -64,10 +66,8 @@ class PersonalAddressCache : AbstractCache() {
 
     private fun getPersonalAddressList(ownerId: Int): Map<Int, PersonalAddressDO> {
         // Try to get map form cache first.
-        synchronized(ownersMap) {
-            ownersMap[ownerId]?.let {
-                return it
-            }
+        ownersMap[ownerId]?.let {
+            return it
         }
         // Read list of personal addresses from data base:
         val list = personalAddressDao.list
@@ -77,16 +77,12 @@ class PersonalAddressCache : AbstractCache() {
                 map.put(addressId, personalAddress)
             }
         }
-        synchronized(ownersMap) {
-            ownersMap[ownerId] = map
-        }
+        ownersMap[ownerId] = map
         return map
     }
 
     fun setAsExpired(userId: Int) {
-        synchronized(ownersMap) {
-            ownersMap.remove(userId)
-        }
+        ownersMap.remove(userId)
     }
 
     /**
@@ -94,8 +90,7 @@ class PersonalAddressCache : AbstractCache() {
      */
     override fun refresh() {
         log.info("Refreshing PersonalAddressCache...")
-        synchronized(ownersMap) {
-            ownersMap.clear()
-        }
+        // Don't clear the map in place, readers may use it concurrently.
+        ownersMap = ConcurrentHashMap()
     }
 }
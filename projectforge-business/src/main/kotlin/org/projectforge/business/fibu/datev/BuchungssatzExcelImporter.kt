@@ -39,13 +39,15 @@ import org.slf4j.LoggerFactory
 import java.math.RoundingMode
 import java.time.LocalDate
 
-class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzDO>, private val kontoDao: KontoDao, private val kost1Dao: Kost1Dao,
-                                private val kost2Dao: Kost2Dao) {
+class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzDO>, kontoDao: KontoDao, kost1Dao: Kost1Dao,
+                                kost2Dao: Kost2Dao) {
+    private val lookups = DatevImportLookups(kontoDao, kost1Dao, kost2Dao)
+
     private val dateValidator = ExcelColumnDateValidator(ExcelColumnDateValidator.GERMAN_FORMATS,
             minimum = LocalDate.of(1990, 1, 1),
             maximum = LocalDate.of(2100, 12, 31))
 
-    private enum class Cols(override val head: String, override vararg val aliases: String) : ExcelColumnName {
+    internal enum class Cols(override val head: String, override vararg val aliases: String) : ExcelColumnName {
         SATZNR("SatzNr.", "Satz-Nr."),
         BETRAG("Betrag"),
         SH("SH", "S/H"),
@@ -151,28 +153,28 @@ class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzD
             satz.betrag = satz.betrag?.setScale(2, RoundingMode.HALF_UP)
             satz.setSH(excelSheet.getCellString(row, Cols.SH)!!)
             var kontoInt = excelSheet.getCellInt(row, Cols.KONTO)
-            var konto = kontoDao.getKonto(kontoInt)
+            var konto = lookups.getKonto(kontoInt)
             if (konto != null) {
                 satz.konto = konto
             } else {
                 element.putErrorProperty("konto", kontoInt!!)
             }
             kontoInt = excelSheet.getCellInt(row, Cols.GEGENKONTO)
-            konto = kontoDao.getKonto(kontoInt)
+            konto = lookups.getKonto(kontoInt)
             if (konto != null) {
                 satz.gegenKonto = konto
             } else {
                 element.putErrorProperty("gegenkonto", kontoInt)
             }
             var kostString = excelSheet.getCellString(row, Cols.KOST1)
-            val kost1 = kost1Dao.getKost1(kostString)
+            val kost1 = lookups.getKost1(kostString)
             if (kost1 != null) {
                 satz.kost1 = kost1
             } else {
                 element.putErrorProperty("kost1", kostString)
             }
             kostString = excelSheet.getCellString(row, Cols.KOST2)
-            val kost2 = kost2Dao.getKost2(kostString)
+            val kost2 = lookups.getKost2(kostString)
             if (kost2 != null) {
                 satz.kost2 = kost2
             } else {
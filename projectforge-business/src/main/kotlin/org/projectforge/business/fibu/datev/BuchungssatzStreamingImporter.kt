@@ -0,0 +1,396 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.datev
+
+import org.apache.poi.ooxml.util.SAXHelper
+import org.apache.poi.openxml4j.opc.OPCPackage
+import org.apache.poi.ss.usermodel.DataFormatter
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.ss.util.CellReference
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable
+import org.apache.poi.xssf.eventusermodel.XSSFReader
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler
+import org.apache.poi.xssf.usermodel.XSSFComment
+import org.projectforge.business.fibu.KostFormatter
+import org.projectforge.business.fibu.datev.BuchungssatzExcelImporter.Cols
+import org.projectforge.business.fibu.kost.BuchungssatzDO
+import org.projectforge.business.fibu.kost.BuchungssatzDao
+import org.slf4j.LoggerFactory
+import org.xml.sax.InputSource
+import java.io.InputStream
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
+import java.util.function.Consumer
+
+/**
+ * Streaming import of DATEV accounting records (Buchungssätze) from xlsx files for huge files (e. g. a whole year):
+ * The sheets are parsed by POI's event API (SAX), so neither the workbook nor a whole sheet is held in memory. The rows
+ * are read as typed [Record]s, validated, reconciled and written in batches of [batchSize] through
+ * [BuchungssatzDao.internalSaveOrUpdate]. In dry-run mode nothing is written, only the statistics are built.
+ *
+ * Same rules as [BuchungssatzExcelImporter]: only sheets named by the month (01-12) are imported, satznr must be
+ * unique per sheet and all records of a file must be of the same year. Invalid rows are skipped and reported.
+ */
+class BuchungssatzStreamingImporter(private val buchungssatzDao: BuchungssatzDao,
+                                    private val lookups: DatevImportLookups,
+                                    private val dryRun: Boolean,
+                                    private val progressListener: Consumer<Result>? = null,
+                                    private val batchSize: Int = DEFAULT_BATCH_SIZE) {
+    /**
+     * Typed values of one row, the accounts and cost units aren't resolved yet.
+     */
+    class Record(val rowNum: Int,
+                 val satznr: Int?,
+                 val betrag: BigDecimal?,
+                 val sh: String?,
+                 val konto: Int?,
+                 val gegenKonto: Int?,
+                 val kost1: String?,
+                 val kost2: String?,
+                 val menge: String?,
+                 val beleg: String?,
+                 val datum: LocalDate?,
+                 val text: String?,
+                 val comment: String?)
+
+    class Result(val dryRun: Boolean) {
+        var numberOfSheets = 0
+            internal set
+        var numberOfRows = 0
+            internal set
+        var numberOfInsertedRecords = 0
+            internal set
+        var numberOfUpdatedRecords = 0
+            internal set
+        var numberOfErrorRows = 0
+            internal set
+        /**
+         * The first [MAX_ERROR_MESSAGES] error messages.
+         */
+        val errorMessages = mutableListOf<String>()
+
+        internal fun addError(sheetName: String, rowNum: Int, msg: String) {
+            if (errorMessages.size < MAX_ERROR_MESSAGES) {
+                errorMessages.add("Sheet '$sheetName', row ${rowNum + 1}: $msg")
+            }
+        }
+
+        override fun toString(): String {
+            return "dryRun=$dryRun, sheets=$numberOfSheets, rows=$numberOfRows, inserted=$numberOfInsertedRecords, updated=$numberOfUpdatedRecords, errors=$numberOfErrorRows"
+        }
+    }
+
+    private val result = Result(dryRun)
+
+    /**
+     * The year of the first record, all records of the file must be of the same year.
+     */
+    private var year = 0
+
+    /**
+     * @param inputStream xlsx file (closed by this method).
+     */
+    fun doImport(inputStream: InputStream): Result {
+        val begin = System.currentTimeMillis()
+        val pkg = OPCPackage.open(inputStream)
+        try {
+            val reader = XSSFReader(pkg)
+            val strings = ReadOnlySharedStringsTable(pkg)
+            val styles = reader.stylesTable
+            val sheets = reader.sheetsData as XSSFReader.SheetIterator
+            while (sheets.hasNext()) {
+                sheets.next().use { sheetStream ->
+                    val sheetName = sheets.sheetName
+                    val month = sheetName.trim().toIntOrNull()
+                    if (month == null || month < 1 || month > 12) {
+                        log.info("Ignoring sheet '$sheetName' for importing Buchungssätze.")
+                    } else {
+                        log.info("Reading sheet '$sheetName'.")
+                        val processor = SheetProcessor(sheetName, month)
+                        val xmlReader = SAXHelper.newXMLReader()
+                        xmlReader.contentHandler = XSSFSheetXMLHandler(styles, null, strings, processor, RawValueFormatter(), false)
+                        xmlReader.parse(InputSource(sheetStream))
+                        processor.flush()
+                        if (processor.headRowFound) {
+                            ++result.numberOfSheets
+                        } else {
+                            log.info("Ignoring sheet '$sheetName' for importing Buchungssätze, no valid head row found.")
+                        }
+                    }
+                }
+            }
+        } finally {
+            // Read only: close without saving.
+            pkg.revert()
+            inputStream.close()
+        }
+        log.info("Streaming import of Buchungssätze finished in ${System.currentTimeMillis() - begin}ms: $result")
+        return result
+    }
+
+    private inner class SheetProcessor(val sheetName: String, val month: Int) : XSSFSheetXMLHandler.SheetContentsHandler {
+        /**
+         * Column index of the registered columns, null until the head row is found.
+         */
+        private var columns: Map<Int, Cols>? = null
+        private val cells = mutableMapOf<Int, String>()
+        private val satznrSet = mutableSetOf<Int>()
+        private val batch = mutableListOf<Record>()
+        /**
+         * satznr -> id of the already existing records of the month.
+         */
+        private var existingIds: Map<Int, Int>? = null
+
+        val headRowFound: Boolean
+            get() = columns != null
+
+        override fun startRow(rowNum: Int) {
+            cells.clear()
+        }
+
+        override fun cell(cellReference: String?, formattedValue: String?, comment: XSSFComment?) {
+            if (cellReference == null || formattedValue.isNullOrBlank()) {
+                return
+            }
+            cells[CellReference(cellReference).col.toInt()] = formattedValue.trim()
+        }
+
+        override fun endRow(rowNum: Int) {
+            val cols = columns
+            if (cols == null) {
+                columns = detectHeadRow(cells)
+                return
+            }
+            val values = mutableMapOf<Cols, String>()
+            cells.forEach { (col, value) -> cols[col]?.let { values.putIfAbsent(it, value) } }
+            if (EMPTY_CHECK_COLUMNS.none { values.containsKey(it) }) {
+                return
+            }
+            ++result.numberOfRows
+            batch.add(toRecord(rowNum, values))
+            if (batch.size >= batchSize) {
+                flush()
+            }
+        }
+
+        override fun headerFooter(text: String?, isHeader: Boolean, tagName: String?) {
+        }
+
+        fun flush() {
+            if (batch.isEmpty()) {
+                return
+            }
+            val list = mutableListOf<BuchungssatzDO>()
+            for (record in batch) {
+                val satz = convert(record) ?: continue
+                val id = getExistingIds(satz.year!!)[satz.satznr]
+                if (id != null) {
+                    satz.id = id
+                    ++result.numberOfUpdatedRecords
+                } else {
+                    ++result.numberOfInsertedRecords
+                }
+                list.add(satz)
+            }
+            batch.clear()
+            if (!dryRun && list.isNotEmpty()) {
+                buchungssatzDao.internalSaveOrUpdate(list, INSERT_BLOCK_SIZE)
+            }
+            progressListener?.accept(result)
+        }
+
+        private fun getExistingIds(year: Int): Map<Int, Int> {
+            var map = existingIds
+            if (map == null) {
+                map = buchungssatzDao.getBuchungssaetze(year, month).mapValues { it.value.id }
+                existingIds = map
+            }
+            return map
+        }
+
+        /**
+         * Resolves accounts and cost units and validates the record.
+         * @return The accounting record or null, if the record isn't valid.
+         */
+        private fun convert(record: Record): BuchungssatzDO? {
+            val errors = mutableListOf<String>()
+            val satznr = record.satznr
+            if (satznr == null) {
+                errors.add("SatzNr. fehlt.")
+            } else if (!satznrSet.add(satznr)) {
+                errors.add("SatzNr. $satznr ist nicht eindeutig.")
+            }
+            if (record.betrag == null) {
+                errors.add("Betrag fehlt.")
+            }
+            if (record.sh != "S" && record.sh != "H") {
+                errors.add("Haben / Soll-Wert ist undefiniert: '${record.sh}'.")
+            }
+            val day = record.datum
+            if (day == null) {
+                errors.add("Datum fehlt.")
+            } else {
+                if (year == 0) {
+                    year = day.year
+                }
+                if (year != day.year) {
+                    errors.add("Not supported: Buchungssätze liegen in verschiedenen Jahren.")
+                } else if (day.monthValue > month) {
+                    errors.add("Buchungssätze können nicht in die Zukunft für den aktuellen Monat '${KostFormatter.formatBuchungsmonat(year, day.monthValue)}' gebucht werden!")
+                }
+            }
+            val konto = lookups.getKonto(record.konto)
+            if (konto == null) {
+                errors.add("Konto '${record.konto}' nicht gefunden.")
+            }
+            val gegenKonto = lookups.getKonto(record.gegenKonto)
+            if (gegenKonto == null) {
+                errors.add("Gegenkonto '${record.gegenKonto}' nicht gefunden.")
+            }
+            val kost1 = lookups.getKost1(record.kost1)
+            if (kost1 == null) {
+                errors.add("Kost1 '${record.kost1}' nicht gefunden.")
+            }
+            val kost2 = lookups.getKost2(record.kost2)
+            if (kost2 == null) {
+                errors.add("Kost2 '${record.kost2}' nicht gefunden.")
+            }
+            if (errors.isNotEmpty()) {
+                ++result.numberOfErrorRows
+                errors.forEach { result.addError(sheetName, record.rowNum, it) }
+                return null
+            }
+            val satz = BuchungssatzDO()
+            satz.year = year
+            satz.month = month
+            satz.satznr = satznr
+            satz.betrag = record.betrag
+            satz.setSH(record.sh!!)
+            satz.konto = konto
+            satz.gegenKonto = gegenKonto
+            satz.kost1 = kost1
+            satz.kost2 = kost2
+            satz.menge = record.menge
+            satz.beleg = record.beleg
+            satz.datum = day
+            satz.text = record.text
+            satz.comment = record.comment
+            satz.calculate(true)
+            return satz
+        }
+    }
+
+    /**
+     * @return The registered columns by column index, if the given row contains all required columns, otherwise null.
+     */
+    private fun detectHeadRow(cells: Map<Int, String>): Map<Int, Cols>? {
+        val columns = mutableMapOf<Int, Cols>()
+        cells.toSortedMap().forEach { (col, value) ->
+            val column = Cols.values().find { c ->
+                c.head.equals(value, ignoreCase = true) || c.aliases.any { it.equals(value, ignoreCase = true) }
+            }
+            // Use only the first occurrence (DATEV files may contain a second SH column).
+            if (column != null && !columns.containsValue(column)) {
+                columns[col] = column
+            }
+        }
+        return if (columns.values.containsAll(REQUIRED_COLUMNS)) columns else null
+    }
+
+    private fun toRecord(rowNum: Int, values: Map<Cols, String>): Record {
+        return Record(rowNum = rowNum,
+                satznr = parseDecimal(values[Cols.SATZNR])?.toInt(),
+                betrag = parseDecimal(values[Cols.BETRAG]),
+                sh = values[Cols.SH],
+                konto = parseDecimal(values[Cols.KONTO])?.toInt(),
+                gegenKonto = parseDecimal(values[Cols.GEGENKONTO])?.toInt(),
+                kost1 = values[Cols.KOST1],
+                kost2 = values[Cols.KOST2],
+                menge = values[Cols.MENGE],
+                beleg = values[Cols.BELEG],
+                datum = parseDate(values[Cols.DATUM]),
+                text = values[Cols.TEXT],
+                comment = values[Cols.KOMMENTAR])
+    }
+
+    private fun parseDecimal(value: String?): BigDecimal? {
+        value ?: return null
+        return try {
+            BigDecimal(value)
+        } catch (ex: NumberFormatException) {
+            // Text cells in German format, e. g. 1.234,56:
+            value.replace(".", "").replace(',', '.').toBigDecimalOrNull()
+        }
+    }
+
+    private fun parseDate(value: String?): LocalDate? {
+        value ?: return null
+        for (formatter in DATE_FORMATTERS) {
+            try {
+                return LocalDate.parse(value, formatter)
+            } catch (ex: DateTimeParseException) {
+                // Try next format.
+            }
+        }
+        return null
+    }
+
+    /**
+     * Returns numeric cell values unformatted (as parsable numbers) and date cells as ISO dates instead of the
+     * locale dependent formatted values.
+     */
+    private class RawValueFormatter : DataFormatter() {
+        override fun formatRawCellContents(value: Double, formatIndex: Int, formatString: String?, use1904Windowing: Boolean): String {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getJavaDate(value, use1904Windowing).toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString()
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString()
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(BuchungssatzStreamingImporter::class.java)
+
+        const val DEFAULT_BATCH_SIZE = 500
+
+        /**
+         * Block size of the transactions for writing the records of one batch.
+         */
+        private const val INSERT_BLOCK_SIZE = 50
+
+        private const val MAX_ERROR_MESSAGES = 1000
+
+        private val REQUIRED_COLUMNS = listOf(Cols.DATUM, Cols.SATZNR, Cols.BETRAG, Cols.SH, Cols.KONTO, Cols.GEGENKONTO, Cols.KOST1, Cols.KOST2)
+
+        private val EMPTY_CHECK_COLUMNS = listOf(Cols.DATUM, Cols.SATZNR, Cols.BETRAG, Cols.KONTO, Cols.GEGENKONTO, Cols.KOST1, Cols.KOST2)
+
+        private val DATE_FORMATTERS = listOf(DateTimeFormatter.ISO_LOCAL_DATE,
+                DateTimeFormatter.ofPattern("dd.MM.yyyy"),
+                DateTimeFormatter.ofPattern("d.M.yyyy"),
+                DateTimeFormatter.ofPattern("dd.MM.yy"))
+    }
+}
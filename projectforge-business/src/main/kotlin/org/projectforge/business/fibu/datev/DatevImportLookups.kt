@@ -0,0 +1,59 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.datev
+
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.business.fibu.kost.Kost1DO
+import org.projectforge.business.fibu.kost.Kost1Dao
+import org.projectforge.business.fibu.kost.Kost2DO
+import org.projectforge.business.fibu.kost.Kost2Dao
+
+/**
+ * Memoizes the lookups of accounts and cost units during one import: DATEV files reference only some hundred different
+ * accounts and cost units, but every row references four of them. Without memoization every row needs four queries.
+ * Misses are memoized as well. Not thread safe, use one instance per import.
+ */
+class DatevImportLookups(private val kontoDao: KontoDao,
+                         private val kost1Dao: Kost1Dao,
+                         private val kost2Dao: Kost2Dao) {
+    private val kontoMap = mutableMapOf<Int, KontoDO?>()
+    private val kost1Map = mutableMapOf<String, Kost1DO?>()
+    private val kost2Map = mutableMapOf<String, Kost2DO?>()
+
+    fun getKonto(nummer: Int?): KontoDO? {
+        nummer ?: return null
+        return kontoMap.getOrPut(nummer) { kontoDao.getKonto(nummer) }
+    }
+
+    fun getKost1(kostString: String?): Kost1DO? {
+        kostString ?: return null
+        return kost1Map.getOrPut(kostString) { kost1Dao.getKost1(kostString) }
+    }
+
+    fun getKost2(kostString: String?): Kost2DO? {
+        kostString ?: return null
+        return kost2Map.getOrPut(kostString) { kost2Dao.getKost2(kostString) }
+    }
+}
@@ -47,7 +47,9 @@ import javax.persistence.*
 @WithHistory
 @NamedQueries(
         NamedQuery(name = BuchungssatzDO.FIND_BY_YEAR_MONTH_SATZNR,
-                query = "from BuchungssatzDO where year=:year and month=:month and satznr=:satznr"))
+                query = "from BuchungssatzDO where year=:year and month=:month and satznr=:satznr"),
+        NamedQuery(name = BuchungssatzDO.FIND_BY_YEAR_MONTH,
+                query = "from BuchungssatzDO where year=:year and month=:month"))
 open class BuchungssatzDO : DefaultBaseDO(), Comparable<BuchungssatzDO> {
     /**
      * Jahr zu der die Buchung gehört.
@@ -232,5 +234,6 @@ open class BuchungssatzDO : DefaultBaseDO(), Comparable<BuchungssatzDO> {
         private val log = LoggerFactory.getLogger(BuchungssatzDO::class.java)
 
         internal const val FIND_BY_YEAR_MONTH_SATZNR = "BuchungssatzDO_FindByYearMonthSatznr"
+        internal const val FIND_BY_YEAR_MONTH = "BuchungssatzDO_FindByYearMonth"
     }
 }
@@ -81,6 +81,20 @@ open class BuchungssatzDao : BaseDao<BuchungssatzDO>(BuchungssatzDO::class.java)
                         .setParameter("satznr", satznr))
     }
 
+    /**
+     * All accounting records of the given month with one query (e. g. for reconciling imports instead of querying
+     * every single record).
+     * @return The accounting records of the given month mapped by satznr.
+     */
+    open fun getBuchungssaetze(year: Int, month: Int): Map<Int, BuchungssatzDO> {
+        return em.createNamedQuery(BuchungssatzDO.FIND_BY_YEAR_MONTH, BuchungssatzDO::class.java)
+                .setParameter("year", year)
+                .setParameter("month", month)
+                .resultList
+                .filter { it.satznr != null }
+                .associateBy { it.satznr!! }
+    }
+
     private fun validateTimeperiod(myFilter: BuchungssatzFilter): Boolean {
         val fromMonth = myFilter.fromMonth
         val fromYear = myFilter.fromYear
@@ -23,8 +23,10 @@
 
 package org.projectforge.business.scripting
 
+import org.jetbrains.kotlin.cli.common.repl.KotlinJsr223JvmScriptEngineBase
 import org.slf4j.LoggerFactory
-import javax.script.ScriptEngineManager
+import java.util.concurrent.LinkedBlockingQueue
+import javax.script.*
 
 object KotlinScriptExecutor {
 
@@ -51,6 +53,19 @@ object KotlinScriptExecutor {
             "import org.projectforge.business.scripting.ScriptingDao",
             "import org.projectforge.common.*")
 
+    private val autoImportsString = autoImports.joinToString("\n")
+
+    /**
+     * Number of idle Kotlin script engines kept (the compiler of a new engine needs several seconds for warm-up).
+     */
+    private const val ENGINE_POOL_SIZE = 2
+
+    private const val MAX_CACHED_SCRIPTS = 50
+
+    private val enginePool = LinkedBlockingQueue<ScriptEngine>(ENGINE_POOL_SIZE)
+
+    private val compiledScripts = ScriptCache<CompiledScript>(MAX_CACHED_SCRIPTS)
+
     /**
      * @param script Common imports will be prepended.
      * @param variables Variables to bind. Variables are usable via binding["key"] or directly, if #autobind# is part of script.
@@ -59,7 +74,58 @@ object KotlinScriptExecutor {
     @JvmStatic
     @JvmOverloads
     fun execute(script: String, variables: Map<String, Any>, file: ByteArray? = null, filename: String? = null): ScriptExecutionResult {
-        val engine = MyKotlinScriptEngineFactory().scriptEngine
+        val effectiveScript = getEffectiveScript(script)
+        try {
+            val result = ScriptExecutionResult()
+            result.script = effectiveScript
+            // Every execution gets its own bindings and therefore its own (empty) script state:
+            val compiledScript = getCompiledScript(effectiveScript)
+            result.result = if (compiledScript != null) {
+                compiledScript.eval(createBindings(compiledScript.engine, variables, file, filename))
+            } else {
+                withEngine { it.eval(effectiveScript, createBindings(it, variables, file, filename)) }
+            }
+            return result
+        } catch (ex: Exception) {
+            log.info("Exception on Kotlin script execution: ${ex.message}", ex)
+            return ScriptExecutionResult(ex)
+        }
+    }
+
+    /**
+     * Removes the compiled script from the cache (e. g. if the script was modified).
+     */
+    @JvmStatic
+    fun removeFromCache(script: String?) {
+        script ?: return
+        compiledScripts.remove(getEffectiveScript(script))
+    }
+
+    /**
+     * Creates the pooled script engines and compiles the auto imports in the background, so the first script execution
+     * doesn't have to wait for the warm-up of the Kotlin compiler.
+     */
+    @JvmStatic
+    fun prewarm() {
+        val thread = Thread({
+            try {
+                while (enginePool.size < ENGINE_POOL_SIZE) {
+                    val engine = MyKotlinScriptEngineFactory().scriptEngine
+                    compile(engine, "$autoImportsString\n0")
+                    if (!enginePool.offer(engine)) {
+                        break // Pool was filled meanwhile.
+                    }
+                }
+                log.info("Kotlin script engines pre-warmed.")
+            } catch (ex: Exception) {
+                log.warn("Error while pre-warming Kotlin script engines: ${ex.message}", ex)
+            }
+        }, "KotlinScriptEnginePrewarmer")
+        thread.isDaemon = true
+        thread.start()
+    }
+
+    private fun createBindings(engine: ScriptEngine, variables: Map<String, Any>, file: ByteArray?, filename: String?): Bindings {
         val bindings = engine.createBindings()
         variables.forEach {
             bindings[it.key] = it.value
@@ -68,18 +134,47 @@ object KotlinScriptExecutor {
             bindings["file"] = file
             bindings["filename"] = filename
         }
+        return bindings
+    }
+
+    private fun getEffectiveScript(script: String): String {
         val sb = StringBuilder()
-        sb.appendln(autoImports.joinToString("\n"))
+        sb.appendln(autoImportsString)
         sb.append(script)
-        val effectiveScript = sb.toString()
+        return sb.toString()
+    }
+
+    /**
+     * @return The compiled script (cached) or null, if the engine doesn't support compiling.
+     */
+    private fun getCompiledScript(effectiveScript: String): CompiledScript? {
+        val cacheKey = ScriptCache.hash(effectiveScript)
+        compiledScripts.get(cacheKey)?.let { return it }
+        val compiledScript = withEngine { compile(it, effectiveScript) } ?: return null
+        compiledScripts.put(cacheKey, compiledScript)
+        return compiledScript
+    }
+
+    /**
+     * The script is compiled in a new context with an empty script state (REPL history), so the compiled script is
+     * evaluable within any new context (e. g. with the bindings of an execution).
+     */
+    private fun compile(engine: ScriptEngine, script: String): CompiledScript? {
+        val kotlinEngine = engine as? KotlinJsr223JvmScriptEngineBase ?: return null
+        val context = SimpleScriptContext()
+        context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE)
+        return kotlinEngine.compile(script, context)
+    }
+
+    /**
+     * Uses a pooled engine (or a new one, if none is idle) exclusively.
+     */
+    private fun <T> withEngine(block: (ScriptEngine) -> T): T {
+        val engine = enginePool.poll() ?: MyKotlinScriptEngineFactory().scriptEngine
         try {
-            val result = ScriptExecutionResult()
-            result.script = effectiveScript
-            result.result = engine.eval(effectiveScript, bindings)
-            return result
-        } catch (ex: Exception) {
-            log.info("Exception on Kotlin script execution: ${ex.message}", ex)
-            return ScriptExecutionResult(ex)
+            return block(engine)
+        } finally {
+            enginePool.offer(engine) // Engine is discarded, if the pool is full.
         }
     }
 
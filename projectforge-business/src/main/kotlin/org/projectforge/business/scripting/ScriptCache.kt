@@ -0,0 +1,77 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.scripting
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+/**
+ * LRU cache for compiled scripts. The key is the SHA-256 hash of the script source (including any prepended
+ * auto-imports), so modified scripts are never served from the cache.
+ */
+class ScriptCache<T>(private val maxSize: Int) {
+    private val map = object : LinkedHashMap<String, T>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, T>?): Boolean {
+            return size > maxSize
+        }
+    }
+
+    /**
+     * @param key The hash of the script source, see [hash].
+     */
+    @Synchronized
+    fun get(key: String): T? {
+        return map[key]
+    }
+
+    @Synchronized
+    fun put(key: String, value: T) {
+        map[key] = value
+    }
+
+    /**
+     * Removes the compiled script of the given source (e. g. after modification of a script).
+     */
+    @Synchronized
+    fun remove(source: String) {
+        map.remove(hash(source))
+    }
+
+    @Synchronized
+    fun clear() {
+        map.clear()
+    }
+
+    val size: Int
+        @Synchronized
+        get() = map.size
+
+    companion object {
+        @JvmStatic
+        fun hash(source: String): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(source.toByteArray(StandardCharsets.UTF_8))
+            return digest.joinToString("") { String.format("%02x", it) }
+        }
+    }
+}
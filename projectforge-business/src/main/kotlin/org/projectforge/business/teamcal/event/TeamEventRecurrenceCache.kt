@@ -0,0 +1,198 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.teamcal.event
+
+import mu.KotlinLogging
+import net.fortuna.ical4j.model.DateTime
+import net.fortuna.ical4j.model.Recur
+import net.fortuna.ical4j.model.parameter.Value
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.calendar.ICal4JUtils
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.time.DateHelper
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.time.Instant
+import java.time.YearMonth
+import java.time.ZoneOffset
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Caches the parsed recurrence rules, ex-dates and the expanded occurrences (per month) of recurring team events.
+ * Entries are invalidated on every modification of the event.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+@Service
+open class TeamEventRecurrenceCache : AbstractCache(), BaseDOChangedListener<TeamEventDO> {
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    private val expansionMap = ConcurrentHashMap<Key, RecurrenceExpansion>()
+
+    /**
+     * The key contains all fields of the event relevant for the expansion, so modified but unsaved events (e. g. in
+     * edit forms) are handled correctly.
+     */
+    private data class Key(val eventId: Int,
+                           val lastUpdate: Long?,
+                           val startDate: Long,
+                           val allDay: Boolean,
+                           val recurrenceRule: String,
+                           val recurrenceExDate: String?,
+                           val timeZone: String)
+
+    /**
+     * @return The start dates (epoch millis) of all occurrences of the given event between startDate and endDate
+     * (both inclusive) without ex-dates, or null if the event has no valid recurrence.
+     */
+    fun getOccurrences(event: TeamEventDO, startDate: Date, endDate: Date, timeZone: TimeZone): LongArray? {
+        checkRefresh()
+        val eventStartDate = event.startDate ?: return null
+        val recurrenceRule = event.recurrenceRule ?: return null
+        val eventId = event.id
+        val expansion = if (eventId != null) {
+            val key = Key(eventId, event.lastUpdate?.time, eventStartDate.time, event.allDay, recurrenceRule,
+                    event.recurrenceExDate, timeZone.id)
+            if (expansionMap.size >= MAX_ENTRIES) {
+                log.info { "Maximum size of recurrence cache reached ($MAX_ENTRIES entries), clearing it." }
+                expansionMap.clear()
+            }
+            expansionMap.computeIfAbsent(key) { createExpansion(event, eventStartDate, timeZone) } ?: return null
+        } else {
+            // Not yet saved event.
+            createExpansion(event, eventStartDate, timeZone) ?: return null
+        }
+        return expansion.getOccurrences(startDate.time, endDate.time)
+    }
+
+    private fun createExpansion(event: TeamEventDO, eventStartDate: Date, timeZone: TimeZone): RecurrenceExpansion? {
+        val recur = event.recurrenceObject ?: return null
+        val exDates = ICal4JUtils.parseCSVDatesAsJavaUtilDates(event.recurrenceExDate, DateHelper.UTC)
+        return RecurrenceExpansion(recur, eventStartDate.time, event.allDay, exDates?.map { it.time } ?: emptyList(), timeZone)
+    }
+
+    @PostConstruct
+    private fun postConstruct() {
+        teamEventDao.register(this)
+    }
+
+    override fun afterSaveOrModifify(changedObject: TeamEventDO, operationType: OperationType) {
+        val id = changedObject.id ?: return
+        expansionMap.keys.removeIf { it.eventId == id }
+    }
+
+    /**
+     * Clears the cache periodically, so entries of unused events will be removed.
+     */
+    override fun refresh() {
+        log.info("Refreshing TeamEventRecurrenceCache ...")
+        expansionMap.clear()
+    }
+
+    /**
+     * The occurrences of one event are expanded by month (UTC) on demand.
+     */
+    private class RecurrenceExpansion(val recur: Recur,
+                                      val eventStartDate: Long,
+                                      val allDay: Boolean,
+                                      exDates: List<Long>,
+                                      val timeZone: TimeZone) {
+        /**
+         * Ex-dates as epoch millis (sorted).
+         */
+        private val exDateMillis = exDates.toLongArray().also { it.sort() }
+        /**
+         * Ex-dates as epoch days (UTC, sorted) for all day events.
+         */
+        private val exDateDays = exDates.map { Math.floorDiv(it, ONE_DAY) }.toLongArray().also { it.sort() }
+        private val ical4jTimeZone = try {
+            ICal4JUtils.getTimeZone(timeZone)
+        } catch (ex: Exception) {
+            log.error("Error getting timezone from ical4j.")
+            ICal4JUtils.getUserTimeZone()
+        }
+        private val monthBuckets = ConcurrentHashMap<YearMonth, LongArray>()
+
+        fun getOccurrences(startDate: Long, endDate: Long): LongArray {
+            val result = mutableListOf<Long>()
+            var month = getYearMonth(startDate)
+            val lastMonth = getYearMonth(endDate)
+            while (month <= lastMonth) {
+                monthBuckets.computeIfAbsent(month) { expand(it) }.forEach {
+                    if (it in startDate..endDate) {
+                        result.add(it)
+                    }
+                }
+                month = month.plusMonths(1)
+            }
+            return result.toLongArray()
+        }
+
+        private fun expand(month: YearMonth): LongArray {
+            val monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli()
+            val monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli()
+            val periodStart = DateTime(monthStart)
+            periodStart.timeZone = ical4jTimeZone
+            val periodEnd = DateTime(monthEnd)
+            periodEnd.timeZone = ical4jTimeZone
+            val seedDate = DateTime(eventStartDate)
+            seedDate.timeZone = ical4jTimeZone
+            val dateList = recur.getDates(seedDate, periodStart, periodEnd, Value.DATE_TIME) ?: return LongArray(0)
+            val result = mutableListOf<Long>()
+            for (obj in dateList) {
+                val time = (obj as DateTime).time
+                if (time >= monthEnd || isExDate(time)) {
+                    continue
+                }
+                result.add(time)
+            }
+            return result.toLongArray()
+        }
+
+        private fun isExDate(time: Long): Boolean {
+            if (!allDay) {
+                return Arrays.binarySearch(exDateMillis, time) >= 0
+            }
+            // All day events: compare the day in the user's time zone with the UTC day of the ex-dates.
+            val day = Math.floorDiv(time + timeZone.getOffset(time), ONE_DAY)
+            return Arrays.binarySearch(exDateDays, day) >= 0
+        }
+
+        private fun getYearMonth(millis: Long): YearMonth {
+            return YearMonth.from(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC))
+        }
+    }
+
+    companion object {
+        private const val MAX_ENTRIES = 10000
+        private const val ONE_DAY = 24L * 60 * 60 * 1000
+    }
+}
@@ -0,0 +1,257 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.timesheet
+
+import mu.KotlinLogging
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.framework.time.PFDateTime
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import org.springframework.transaction.support.TransactionSynchronizationAdapter
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * In-memory index of the time periods of the non-deleted time sheets per user (rolling window of the last
+ * [WINDOW_MONTHS] months) for the time overlap detection of [TimesheetDao.hasTimeOverlap]. The time sheets of a user
+ * are loaded on first access, the index is kept up-to-date by listening to changes of time sheets.
+ *
+ * Requests concerning periods before the window return null, so the callers have to ask the data base instead.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+@Service
+open class TimesheetIntervalCache : AbstractCache(TICKS_PER_DAY), BaseDOChangedListener<TimesheetDO> {
+    @Autowired
+    private lateinit var timesheetDao: TimesheetDao
+
+    @Autowired
+    private lateinit var emgrFactory: PfEmgrFactory
+
+    /**
+     * Start of the rolling window (epoch millis), time sheets stopping before aren't indexed.
+     */
+    @Volatile
+    private var windowStart = calculateWindowStart()
+
+    private val userMap = ConcurrentHashMap<Int, UserIntervals>()
+
+    /**
+     * For detecting the old user of time sheets moved to other users.
+     */
+    private val timesheetUserMap = ConcurrentHashMap<Int, Int>()
+
+    class TimesheetInterval(val id: Int, val startTime: Long, val stopTime: Long)
+
+    /**
+     * Immutable, sorted by start time.
+     */
+    private class UserIntervals(val starts: LongArray, val stops: LongArray, val ids: IntArray) {
+        /**
+         * Max duration of all time sheets, so only time sheets starting within [from - maxDuration, until) have to be checked.
+         */
+        val maxDuration = starts.indices.map { stops[it] - starts[it] }.max() ?: 0L
+
+        val size: Int
+            get() = starts.size
+
+        /**
+         * @return Index of first element with start time >= time.
+         */
+        fun lowerBound(time: Long): Int {
+            var low = 0
+            var high = starts.size
+            while (low < high) {
+                val mid = (low + high).ushr(1)
+                if (starts[mid] < time) low = mid + 1 else high = mid
+            }
+            return low
+        }
+
+        /**
+         * @return Intervals overlapping [from, until), sorted by start time.
+         */
+        fun getOverlapping(from: Long, until: Long): List<TimesheetInterval> {
+            val result = mutableListOf<TimesheetInterval>()
+            for (i in lowerBound(from - maxDuration) until lowerBound(until)) {
+                if (stops[i] > from) {
+                    result.add(TimesheetInterval(ids[i], starts[i], stops[i]))
+                }
+            }
+            return result
+        }
+
+        fun remove(id: Int): UserIntervals {
+            val index = ids.indexOf(id)
+            if (index < 0) {
+                return this
+            }
+            return UserIntervals(removeAt(starts, index), removeAt(stops, index), removeAt(ids, index))
+        }
+
+        fun add(id: Int, start: Long, stop: Long): UserIntervals {
+            val index = lowerBound(start)
+            return UserIntervals(insertAt(starts, index, start), insertAt(stops, index, stop), insertAt(ids, index, id))
+        }
+
+        companion object {
+            fun removeAt(array: LongArray, index: Int): LongArray {
+                return LongArray(array.size - 1) { if (it < index) array[it] else array[it + 1] }
+            }
+
+            fun removeAt(array: IntArray, index: Int): IntArray {
+                return IntArray(array.size - 1) { if (it < index) array[it] else array[it + 1] }
+            }
+
+            fun insertAt(array: LongArray, index: Int, value: Long): LongArray {
+                return LongArray(array.size + 1) { if (it < index) array[it] else if (it == index) value else array[it - 1] }
+            }
+
+            fun insertAt(array: IntArray, index: Int, value: Int): IntArray {
+                return IntArray(array.size + 1) { if (it < index) array[it] else if (it == index) value else array[it - 1] }
+            }
+        }
+    }
+
+    /**
+     * @return The first time sheet of the given user overlapping the given period, ignoring the time sheet with the
+     * given id. Null, if no overlap exists.
+     * @throws IllegalStateException if the period isn't covered by the index (check [isIndexed] first).
+     */
+    open fun getOverlap(userId: Int, startTime: Date, stopTime: Date, excludeId: Int?): TimesheetInterval? {
+        check(isIndexed(startTime)) { "Period before indexed window." }
+        return getUserIntervals(userId).getOverlapping(startTime.time, stopTime.time).firstOrNull { it.id != excludeId }
+    }
+
+    open fun isIndexed(from: Date): Boolean {
+        checkRefresh()
+        return from.time >= windowStart
+    }
+
+    private fun getUserIntervals(userId: Int): UserIntervals {
+        userMap[userId]?.let { return it }
+        synchronized(this) {
+            userMap[userId]?.let { return it }
+            val intervals = load(userId)
+            userMap[userId] = intervals
+            return intervals
+        }
+    }
+
+    private fun load(userId: Int): UserIntervals {
+        val begin = System.currentTimeMillis()
+        @Suppress("UNCHECKED_CAST")
+        val list = emgrFactory.runRoTrans { emgr ->
+            emgr.entityManager.createQuery("select t.id, t.startTime, t.stopTime from TimesheetDO t where t.user.id = :userId and t.deleted = false and t.stopTime > :windowStart order by t.startTime")
+                    .setParameter("userId", userId)
+                    .setParameter("windowStart", Date(windowStart))
+                    .resultList as List<Array<*>>
+        }
+        val starts = LongArray(list.size)
+        val stops = LongArray(list.size)
+        val ids = IntArray(list.size)
+        list.forEachIndexed { index, row ->
+            ids[index] = row[0] as Int
+            starts[index] = (row[1] as Date).time
+            stops[index] = (row[2] as Date).time
+            timesheetUserMap[ids[index]] = userId
+        }
+        log.debug { "Loaded ${list.size} time sheet periods of user #$userId in ${System.currentTimeMillis() - begin}ms." }
+        return UserIntervals(starts, stops, ids)
+    }
+
+    /**
+     * The index is updated after the commit of the modifying transaction (if any), so the index contains only committed
+     * time sheets. The values are taken immediately, so later modifications of the time sheet object don't matter. The
+     * update is idempotent, so a concurrent load of the user's time sheets (already containing the committed values)
+     * doesn't matter.
+     */
+    override fun afterSaveOrModifify(changedObject: TimesheetDO, operationType: OperationType) {
+        val id = changedObject.id ?: return
+        val userId = changedObject.userId
+        val startTime = changedObject.startTime?.time
+        val stopTime = changedObject.stopTime?.time
+        val deleted = changedObject.isDeleted || operationType == OperationType.DELETE
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(object : TransactionSynchronizationAdapter() {
+                override fun afterCommit() {
+                    update(id, userId, startTime, stopTime, deleted)
+                }
+            })
+            return
+        }
+        update(id, userId, startTime, stopTime, deleted)
+    }
+
+    private fun update(id: Int, userId: Int?, startTime: Long?, stopTime: Long?, deleted: Boolean) {
+        synchronized(this) {
+            val oldUserId = timesheetUserMap.remove(id)
+            if (oldUserId != null) {
+                userMap[oldUserId]?.let { userMap[oldUserId] = it.remove(id) }
+            }
+            if (userId == null) {
+                return
+            }
+            val intervals = userMap[userId] ?: return // User not yet loaded.
+            var newIntervals = intervals.remove(id)
+            if (!deleted && startTime != null && stopTime != null && stopTime > windowStart) {
+                newIntervals = newIntervals.add(id, startTime, stopTime)
+                timesheetUserMap[id] = userId
+            }
+            userMap[userId] = newIntervals
+        }
+    }
+
+    @PostConstruct
+    private fun postConstruct() {
+        timesheetDao.register(this)
+    }
+
+    /**
+     * Moves the window and forces reloading of the time sheets on next access.
+     */
+    override fun refresh() {
+        log.info("Refreshing TimesheetIntervalCache ...")
+        synchronized(this) {
+            windowStart = calculateWindowStart()
+            userMap.clear()
+            timesheetUserMap.clear()
+        }
+    }
+
+    companion object {
+        const val WINDOW_MONTHS = 24L
+
+        private fun calculateWindowStart(): Long {
+            return PFDateTime.now().minusMonths(WINDOW_MONTHS).beginOfMonth.utilDate.time
+        }
+    }
+}
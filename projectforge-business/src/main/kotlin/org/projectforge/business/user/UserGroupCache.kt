@@ -41,6 +41,7 @@ import org.projectforge.framework.persistence.user.entities.UserRightDO
 import org.slf4j.LoggerFactory
 import org.springframework.context.ApplicationContext
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * The group user relations will be cached with this class.
@@ -54,30 +55,12 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
      */
     val tenant: TenantDO?
     /**
-     * The key is the user id and the value is a list of assigned groups.
+     * All maps of this cache. They are replaced as a whole (by [refresh] and [updateUser]), so readers always get a
+     * consistent snapshot. Only null in maintenance mode (e. g. if user table isn't readable).
      */
-    private var userGroupIdMap: Map<Int, MutableSet<Int>>? = null
-    /**
-     * The key is the group id.
-     */
-    private var groupMap: Map<Int, GroupDO>? = null
-    /**
-     * List of all rights (value) defined for the user ids (key).
-     */
-    private var rightMap: Map<Int, List<UserRightDO>>? = null
-    private var userMap: MutableMap<Int, PFUserDO?>? = null
-    /**
-     * Key is user id, value is employee id.
-     */
-    private var employeeMap: MutableMap<Int?, Int>? = null
-    private var adminUsers: MutableSet<Int>? = null
-    private var financeUsers: Set<Int>? = null
-    private var controllingUsers: Set<Int>? = null
-    private var projectManagers: Set<Int>? = null
-    private var projectAssistants: Set<Int>? = null
-    private var marketingUsers: Set<Int>? = null
-    private var orgaUsers: Set<Int>? = null
-    private var hrUsers: Set<Int>? = null
+    @Volatile
+    private var data: Data? = null
+
     private val tenantChecker: TenantChecker
     private val tenantService: TenantService
     private val userRights: UserRightService
@@ -85,13 +68,13 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     private val employeeDao: EmployeeDao
 
     fun getGroup(group: ProjectForgeGroup): GroupDO? {
-        checkRefresh()
-        return groupMap?.values?.find { group.matches(it.name) }
+        val data = getData() ?: return null
+        val groupId = data.projectForgeGroupIdMap[group] ?: return null
+        return data.groupMap[groupId]
     }
 
     fun getGroup(groupId: Int?): GroupDO? {
-        checkRefresh()
-        return groupMap!![groupId]
+        return getData()!!.groupMap[groupId]
     }
 
     fun getUser(userId: Int?): PFUserDO? {
@@ -108,8 +91,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (username.isBlank()) {
             return null
         }
-        // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()?.values?.find { username == it?.username }
+        val user = getData()?.usernameMap?.get(username)
         user?.clearSecretFields()
         return user
     }
@@ -118,8 +100,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (fullname.isBlank()) {
             return null
         }
-        // checkRefresh(); Done by getUserMap().
-        val user = getUserMap()?.values?.find { fullname == it?.getFullname() }
+        val user = getData()?.fullnameMap?.get(fullname)
         user?.clearSecretFields()
         return user
     }
@@ -135,14 +116,14 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
      * @return all groups (also deleted groups).
      */
     val allGroups: Collection<GroupDO>
-        get() =// checkRefresh(); Done by getGMap().
-            getGroupMap()!!.values
+        get() =// checkRefresh(); Done by getData().
+            getData()!!.groupMap.values
 
     /**
      * Only for internal use.
      */
     fun internalGetNumberOfUsers(): Int {
-        return if (userMap == null) {
+        return if (data == null) {
             0
         } else { // checkRefresh(); Done by getUserMap().
             getUserMap()!!.size
@@ -171,8 +152,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (groupId == null) {
             return false
         }
-        checkRefresh()
-        val groupSet: Set<Int>? = getUserGroupIdMap()!![userId]
+        val groupSet = getUserGroupIdMap()!![userId]
         return groupSet != null && groupSet.contains(groupId)
     }
 
@@ -180,7 +160,6 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         if (groupIds.isEmpty()) {
             return false
         }
-        checkRefresh()
         val groupSet = getUserGroupIdMap()?.let { it[userId] } ?: return false
         return groupIds.any { groupSet.contains(it) }
     }
@@ -189,36 +168,32 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         get() = isUserMemberOfAdminGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfAdminGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // adminUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return adminUsers != null && adminUsers!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.adminUsers?.contains(userId) == true
     }
 
     val isUserMemberOfFinanceGroup: Boolean
         get() = isUserMemberOfFinanceGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfFinanceGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // financeUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return financeUsers != null && financeUsers!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.financeUsers?.contains(userId) == true
     }
 
     val isUserMemberOfProjectManagers: Boolean
         get() = isUserMemberOfProjectManagers(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfProjectManagers(userId: Int?): Boolean {
-        checkRefresh()
-        // projectManagers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return projectManagers != null && projectManagers!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.projectManagers?.contains(userId) == true
     }
 
     val isUserMemberOfProjectAssistant: Boolean
         get() = isUserMemberOfProjectAssistant(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfProjectAssistant(userId: Int?): Boolean {
-        checkRefresh()
-        // projectAssistants should only be null in maintenance mode (e. g. if user table isn't readable).
-        return projectAssistants != null && projectAssistants!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.projectAssistants?.contains(userId) == true
     }
 
     fun isUserProjectManagerOrAssistantForProject(projekt: ProjektDO?): Boolean {
@@ -235,31 +210,27 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         get() = isUserMemberOfControllingGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfControllingGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // controllingUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return controllingUsers != null && controllingUsers!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.controllingUsers?.contains(userId) == true
     }
 
     val isUserMemberOfMarketingGroup: Boolean
         get() = isUserMemberOfMarketingGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfMarketingGroup(userId: Int?): Boolean {
-        checkRefresh()
-        return marketingUsers!!.contains(userId)
+        return getData()!!.marketingUsers.contains(userId)
     }
 
     val isUserMemberOfOrgaGroup: Boolean
         get() = isUserMemberOfOrgaGroup(ThreadLocalUserContext.getUserId())
 
     fun isUserMemberOfOrgaGroup(userId: Int?): Boolean {
-        checkRefresh()
-        // orgaUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-        return orgaUsers != null && orgaUsers!!.contains(userId)
+        // data should only be null in maintenance mode (e. g. if user table isn't readable).
+        return getData()?.orgaUsers?.contains(userId) == true
     }
 
     fun isUserMemberOfHRGroup(userId: Int?): Boolean {
-        checkRefresh()
-        return hrUsers != null && hrUsers!!.contains(userId)
+        return getData()?.hrUsers?.contains(userId) == true
     }
 
     /**
@@ -298,42 +269,35 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     }
 
     private val userRightMap: Map<Int, List<UserRightDO>>?
-        get() {
-            checkRefresh()
-            return rightMap
-        }
+        get() = getData()?.rightMap
 
     /**
      * Returns a collection of group id's to which the user is assigned to.
      *
-     * @return collection if found, otherwise null.
+     * @return unmodifiable collection if found, otherwise null.
      */
     fun getUserGroups(user: PFUserDO): Collection<Int>? {
-        checkRefresh()
         return getUserGroupIdMap()!![user.id]
     }
 
-    private fun getGroupMap(): Map<Int, GroupDO>? {
-        checkRefresh()
-        return groupMap
-    }
-
-    fun getUserGroupIdMap(): Map<Int, MutableSet<Int>>? {
-        checkRefresh()
-        return userGroupIdMap
+    /**
+     * @return Map of unmodifiable group id sets (value) of the users (key).
+     */
+    fun getUserGroupIdMap(): Map<Int, Set<Int>>? {
+        return getData()?.userGroupIdMap
     }
 
     fun getEmployeeId(userId: Int?): Int? {
         userId ?: return null
-        checkRefresh()
-        var employeeId = employeeMap!![userId]
+        val employeeMap = getData()!!.employeeMap
+        var employeeId = employeeMap[userId]
         if (employeeId == null) {
             employeeId = employeeDao.getEmployeeIdByByUserId(userId, tenant?.tenantId)
             if (employeeId == null) {
-                employeeMap!![userId] = Int.MIN_VALUE
+                employeeMap[userId] = Int.MIN_VALUE
                 return null
             }
-            employeeMap!![userId] = employeeId
+            employeeMap[userId] = employeeId
         } else if (employeeId == Int.MIN_VALUE) {
             return null
         }
@@ -343,14 +307,26 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     /**
      * Should be called after user modifications.
      */
+    @Synchronized
     fun updateUser(user: PFUserDO) {
         user.clearSecretFields()
-        getUserMap()!![user.id] = user
+        val data = getData()!!
+        val uMap = HashMap(data.userMap)
+        uMap[user.id] = user
+        // The indexes are rebuilt, because the names of the previous user object may be modified in place.
+        val unMap = HashMap<String, PFUserDO>()
+        val fnMap = HashMap<String, PFUserDO>()
+        addToUserIndexes(uMap.values, unMap, fnMap)
+        this.data = data.copy(userMap = uMap, usernameMap = unMap, fullnameMap = fnMap)
+    }
+
+    private fun getUserMap(): Map<Int, PFUserDO>? {
+        return getData()?.userMap
     }
 
-    private fun getUserMap(): MutableMap<Int, PFUserDO?>? {
+    private fun getData(): Data? {
         checkRefresh()
-        return userMap
+        return data
     }
 
     /**
@@ -364,7 +340,9 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
         }
         log.info("Initializing UserGroupCache $tenantLog...")
         // This method must not be synchronized because it works with a new copy of maps.
-        val uMap: MutableMap<Int, PFUserDO?> = HashMap()
+        val uMap: MutableMap<Int, PFUserDO> = HashMap()
+        val unMap: MutableMap<String, PFUserDO> = HashMap()
+        val fnMap: MutableMap<String, PFUserDO> = HashMap()
         // Could not autowire UserDao because of cyclic reference with AccessChecker.
         log.info("Loading all users ...")
         val users = Login.getInstance().allUsers
@@ -376,15 +354,17 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                     continue
                 }
             }
-            val copiedUser = createCopyWithoutSecretFields(user)
-            uMap[user.id] = copiedUser
+            uMap[user.id] = createCopyWithoutSecretFields(user)!!
         }
+        addToUserIndexes(uMap.values, unMap, fnMap)
         if (users.size != uMap.size) {
             log.warn("********** Load ${users.size} from the backend, but added only ${uMap.size} users to cache!")
         }
         log.info("Loading all groups ...")
         val groups = Login.getInstance().allGroups
         val gMap: MutableMap<Int, GroupDO> = HashMap()
+        val gnMap: MutableMap<String, GroupDO> = HashMap()
+        val pfGroupIdMap: MutableMap<ProjectForgeGroup, Int> = EnumMap(ProjectForgeGroup::class.java)
         val ugIdMap: MutableMap<Int, MutableSet<Int>> = HashMap()
         val nAdminUsers: MutableSet<Int> = HashSet()
         val nFinanceUser: MutableSet<Int> = HashSet()
@@ -402,6 +382,13 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 }
             }
             gMap[group.id] = group
+            group.name?.let { name ->
+                val existing = gnMap[name]
+                if (existing == null || existing.isDeleted && !group.isDeleted) { // Prefer non-deleted groups.
+                    gnMap[name] = group
+                    ProjectForgeGroup.values().find { it.matches(name) }?.let { pfGroupIdMap[it] = group.id }
+                }
+            }
             group.assignedUsers?.forEach { user ->
                 val groupIdSet = ensureAndGetUserGroupIdMap(ugIdMap, user.id)
                 groupIdSet.add(group.id)
@@ -441,18 +428,26 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 }
             }
         }
-        userMap = uMap
-        groupMap = gMap
-        employeeMap = HashMap()
-        adminUsers = nAdminUsers
-        financeUsers = nFinanceUser
-        controllingUsers = nControllingUsers
-        projectManagers = nProjectManagers
-        projectAssistants = nProjectAssistants
-        marketingUsers = nMarketingUsers
-        orgaUsers = nOrgaUsers
-        hrUsers = nhrUsers
-        userGroupIdMap = ugIdMap
+        // The availability of user rights depends on the group memberships, so the new users and groups are published
+        // first (together with the previous rights):
+        val newData = Data(
+                userMap = uMap,
+                usernameMap = unMap,
+                fullnameMap = fnMap,
+                groupMap = gMap,
+                projectForgeGroupIdMap = pfGroupIdMap,
+                userGroupIdMap = ugIdMap.mapValues { Collections.unmodifiableSet(it.value) },
+                rightMap = data?.rightMap ?: emptyMap(),
+                employeeMap = ConcurrentHashMap(),
+                adminUsers = nAdminUsers,
+                financeUsers = nFinanceUser,
+                controllingUsers = nControllingUsers,
+                projectManagers = nProjectManagers,
+                projectAssistants = nProjectAssistants,
+                marketingUsers = nMarketingUsers,
+                orgaUsers = nOrgaUsers,
+                hrUsers = nhrUsers)
+        data = newData
         val rMap: MutableMap<Int, List<UserRightDO>> = HashMap()
         val rights: List<UserRightDO>
         rights = try {
@@ -482,7 +477,7 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
                 list!!.add(right)
             }
         }
-        rightMap = rMap
+        data = newData.copy(rightMap = rMap)
         log.info("Initializing of UserGroupCache done$tenantLog. Found ${uMap.size} entries.")
         Login.getInstance().afterUserGroupCacheRefresh(users, groups)
         val end = System.currentTimeMillis()
@@ -492,9 +487,48 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
     @Synchronized
     fun internalSetAdminUser(adminUser: PFUserDO) {
         check(UserFilter.isUpdateRequiredFirst()) { "Can't set admin user internally! This method is only available if system is under maintenance (update required first is true)!" }
-        checkRefresh()
-        adminUsers!!.add(adminUser.id)
-    }
+        val data = getData()!!
+        this.data = data.copy(adminUsers = data.adminUsers + adminUser.id)
+    }
+
+    private data class Data(
+            val userMap: Map<Int, PFUserDO>,
+            /**
+             * The key is the username.
+             */
+            val usernameMap: Map<String, PFUserDO>,
+            /**
+             * The key is the full name of the user.
+             */
+            val fullnameMap: Map<String, PFUserDO>,
+            /**
+             * The key is the group id.
+             */
+            val groupMap: Map<Int, GroupDO>,
+            /**
+             * The group ids of the ProjectForge system groups.
+             */
+            val projectForgeGroupIdMap: Map<ProjectForgeGroup, Int>,
+            /**
+             * The key is the user id and the value is a list of assigned groups.
+             */
+            val userGroupIdMap: Map<Int, Set<Int>>,
+            /**
+             * List of all rights (value) defined for the user ids (key).
+             */
+            val rightMap: Map<Int, List<UserRightDO>>,
+            /**
+             * Key is user id, value is employee id. Filled on demand.
+             */
+            val employeeMap: MutableMap<Int, Int>,
+            val adminUsers: Set<Int>,
+            val financeUsers: Set<Int>,
+            val controllingUsers: Set<Int>,
+            val projectManagers: Set<Int>,
+            val projectAssistants: Set<Int>,
+            val marketingUsers: Set<Int>,
+            val orgaUsers: Set<Int>,
+            val hrUsers: Set<Int>)
 
     companion object {
         @JvmStatic
@@ -503,6 +537,16 @@ open class UserGroupCache(tenant: TenantDO?, applicationContext: ApplicationCont
 
         private const val serialVersionUID = -6501106088529363341L
         private val log = LoggerFactory.getLogger(UserGroupCache::class.java)
+        /**
+         * The first user wins, if names aren't unique.
+         */
+        private fun addToUserIndexes(users: Collection<PFUserDO>, unMap: MutableMap<String, PFUserDO>, fnMap: MutableMap<String, PFUserDO>) {
+            users.forEach { user ->
+                user.username?.let { unMap.putIfAbsent(it, user) }
+                fnMap.putIfAbsent(user.getFullname(), user)
+            }
+        }
+
         private fun ensureAndGetUserGroupIdMap(ugIdMap: MutableMap<Int, MutableSet<Int>>, userId: Int): MutableSet<Int> {
             var set = ugIdMap[userId]
             if (set == null) {
@@ -229,7 +229,10 @@ class UserPrefCache : AbstractCache() {
      */
     override fun refresh() {
         log.info("Flushing all user preferences to data-base....")
-        for (userId in allPreferences.keys) {
+        val userIds = synchronized(allPreferences) {
+            allPreferences.keys.toList()
+        }
+        for (userId in userIds) {
             if (log.isDebugEnabled) {
                 log.debug { "Flushing all user preferences for user $userId." }
             }
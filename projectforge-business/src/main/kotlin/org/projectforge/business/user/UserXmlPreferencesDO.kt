@@ -33,7 +33,7 @@ import javax.persistence.*
 
 /**
  * For persistency of UserPreferencesData (stores them serialized).
- * The data are stored as xml.
+ * The data are stored as json (since version 5) or as xml, see [UserXmlPreferencesDao.serialize].
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -138,8 +138,9 @@ class UserXmlPreferencesDO : Serializable, DbRecord<Int> {
         /**
          * Don't forget to increase, if any changes in the object stored in user data are made. If not, the user preferences
          * will be lost because of unsupported (de)serialization.
+         * Version 5: json format (xml of older versions is still readable).
          */
-        const val CURRENT_VERSION = 4
+        const val CURRENT_VERSION = 5
 
         fun getCurrentVersion(): Int {
             return CURRENT_VERSION
@@ -46,6 +46,8 @@ import org.projectforge.framework.persistence.api.SortProperty.Companion.asc
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.projectforge.framework.persistence.user.entities.TenantDO
+import org.projectforge.menu.MenuBadgeCounterService
+import org.projectforge.menu.builder.MenuItemDefId
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.context.ApplicationContext
@@ -70,6 +72,9 @@ open class VacationDao : BaseDao<VacationDO>(VacationDO::class.java) {
     @Autowired
     private lateinit var vacationSendMailService: VacationSendMailService
 
+    @Autowired
+    private lateinit var menuBadgeCounterService: MenuBadgeCounterService
+
     init {
         supportAfterUpdate = true
     }
@@ -308,6 +313,11 @@ open class VacationDao : BaseDao<VacationDO>(VacationDO::class.java) {
         service.validate(obj, dbObj, true)
     }
 
+    override fun afterSaveOrModify(obj: VacationDO) {
+        super.afterSaveOrModify(obj)
+        menuBadgeCounterService.invalidate(MenuItemDefId.VACATION.id)
+    }
+
     override fun afterSave(obj: VacationDO) {
         super.afterSave(obj)
         vacationSendMailService.checkAndSendMail(obj, OperationType.INSERT)
@@ -387,14 +397,16 @@ open class VacationDao : BaseDao<VacationDO>(VacationDO::class.java) {
         get() = if (ThreadLocalUserContext.getUser() != null && ThreadLocalUserContext.getUser().tenant != null) ThreadLocalUserContext.getUser().tenant else tenantService.defaultTenant
 
     open fun getOpenLeaveApplicationsForEmployee(employee: EmployeeDO?): Int {
-        val resultList: List<VacationDO> = emgrFactory.runRoTrans { emgr ->
-            val baseSQL = "SELECT v FROM VacationDO v WHERE v.manager = :employee AND v.status = :status"
-            val dbResultList = emgr
-                    .selectDetached(VacationDO::class.java, baseSQL + META_SQL_WITH_SPECIAL, "employee", employee, "status", VacationStatus.IN_PROGRESS, "deleted", false,
-                            "tenant", tenant)
-            dbResultList
+        return emgrFactory.runRoTrans { emgr ->
+            emgr.entityManager
+                    .createQuery("SELECT count(v) FROM VacationDO v WHERE v.manager = :employee AND v.status = :status AND v.deleted = :deleted AND v.tenant = :tenant",
+                            Long::class.javaObjectType)
+                    .setParameter("employee", employee)
+                    .setParameter("status", VacationStatus.IN_PROGRESS)
+                    .setParameter("deleted", false)
+                    .setParameter("tenant", tenant)
+                    .singleResult.toInt()
         }
-        return resultList.size
     }
 
     companion object {
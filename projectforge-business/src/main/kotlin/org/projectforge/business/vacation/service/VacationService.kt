@@ -258,8 +258,11 @@ open class VacationService {
         return VacationValidator.validate(this, vacation, dbVal, throwException)
     }
 
-    open fun getOpenLeaveApplicationsForUser(user: PFUserDO): Int {
-        val employee = employeeService.getEmployeeByUserId(user.id) ?: return 0
+    /**
+     * @return The number of leave applications in progress, the given user is the manager of.
+     */
+    open fun getOpenLeaveApplicationsForUser(userId: Int): Int {
+        val employee = employeeService.getEmployeeByUserId(userId) ?: return 0
         return vacationDao.getOpenLeaveApplicationsForEmployee(employee)
     }
 
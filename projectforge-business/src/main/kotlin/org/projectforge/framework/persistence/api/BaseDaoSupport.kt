@@ -53,7 +53,10 @@ object BaseDaoSupport {
         return obj.id
     }
 
-    private fun <O : ExtendedBaseDO<Int>> internalSave(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O) {
+    /**
+     * @param flush If false, the insert isn't flushed (for bulk inserts, which are flushed per block).
+     */
+    private fun <O : ExtendedBaseDO<Int>> internalSave(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, flush: Boolean = true) {
         BaseDaoJpaAdapter.prepareInsert(emgr, obj)
         val em = emgr.entityManager
         em.persist(obj)
@@ -61,9 +64,11 @@ object BaseDaoSupport {
             log.info("New " + baseDao.clazz.getSimpleName() + " added (" + obj.getId() + "): " + obj.toString())
         }
         baseDao.prepareHibernateSearch(obj, OperationType.INSERT)
-        em.merge(obj)
-        em.flush()
-        baseDao.flushSearchSession(em)
+        if (flush) {
+            em.merge(obj)
+            em.flush()
+            baseDao.flushSearchSession(em)
+        }
         HistoryBaseDaoAdapter.inserted(emgr, obj)
     }
 
@@ -104,7 +109,11 @@ object BaseDaoSupport {
         }
     }
 
-    private fun <O : ExtendedBaseDO<Int>> internalUpdate(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, checkAccess: Boolean, res: ResultObject<O>) {
+    /**
+     * @param flush If false, the update isn't flushed (for bulk updates, which are flushed per block).
+     */
+    private fun <O : ExtendedBaseDO<Int>> internalUpdate(emgr: PfEmgr, baseDao: BaseDao<O>, obj: O, checkAccess: Boolean, res: ResultObject<O>,
+                                                         flush: Boolean = true) {
         val em = emgr.entityManager
         val dbObj = em.find(baseDao.clazz, obj.id)
         if (checkAccess) {
@@ -126,12 +135,16 @@ object BaseDaoSupport {
                 // } else {
                 //   log.info("No modifications detected (no update needed): " + dbObj.toString());
                 baseDao.prepareHibernateSearch(obj, OperationType.UPDATE)
-                em.merge(dbObj)
-                em.flush()
+                if (flush) {
+                    em.merge(dbObj)
+                    em.flush()
+                }
                 if (baseDao.logDatabaseActions) {
                     log.info(baseDao.clazz.getSimpleName() + " updated: " + dbObj.toString())
                 }
-                baseDao.flushSearchSession(em)
+                if (flush) {
+                    baseDao.flushSearchSession(em)
+                }
             }
             result
         }
@@ -236,22 +249,52 @@ object BaseDaoSupport {
     }
 
     /**
-     * Bulk update.
+     * Bulk update. The history entries of the updates are written asynchronously after the commit of each block.
+     * The entities of a block aren't flushed one by one, but once per block (so the inserts and updates are sent as
+     * JDBC batches, see hibernate.jdbc.batch_size in persistence.xml). The persistence context is cleared after each
+     * block.
      * @param col Entries to save or update without check access.
      * @param blockSize The block size of commit blocks.
+     * @see HistoryBaseDaoAdapter.runWithDeferredHistory
      */
     @JvmStatic
     fun <O : ExtendedBaseDO<Int>> internalSaveOrUpdate(baseDao: BaseDao<O>, col: Collection<O>, blockSize: Int) {
-        val list: MutableList<O> = ArrayList<O>()
-        var counter = 0
-        for (obj in col) {
-            list.add(obj)
-            if (++counter >= blockSize) {
-                counter = 0
-                internalSaveOrUpdate(baseDao, list)
-                list.clear()
+        HistoryBaseDaoAdapter.runWithDeferredHistory {
+            val list: MutableList<O> = ArrayList<O>()
+            var counter = 0
+            for (obj in col) {
+                list.add(obj)
+                if (++counter >= blockSize) {
+                    counter = 0
+                    internalSaveOrUpdateBlock(baseDao, list)
+                    list.clear()
+                }
             }
+            internalSaveOrUpdateBlock(baseDao, list)
+        }
+    }
+
+    private fun <O : ExtendedBaseDO<Int>> internalSaveOrUpdateBlock(baseDao: BaseDao<O>, col: Collection<O>) {
+        if (col.isEmpty()) {
+            return
+        }
+        baseDao.emgrFactory.runInTrans { emgr ->
+            for (obj in col) {
+                if (obj.id != null) {
+                    preInternalUpdate(baseDao, obj, false)
+                    val res = ResultObject<O>()
+                    internalUpdate(emgr, baseDao, obj, false, res, false)
+                    postInternalUpdate<O>(baseDao, obj, res)
+                } else {
+                    preInternalSave(baseDao, obj)
+                    internalSave(emgr, baseDao, obj, false)
+                    postInternalSave(baseDao, obj)
+                }
+            }
+            val em = emgr.entityManager
+            em.flush()
+            baseDao.flushSearchSession(em)
+            em.clear()
         }
-        internalSaveOrUpdate(baseDao, list)
     }
 }
@@ -36,6 +36,10 @@ class MagicFilter(
         var entries: MutableList<MagicFilterEntry> = mutableListOf(),
         var sortAndLimitMaxRowsWhileSelect: Boolean = true,
         var maxRows: Int = 50,
+        /**
+         * For paging: id of the last entry of the previous page (see [org.projectforge.rest.core.ResultSet.nextPageAfterId]).
+         */
+        var pageAfterId: Int? = null,
         /**
          * If true, only deleted entries will be shown. If false, no deleted entries will be shown. If null, all entries will be shown.
          */
@@ -79,6 +83,7 @@ class MagicFilter(
         entries.clear()
         sortProperties.clear()
         sortAndLimitMaxRowsWhileSelect = true
+        pageAfterId = null
         deleted = false
         searchHistory = null
         extended.clear()
@@ -39,6 +39,7 @@ object MagicFilterProcessor {
     fun doIt(entityClass: Class<*>, magicFilter: MagicFilter, queryFilter: QueryFilter = QueryFilter()): QueryFilter {
         queryFilter.deleted = magicFilter.deleted
         queryFilter.maxRows = magicFilter.maxRows
+        queryFilter.pageAfterId = magicFilter.pageAfterId
         queryFilter.searchHistory = magicFilter.searchHistory
         queryFilter.sortAndLimitMaxRowsWhileSelect = magicFilter.sortAndLimitMaxRowsWhileSelect
         queryFilter.sortProperties = magicFilter.sortProperties.map {
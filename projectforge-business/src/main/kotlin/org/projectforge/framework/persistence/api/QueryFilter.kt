@@ -105,6 +105,18 @@ class QueryFilter @JvmOverloads constructor(filter: BaseSearchFilter? = null,
 
     var sortAndLimitMaxRowsWhileSelect: Boolean = true
 
+    /**
+     * For paging: if given, only entries behind the entry with this id (in the order of the query) will be returned.
+     * Use [nextPageAfterId] of the previous query for getting the next page.
+     */
+    var pageAfterId: Int? = null
+
+    /**
+     * Set by the query: id of the last entry of the result list, if more entries are available (cursor of the next page),
+     * otherwise null.
+     */
+    var nextPageAfterId: Int? = null
+
     fun getExtendedBooleanValue(key: String): Boolean {
         val value = extended[key] ?: return false
         if (value is Boolean) {
@@ -208,6 +220,7 @@ class QueryFilter @JvmOverloads constructor(filter: BaseSearchFilter? = null,
 
     fun createDBFilter(): DBFilter {
         val dbFilter = DBFilter(sortAndLimitMaxRowsWhileSelect, maxRows, fullTextSearchFields)
+        dbFilter.pageAfterId = pageAfterId
         if (predicates.none { it.field == "deleted" } && deleted != null) {
             // Adds deleted flag, if not already exist in predicates:
             dbFilter.predicates.add(DBPredicate.Equal("deleted", deleted == true))
@@ -56,6 +56,16 @@ class DBFilter(
 
     val sortProperties = mutableListOf<SortProperty>()
 
+    /**
+     * For paging: only entries behind the entry with this id are returned.
+     */
+    var pageAfterId: Int? = null
+
+    /**
+     * Set by [DBQuery]: id of the last entry of the result list, if more entries are available.
+     */
+    var nextPageAfterId: Int? = null
+
     fun createStatistics(baseDao: BaseDao<*>): Statistics {
         val stats = Statistics()
         var fullTextRequired = false
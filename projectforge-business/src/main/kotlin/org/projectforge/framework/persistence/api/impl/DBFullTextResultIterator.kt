@@ -23,7 +23,6 @@
 
 package org.projectforge.framework.persistence.api.impl
 
-import org.apache.commons.lang3.builder.CompareToBuilder
 import org.apache.lucene.analysis.standard.ClassicAnalyzer
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser
 import org.apache.lucene.queryparser.classic.QueryParser
@@ -35,6 +34,7 @@ import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.api.SortProperty
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.slf4j.LoggerFactory
+import java.text.CollationKey
 import java.text.Collator
 
 private const val MAX_RESULTS = 100
@@ -85,49 +85,66 @@ internal class DBFullTextResultIterator<O : ExtendedBaseDO<Int>>(
         }
     }
 
+    /**
+     * The sort keys are extracted once per object (strings as [CollationKey] of the user's locale, dates as epoch millis),
+     * so the comparator doesn't need any reflection.
+     */
     override fun sort(list: List<O>): List<O> {
+        if (sortProperties.isNullOrEmpty() || list.size < 2) {
+            return list
+        }
         val collator = Collator.getInstance(ThreadLocalUserContext.getLocale())
-        val errorProperties = mutableListOf<String>()
-        return list.sortedWith(object : Comparator<O> {
-            override fun compare(o1: O, o2: O): Int {
-                if (sortProperties.isNullOrEmpty()) {
-                    return 0
-                }
-                val ctb = CompareToBuilder()
-                for (sortProperty in sortProperties) {
-                    try {
-                        val val1 = BeanHelper.getNestedProperty(o1, sortProperty.property)
-                        val val2 = BeanHelper.getNestedProperty(o2, sortProperty.property)
-                        if (val1 is String) {
-                            // Strings should be compared by using locale dependent collator (especially for german Umlaute)
-                            if (sortProperty.ascending) {
-                                ctb.append(val1, val2, collator)
-                            } else {
-                                ctb.append(val2, val1, collator)
-                            }
-                        } else if (val1 is Comparable<*>) {
-                            if (sortProperty.ascending) {
-                                ctb.append(val1, val2)
-                            } else {
-                                ctb.append(val2, val1)
-                            }
-                        } else {
-                            if (sortProperty.ascending) {
-                                ctb.append(val1?.toString(), val2?.toString())
-                            } else {
-                                ctb.append(val2?.toString(), val1?.toString())
-                            }
-                        }
-                    } catch (ex: Exception) {
-                        if (!errorProperties.contains(ex.message)) {
-                            errorProperties.add("${ex.message}")
-                            log.warn("Ignore sort property (OK): ${ex.message}")
-                        }
+        val errorProperties = mutableSetOf<String>()
+        val entries = list.map { obj ->
+            val keys = arrayOfNulls<Comparable<*>>(sortProperties.size)
+            sortProperties.forEachIndexed { index, sortProperty ->
+                try {
+                    keys[index] = getSortKey(BeanHelper.getNestedProperty(obj, sortProperty.property), collator)
+                } catch (ex: Exception) {
+                    if (errorProperties.add("${ex.message}")) {
+                        log.warn("Ignore sort property (OK): ${ex.message}")
                     }
                 }
-                return ctb.toComparison()
             }
-        })
+            SortEntry(obj, keys)
+        }
+        return entries.sortedWith(Comparator { e1, e2 ->
+            for (index in sortProperties.indices) {
+                val result = compareSortKeys(e1.keys[index], e2.keys[index])
+                if (result != 0) {
+                    return@Comparator if (sortProperties[index].ascending) result else -result
+                }
+            }
+            0
+        }).map { it.obj }
+    }
+
+    private class SortEntry<O>(val obj: O, val keys: Array<Comparable<*>?>)
+
+    private fun getSortKey(value: Any?, collator: Collator): Comparable<*>? {
+        return when (value) {
+            null -> null
+            // Strings should be compared by using locale dependent collator (especially for german Umlaute)
+            is String -> collator.getCollationKey(value)
+            is java.util.Date -> value.time
+            is Comparable<*> -> value
+            else -> collator.getCollationKey(value.toString())
+        }
+    }
+
+    /**
+     * Null values first (as CompareToBuilder does). Keys of different types (shouldn't occur) are compared by
+     * their string representation.
+     */
+    private fun compareSortKeys(key1: Comparable<*>?, key2: Comparable<*>?): Int {
+        if (key1 === key2) return 0
+        if (key1 == null) return -1
+        if (key2 == null) return 1
+        if (key1.javaClass != key2.javaClass) {
+            return key1.toString().compareTo(key2.toString())
+        }
+        @Suppress("UNCHECKED_CAST")
+        return (key1 as Comparable<Any>).compareTo(key2)
     }
 
     private fun internalNext(): O? {
@@ -36,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
 import org.springframework.transaction.annotation.Propagation
 import org.springframework.transaction.annotation.Transactional
+import java.util.function.Consumer
 import javax.persistence.EntityManager
 
 @Service
@@ -89,8 +90,9 @@ open class DBQuery {
                 val dbResultIterator: DBResultIterator<O>
                 dbResultIterator = queryBuilder.result()
                 val historSearchParams = DBHistorySearchParams(filter.modifiedByUserId, filter.modifiedFrom, filter.modifiedTo, filter.searchHistory)
-                var list = createList(baseDao, em, dbResultIterator, customResultFilters, queryBuilder.resultPredicates, dbFilter, historSearchParams, checkAccess)
+                var list = createList(baseDao, em, dbResultIterator, customResultFilters, queryBuilder.resultPredicates, dbFilter, historSearchParams, checkAccess, queryBuilder.skipUntilId)
                 list = dbResultIterator.sort(list)
+                filter.nextPageAfterId = if (queryBuilder.pagingSupported) dbFilter.nextPageAfterId else null
 
                 val end = System.currentTimeMillis()
                 if (end - begin > 2000) {
@@ -106,6 +108,67 @@ open class DBQuery {
         }
     }
 
+    /**
+     * Streams all entries matching the given filter to the given consumer without building a result list, e. g. for
+     * large exports. The persistence context is cleared regularly, so the memory footprint doesn't depend on the
+     * number of entries. Please note: results of full text queries aren't sorted and history search parameters of the
+     * filter aren't supported (use [getList] instead).
+     *
+     * @return The number of entries passed to the consumer.
+     */
+    @JvmOverloads
+    open fun <O : ExtendedBaseDO<Int>> forEach(baseDao: BaseDao<O>,
+                                               filter: QueryFilter,
+                                               consumer: Consumer<O>,
+                                               checkAccess: Boolean = true,
+                                               ignoreTenant: Boolean = false)
+            : Int {
+        if (checkAccess) {
+            baseDao.checkLoggedInUserSelectAccess()
+        }
+        if (checkAccess && accessChecker.isRestrictedUser) {
+            return 0
+        }
+        if (filter.sortProperties.isNullOrEmpty()) {
+            baseDao.defaultSortProperties?.forEach {
+                filter.addOrder(it)
+            }
+        }
+        val begin = System.currentTimeMillis()
+        val dbFilter = filter.createDBFilter()
+        return emgrFactory.runRoTrans { emgr ->
+            val em = emgr.entityManager
+            val queryBuilder = DBQueryBuilder(baseDao, em, tenantService, filter, dbFilter, ignoreTenant = ignoreTenant)
+            val dbResultIterator = queryBuilder.result()
+            val superAdmin = TenantChecker.isSuperAdmin<ExtendedBaseDO<Int>>(ThreadLocalUserContext.getUser())
+            val loggedInUser = ThreadLocalUserContext.getUser()
+            val resultPredicates = queryBuilder.resultPredicates
+            val ensureUniqueSet = mutableSetOf<Int>()
+            var resultCounter = 0
+            var next = dbResultIterator.next()
+            while (next != null) {
+                val obj: O = next
+                if (ensureUniqueSet.add(obj.id)
+                        && (!checkAccess || baseDao.hasSelectAccess(obj, loggedInUser, superAdmin))
+                        && resultPredicates.all { it.match(obj) }) {
+                    baseDao.afterLoad(obj)
+                    consumer.accept(obj)
+                    if (++resultCounter >= dbFilter.maxRows) {
+                        break
+                    }
+                    if (resultCounter % CLEAR_PERSISTENCE_CONTEXT_INTERVAL == 0) {
+                        // Detach the already consumed entries (the scrollable results aren't affected).
+                        em.clear()
+                    }
+                }
+                next = dbResultIterator.next()
+            }
+            val end = System.currentTimeMillis()
+            log.info("BaseDao.forEach for entity class: ${baseDao.entityClass.simpleName} streamed $resultCounter entries in ${end - begin} ms.")
+            resultCounter
+        }
+    }
+
     private fun <O : ExtendedBaseDO<Int>> createList(baseDao: BaseDao<O>,
                                                      em: EntityManager,
                                                      dbResultIterator: DBResultIterator<O>,
@@ -113,13 +176,21 @@ open class DBQuery {
                                                      resultPredicates: List<DBPredicate>,
                                                      filter: DBFilter,
                                                      historSearchParams: DBHistorySearchParams,
-                                                     checkAccess: Boolean)
+                                                     checkAccess: Boolean,
+                                                     skipUntilId: Int?)
             : List<O> {
         val superAdmin = TenantChecker.isSuperAdmin<ExtendedBaseDO<Int>>(ThreadLocalUserContext.getUser())
         val loggedInUser = ThreadLocalUserContext.getUser()
 
         val list = mutableListOf<O>()
         var next: O? = dbResultIterator.next() ?: return list
+        if (skipUntilId != null) {
+            // Paging without keyset predicates: skip all entries of the previous pages.
+            while (next != null && next.id != skipUntilId) {
+                next = dbResultIterator.next()
+            }
+            next = dbResultIterator.next() ?: return list
+        }
         val ensureUniqueSet = mutableSetOf<Int>()
         var resultCounter = 0
         if (historSearchParams.modifiedByUserId != null
@@ -168,6 +239,10 @@ open class DBQuery {
                 next = dbResultIterator.next()
             }
         }
+        if (resultCounter >= filter.maxRows && dbResultIterator.next() != null) {
+            // More entries may be available (not yet checked for access or predicates, the total size is unknown):
+            filter.nextPageAfterId = list.last().id
+        }
         return list
     }
 
@@ -192,4 +267,11 @@ open class DBQuery {
         }
         return true
     }
+
+    companion object {
+        /**
+         * The persistence context is cleared after this number of entries streamed by [forEach].
+         */
+        private const val CLEAR_PERSISTENCE_CONTEXT_INTERVAL = 500
+    }
 }
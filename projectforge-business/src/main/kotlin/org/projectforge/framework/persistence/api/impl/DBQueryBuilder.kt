@@ -83,9 +83,26 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
      */
     val resultPredicates = mutableListOf<DBPredicate>()
 
+    /**
+     * For paging without keyset predicates (sort keys not applicable): The result entries until (including) the entry
+     * with this id will be skipped.
+     */
+    var skipUntilId: Int? = null
+        private set
+
+    private val fetchSize = if (dbFilter.maxRows > 0) dbFilter.maxRows.coerceIn(MIN_FETCH_SIZE, MAX_FETCH_SIZE) else null
+
     private val criteriaSearchAvailable: Boolean
         get() = mode == Mode.CRITERIA
 
+    /**
+     * Paging (pageAfterId) is only supported for criteria searches. Full text results are sorted in memory after
+     * fetching a page, so the pages wouldn't have a consistent overall order. For full text searches pageAfterId is
+     * ignored and the first page is returned.
+     */
+    val pagingSupported: Boolean
+        get() = criteriaSearchAvailable
+
     private val fullTextSearch: Boolean
         get() = mode == Mode.FULLTEXT || mode == Mode.MULTI_FIELD_FULLTEXT_QUERY
 
@@ -120,6 +137,17 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
             if (--maxOrder <= 0)
                 break // Add only 3 orders.
         }
+        dbFilter.pageAfterId?.let { pageAfterId ->
+            if (pagingSupported) {
+                val lastEntry = entityManager.find(baseDao.doClass, pageAfterId)
+                if (lastEntry == null) {
+                    // Entry of the cursor was deleted meanwhile: there is no position to continue, so start with the first page.
+                    log.info("Entry of pageAfterId=$pageAfterId not found (${baseDao.doClass.simpleName}), returning first page.")
+                } else if (!dbQueryBuilderByCriteria.addKeyset(lastEntry)) {
+                    skipUntilId = pageAfterId
+                }
+            }
+        }
         // TODO setCacheRegion(baseDao, criteria)
 
     }
@@ -145,7 +173,7 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
         if (fullTextSearch) {
             return dbQueryBuilderByFullText.createResultIterator(resultPredicates)
         }
-        return dbQueryBuilderByCriteria.createResultIterator(resultPredicates)
+        return dbQueryBuilderByCriteria.createResultIterator(resultPredicates, fetchSize)
     }
 
     /**
@@ -158,4 +186,9 @@ class DBQueryBuilder<O : ExtendedBaseDO<Int>>(
             dbQueryBuilderByCriteria.addOrder(sortProperty)
         }
     }
+
+    companion object {
+        private const val MIN_FETCH_SIZE = 50
+        private const val MAX_FETCH_SIZE = 1000
+    }
 }
@@ -23,8 +23,11 @@
 
 package org.projectforge.framework.persistence.api.impl
 
+import org.projectforge.common.BeanHelper
+import org.projectforge.common.DatabaseDialect
 import org.projectforge.framework.persistence.api.BaseDao
 import org.projectforge.framework.persistence.api.ExtendedBaseDO
+import org.projectforge.framework.persistence.api.HibernateUtils
 import org.projectforge.framework.persistence.api.QueryFilter
 import org.projectforge.framework.persistence.api.SortProperty
 import org.slf4j.LoggerFactory
@@ -54,31 +57,111 @@ internal class DBQueryBuilderByCriteria<O : ExtendedBaseDO<Int>>(
      */
     private val predicates = mutableListOf<Predicate>()
     private val order = mutableListOf<javax.persistence.criteria.Order>()
+    private val sortProperties = mutableListOf<SortProperty>()
 
     fun add(matcher: DBPredicate) {
         predicates.add(matcher.asPredicate(ctx))
     }
 
-    fun createResultIterator(resultPredicates: List<DBPredicate>): DBResultIterator<O> {
-        return DBCriteriaResultIterator(entityManager, ctx.cr.select(ctx.root).where(*predicates.toTypedArray()).orderBy(*order.toTypedArray()), resultPredicates)
+    fun createResultIterator(resultPredicates: List<DBPredicate>, fetchSize: Int? = null): DBResultIterator<O> {
+        if (sortProperties.none { it.property == "id" }) {
+            // Unique order is needed for paging.
+            order.add(ctx.cb.asc(ctx.getField<Any>("id")))
+        }
+        return DBCriteriaResultIterator(entityManager, ctx.cr.select(ctx.root).where(*predicates.toTypedArray()).orderBy(*order.toTypedArray()), resultPredicates, fetchSize)
+    }
+
+    /**
+     * Adds keyset predicates for getting only entries behind the given entry in the order of this query:
+     * (s1 > v1) or (s1 = v1 and (s2 > v2)) or ... or (s1 = v1 and ... and id > lastId) (< for descending order).
+     * Null values are handled in the data base's native order (see [nullsHigh]): if null values are sorted behind all
+     * values, entries with null values are behind any entry with a value and none is behind an entry with null value,
+     * otherwise vice versa. Entries with null values are equal to each other (ties are resolved by the following sort
+     * keys and finally by the id).
+     * Must be called after adding all orders.
+     * @param lastEntry The last entry of the previous page.
+     * @return false, if keyset predicates aren't applicable (e. g. entities as sort keys).
+     */
+    fun addKeyset(lastEntry: O): Boolean {
+        val keys = mutableListOf<Pair<SortProperty, Comparable<Any>?>>()
+        for (sortProperty in sortProperties) {
+            if (sortProperty.property == "id") {
+                break
+            }
+            val value = try {
+                BeanHelper.getNestedProperty(lastEntry, sortProperty.property)
+            } catch (ex: Exception) {
+                if (log.isDebugEnabled) log.debug("Keyset paging not applicable for ${ctx.entityName}.${sortProperty.property}: ${ex.message}")
+                return false
+            }
+            if (!isKeysetValue(value)) {
+                if (log.isDebugEnabled) log.debug("Keyset paging not applicable for ${ctx.entityName}.${sortProperty.property} (value '$value').")
+                return false
+            }
+            @Suppress("UNCHECKED_CAST")
+            keys.add(Pair(sortProperty, value as Comparable<Any>?))
+        }
+        val cb = ctx.cb
+        val orPredicates = mutableListOf<Predicate>()
+        val equalPredicates = mutableListOf<Predicate>()
+        keys.forEach { (sortProperty, value) ->
+            val field = ctx.getField<Comparable<Any>>(sortProperty.property)
+            // Ascending order and nulls high (or descending and nulls low): null values are sorted behind all values.
+            val nullsBehindValues = sortProperty.ascending == nullsHigh
+            if (value == null) {
+                if (!nullsBehindValues) {
+                    // All entries with values are behind the given entry:
+                    orPredicates.add(cb.and(*equalPredicates.toTypedArray(), cb.isNotNull(field)))
+                }
+                equalPredicates.add(cb.isNull(field))
+            } else {
+                val behind = if (sortProperty.ascending) cb.greaterThan(field, value) else cb.lessThan(field, value)
+                orPredicates.add(cb.and(*equalPredicates.toTypedArray(), if (nullsBehindValues) cb.or(behind, cb.isNull(field)) else behind))
+                equalPredicates.add(cb.equal(field, value))
+            }
+        }
+        val idIndex = sortProperties.indexOfFirst { it.property == "id" }
+        val idAscending = idIndex < 0 || sortProperties[idIndex].ascending
+        val idField = ctx.getField<Int>("id")
+        val lastId = lastEntry.id
+        orPredicates.add(cb.and(*equalPredicates.toTypedArray(), if (idAscending) cb.greaterThan(idField, lastId) else cb.lessThan(idField, lastId)))
+        predicates.add(cb.or(*orPredicates.toTypedArray()))
+        return true
     }
 
     fun addOrder(sortProperty: SortProperty) {
         try {
+            val field = ctx.getField<Any>(sortProperty.property)
             order.add(
                     if (sortProperty.ascending) {
                         if (log.isDebugEnabled) log.debug("Adding criteria orderBy (${ctx.entityName}): order by ${sortProperty.property}.")
-                        ctx.cb.asc(ctx.getField<Any>(sortProperty.property))
+                        ctx.cb.asc(field)
                     } else {
                         if (log.isDebugEnabled) log.debug("Adding criteria orderBy (${ctx.entityName}): order by ${sortProperty.property} desc.")
-                        ctx.cb.desc(ctx.getField<Any>(sortProperty.property))
+                        ctx.cb.desc(field)
                     }
             )
+            sortProperties.add(sortProperty)
         } catch (ex: Exception) {
             log.error("Can't add order for property '${ctx.entityName}.${sortProperty.property}: ${ex.message}")
         }
     }
 
+    /**
+     * Native order of null values (no nulls first/last in the order by clause, so indexes are usable for ordering):
+     * PostgreSQL sorts null values as larger than any value, HSQLDB as smaller than any value.
+     */
+    private val nullsHigh: Boolean
+        get() = HibernateUtils.getDialect() != DatabaseDialect.HSQL
+
+    /**
+     * Only simple values and null values are supported as keyset values (no entities).
+     */
+    private fun isKeysetValue(value: Any?): Boolean {
+        return value == null || value is Comparable<*> && (value is Number || value is String || value is java.util.Date
+                || value is java.time.temporal.Temporal || value is Enum<*> || value is Boolean)
+    }
+
     private fun initJoinSets() {
         queryFilter.joinList.forEach {
             ctx.addJoin(it)
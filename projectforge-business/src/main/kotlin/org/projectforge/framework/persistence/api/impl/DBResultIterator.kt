@@ -58,13 +58,21 @@ internal class DBEmptyResultIterator<O : ExtendedBaseDO<Int>>
 internal class DBCriteriaResultIterator<O : ExtendedBaseDO<Int>>(
         entityManager: EntityManager,
         criteria: CriteriaQuery<O>,
-        val resultPredicates: List<DBPredicate>)
+        val resultPredicates: List<DBPredicate>,
+        /**
+         * Number of rows fetched by the data base driver per round trip. Rows not passing the access checks or result
+         * predicates are compensated by scrolling on without additional queries.
+         */
+        fetchSize: Int? = null)
     : DBResultIterator<O> {
     private val scrollableResults: ScrollableResults
 
     init {
         val query = entityManager.createQuery(criteria)
         val hquery = query.unwrap(org.hibernate.query.Query::class.java)
+        if (fetchSize != null) {
+            hquery.fetchSize = fetchSize
+        }
         scrollableResults = hquery.scroll(ScrollMode.FORWARD_ONLY)
     }
 
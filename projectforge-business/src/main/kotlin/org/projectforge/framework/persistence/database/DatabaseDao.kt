@@ -30,6 +30,7 @@ import org.projectforge.framework.persistence.api.ExtendedBaseDO
 import org.projectforge.framework.persistence.api.ReindexSettings
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory
 import org.projectforge.framework.persistence.utils.PFTransactionTemplate.runInTrans
+import org.projectforge.framework.persistence.utils.PFTransactionTemplate.runRoTrans
 import org.projectforge.framework.time.DateHelper
 import org.projectforge.framework.time.DateTimeFormatter
 import org.projectforge.framework.time.DayHolder
@@ -37,6 +38,8 @@ import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Repository
 import java.util.*
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 import javax.persistence.EntityManager
 import javax.persistence.FlushModeType
 import javax.persistence.TypedQuery
@@ -89,6 +92,9 @@ open class DatabaseDao {
             reindexObjects(clazz, settings)
             return
         }
+        if (reindexObjectsParallel(clazz)) {
+            return
+        }
         reindexObjects(clazz, null)
     }
 
@@ -111,48 +117,117 @@ open class DatabaseDao {
             log.info("Reindexing [${clazz.simpleName}]: Starting reindexing of $number entries with scrollMode=true...")
 
             val idsQuery = createQuery(em, clazz, Number::class.java, settings, QueryMode.SELECT_IDS_ONLY)
-            val session = em.unwrap(Session::class.java)//.delegate as Session
-            val bigResultSetHandler = BigResultSetHandler<T>(em, clazz, idsQuery)
-            val fullTextSession = Search.getFullTextSession(session)
-            fullTextSession.flushMode = FlushModeType.COMMIT
             val monitor = IndexProgressMonitor("Reindexing [" + clazz.simpleName + "]", number)
-            var blockCounter = 0
-            val batchSize = 10000 // NumberUtils.createInteger(System.getProperty("hibernate.search.worker.batch_size")
-            var index: Long = 0
-            //val set= mutableSetOf<Long>()
-            while (true) {
-                val obj = bigResultSetHandler.next() ?: break
-               /* if (obj is PfHistoryMasterDO) {
-                    if (set.contains(obj.pk)) {
-                        log.error("Duplicate object id: ${obj.pk}")
-                    } else {
-                        set.add(obj.pk)
-                    }
-                }*/
-                if (obj is ExtendedBaseDO<*>) {
-                    obj.recalculate()
-                }
-                fullTextSession.index(obj)
-                session.evict(obj)
-                monitor.documentsAdded(1)
-                if (++blockCounter >= batchSize) {
-                    fullTextSession.flushToIndexes() // clear every batchSize since the queue is processed
-                    blockCounter = 0
-                }
-                ++index
-            }
-            //log.info("******** ${set.size}")
+            val bigResultSetHandler = BigResultSetHandler<T>(em, clazz, idsQuery)
+            val index = indexObjects(em, bigResultSetHandler, monitor)
             if (bigResultSetHandler.totalRead != number) {
                 log.error("Oups, number of elements was $number, but read ${bigResultSetHandler.totalRead}.")
             }
-            log.info("Reindexing [${clazz.simpleName}]: optimizing of " + number + " objects...")
-            val searchFactory = fullTextSession.searchFactory
-            searchFactory.optimize(clazz)
-            log.info("Reindexing [${clazz.simpleName}]: reindexing done.")
+            optimize(em, clazz, number)
             return@runInTrans index
         }
     }
 
+    /**
+     * Full re-index of large tables: The id range is split into partitions of about [PARALLEL_REINDEX_PARTITION_SIZE]
+     * entries, which are loaded and indexed by [PARALLEL_REINDEX_THREADS] threads, each partition in its own
+     * transaction. Finished partitions are persisted by [ReindexCheckpoint], so an interrupted re-index continues with
+     * the unfinished partitions.
+     * @return false, if the table is too small for parallel re-indexing or the ids aren't numeric (nothing done).
+     */
+    private fun <T> reindexObjectsParallel(clazz: Class<T>): Boolean {
+        val strategy = ReindexerRegistry.get(clazz)
+        val emf = emgrFactory!!
+        val range = runRoTrans(emf) { em: EntityManager ->
+            em.createQuery("select count(*), min(t.${strategy.idProperty}), max(t.${strategy.idProperty}) from ${clazz.simpleName} as t")
+                    .singleResult
+        } as Array<*>
+        val number = (range[0] as Number).toLong()
+        val firstId = range[1]
+        val lastId = range[2]
+        if (number < PARALLEL_REINDEX_THRESHOLD || firstId !is Number || lastId !is Number) {
+            return false
+        }
+        // Query parameters must be of the type of the id property:
+        val idOf: (Long) -> Number = if (firstId is Int) { id -> id.toInt() } else { id -> id }
+        val newNumberOfPartitions = (number + PARALLEL_REINDEX_PARTITION_SIZE - 1) / PARALLEL_REINDEX_PARTITION_SIZE
+        val checkpoint = ReindexCheckpoint.load(clazz, firstId.toLong(), (lastId.toLong() - firstId.toLong()) / newNumberOfPartitions + 1)
+        val minId = checkpoint.minId
+        val span = checkpoint.partitionSpan
+        val numberOfPartitions = ((lastId.toLong() - minId) / span + 1).toInt()
+        log.info("Reindexing [${clazz.simpleName}]: Starting parallel reindexing of $number entries in $numberOfPartitions partitions (${checkpoint.numberOfFinishedPartitions} already done) with $PARALLEL_REINDEX_THREADS threads...")
+        val monitor = IndexProgressMonitor("Reindexing [" + clazz.simpleName + "]", number, true)
+        val threadCounter = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(PARALLEL_REINDEX_THREADS) { runnable ->
+            val thread = Thread(runnable, "Reindexer-${clazz.simpleName}-${threadCounter.incrementAndGet()}")
+            thread.isDaemon = true
+            thread
+        }
+        try {
+            val futures = (0 until numberOfPartitions).filter { !checkpoint.isFinished(it) }.map { partition ->
+                executor.submit {
+                    val begin = System.currentTimeMillis()
+                    val fromId = if (partition == 0) minOf(minId, firstId.toLong()) else minId + partition * span
+                    val toId = minId + (partition + 1) * span // exclusive
+                    // Read-only: the entities are only loaded for indexing.
+                    val count = runRoTrans(emf) { em: EntityManager ->
+                        val idsQuery = em.createQuery("select t.${strategy.idProperty} from ${clazz.simpleName} as t where t.${strategy.idProperty} >= :fromId and t.${strategy.idProperty} < :toId", Number::class.java)
+                                .setParameter("fromId", idOf(fromId))
+                                .setParameter("toId", idOf(toId))
+                        indexObjects(em, BigResultSetHandler<T>(em, clazz, idsQuery), monitor)
+                    } as Long
+                    checkpoint.finished(partition)
+                    monitor.partitionFinished(partition, numberOfPartitions, count, System.currentTimeMillis() - begin)
+                }
+            }
+            // Propagates the first exception of any partition (the checkpoint keeps the finished ones):
+            futures.forEach { it.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+        runInTrans(emf) { em: EntityManager ->
+            optimize(em, clazz, number)
+        }
+        checkpoint.delete()
+        return true
+    }
+
+    /**
+     * Indexes all objects of the given result set handler.
+     * @return The number of indexed objects.
+     */
+    private fun <T> indexObjects(em: EntityManager, bigResultSetHandler: BigResultSetHandler<T>, monitor: IndexProgressMonitor): Long {
+        val session = em.unwrap(Session::class.java)//.delegate as Session
+        val fullTextSession = Search.getFullTextSession(session)
+        fullTextSession.flushMode = FlushModeType.COMMIT
+        var blockCounter = 0
+        val batchSize = 10000 // NumberUtils.createInteger(System.getProperty("hibernate.search.worker.batch_size")
+        var index: Long = 0
+        while (true) {
+            val obj = bigResultSetHandler.next() ?: break
+            if (obj is ExtendedBaseDO<*>) {
+                obj.recalculate()
+            }
+            fullTextSession.index(obj)
+            session.evict(obj)
+            monitor.documentsAdded(1)
+            if (++blockCounter >= batchSize) {
+                fullTextSession.flushToIndexes() // clear every batchSize since the queue is processed
+                blockCounter = 0
+            }
+            ++index
+        }
+        fullTextSession.flushToIndexes()
+        return index
+    }
+
+    private fun optimize(em: EntityManager, clazz: Class<*>, number: Long) {
+        log.info("Reindexing [${clazz.simpleName}]: optimizing of " + number + " objects...")
+        val searchFactory = Search.getFullTextSession(em.unwrap(Session::class.java)).searchFactory
+        searchFactory.optimize(clazz)
+        log.info("Reindexing [${clazz.simpleName}]: reindexing done.")
+    }
+
     private fun <T> getRowCount(entityManager: EntityManager, clazz: Class<T>, settings: ReindexSettings?): Long {
         val result = createQuery(entityManager, clazz, Number::class.java, settings, QueryMode.ROW_COUNT)
                 .singleResult as Long
@@ -186,6 +261,16 @@ open class DatabaseDao {
 
     companion object {
         private val log = LoggerFactory.getLogger(DatabaseDao::class.java)
+
+        /**
+         * Full re-indexes of tables with at least this number of entries are done in parallel.
+         */
+        private const val PARALLEL_REINDEX_THRESHOLD = 50000L
+
+        private const val PARALLEL_REINDEX_PARTITION_SIZE = 20000L
+
+        private val PARALLEL_REINDEX_THREADS = minOf(4, Runtime.getRuntime().availableProcessors()).coerceAtLeast(2)
+
         /**
          * Since yesterday and 1,000 newest entries at maximimum.
          */
@@ -60,6 +60,13 @@ class IndexProgressMonitor(private val logPrefix: String, private val totalNumbe
         }
     }
 
+    /**
+     * Logs the finishing of one partition of a parallel re-index.
+     */
+    fun partitionFinished(partition: Int, numberOfPartitions: Int, numberOfEntries: Long, durationMillis: Long) {
+        log.info("$logPrefix: Partition ${partition + 1}/$numberOfPartitions finished: $numberOfEntries entries in ${durationMillis}ms.")
+    }
+
     override fun printStatusMessage(totalTodoCount: Long, doneCount: Long, blockCounter: Long) {
         val format = NumberFormat.getInstance(Locale.US)
         val percentage = BigDecimal(doneCount).multiply(NumberHelper.HUNDRED).divide(BigDecimal(totalTodoCount), 0, RoundingMode.HALF_UP)
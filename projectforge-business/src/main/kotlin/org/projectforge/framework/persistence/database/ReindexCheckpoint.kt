@@ -0,0 +1,139 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.database
+
+import org.projectforge.framework.configuration.ConfigXml
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.util.*
+
+/**
+ * Persists the finished partitions of a parallel full re-index of one entity class, so a re-index interrupted by a
+ * crash or restart continues with the unfinished partitions. The partitioning (first id and id span per partition) of
+ * the interrupted run is reused. Checkpoints of runs started more than [MAX_AGE_HOURS] hours ago are ignored (the
+ * already indexed partitions may be outdated). Without a working directory (e. g. in tests) nothing is persisted.
+ *
+ * @param startTime Start of the first (interrupted) run in epoch millis.
+ */
+internal class ReindexCheckpoint private constructor(private val file: File?,
+                                                     val minId: Long,
+                                                     val partitionSpan: Long,
+                                                     val startTime: Long) {
+    private val finishedPartitions = mutableSetOf<Int>()
+
+    val numberOfFinishedPartitions: Int
+        @Synchronized
+        get() = finishedPartitions.size
+
+    @Synchronized
+    fun isFinished(partition: Int): Boolean {
+        return finishedPartitions.contains(partition)
+    }
+
+    @Synchronized
+    fun finished(partition: Int) {
+        finishedPartitions.add(partition)
+        write()
+    }
+
+    /**
+     * Removes the checkpoint after the re-index was completed.
+     */
+    fun delete() {
+        if (file != null && file.exists() && !file.delete()) {
+            log.warn("Can't delete re-index checkpoint file '${file.absolutePath}'.")
+        }
+    }
+
+    private fun write() {
+        file ?: return
+        val props = Properties()
+        props.setProperty(PROP_MIN_ID, minId.toString())
+        props.setProperty(PROP_PARTITION_SPAN, partitionSpan.toString())
+        props.setProperty(PROP_START_TIME, startTime.toString())
+        props.setProperty(PROP_FINISHED, finishedPartitions.sorted().joinToString(","))
+        try {
+            val tmpFile = File(file.parentFile, "${file.name}.tmp")
+            tmpFile.outputStream().use { props.store(it, "Finished partitions of parallel re-index.") }
+            if (!tmpFile.renameTo(file)) {
+                file.delete()
+                tmpFile.renameTo(file)
+            }
+        } catch (ex: IOException) {
+            log.warn("Can't write re-index checkpoint file '${file.absolutePath}': ${ex.message}")
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ReindexCheckpoint::class.java)
+
+        private const val PROP_MIN_ID = "minId"
+        private const val PROP_PARTITION_SPAN = "partitionSpan"
+        private const val PROP_FINISHED = "finished"
+        private const val PROP_START_TIME = "startTime"
+
+        /**
+         * Checkpoints of older runs aren't resumed.
+         */
+        const val MAX_AGE_HOURS = 24L
+
+        /**
+         * @param minId The first id of the partitioning of a new run.
+         * @param partitionSpan The id span per partition of a new run.
+         * @return The checkpoint of an interrupted run started within the last [MAX_AGE_HOURS] hours, if any, otherwise a
+         * new one with the given partitioning.
+         */
+        fun load(clazz: Class<*>, minId: Long, partitionSpan: Long): ReindexCheckpoint {
+            val file = getFile(clazz)
+            val now = System.currentTimeMillis()
+            if (file != null && file.exists()) {
+                try {
+                    val props = Properties()
+                    file.inputStream().use { props.load(it) }
+                    val startTime = props.getProperty(PROP_START_TIME)?.toLongOrNull()
+                    if (startTime == null || now - startTime > MAX_AGE_HOURS * 3600 * 1000 || startTime > now) {
+                        log.info("Ignoring outdated re-index checkpoint of [${clazz.simpleName}] (started ${if (startTime != null) Date(startTime) else "unknown"}), starting from scratch.")
+                    } else {
+                        val checkpoint = ReindexCheckpoint(file, props.getProperty(PROP_MIN_ID).toLong(), props.getProperty(PROP_PARTITION_SPAN).toLong(), startTime)
+                        props.getProperty(PROP_FINISHED)?.split(',')?.mapNotNullTo(checkpoint.finishedPartitions) { it.trim().toIntOrNull() }
+                        log.info("Resuming re-index of [${clazz.simpleName}] started ${Date(startTime)}: ${checkpoint.finishedPartitions.size} partitions already finished.")
+                        return checkpoint
+                    }
+                } catch (ex: Exception) {
+                    log.warn("Can't read re-index checkpoint file '${file.absolutePath}', starting from scratch: ${ex.message}")
+                }
+            }
+            return ReindexCheckpoint(file, minId, partitionSpan, now)
+        }
+
+        private fun getFile(clazz: Class<*>): File? {
+            if (!ConfigXml.isInitialized()) {
+                return null
+            }
+            val workingDirectory = ConfigXml.getInstance().workingDirectory ?: return null
+            return File(workingDirectory, "reindex-${clazz.simpleName}.checkpoint")
+        }
+    }
+}
@@ -23,6 +23,7 @@
 
 package org.projectforge.framework.persistence.utils
 
+import org.hibernate.Session
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory
 import javax.persistence.EntityManager
 
@@ -34,11 +35,27 @@ import javax.persistence.EntityManager
 object PFTransactionTemplate {
     @JvmStatic
     fun runInTrans(emf: PfEmgrFactory, run: (em: EntityManager) -> Any): Any? {
+        return runInTrans(emf, false, run)
+    }
+
+    /**
+     * Same as [runInTrans], but all loaded entities are read-only (no dirty checking and no snapshots, nothing is
+     * written to the data base).
+     */
+    @JvmStatic
+    fun runRoTrans(emf: PfEmgrFactory, run: (em: EntityManager) -> Any): Any? {
+        return runInTrans(emf, true, run)
+    }
+
+    private fun runInTrans(emf: PfEmgrFactory, readOnly: Boolean, run: (em: EntityManager) -> Any): Any? {
         var cause: java.lang.Exception? = null
         var em: EntityManager? = null
         var result: Any? = null
         try {
             em = emf.entityManagerFactory.createEntityManager()
+            if (readOnly) {
+                em.unwrap(Session::class.java).isDefaultReadOnly = true
+            }
             em.transaction.begin()
             result = run(em)
             em.transaction.commit()
@@ -0,0 +1,254 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.menu
+
+import mu.KotlinLogging
+import org.projectforge.business.user.UserGroupCache
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.springframework.stereotype.Service
+import org.springframework.transaction.support.TransactionSynchronizationAdapter
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Holds the badge counters of the menu entries (open leave applications, recent MEB entries, orders to invoice,
+ * open to-do's etc.) per user.
+ *
+ * A counter is computed by its registered loader only if it isn't known yet (cold). The DAOs invalidate the counters
+ * on any modification, the counters of users listening for updates (e. g. via server sent events) are recomputed in
+ * the background and pushed to the listeners. So building the menu doesn't hit the data base for the badges and the
+ * clients don't need to poll the whole menu.
+ *
+ * Invalidations are deferred until the commit of a running transaction. As a safety net (e. g. for modifications
+ * done in nested transactions or outside of the DAOs) all counters expire every [EXPIRE_MINUTES] minutes.
+ */
+@Service
+open class MenuBadgeCounterService {
+    private class Counter(val id: String, val global: Boolean, val loader: (userId: Int) -> Int?)
+
+    /**
+     * userId is null for global counters (same value for all users).
+     */
+    private data class Key(val counterId: String, val userId: Int?)
+
+    private val counters = ConcurrentHashMap<String, Counter>()
+
+    private val values = ConcurrentHashMap<Key, Int>()
+
+    /**
+     * Incremented on every invalidation of a counter. Values computed concurrently to an invalidation are stale and
+     * mustn't be cached.
+     */
+    private val generations = ConcurrentHashMap<String, AtomicLong>()
+
+    /**
+     * The counter ids requested per user (by building the user's menu). Only these counters are pushed to the user.
+     */
+    private val userCounterIds = ConcurrentHashMap<Int, MutableSet<String>>()
+
+    private val listeners = ConcurrentHashMap<Int, MutableList<(Map<String, Int>) -> Unit>>()
+
+    private val executor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { runnable ->
+        val thread = Thread(runnable, "MenuBadgeCounterUpdater")
+        thread.isDaemon = true
+        thread
+    }
+
+    @PostConstruct
+    private fun postConstruct() {
+        executor.scheduleWithFixedDelay({
+            try {
+                counters.keys.forEach { invalidateNow(it) }
+            } catch (ex: Exception) {
+                log.error("Error while expiring menu badge counters: ${ex.message}", ex)
+            }
+        }, EXPIRE_MINUTES, EXPIRE_MINUTES, TimeUnit.MINUTES)
+    }
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+
+    /**
+     * Registers a counter with an individual value per user.
+     * @param counterId The id of the counter, normally the id of the menu item (see [org.projectforge.menu.builder.MenuItemDefId]).
+     * @param loader Computes the counter (aggregate query) for the given user.
+     */
+    fun register(counterId: String, loader: (userId: Int) -> Int?) {
+        counters[counterId] = Counter(counterId, false, loader)
+    }
+
+    /**
+     * Registers a counter with the same value for all users (access checks are up to the caller).
+     * @param loader Computes the counter. The given user id is the user in whose context the counter is computed.
+     */
+    fun registerGlobal(counterId: String, loader: (userId: Int) -> Int?) {
+        counters[counterId] = Counter(counterId, true, loader)
+    }
+
+    /**
+     * @return The counter for the logged-in user or null, if no user is logged-in or the counter isn't registered.
+     */
+    fun getCounter(counterId: String): Int? {
+        val userId = ThreadLocalUserContext.getUserId() ?: return null
+        return getCounter(counterId, userId)
+    }
+
+    /**
+     * @return The counter (cached or computed, if cold) or null, if the counter isn't registered.
+     */
+    fun getCounter(counterId: String, userId: Int): Int? {
+        val counter = counters[counterId] ?: return null
+        userCounterIds.computeIfAbsent(userId) { ConcurrentHashMap.newKeySet() }.add(counterId)
+        val key = Key(counterId, if (counter.global) null else userId)
+        values[key]?.let { return it }
+        val generation = getGeneration(counterId).get()
+        val value = try {
+            counter.loader(userId) ?: 0
+        } catch (ex: Exception) {
+            log.error("Error while computing menu badge counter '$counterId' for user #$userId: ${ex.message}", ex)
+            return 0
+        }
+        values[key] = value
+        if (getGeneration(counterId).get() != generation) {
+            // Invalidated while computing:
+            values.remove(key, value)
+        }
+        return value
+    }
+
+    /**
+     * @return All counters requested by the given user before (by building the user's menu).
+     */
+    fun getCounters(userId: Int): Map<String, Int> {
+        val result = mutableMapOf<String, Int>()
+        userCounterIds[userId]?.forEach { counterId ->
+            getCounter(counterId, userId)?.let { result[counterId] = it }
+        }
+        return result
+    }
+
+    /**
+     * Should be called by the DAOs after any modification affecting the given counter. The counter is recomputed
+     * asynchronously for all listening users and pushed, if changed.
+     *
+     * If called inside a transaction, the counter is invalidated after commit. Otherwise the counter might be
+     * recomputed and cached before the modification is visible.
+     */
+    fun invalidate(counterId: String) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(object : TransactionSynchronizationAdapter() {
+                override fun afterCommit() {
+                    invalidateNow(counterId)
+                }
+            })
+            return
+        }
+        invalidateNow(counterId)
+    }
+
+    private fun invalidateNow(counterId: String) {
+        getGeneration(counterId).incrementAndGet()
+        val oldValues = mutableMapOf<Int?, Int>()
+        values.entries.removeIf { entry ->
+            if (entry.key.counterId == counterId) {
+                oldValues[entry.key.userId] = entry.value
+                true
+            } else {
+                false
+            }
+        }
+        if (listeners.isEmpty()) {
+            return
+        }
+        executor.submit {
+            pushCounter(counterId, oldValues)
+        }
+    }
+
+    /**
+     * Registers a listener for the given user. The listener is called with all counters of the user, if any counter
+     * was changed.
+     */
+    fun addListener(userId: Int, listener: (Map<String, Int>) -> Unit) {
+        listeners.computeIfAbsent(userId) { CopyOnWriteArrayList() }.add(listener)
+    }
+
+    fun removeListener(userId: Int, listener: (Map<String, Int>) -> Unit) {
+        listeners[userId]?.let {
+            it.remove(listener)
+            if (it.isEmpty()) {
+                listeners.remove(userId, it)
+            }
+        }
+    }
+
+    private fun pushCounter(counterId: String, oldValues: Map<Int?, Int>) {
+        val counter = counters[counterId] ?: return
+        val userGroupCache = UserGroupCache.tenantInstance
+        listeners.forEach { (userId, userListeners) ->
+            if (userCounterIds[userId]?.contains(counterId) != true) {
+                return@forEach // Counter not visible for this user.
+            }
+            val user = userGroupCache.getUser(userId) ?: return@forEach
+            try {
+                ThreadLocalUserContext.setUser(userGroupCache, user) // Loaders may need the user's context.
+                val value = getCounter(counterId, userId)
+                if (value == oldValues[if (counter.global) null else userId]) {
+                    return@forEach // Unchanged.
+                }
+                val userCounters = getCounters(userId)
+                userListeners.forEach { listener ->
+                    try {
+                        listener(userCounters)
+                    } catch (ex: Exception) {
+                        log.info("Removing menu badge counter listener of user #$userId: ${ex.message}")
+                        removeListener(userId, listener)
+                    }
+                }
+            } finally {
+                ThreadLocalUserContext.clear()
+            }
+        }
+    }
+
+    private fun getGeneration(counterId: String): AtomicLong {
+        return generations.computeIfAbsent(counterId) { AtomicLong() }
+    }
+
+    companion object {
+        private const val EXPIRE_MINUTES = 30L
+    }
+}
@@ -38,7 +38,6 @@ import org.projectforge.business.orga.PosteingangDao
 import org.projectforge.business.orga.VisitorbookDao
 import org.projectforge.business.user.ProjectForgeGroup
 import org.projectforge.business.user.UserRightValue
-import org.projectforge.business.vacation.service.VacationMenuCounterCache
 import org.projectforge.business.vacation.service.VacationService
 import org.projectforge.framework.access.AccessChecker
 import org.projectforge.framework.configuration.Configuration
@@ -46,6 +45,7 @@ import org.projectforge.framework.persistence.api.IUserRightId
 import org.projectforge.framework.persistence.api.UserRightService.*
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.menu.Menu
+import org.projectforge.menu.MenuBadgeCounterService
 import org.projectforge.menu.MenuItem
 import org.projectforge.sms.SmsSenderConfig
 import org.springframework.beans.factory.annotation.Autowired
@@ -82,7 +82,7 @@ class MenuCreator {
     private lateinit var vacationService: VacationService
 
     @Autowired
-    private lateinit var vacationMenuCounterCache: VacationMenuCounterCache
+    private lateinit var menuBadgeCounterService: MenuBadgeCounterService
 
     @Autowired
     private lateinit var auftragDao: AuftragDao
@@ -189,6 +189,17 @@ class MenuCreator {
         return null
     }
 
+    /**
+     * The badge counters are cached by [MenuBadgeCounterService] and invalidated by the DAOs on modifications.
+     */
+    private fun registerBadgeCounters() {
+        menuBadgeCounterService.register(MenuItemDefId.VACATION.id) { userId ->
+            vacationService.getOpenLeaveApplicationsForUser(userId)
+        }
+        menuBadgeCounterService.register(MenuItemDefId.MEB.id) { userId -> mebDao.getRecentMEBEntries(userId) }
+        menuBadgeCounterService.registerGlobal(MenuItemDefId.ORDER_LIST.id) { auftragDao.abgeschlossenNichtFakturiertAnzahl }
+    }
+
     @Synchronized
     private fun initialize() {
         if (initialized)
@@ -201,6 +212,7 @@ class MenuCreator {
             }
             log.error("Oups, shouldn't occur. Spring bean not correctly initialized.")
         }
+        registerBadgeCounters()
         //////////////////////////////////////
         //
         // COMMON
@@ -209,7 +221,7 @@ class MenuCreator {
                 .add(MenuItemDef(MenuItemDefId.CALENDAR))
                 .add(MenuItemDef(MenuItemDefId.TEAMCALENDAR))
                 .add(MenuItemDef(MenuItemDefId.VACATION,
-                        badgeCounter = { vacationMenuCounterCache.getOpenLeaveApplicationsForUser(ThreadLocalUserContext.getUser()) }))
+                        badgeCounter = { menuBadgeCounterService.getCounter(MenuItemDefId.VACATION.id) }))
                 .add(MenuItemDef(MenuItemDefId.BOOK_LIST))
                 .add(MenuItemDef(MenuItemDefId.ADDRESSBOOK_LIST))
                 .add(MenuItemDef(MenuItemDefId.ADDRESS_LIST))
@@ -219,7 +231,7 @@ class MenuCreator {
             commonMenu.add(MenuItemDef(MenuItemDefId.SEND_SMS))
         if (Configuration.getInstance().isMebConfigured)
             commonMenu.add(MenuItemDef(MenuItemDefId.MEB,
-                    badgeCounter = { mebDao.getRecentMEBEntries(null) })) // MenuNewCounterMeb
+                    badgeCounter = { menuBadgeCounterService.getCounter(MenuItemDefId.MEB.id) })) // MenuNewCounterMeb
         commonMenu.add(MenuItemDef(MenuItemDefId.SEARCH))
 
         //////////////////////////////////////
@@ -243,7 +255,7 @@ class MenuCreator {
                         },
                         badgeCounter = {
                             if (isInGroup(*FIBU_ORGA_GROUPS))
-                                auftragDao.abgeschlossenNichtFakturiertAnzahl
+                                menuBadgeCounterService.getCounter(MenuItemDefId.ORDER_LIST.id)
                             else
                                 0
                         }))
@@ -291,7 +303,7 @@ class MenuCreator {
         fibuMenu.add(MenuItemDef(MenuItemDefId.ORDER_LIST,
                 requiredGroups = *FIBU_ORGA_GROUPS,
                 badgeCounter =
-                { auftragDao.abgeschlossenNichtFakturiertAnzahl }))
+                { menuBadgeCounterService.getCounter(MenuItemDefId.ORDER_LIST.id) }))
 
         //////////////////////////////////////
         //
@@ -0,0 +1,6 @@
+-- Index for the paged history timeline of an object (newest first):
+CREATE INDEX ix_pf_history_ent_mod
+  ON t_pf_history (entity_id, entity_name, modifiedat);
+
+-- (entity_id, entity_name) is a prefix of the new index and therefore redundant:
+DROP INDEX ix_pf_history_ent;
@@ -0,0 +1,2 @@
+-- Key of the address image renditions in the file system (sha-256 of the image):
+ALTER TABLE T_ADDRESS_IMAGE ADD COLUMN image_hash VARCHAR(64);
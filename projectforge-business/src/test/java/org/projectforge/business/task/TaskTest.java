@@ -510,6 +510,55 @@ public class TaskTest extends AbstractTestBase {
     assertEquals(0, getDuration(taskTree, subTask2.getId()));
   }
 
+  @Test
+  public void incrementalDurations() {
+    logon(getUser(AbstractTestBase.TEST_ADMIN_USER));
+    final TaskDO task = initTestDB.addTask("incDurationTask", "root");
+    final TaskDO subTask1 = initTestDB.addTask("incDurationTask.subtask1", "incDurationTask");
+    final TaskDO subTask2 = initTestDB.addTask("incDurationTask.subtask2", "incDurationTask");
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+    final PFDateTime dt = PFDateTime.withDate(2010, Month.MAY, 20, 8, 0);
+    final TimesheetDO ts = new TimesheetDO();
+    ts.setUser(getUser(AbstractTestBase.TEST_USER));
+    ts.setStartDate(dt.getUtilDate()).setStopTime(dt.plus(4, ChronoUnit.HOURS).getSqlTimestamp());
+    ts.setTask(subTask1);
+    final Integer id = timesheetDao.save(ts);
+    assertDurations(taskTree, task, subTask1, subTask2, 4, 0);
+
+    // Move time sheet to other task:
+    TimesheetDO dbTs = timesheetDao.getById(id);
+    dbTs.setTask(subTask2);
+    timesheetDao.update(dbTs);
+    assertDurations(taskTree, task, subTask1, subTask2, 0, 4);
+
+    // Change duration:
+    dbTs = timesheetDao.getById(id);
+    dbTs.setStopTime(dt.plus(2, ChronoUnit.HOURS).getSqlTimestamp());
+    timesheetDao.update(dbTs);
+    assertDurations(taskTree, task, subTask1, subTask2, 0, 2);
+
+    timesheetDao.markAsDeleted(timesheetDao.getById(id));
+    assertDurations(taskTree, task, subTask1, subTask2, 0, 0);
+
+    timesheetDao.undelete(timesheetDao.getById(id));
+    assertDurations(taskTree, task, subTask1, subTask2, 0, 2);
+
+    // Incrementally maintained durations should be same as aggregated ones:
+    assertEquals(2 * 3600, taskDao.readTotalDuration(subTask2.getId()));
+    taskTree.forceReload();
+    assertDurations(taskTree, task, subTask1, subTask2, 0, 2);
+  }
+
+  private void assertDurations(final TaskTree taskTree, final TaskDO task, final TaskDO subTask1, final TaskDO subTask2,
+      final int hours1, final int hours2) {
+    assertEquals(0, getDuration(taskTree, task.getId()));
+    assertEquals((hours1 + hours2) * 3600, getTotalDuration(taskTree, task.getId()));
+    assertEquals(hours1 * 3600, getDuration(taskTree, subTask1.getId()));
+    assertEquals(hours1 * 3600, getTotalDuration(taskTree, subTask1.getId()));
+    assertEquals(hours2 * 3600, getDuration(taskTree, subTask2.getId()));
+    assertEquals(hours2 * 3600, getTotalDuration(taskTree, subTask2.getId()));
+  }
+
   private long getTotalDuration(final TaskTree taskTree, final Integer taskId) {
     return taskTree.getTaskNodeById(taskId).getDuration(taskTree, true);
   }
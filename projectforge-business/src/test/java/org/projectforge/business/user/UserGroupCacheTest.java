@@ -34,8 +34,7 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class UserGroupCacheTest extends AbstractTestBase
 {
@@ -75,4 +74,37 @@ public class UserGroupCacheTest extends AbstractTestBase
     assertTrue(
         userGroupCache.isUserMemberOfAtLeastOneGroup(getUser(AbstractTestBase.TEST_ADMIN_USER).getId(), group2.getId(), group1.getId()));
   }
+
+  @Test
+  public void testIndexes()
+  {
+    final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
+    userGroupCache.forceReload();
+    final PFUserDO testUser = getUser(AbstractTestBase.TEST_USER);
+    assertEquals(testUser.getId(), userGroupCache.getUser(AbstractTestBase.TEST_USER).getId());
+    assertNotNull(userGroupCache.getGroup(ProjectForgeGroup.ADMIN_GROUP));
+    assertEquals(ProjectForgeGroup.ADMIN_GROUP.getKey(), userGroupCache.getGroup(ProjectForgeGroup.ADMIN_GROUP).getName());
+
+    final PFUserDO user = PFUserDO.Companion.createCopyWithoutSecretFields(testUser);
+    user.setUsername("testusergroupcache-renamed");
+    user.setFirstname("UserGroup");
+    user.setLastname("Cache");
+    userGroupCache.updateUser(user);
+    assertNull(userGroupCache.getUser(AbstractTestBase.TEST_USER), "Old username shouldn't be found anymore.");
+    assertSame(user, userGroupCache.getUser("testusergroupcache-renamed"));
+    assertSame(user, userGroupCache.getUserByFullname("UserGroup Cache"));
+    assertSame(user, userGroupCache.getUser(testUser.getId()));
+
+    user.setLastname("Cache2");
+    userGroupCache.updateUser(user);
+    assertNull(userGroupCache.getUserByFullname("UserGroup Cache"), "Old full name shouldn't be found anymore.");
+    assertSame(user, userGroupCache.getUserByFullname("UserGroup Cache2"));
+
+    // The modification wasn't saved, so the refresh should restore the indexes from the data base:
+    userGroupCache.forceReload();
+    assertNull(userGroupCache.getUser("testusergroupcache-renamed"));
+    assertNull(userGroupCache.getUserByFullname("UserGroup Cache2"));
+    assertEquals(testUser.getId(), userGroupCache.getUser(AbstractTestBase.TEST_USER).getId());
+    assertEquals(AbstractTestBase.TEST_USER, userGroupCache.getUser(testUser.getId()).getUsername());
+  }
 }
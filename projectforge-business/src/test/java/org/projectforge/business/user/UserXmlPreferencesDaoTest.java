@@ -0,0 +1,123 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.user;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.projectforge.framework.utils.GZIPHelper;
+import org.projectforge.test.AbstractTestBase;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserXmlPreferencesDaoTest extends AbstractTestBase {
+  @Autowired
+  private UserXmlPreferencesDao userXmlPreferencesDao;
+
+  @Test
+  public void jsonRoundTrip() {
+    final PFUserDO user = getUser(AbstractTestBase.TEST_USER);
+    final TestValue value = new TestValue("Hurzel", 42, user);
+    final String serialized = userXmlPreferencesDao.serialize(value);
+    assertTrue(serialized.startsWith("^JSON:" + TestValue.class.getName() + ":"), serialized);
+    // BaseDOs are written as ids:
+    assertTrue(serialized.contains("\"user\":\"" + user.getId() + "\""), serialized);
+    final TestValue restored = (TestValue) deserialize(serialized, UserXmlPreferencesDO.CURRENT_VERSION);
+    assertEquals("Hurzel", restored.name);
+    assertEquals(42, restored.number);
+    assertEquals(user.getId(), restored.user.getId());
+    // Second value of the same class (verdict of the class is reused):
+    final String serialized2 = userXmlPreferencesDao.serialize(new TestValue("Second", 1, null));
+    assertTrue(serialized2.startsWith("^JSON:"), serialized2);
+    assertEquals("Second", ((TestValue) deserialize(serialized2, UserXmlPreferencesDO.CURRENT_VERSION)).name);
+  }
+
+  @Test
+  public void xmlFallback() {
+    // Untyped maps aren't restorable from json (the date would be restored as string):
+    final Map<String, Object> map = new HashMap<>();
+    map.put("date", new Date(1577836800000L));
+    map.put("number", 42);
+    final String serialized = userXmlPreferencesDao.serialize(map);
+    assertFalse(serialized.startsWith("^JSON:"), serialized);
+    assertTrue(serialized.startsWith("<"), serialized);
+    @SuppressWarnings("unchecked") final Map<String, Object> restored = (Map<String, Object>) deserialize(serialized, UserXmlPreferencesDO.CURRENT_VERSION);
+    assertEquals(new Date(1577836800000L), restored.get("date"));
+    assertEquals(42, restored.get("number"));
+    // Maps are verified every time, maps of strings only are written as json:
+    final Map<String, Object> stringMap = new HashMap<>();
+    stringMap.put("name", "Hurzel");
+    assertTrue(userXmlPreferencesDao.serialize(stringMap).startsWith("^JSON:"));
+    assertFalse(userXmlPreferencesDao.serialize(map).startsWith("^JSON:"));
+  }
+
+  @Test
+  public void compression() {
+    final String large = StringUtils.repeat("ProjectForge ", 200);
+    final String serialized = userXmlPreferencesDao.serialize(new TestValue(large, 0, null));
+    assertTrue(serialized.startsWith("!"), "Large values should be compressed.");
+    assertTrue(GZIPHelper.uncompress(serialized.substring(1)).startsWith("^JSON:"));
+    assertEquals(large, ((TestValue) deserialize(serialized, UserXmlPreferencesDO.CURRENT_VERSION)).name);
+    final String small = userXmlPreferencesDao.serialize(new TestValue("small", 0, null));
+    assertFalse(small.startsWith("!"), "Small values shouldn't be compressed.");
+  }
+
+  @Test
+  public void readVersion4Xml() {
+    assertEquals("Hurzel", deserialize("<string>Hurzel</string>", 4));
+    assertEquals(42, deserialize("<int>42</int>", 4));
+    final String large = StringUtils.repeat("ProjectForge ", 200);
+    assertEquals(large, deserialize("!" + GZIPHelper.compress("<string>" + large + "</string>"), 4));
+  }
+
+  private Object deserialize(final String serialized, final int version) {
+    final UserXmlPreferencesDO userPrefs = new UserXmlPreferencesDO();
+    userPrefs.setVersion(version);
+    userPrefs.setSerializedSettings(serialized);
+    return userXmlPreferencesDao.deserialize(null, userPrefs, true);
+  }
+
+  public static class TestValue {
+    private String name;
+
+    private int number;
+
+    private PFUserDO user;
+
+    public TestValue() {
+    }
+
+    TestValue(final String name, final int number, final PFUserDO user) {
+      this.name = name;
+      this.number = number;
+      this.user = user;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import org.junit.jupiter.api.Test;
+import org.projectforge.business.fibu.KontoDO;
+import org.projectforge.business.fibu.KontoDao;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
+import org.projectforge.test.AbstractTestBase;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryCursorTest extends AbstractTestBase {
+  @Autowired
+  private KontoDao kontoDao;
+
+  @Test
+  public void parse() {
+    assertNull(HistoryCursor.parse(null));
+    assertNull(HistoryCursor.parse(" "));
+    assertNull(HistoryCursor.parse("1234"));
+    assertNull(HistoryCursor.parse("1234:5:6"));
+    assertNull(HistoryCursor.parse("abc:5"));
+    assertNull(HistoryCursor.parse("1234:"));
+    final HistoryCursor cursor = HistoryCursor.parse("1577836800000:42");
+    assertEquals(1577836800000L, cursor.getModifiedAt().getTime());
+    assertEquals(42L, (long) cursor.getPk());
+    assertEquals("1577836800000:42", cursor.toString());
+    assertEquals(cursor.toString(), HistoryCursor.parse(new HistoryCursor(new Date(1577836800000L), 42L).toString()).toString());
+  }
+
+  @Test
+  public void pagingWithIdenticalModificationDates() {
+    logon(AbstractTestBase.TEST_FINANCE_USER);
+    final KontoDO konto = new KontoDO();
+    konto.setNummer(9800);
+    konto.setBezeichnung("HistoryCursorTest");
+    final Integer id = kontoDao.save(konto);
+    for (int i = 0; i < 4; i++) {
+      final KontoDO dbKonto = kontoDao.getById(id);
+      dbKonto.setDescription("Description " + i);
+      kontoDao.update(dbKonto);
+    }
+    // All history entries get the same modification date, so the order is given by the pk only:
+    final Date modifiedAt = new Date(1577836800000L);
+    emf.runInTrans(emgr -> emgr.getEntityManager()
+        .createQuery("update " + PfHistoryMasterDO.class.getName() + " h set h.modifiedAt = :modifiedAt where h.entityName = :entityName and h.entityId = :entityId")
+        .setParameter("modifiedAt", modifiedAt)
+        .setParameter("entityName", KontoDO.class.getName())
+        .setParameter("entityId", id.longValue())
+        .executeUpdate());
+    final KontoDO dbKonto = kontoDao.getById(id);
+    final List<Long> all = toPks(kontoDao.getHistoryEntries(dbKonto, null, 100));
+    assertEquals(5, all.size(), "Insert and 4 updates expected.");
+    final List<Long> sorted = new ArrayList<>(all);
+    sorted.sort(Collections.reverseOrder());
+    assertEquals(sorted, all, "Entries with same modification date should be ordered by pk descending.");
+    for (int pageSize = 1; pageSize <= 3; pageSize++) {
+      final List<Long> paged = new ArrayList<>();
+      HistoryCursor cursor = null;
+      while (paged.size() <= all.size()) {
+        final List<PfHistoryMasterDO> page = kontoDao.getHistoryEntries(dbKonto, cursor, pageSize);
+        paged.addAll(toPks(page));
+        if (page.size() < pageSize) {
+          break;
+        }
+        // Round trip of the cursor as used by the rest api:
+        cursor = HistoryCursor.parse(HistoryCursor.of(page.get(page.size() - 1)).toString());
+      }
+      assertEquals(all, paged, "Page size " + pageSize);
+    }
+  }
+
+  private List<Long> toPks(final List<PfHistoryMasterDO> entries) {
+    return entries.stream().map(PfHistoryMasterDO::getPk).collect(Collectors.toList());
+  }
+}
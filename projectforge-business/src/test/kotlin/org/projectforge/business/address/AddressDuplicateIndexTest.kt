@@ -0,0 +1,105 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressDuplicateIndex.Companion.colognePhonetic
+import org.projectforge.business.address.AddressDuplicateIndex.Companion.createEntry
+import org.projectforge.business.address.AddressDuplicateIndex.Companion.normalize
+import org.projectforge.business.address.AddressDuplicateIndex.Companion.similarity
+import org.projectforge.business.address.AddressDuplicateIndex.Companion.trigrams
+
+class AddressDuplicateIndexTest {
+    @Test
+    fun colognePhoneticTest() {
+        assertEquals("67", colognePhonetic("meier"))
+        assertEquals("67", colognePhonetic("meyer"))
+        assertEquals("67", colognePhonetic("maier"))
+        assertEquals("3412", colognePhonetic("wikipedia"))
+        assertEquals("65752682", colognePhonetic(normalize("Müller-Lüdenscheidt")))
+        assertEquals(colognePhonetic("mueller"), colognePhonetic(normalize("Müller")))
+        assertEquals("", colognePhonetic(""))
+    }
+
+    @Test
+    fun similarityTest() {
+        assertEquals(1.0, similarity(trigrams("kai reinhard"), trigrams("kai reinhard")))
+        assertTrue(similarity(trigrams("kai reinhard"), trigrams("kai reinhardt")) >= 0.8)
+        assertTrue(similarity(trigrams("hans maier"), trigrams("petra schulze")) < 0.5)
+        assertEquals(0.0, similarity(trigrams(""), trigrams("kai reinhard")))
+        assertEquals(0.0, similarity(emptySet(), emptySet()))
+    }
+
+    @Test
+    fun addAndRemoveTest() {
+        val index = AddressDuplicateIndex()
+        val entries = HashMap<Int, AddressDuplicateIndex.Entry>()
+        val blocks = HashMap<String, MutableSet<Int>>()
+        val doublets = HashMap<Int, MutableSet<Int>>()
+        fun add(id: Int, firstName: String, name: String, email: String? = null) {
+            val address = AddressDO()
+            address.firstName = firstName
+            address.name = name
+            address.email = email
+            index.add(createEntry(id, address), entries, blocks, doublets)
+        }
+
+        add(1, "Kai", "Reinhard")
+        add(2, "Kai", "Reinhardt")
+        add(3, "Hans", "Maier", "info@acme.com")
+        add(4, "Petra", "Schulze", "info@acme.com")
+        assertEquals(setOf(2), doublets[1])
+        assertEquals(setOf(1), doublets[2])
+        assertFalse(doublets.containsKey(3), "Shared generic e-mail address without similar names isn't a doublet.")
+        assertFalse(doublets.containsKey(4))
+        assertSymmetric(doublets)
+
+        add(5, "Kay", "Reinhard") // Same phonetics as 1 and 2.
+        assertEquals(setOf(2, 5), doublets[1])
+        assertEquals(setOf(1, 5), doublets[2])
+        assertEquals(setOf(1, 2), doublets[5])
+        assertSymmetric(doublets)
+
+        index.remove(2, entries, blocks, doublets)
+        assertFalse(doublets.containsKey(2))
+        assertEquals(setOf(5), doublets[1])
+        assertEquals(setOf(1), doublets[5])
+        assertSymmetric(doublets)
+
+        index.remove(1, entries, blocks, doublets)
+        index.remove(5, entries, blocks, doublets)
+        assertTrue(doublets.isEmpty())
+        assertFalse(blocks.values.any { it.contains(1) || it.contains(2) || it.contains(5) })
+    }
+
+    private fun assertSymmetric(doublets: Map<Int, Set<Int>>) {
+        doublets.forEach { (id, others) ->
+            assertFalse(others.isEmpty())
+            others.forEach { assertTrue(doublets[it]?.contains(id) == true, "Doublet $id -> $it isn't symmetric.") }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressImageFile.Companion.detectImageType
+import org.projectforge.business.address.AddressImageFile.ImageType
+import java.io.File
+
+class AddressImageFileTest {
+    @Test
+    fun detectImageTypeTest() {
+        assertEquals(ImageType.PNG, detectImageType(byteArrayOf(0x89.toByte(), 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A, 0)))
+        assertEquals(ImageType.JPEG, detectImageType(byteArrayOf(0xFF.toByte(), 0xD8.toByte(), 0xFF.toByte(), 0xE0.toByte())))
+        assertEquals(ImageType.GIF, detectImageType("GIF89a".toByteArray()))
+        assertEquals(ImageType.UNKNOWN, detectImageType("<svg".toByteArray()))
+        assertEquals(ImageType.UNKNOWN, detectImageType(byteArrayOf(0x89.toByte(), 0x50)))
+        assertEquals(ImageType.UNKNOWN, detectImageType(ByteArray(0)))
+    }
+
+    @Test
+    fun imageTypeTest() {
+        val file = File.createTempFile("address-image", "-original.png")
+        try {
+            file.writeBytes(byteArrayOf(0xFF.toByte(), 0xD8.toByte(), 0xFF.toByte(), 0xDB.toByte()))
+            assertEquals(ImageType.JPEG, AddressImageFile("hash", AddressImageRendition.ORIGINAL, file, null).imageType)
+            assertEquals("image/jpeg", AddressImageFile("hash", AddressImageRendition.ORIGINAL, file, null).imageType.contentType)
+            // Renditions are always written as png:
+            assertEquals(ImageType.PNG, AddressImageFile("hash", AddressImageRendition.PREVIEW, file, null).imageType)
+            file.writeBytes(ByteArray(0))
+            assertEquals(ImageType.UNKNOWN, AddressImageFile("hash", AddressImageRendition.ORIGINAL, file, null).imageType)
+        } finally {
+            file.delete()
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.datev
+
+import org.apache.poi.ss.usermodel.CellStyle
+import org.apache.poi.ss.usermodel.Workbook
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.mockito.ArgumentCaptor
+import org.mockito.Mockito
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.business.fibu.kost.BuchungssatzDO
+import org.projectforge.business.fibu.kost.BuchungssatzDao
+import org.projectforge.business.fibu.kost.Kost1DO
+import org.projectforge.business.fibu.kost.Kost1Dao
+import org.projectforge.business.fibu.kost.Kost2DO
+import org.projectforge.business.fibu.kost.Kost2Dao
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.math.BigDecimal
+import java.time.LocalDate
+import java.time.Month
+import java.time.ZoneId
+import java.util.*
+
+class BuchungssatzStreamingImporterTest {
+    @Test
+    fun importTest() {
+        val buchungssatzDao = createBuchungssatzDao()
+        val result = BuchungssatzStreamingImporter(buchungssatzDao, createLookups(), false, batchSize = 2)
+                .doImport(ByteArrayInputStream(createWorkbook()))
+        assertEquals(1, result.numberOfSheets, "Only sheet '01' should be imported.")
+        assertEquals(5, result.numberOfRows)
+        assertEquals(2, result.numberOfInsertedRecords)
+        assertEquals(1, result.numberOfUpdatedRecords)
+        assertEquals(2, result.numberOfErrorRows)
+        assertTrue(result.errorMessages.any { it.contains("Konto '9999' nicht gefunden.") }, result.errorMessages.toString())
+        assertTrue(result.errorMessages.any { it.contains("SatzNr. 1 ist nicht eindeutig.") }, result.errorMessages.toString())
+
+        @Suppress("UNCHECKED_CAST")
+        val captor = ArgumentCaptor.forClass(Collection::class.java) as ArgumentCaptor<Collection<BuchungssatzDO>>
+        Mockito.verify(buchungssatzDao, Mockito.atLeastOnce()).internalSaveOrUpdate(captor.capture(), Mockito.anyInt())
+        val saved = captor.allValues.flatten().sortedBy { it.satznr }
+        assertEquals(listOf(1, 2, 3), saved.map { it.satznr })
+        saved[0].let {
+            assertEquals(2019, it.year)
+            assertEquals(1, it.month)
+            assertEquals(0, BigDecimal("1234.56").compareTo(it.betrag))
+            assertEquals(LocalDate.of(2019, Month.JANUARY, 15), it.datum)
+            assertEquals(1000, it.konto?.nummer)
+            assertEquals(2000, it.gegenKonto?.nummer)
+            assertEquals("Miete", it.text)
+            assertEquals(null, it.id)
+        }
+        assertEquals(42, saved[1].id, "Existing record (same year, month and satznr) should be updated.")
+    }
+
+    @Test
+    fun dryRunTest() {
+        val buchungssatzDao = createBuchungssatzDao()
+        val result = BuchungssatzStreamingImporter(buchungssatzDao, createLookups(), true)
+                .doImport(ByteArrayInputStream(createWorkbook()))
+        assertEquals(2, result.numberOfInsertedRecords)
+        assertEquals(1, result.numberOfUpdatedRecords)
+        Mockito.verify(buchungssatzDao, Mockito.never()).internalSaveOrUpdate(Mockito.anyCollection(), Mockito.anyInt())
+    }
+
+    private fun createBuchungssatzDao(): BuchungssatzDao {
+        val buchungssatzDao = Mockito.mock(BuchungssatzDao::class.java)
+        val existing = BuchungssatzDO()
+        existing.id = 42
+        existing.satznr = 2
+        Mockito.`when`(buchungssatzDao.getBuchungssaetze(2019, 1)).thenReturn(mapOf(2 to existing))
+        return buchungssatzDao
+    }
+
+    private fun createLookups(): DatevImportLookups {
+        val kontoDao = Mockito.mock(KontoDao::class.java)
+        listOf(1000, 2000).forEach {
+            val konto = KontoDO()
+            konto.nummer = it
+            Mockito.`when`(kontoDao.getKonto(it)).thenReturn(konto)
+        }
+        val kost1Dao = Mockito.mock(Kost1Dao::class.java)
+        Mockito.`when`(kost1Dao.getKost1("3.000.00.00")).thenReturn(Kost1DO())
+        val kost2Dao = Mockito.mock(Kost2Dao::class.java)
+        Mockito.`when`(kost2Dao.getKost2("5.100.01.02")).thenReturn(Kost2DO())
+        return DatevImportLookups(kontoDao, kost1Dao, kost2Dao)
+    }
+
+    /**
+     * Small DATEV file: sheet '01' with title and head row, sheet 'Info' to be ignored.
+     */
+    private fun createWorkbook(): ByteArray {
+        XSSFWorkbook().use { workbook ->
+            val dateStyle = workbook.createCellStyle()
+            dateStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat("dd.mm.yyyy")
+            val sheet = workbook.createSheet("01")
+            sheet.createRow(0).createCell(0).setCellValue("Buchungssätze Januar 2019")
+            val head = sheet.createRow(1)
+            listOf("SatzNr.", "Betrag", "SH", "Konto", "Gegenkonto", "Alt.-Kst.", "Kost2", "Datum", "Text")
+                    .forEachIndexed { col, title -> head.createCell(col).setCellValue(title) }
+            addRow(workbook, dateStyle, 2, 1, 1234.56, 1000, 15, "Miete")
+            addRow(workbook, dateStyle, 3, 2, 100.0, 1000, 16, "Strom")
+            addRow(workbook, dateStyle, 4, 3, 50.0, 1000, 17, "Wasser")
+            addRow(workbook, dateStyle, 5, 4, 10.0, 9999, 18, "Unbekanntes Konto")
+            addRow(workbook, dateStyle, 6, 1, 20.0, 1000, 19, "Doppelte SatzNr.")
+            workbook.createSheet("Info").createRow(0).createCell(0).setCellValue("Ignored")
+            ByteArrayOutputStream().use {
+                workbook.write(it)
+                return it.toByteArray()
+            }
+        }
+    }
+
+    private fun addRow(workbook: Workbook, dateStyle: CellStyle, rowNum: Int, satznr: Int,
+                       betrag: Double, konto: Int, day: Int, text: String) {
+        val row = workbook.getSheet("01").createRow(rowNum)
+        row.createCell(0).setCellValue(satznr.toDouble())
+        row.createCell(1).setCellValue(betrag)
+        row.createCell(2).setCellValue("H")
+        row.createCell(3).setCellValue(konto.toDouble())
+        row.createCell(4).setCellValue(2000.0)
+        row.createCell(5).setCellValue("3.000.00.00")
+        row.createCell(6).setCellValue("5.100.01.02")
+        val date = row.createCell(7)
+        date.setCellValue(Date.from(LocalDate.of(2019, Month.JANUARY, day).atStartOfDay(ZoneId.systemDefault()).toInstant()))
+        date.cellStyle = dateStyle
+        row.createCell(8).setCellValue(text)
+    }
+}
@@ -0,0 +1,110 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.timesheet
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import org.projectforge.framework.time.PFDateTime
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.util.*
+
+class TimesheetIntervalCacheTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var timesheetDao: TimesheetDao
+
+    @Autowired
+    private lateinit var timesheetIntervalCache: TimesheetIntervalCache
+
+    @Test
+    fun overlapTest() {
+        initTestDB.addTask("intervalCacheTest", "root")
+        val user = initTestDB.addUser("intervalCacheTest-user")
+        val otherUser = initTestDB.addUser("intervalCacheTest-user2")
+        val windowStart = PFDateTime.now().minusMonths(TimesheetIntervalCache.WINDOW_MONTHS).beginOfMonth.utilDate.time
+
+        Assertions.assertTrue(timesheetIntervalCache.isIndexed(Date(windowStart)))
+        Assertions.assertFalse(timesheetIntervalCache.isIndexed(Date(windowStart - 1)))
+
+        // Time sheet stopping before the window isn't indexed, time sheet stopping within the window is indexed:
+        createTimesheet(user, windowStart - 3 * HOUR, windowStart - 2 * HOUR)
+        val ts = createTimesheet(user, windowStart - HOUR, windowStart + HOUR)
+        Assertions.assertEquals(ts.id, getOverlap(user.id, windowStart, windowStart + HOUR / 2, null))
+        Assertions.assertNull(getOverlap(user.id, windowStart, windowStart + HOUR / 2, ts.id), "Own time sheet should be ignored.")
+        // Periods touching the time sheet don't overlap:
+        Assertions.assertNull(getOverlap(user.id, windowStart + HOUR, windowStart + 2 * HOUR, null))
+        Assertions.assertEquals(ts.id, getOverlap(user.id, windowStart + HOUR - 1, windowStart + 2 * HOUR, null))
+        Assertions.assertNull(getOverlap(otherUser.id, windowStart, windowStart + HOUR / 2, null))
+
+        // Modify:
+        var dbTs = timesheetDao.internalGetById(ts.id)
+        dbTs.startTime = Date(windowStart + 5 * HOUR)
+        dbTs.stopTime = Date(windowStart + 6 * HOUR)
+        timesheetDao.internalUpdate(dbTs)
+        Assertions.assertNull(getOverlap(user.id, windowStart, windowStart + HOUR / 2, null))
+        Assertions.assertEquals(ts.id, getOverlap(user.id, windowStart + 4 * HOUR, windowStart + 7 * HOUR, null))
+
+        // Move to other user:
+        dbTs = timesheetDao.internalGetById(ts.id)
+        dbTs.user = otherUser
+        timesheetDao.internalUpdate(dbTs)
+        Assertions.assertNull(getOverlap(user.id, windowStart + 4 * HOUR, windowStart + 7 * HOUR, null))
+        Assertions.assertEquals(ts.id, getOverlap(otherUser.id, windowStart + 4 * HOUR, windowStart + 7 * HOUR, null))
+
+        // Delete and undelete:
+        timesheetDao.internalMarkAsDeleted(timesheetDao.internalGetById(ts.id))
+        Assertions.assertNull(getOverlap(otherUser.id, windowStart + 4 * HOUR, windowStart + 7 * HOUR, null))
+        timesheetDao.internalUndelete(timesheetDao.internalGetById(ts.id))
+        Assertions.assertEquals(ts.id, getOverlap(otherUser.id, windowStart + 4 * HOUR, windowStart + 7 * HOUR, null))
+
+        // Overlap check of the dao uses the index:
+        val collision = TimesheetDO()
+        collision.user = otherUser
+        collision.startTime = Date(windowStart + 5 * HOUR + HOUR / 2)
+        collision.stopTime = Date(windowStart + 8 * HOUR)
+        Assertions.assertTrue(timesheetDao.hasTimeOverlap(collision, false))
+        collision.startTime = Date(windowStart + 6 * HOUR)
+        Assertions.assertFalse(timesheetDao.hasTimeOverlap(collision, false))
+    }
+
+    private fun getOverlap(userId: Int, from: Long, until: Long, excludeId: Int?): Int? {
+        return timesheetIntervalCache.getOverlap(userId, Date(from), Date(until), excludeId)?.id
+    }
+
+    private fun createTimesheet(user: PFUserDO, startTime: Long, stopTime: Long): TimesheetDO {
+        val ts = TimesheetDO()
+        ts.task = getTask("intervalCacheTest")
+        ts.user = user
+        ts.startTime = Date(startTime)
+        ts.stopTime = Date(stopTime)
+        timesheetDao.internalSave(ts)
+        return ts
+    }
+
+    companion object {
+        private const val HOUR = 3600 * 1000L
+    }
+}
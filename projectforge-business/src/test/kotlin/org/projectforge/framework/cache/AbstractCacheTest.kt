@@ -0,0 +1,132 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.cache
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AbstractCacheTest {
+    private open class TestCache : AbstractCache(AbstractCache.TICKS_PER_HOUR) {
+        @Volatile
+        var value = 0
+
+        /**
+         * If given, refresh() will block until this latch is released.
+         */
+        @Volatile
+        var blockRefresh: CountDownLatch? = null
+
+        val refreshStarted = CountDownLatch(1)
+
+        fun get(): Int {
+            checkRefresh()
+            return value
+        }
+
+        fun setOutdated() {
+            expireTime = -1
+        }
+
+        override fun refresh() {
+            blockRefresh?.let {
+                refreshStarted.countDown()
+                Assertions.assertTrue(it.await(10, TimeUnit.SECONDS))
+            }
+            ++value
+        }
+    }
+
+    private class InPlaceTestCache : TestCache() {
+        override fun isBackgroundRefreshEnabled(): Boolean {
+            return false
+        }
+    }
+
+    @Test
+    fun refreshTest() {
+        val cache = TestCache()
+        Assertions.assertEquals(-1, cache.staleness)
+        Assertions.assertEquals(1, cache.get(), "Initial refresh expected.")
+        Assertions.assertEquals(1, cache.get(), "No refresh expected.")
+        Assertions.assertEquals(2, cache.hitCount)
+        Assertions.assertEquals(1, cache.refreshCount)
+        cache.setExpired()
+        Assertions.assertEquals(2, cache.get(), "Expired cache should be refreshed synchronously.")
+        cache.forceReload()
+        Assertions.assertEquals(3, cache.value)
+        Assertions.assertTrue(cache.staleness >= 0)
+    }
+
+    @Test
+    fun backgroundRefreshTest() {
+        val cache = TestCache()
+        Assertions.assertEquals(1, cache.get())
+        val release = CountDownLatch(1)
+        cache.blockRefresh = release
+        cache.setOutdated()
+        // Outdated cache delivers the previous value and refreshes in the background.
+        Assertions.assertEquals(1, cache.get())
+        Assertions.assertTrue(cache.refreshStarted.await(10, TimeUnit.SECONDS))
+        Assertions.assertTrue(cache.isRefreshInProgress)
+        // Readers aren't blocked by the running refresh and no further refresh is scheduled.
+        Assertions.assertEquals(1, cache.get())
+        Assertions.assertEquals(2, cache.staleHitCount)
+        cache.setExpireTimeInHours(1)
+        release.countDown()
+        synchronized(cache) {
+            // The refresh holds the monitor of the cache, so it's finished here.
+        }
+        Assertions.assertFalse(cache.isRefreshInProgress)
+        Assertions.assertEquals(2, cache.refreshCount)
+        Assertions.assertEquals(2, cache.get())
+        Assertions.assertEquals(2, cache.refreshCount)
+    }
+
+    @Test
+    fun readersWaitForRefreshTest() {
+        val cache = InPlaceTestCache()
+        Assertions.assertEquals(1, cache.get())
+        val release = CountDownLatch(1)
+        cache.blockRefresh = release
+        val refreshThread = Thread { cache.forceReload() }
+        refreshThread.start()
+        Assertions.assertTrue(cache.refreshStarted.await(10, TimeUnit.SECONDS))
+        var result = -1
+        val reader = Thread { result = cache.get() }
+        reader.start()
+        // Without background refresh the reader has to wait for the running refresh:
+        while (reader.state != Thread.State.BLOCKED) {
+            Assertions.assertTrue(reader.isAlive, "Reader shouldn't read the data during the refresh.")
+            Thread.yield()
+        }
+        release.countDown()
+        refreshThread.join()
+        reader.join()
+        Assertions.assertEquals(2, result)
+        Assertions.assertEquals(0, cache.staleHitCount)
+        Assertions.assertEquals(2, cache.refreshCount)
+    }
+}
@@ -0,0 +1,120 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.api.impl
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.framework.persistence.api.QueryFilter
+import org.projectforge.framework.persistence.api.SortProperty
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class DBQueryPagingTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var kontoDao: KontoDao
+
+    @Test
+    fun keysetPagingTest() {
+        logon(TEST_FINANCE_USER)
+        // Null values and ties on the sort values:
+        val descriptions = listOf("b", null, "a", "c", "a", null, "b", "a", null)
+        val ids = descriptions.mapIndexed { index, description ->
+            val konto = KontoDO()
+            konto.nummer = 9900 + index
+            konto.bezeichnung = BEZEICHNUNG
+            konto.description = description
+            kontoDao.save(konto)
+        }
+        for (sortProperties in listOf(
+                listOf(SortProperty.asc("description")),
+                listOf(SortProperty.desc("description")),
+                listOf(SortProperty.asc("description"), SortProperty.desc("nummer")),
+                listOf(SortProperty.desc("description"), SortProperty.desc("id")))) {
+            val all = kontoDao.getList(createFilter(sortProperties, 1000))
+            Assertions.assertEquals(ids.toSet(), all.map { it.id }.toSet())
+            assertSortedByDescription(all, sortProperties[0].ascending)
+            for (maxRows in 1..4) {
+                // Page until no more entries are available (nextPageAfterId round trip):
+                val paged = mutableListOf<KontoDO>()
+                var pageAfterId: Int? = null
+                do {
+                    val filter = createFilter(sortProperties, maxRows)
+                    filter.pageAfterId = pageAfterId
+                    val page = kontoDao.getList(filter)
+                    Assertions.assertTrue(page.size <= maxRows)
+                    paged.addAll(page)
+                    pageAfterId = filter.nextPageAfterId
+                    if (pageAfterId != null) {
+                        Assertions.assertEquals(page.last().id, pageAfterId)
+                    }
+                } while (pageAfterId != null && paged.size <= ids.size)
+                Assertions.assertEquals(all.map { it.id }, paged.map { it.id }, "Pages of $maxRows rows ordered by $sortProperties.")
+            }
+        }
+    }
+
+    @Test
+    fun deletedCursorEntryTest() {
+        logon(TEST_FINANCE_USER)
+        listOf("x", null, "y").forEachIndexed { index, description ->
+            val konto = KontoDO()
+            konto.nummer = 9950 + index
+            konto.bezeichnung = BEZEICHNUNG_DELETED
+            konto.description = description
+            kontoDao.save(konto)
+        }
+        val sortProperties = listOf(SortProperty.asc("description"))
+        val firstPage = kontoDao.getList(createFilter(sortProperties, 2, BEZEICHNUNG_DELETED))
+        val filter = createFilter(sortProperties, 2, BEZEICHNUNG_DELETED)
+        filter.pageAfterId = Int.MAX_VALUE // Cursor entry doesn't exist (anymore).
+        Assertions.assertEquals(firstPage.map { it.id }, kontoDao.getList(filter).map { it.id }, "First page expected.")
+    }
+
+    private fun createFilter(sortProperties: List<SortProperty>, maxRows: Int, bezeichnung: String = BEZEICHNUNG): QueryFilter {
+        val filter = QueryFilter()
+        filter.add(QueryFilter.eq("bezeichnung", bezeichnung))
+        sortProperties.forEach { filter.addOrder(it) }
+        filter.maxRows = maxRows
+        return filter
+    }
+
+    private fun assertSortedByDescription(list: List<KontoDO>, ascending: Boolean) {
+        val values = list.map { it.description }
+        val nonNullValues = values.filterNotNull()
+        Assertions.assertEquals(if (ascending) nonNullValues.sorted() else nonNullValues.sortedDescending(), nonNullValues)
+        // Null values are sorted in one block (first or last, depending on the data base):
+        val firstNull = values.indexOfFirst { it == null }
+        val lastNull = values.indexOfLast { it == null }
+        Assertions.assertEquals(3, lastNull - firstNull + 1)
+        Assertions.assertTrue(firstNull == 0 || lastNull == values.size - 1)
+    }
+
+    companion object {
+        private const val BEZEICHNUNG = "DBQueryPagingTest"
+        private const val BEZEICHNUNG_DELETED = "DBQueryPagingTest-deleted"
+    }
+}
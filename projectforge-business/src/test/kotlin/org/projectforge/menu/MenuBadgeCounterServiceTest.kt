@@ -0,0 +1,57 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.menu
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class MenuBadgeCounterServiceTest {
+    @Test
+    fun cachingAndInvalidationTest() {
+        val service = MenuBadgeCounterService()
+        var calls = 0
+        service.register("user") { userId -> calls++; userId * 10 }
+        var globalCalls = 0
+        service.registerGlobal("global") { globalCalls++; 42 }
+
+        assertNull(service.getCounter("unknown", 1))
+        assertEquals(10, service.getCounter("user", 1))
+        assertEquals(20, service.getCounter("user", 2))
+        assertEquals(10, service.getCounter("user", 1))
+        assertEquals(2, calls, "Counters should be computed only once per user.")
+
+        assertEquals(42, service.getCounter("global", 1))
+        assertEquals(42, service.getCounter("global", 2))
+        assertEquals(1, globalCalls, "Global counters should be computed only once for all users.")
+
+        service.invalidate("user")
+        assertEquals(10, service.getCounter("user", 1))
+        assertEquals(3, calls)
+        assertEquals(42, service.getCounter("global", 1))
+        assertEquals(1, globalCalls, "Global counter shouldn't be affected by invalidation of other counters.")
+
+        assertEquals(mapOf("user" to 10, "global" to 42), service.getCounters(1))
+    }
+}
@@ -80,6 +80,14 @@ open class ProjectForgeCalDAVController : BaseDAVController() {
         return calendarService.getCalendarEvents(cal)
     }
 
+    /**
+     * Clients only fetch the events of a calendar, if the CTag was modified.
+     */
+    @CTag
+    fun getCTag(cal: Calendar): String? {
+        return calendarService.getCTag(cal)
+    }
+
     @Get
     @ICalData
     fun getMeetingData(m: Meeting): ByteArray? {
@@ -102,8 +110,11 @@ open class ProjectForgeCalDAVController : BaseDAVController() {
     @PutChild
     fun updateMeeting(m: Meeting, ical: ByteArray): Meeting? {
         log.info("updateMeeting ${m.uniqueId}.")
-        m.icalData = ical
-        val meetingUpdated = calendarService.updateCalendarEvent(m) ?: return null
+        // Don't modify the given meeting before the update succeeded (the rejected ical data must not be delivered):
+        val requestMeeting = m.copy()
+        requestMeeting.icalData = ical
+        val meetingUpdated = calendarService.updateCalendarEvent(requestMeeting) ?: return null
+        m.icalData = meetingUpdated.icalData ?: ical
         // update modification date in event parameter, required for computing eTag!
         m.modifiedDate = meetingUpdated.modifiedDate
         return meetingUpdated
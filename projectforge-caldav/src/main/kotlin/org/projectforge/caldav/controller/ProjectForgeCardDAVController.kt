@@ -77,6 +77,14 @@ open class ProjectForgeCardDAVController : BaseDAVController() {
         return addressService.getContactList(ab)
     }
 
+    /**
+     * Clients only fetch the contacts of an address book, if the CTag was modified.
+     */
+    @CTag
+    fun getCTag(ab: AddressBook): String {
+        return addressService.getCTag(ab)
+    }
+
     @Get
     @ContactData
     fun getContactData(c: Contact): ByteArray? {
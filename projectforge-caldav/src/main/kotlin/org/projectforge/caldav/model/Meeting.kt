@@ -42,6 +42,19 @@ class Meeting(var calendar: Calendar) {
     var modifiedDate: Date? = null
     var icalData: ByteArray? = null
 
+    /**
+     * @return A copy of this meeting (the ical data is shared, because it's never modified in place).
+     */
+    fun copy(): Meeting {
+        val meeting = Meeting(calendar)
+        meeting.uniqueId = uniqueId
+        meeting.name = name
+        meeting.createDate = createDate
+        meeting.modifiedDate = modifiedDate
+        meeting.icalData = icalData
+        return meeting
+    }
+
     companion object {
         private val log = LoggerFactory.getLogger(Meeting::class.java)
     }
@@ -31,15 +31,35 @@ import org.projectforge.caldav.model.AddressBook
 import org.projectforge.caldav.model.Contact
 import org.projectforge.framework.access.OperationType
 import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.configuration.ConfigXml
 import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Service
+import org.springframework.transaction.support.TransactionSynchronizationAdapter
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import java.io.*
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
 
 private val log = KotlinLogging.logger {}
 
 /**
  * Cache needed, because vcard generation takes lot of cpu power....
+ *
+ * The size of the cache is bounded by the sum of the vcard bytes (least recently used contacts are evicted first).
+ * Cached contacts are valid as long as the lastUpdate of the address is unchanged.
+ *
+ * If configured (`projectforge.carddav.vcardCache.persistent=true`), the cache is written to the working directory on
+ * shutdown (and hourly) and read on start-up, so the vcards survive restarts. Please note: the cache file contains the
+ * vcards (personal data including images) unencrypted, it's only protected by its file permissions (readable and
+ * writable by the owner only, if supported by the file system). Don't enable this, if the working directory isn't
+ * protected adequately (e. g. backups).
+ *
+ * The cache also provides the CTags of the address books (favorites) of the users.
  */
 @Service
 open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListener<AddressDO> {
@@ -52,13 +72,34 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
     @Autowired
     private lateinit var vCardService: VCardService
 
-    private var contactMap = mutableMapOf<Int, Contact>()
+    @Autowired
+    private lateinit var emgrFactory: PfEmgrFactory
+
+    @Value("\${projectforge.carddav.vcardCache.maxSizeMB:100}")
+    private var maxSizeMB: Long = 100
+
+    @Value("\${projectforge.carddav.vcardCache.persistent:false}")
+    private var persistent: Boolean = false
+
+    /**
+     * Access ordered (LRU), guarded by itself.
+     */
+    private val contactMap = LinkedHashMap<Int, Contact>(1000, 0.75f, true)
+
+    private var weight = 0L
+
+    /**
+     * Ids of contacts read from disk. The lastUpdate of these addresses has to be checked before use.
+     */
+    private val unverifiedIds = ConcurrentHashMap.newKeySet<Int>()
 
     open fun getContacts(addressBook: AddressBook, ids: List<Int>): List<Contact> {
+        checkRefresh()
+        verify(ids)
         val result = mutableListOf<Contact>()
         val missedInCache = mutableListOf<Int>()
         ids.forEach {
-            val contact = getCachedAddress(it)
+            val contact = getCachedContact(it)
             if (contact != null) {
                 val copy = Contact(contact, addressBook)
                 result.add(copy)
@@ -79,7 +120,31 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
         return result
     }
 
-    private fun getCachedAddress(id: Int): Contact? {
+    /**
+     * The CTag of an address book changes if any contact is modified, added or removed. Only the last modification
+     * date of the contacts is queried, no vcards are built.
+     * @param ids The ids of the addresses of the address book.
+     */
+    open fun getCTag(ids: List<Int>): String {
+        var maxLastUpdate = 0L
+        ids.chunked(1000).forEach { chunk ->
+            emgrFactory.runRoTrans { emgr ->
+                val lastUpdate = emgr.entityManager.createQuery("select max(a.lastUpdate) from AddressDO a where a.id in :ids")
+                        .setParameter("ids", chunk)
+                        .singleResult as Date?
+                if (lastUpdate != null && lastUpdate.time > maxLastUpdate) {
+                    maxLastUpdate = lastUpdate.time
+                }
+            }
+        }
+        var hash = ids.size.toLong()
+        ids.sorted().forEach {
+            hash = 31 * hash + it
+        }
+        return "${java.lang.Long.toHexString(hash)}-$maxLastUpdate"
+    }
+
+    private fun getCachedContact(id: Int): Contact? {
         synchronized(contactMap) {
             return contactMap[id]
         }
@@ -87,29 +152,182 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
 
     private fun addCachedContact(id: Int, contact: Contact) {
         synchronized(contactMap) {
-            contactMap[id] = contact
+            contactMap.put(id, contact)?.let { weight -= getWeight(it) }
+            weight += getWeight(contact)
+            val maxWeight = maxSizeMB * 1024 * 1024
+            val it = contactMap.values.iterator()
+            while (weight > maxWeight && it.hasNext()) {
+                val eldest = it.next()
+                if (eldest === contact) {
+                    break
+                }
+                weight -= getWeight(eldest)
+                it.remove()
+            }
+        }
+    }
+
+    private fun removeCachedContact(id: Int?) {
+        id ?: return
+        synchronized(contactMap) {
+            contactMap.remove(id)?.let { weight -= getWeight(it) }
+        }
+        unverifiedIds.remove(id)
+    }
+
+    private fun getWeight(contact: Contact): Long {
+        return (contact.vcardData?.size ?: 0).toLong() + 100 // 100 bytes as overhead per entry.
+    }
+
+    /**
+     * Contacts read from disk are removed, if the lastUpdate of the address was changed in the meantime.
+     */
+    private fun verify(ids: List<Int>) {
+        if (unverifiedIds.isEmpty()) {
+            return
+        }
+        val toVerify = ids.filter { unverifiedIds.contains(it) }
+        if (toVerify.isEmpty()) {
+            return
+        }
+        val lastUpdates = mutableMapOf<Int, Long?>()
+        toVerify.chunked(1000).forEach { chunk ->
+            emgrFactory.runRoTrans { emgr ->
+                @Suppress("UNCHECKED_CAST")
+                val list = emgr.entityManager.createQuery("select a.id, a.lastUpdate from AddressDO a where a.id in :ids")
+                        .setParameter("ids", chunk)
+                        .resultList as List<Array<*>>
+                list.forEach { lastUpdates[it[0] as Int] = (it[1] as Date?)?.time }
+            }
+        }
+        toVerify.forEach { id ->
+            val contact = getCachedContact(id)
+            if (contact != null && (contact.modifiedDate == null || contact.modifiedDate?.time != lastUpdates[id])) {
+                removeCachedContact(id)
+            }
+            unverifiedIds.remove(id)
         }
     }
 
     /**
      * After modification of any address (insert, update, delete, undelete) this address should be removed from
-     * this cache.
+     * this cache. It's removed again after the commit, because concurrent readers may have cached the vcard of the
+     * uncommitted state in the meantime.
      */
     override fun afterSaveOrModifify(changedObject: AddressDO, operationType: OperationType) {
-        synchronized(contactMap) {
-            contactMap.remove(changedObject.id)
+        val id = changedObject.id
+        removeCachedContact(id)
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(object : TransactionSynchronizationAdapter() {
+                override fun afterCommit() {
+                    removeCachedContact(id)
+                }
+            })
         }
     }
 
     @PostConstruct
     fun postConstruct() {
         addressDao.register(this)
+        if (persistent) {
+            readFromDisk()
+        }
+    }
+
+    @PreDestroy
+    fun preDestroy() {
+        if (persistent) {
+            writeToDisk()
+        }
     }
 
+    /**
+     * The cache isn't cleared (entries are bounded and validated by lastUpdate), only written to disk, if configured.
+     */
     override fun refresh() {
-        log.info("Clearing cache ${this::class.java.simpleName}.")
         synchronized(contactMap) {
-            contactMap.clear()
+            log.info("${this::class.java.simpleName}: ${contactMap.size} contacts, ${weight / 1024}KB.")
+        }
+        if (persistent) {
+            writeToDisk()
+        }
+    }
+
+    private val cacheFile: File
+        get() = File(ConfigXml.getInstance().workingDirectory, CACHE_FILENAME)
+
+    private fun writeToDisk() {
+        val contacts = synchronized(contactMap) {
+            contactMap.values.toList()
         }
+        val file = cacheFile
+        val tmpFile = File(file.parentFile, "${file.name}.tmp")
+        try {
+            createOwnerOnlyFile(tmpFile)
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tmpFile))).use { out ->
+                out.writeInt(FILE_VERSION)
+                out.writeInt(contacts.size)
+                contacts.forEach {
+                    out.writeLong(it.id)
+                    out.writeUTF(it.name ?: "")
+                    out.writeLong(it.modifiedDate?.time ?: -1)
+                    val data = it.vcardData ?: ByteArray(0)
+                    out.writeInt(data.size)
+                    out.write(data)
+                }
+            }
+            if (!tmpFile.renameTo(file)) {
+                file.delete()
+                tmpFile.renameTo(file)
+            }
+            log.info("${contacts.size} contacts written to '${file.absolutePath}'.")
+        } catch (ex: IOException) {
+            log.error("Can't write vcard cache to '${file.absolutePath}': ${ex.message}", ex)
+        }
+    }
+
+    /**
+     * Creates an empty file readable and writable only by its owner (the vcards contain personal data).
+     */
+    private fun createOwnerOnlyFile(file: File) {
+        file.delete()
+        file.createNewFile()
+        if (!(file.setReadable(false, false) && file.setWritable(false, false)
+                        && file.setReadable(true, true) && file.setWritable(true, true))) {
+            log.warn("Can't restrict the access of '${file.absolutePath}' to its owner.")
+        }
+    }
+
+    private fun readFromDisk() {
+        val file = cacheFile
+        if (!file.exists()) {
+            return
+        }
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != FILE_VERSION) {
+                    log.info("Ignoring vcard cache file '${file.absolutePath}' of older version.")
+                    return
+                }
+                val size = input.readInt()
+                for (i in 0 until size) {
+                    val id = input.readLong().toInt()
+                    val name = input.readUTF()
+                    val lastUpdate = input.readLong()
+                    val data = ByteArray(input.readInt())
+                    input.readFully(data)
+                    addCachedContact(id, Contact(id, name, if (lastUpdate >= 0) Date(lastUpdate) else null, data))
+                    unverifiedIds.add(id)
+                }
+                log.info("$size contacts read from '${file.absolutePath}'.")
+            }
+        } catch (ex: IOException) {
+            log.error("Can't read vcard cache from '${file.absolutePath}': ${ex.message}", ex)
+        }
+    }
+
+    companion object {
+        private const val CACHE_FILENAME = "carddav-vcards.cache"
+        private const val FILE_VERSION = 1
     }
 }
@@ -57,6 +57,14 @@ class AddressService {
         return addressDAVCache.getContacts(addressBook, favorites)
     }
 
+    /**
+     * The CTag of the address book (favorites of the user) changes if any contact is modified, added or removed.
+     */
+    @Suppress("UNUSED_PARAMETER")
+    fun getCTag(addressBook: AddressBook): String {
+        return addressDAVCache.getCTag(personalAddressDao.favoriteAddressIdList)
+    }
+
     @Suppress("UNUSED_PARAMETER")
     fun createContact(ab: AddressBook, vcardBytearray: ByteArray): Contact {
         log.warn("Creation of contacts not supported.")
@@ -0,0 +1,202 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.caldav.service
+
+import mu.KotlinLogging
+import org.projectforge.business.teamcal.admin.TeamCalDao
+import org.projectforge.business.teamcal.admin.model.TeamCalDO
+import org.projectforge.business.teamcal.event.TeamEventDao
+import org.projectforge.business.teamcal.event.model.TeamEventDO
+import org.projectforge.business.user.GroupDao
+import org.projectforge.caldav.model.Meeting
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.user.entities.GroupDO
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.time.LocalDate
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Cache needed, because CalDAV clients are polling all few minutes and the ics generation takes lot of cpu power....
+ *
+ * Holds a change counter per calendar (for CTags), the generated ics data per event and user and the meetings of a
+ * calendar per user. The meetings are valid as long as neither the events of the calendar nor the calendar itself
+ * (access rights) nor any group is modified.
+ *
+ * CTags have the format `<startTime>-<counter>`, so CTags of a previous run differ (clients reload the calendars after
+ * restarts).
+ */
+@Service
+open class CalendarDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListener<TeamEventDO> {
+    @Autowired
+    private lateinit var teamEventDao: TeamEventDao
+
+    @Autowired
+    private lateinit var teamCalDao: TeamCalDao
+
+    @Autowired
+    private lateinit var groupDao: GroupDao
+
+    private val startTime = System.currentTimeMillis()
+
+    private val calendarCounterMap = ConcurrentHashMap<Int, AtomicLong>()
+
+    private val icsDataMap = ConcurrentHashMap<IcsKey, IcsData>()
+
+    private val meetingsMap = ConcurrentHashMap<MeetingsKey, CachedMeetings>()
+
+    /**
+     * Id of calendar of every known event, needed for detecting events moved to other calendars.
+     */
+    private val eventCalendarMap = ConcurrentHashMap<Int, Int>()
+
+    /**
+     * The ics data depends on the time zone and locale of the user, so preference changes result in new keys.
+     */
+    private data class IcsKey(val eventId: Int, val userId: Int, val timeZoneId: String, val locale: Locale)
+
+    private class IcsData(val lastUpdate: Long?, val data: ByteArray)
+
+    private data class MeetingsKey(val calendarId: Int, val userId: Int, val timeZoneId: String, val locale: Locale)
+
+    private class CachedMeetings(val syncCounter: Long, val day: LocalDate, val meetings: List<Meeting>)
+
+    /**
+     * The CTag changes on every modification of any event of the calendar or of the calendar itself.
+     */
+    open fun getCTag(calendarId: Int): String {
+        return "$startTime-${getCounter(calendarId).get()}"
+    }
+
+    /**
+     * @return Copies of the cached meetings of the given calendar and user, if the calendar wasn't modified since. The
+     * callers may modify the returned meetings without affecting the cache.
+     */
+    open fun getMeetings(calendarId: Int, userId: Int, timeZone: TimeZone, locale: Locale, loader: () -> List<Meeting>): List<Meeting> {
+        checkRefresh()
+        val key = MeetingsKey(calendarId, userId, timeZone.id, locale)
+        val syncCounter = getCounter(calendarId).get()
+        val today = LocalDate.now()
+        val cached = meetingsMap[key]
+        if (cached != null && cached.syncCounter == syncCounter && cached.day == today) {
+            log.debug { "Calendar #$calendarId of user #$userId not modified, using cached meetings." }
+            return cached.meetings.map { it.copy() }
+        }
+        val meetings = loader()
+        meetingsMap[key] = CachedMeetings(syncCounter, today, meetings.map { it.copy() })
+        return meetings
+    }
+
+    /**
+     * @return The cached ics data of the given event for the given user (and his time zone and locale), if the event
+     * wasn't modified since.
+     */
+    open fun getIcsData(event: TeamEventDO, userId: Int, timeZone: TimeZone, locale: Locale, generator: () -> ByteArray): ByteArray {
+        val eventId = event.id ?: return generator()
+        event.calendarId?.let { eventCalendarMap[eventId] = it }
+        val key = IcsKey(eventId, userId, timeZone.id, locale)
+        val lastUpdate = event.lastUpdate?.time
+        val cached = icsDataMap[key]
+        if (cached != null && lastUpdate != null && cached.lastUpdate == lastUpdate) {
+            return cached.data
+        }
+        val data = generator()
+        if (icsDataMap.size >= MAX_ICS_ENTRIES) {
+            log.info { "Maximum size of ics cache reached ($MAX_ICS_ENTRIES entries), clearing it." }
+            icsDataMap.clear()
+        }
+        icsDataMap[key] = IcsData(lastUpdate, data)
+        return data
+    }
+
+    private fun getCounter(calendarId: Int): AtomicLong {
+        return calendarCounterMap.computeIfAbsent(calendarId) { AtomicLong() }
+    }
+
+    /**
+     * Forces the reload of the calendar's meetings by all users and changes its CTag.
+     */
+    private fun calendarModified(calendarId: Int) {
+        getCounter(calendarId).incrementAndGet()
+        meetingsMap.keys.removeIf { it.calendarId == calendarId }
+    }
+
+    /**
+     * After modification of any event (insert, update, delete, undelete) this event should be removed from
+     * this cache and the calendar(s) of the event are marked as modified.
+     */
+    override fun afterSaveOrModifify(changedObject: TeamEventDO, operationType: OperationType) {
+        val eventId = changedObject.id
+        val calendarId = changedObject.calendarId
+        if (eventId != null) {
+            icsDataMap.keys.removeIf { it.eventId == eventId }
+            val oldCalendarId = if (calendarId != null) eventCalendarMap.put(eventId, calendarId) else eventCalendarMap.remove(eventId)
+            if (oldCalendarId != null && oldCalendarId != calendarId) {
+                // Event moved to another calendar:
+                calendarModified(oldCalendarId)
+            }
+        }
+        if (calendarId != null) {
+            calendarModified(calendarId)
+        }
+    }
+
+    @PostConstruct
+    fun postConstruct() {
+        teamEventDao.register(this)
+        // Access rights of calendars may be changed by modifying the calendar or the groups of the users:
+        teamCalDao.register(object : BaseDOChangedListener<TeamCalDO> {
+            override fun afterSaveOrModifify(changedObject: TeamCalDO, operationType: OperationType) {
+                changedObject.id?.let { calendarModified(it) }
+            }
+        })
+        groupDao.register(object : BaseDOChangedListener<GroupDO> {
+            override fun afterSaveOrModifify(changedObject: GroupDO, operationType: OperationType) {
+                log.info("Group modified, clearing cached meetings of all calendars.")
+                calendarCounterMap.values.forEach { it.incrementAndGet() }
+                meetingsMap.clear()
+            }
+        })
+    }
+
+    /**
+     * Clears the ics data and meetings, the change counters (CTags) are kept.
+     */
+    override fun refresh() {
+        log.info("Clearing cache ${this::class.java.simpleName}.")
+        icsDataMap.clear()
+        meetingsMap.clear()
+    }
+
+    companion object {
+        private const val MAX_ICS_ENTRIES = 50000
+    }
+}
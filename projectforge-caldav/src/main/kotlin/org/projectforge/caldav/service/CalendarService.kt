@@ -39,6 +39,8 @@ import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.time.PFDateTime.Companion.now
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
+import java.util.Locale
+import java.util.TimeZone
 
 private val log = KotlinLogging.logger {}
 
@@ -53,6 +55,9 @@ class CalendarService {
     @Autowired
     private lateinit var teamEventService: TeamEventService
 
+    @Autowired
+    private lateinit var calendarDAVCache: CalendarDAVCache
+
     fun getCalendarList(user: User): List<Calendar> {
         if (user.id != ThreadLocalUserContext.getUserId().toLong()) {
             throw AccessException("Logged-in user differs from the user requested.")
@@ -64,17 +69,33 @@ class CalendarService {
         return result
     }
 
+    /**
+     * The meetings are cached as long as the calendar isn't modified, the ics data is cached per event.
+     */
     fun getCalendarEvents(cal: Calendar): List<Meeting> {
-        val result = mutableListOf<Meeting>()
-        cal.id ?: return result
-        val filter = TeamEventFilter().setTeamCals(listOf(cal.id))
-        filter.startDate = now().minusDays(1000.toLong()).utilDate
-        val generator = ICalGenerator.exportAllFields()
-        generator.editableVEvent(true)
-        teamEventService.getTeamEventDOList(filter).forEach {
-            result.add(convert(generator, cal, it))
+        val calendarId = cal.id ?: return emptyList()
+        val userId = ThreadLocalUserContext.getUserId()
+        val timeZone = ThreadLocalUserContext.getTimeZone()
+        val locale = ThreadLocalUserContext.getLocale()
+        return calendarDAVCache.getMeetings(calendarId, userId, timeZone, locale) {
+            val result = mutableListOf<Meeting>()
+            val filter = TeamEventFilter().setTeamCals(listOf(calendarId))
+            filter.startDate = now().minusDays(1000.toLong()).utilDate
+            val generator = ICalGenerator.exportAllFields()
+            generator.editableVEvent(true)
+            teamEventService.getTeamEventDOList(filter).forEach {
+                result.add(convert(generator, cal, it, userId, timeZone, locale))
+            }
+            result
         }
-        return result
+    }
+
+    /**
+     * The CTag of a calendar changes on every modification of the calendar or any of its events.
+     */
+    fun getCTag(cal: Calendar): String? {
+        val calendarId = cal.id ?: return null
+        return calendarDAVCache.getCTag(calendarId)
     }
 
     @Suppress("UNUSED_PARAMETER")
@@ -94,13 +115,17 @@ class CalendarService {
         log.warn { "Deleting of meetings not supported." }
     }
 
-    private fun convert(generator: ICalGenerator, cal: Calendar, event: TeamEventDO): Meeting {
+    private fun convert(generator: ICalGenerator, cal: Calendar, event: TeamEventDO, userId: Int, timeZone: TimeZone, locale: Locale): Meeting {
         val result = Meeting(cal)
         result.uniqueId = event.uid
         result.createDate = event.created
         result.modifiedDate = event.lastUpdate
         result.name = event.uid + ".ics"
-        result.icalData = generator.calendarAsByteStream.toByteArray()
+        result.icalData = calendarDAVCache.getIcsData(event, userId, timeZone, locale) {
+            generator.reset()
+            generator.addEvent(event)
+            generator.calendarAsByteStream.toByteArray()
+        }
         return result
     }
 
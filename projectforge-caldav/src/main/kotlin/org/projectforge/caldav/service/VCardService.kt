@@ -35,6 +35,7 @@ import ezvcard.property.*
 import ezvcard.util.PartialDate
 import org.projectforge.business.address.AddressDO
 import org.projectforge.business.address.AddressImageDao
+import org.projectforge.business.address.AddressImageRendition
 import org.slf4j.LoggerFactory
 import org.springframework.stereotype.Service
 import java.io.ByteArrayInputStream
@@ -108,8 +109,10 @@ class VCardService {
         vcard.addUrl(addressDO.website)
         vcard.addNote(addressDO.comment)
         if (addressDO.image == true) {
-            val photo = Photo(addressImageDao.getImage(addressDO.id), ImageType.JPEG)
-            vcard.addPhoto(photo)
+            // Scaled rendition from the file system instead of the full-size image from the data base.
+            addressImageDao.getImage(addressDO.id, AddressImageRendition.MEDIUM)?.let {
+                vcard.addPhoto(Photo(it, ImageType.PNG))
+            }
         }
         return Ezvcard.write(vcard).version(VCardVersion.V3_0).go().toByteArray()
     }
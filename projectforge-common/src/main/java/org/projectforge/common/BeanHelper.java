@@ -73,9 +73,14 @@ public class BeanHelper
     return method.getName();
   }
 
+  /**
+   * The public getter is determined only once per class and field name.
+   *
+   * @see PropertyAccessor#getGetter()
+   */
   public static Method determineGetter(final Class<?> clazz, final String fieldname)
   {
-    return determineGetter(clazz, fieldname, true);
+    return PropertyAccessor.get(clazz, fieldname).getGetter();
   }
 
   /**
@@ -438,19 +443,7 @@ public class BeanHelper
    */
   public static Object getProperty(final Object bean, final String property)
   {
-    final Method getter = determineGetter(bean.getClass(), property);
-    if (getter == null) {
-      throw new RuntimeException("Getter for property '" + bean.getClass() + "." + property + "' not found.");
-    }
-    try {
-      return getter.invoke(bean);
-    } catch (final IllegalArgumentException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    } catch (final IllegalAccessException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    } catch (final InvocationTargetException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    }
+    return PropertyAccessor.get(bean.getClass(), property).getValue(bean);
   }
 
   /**
@@ -466,19 +459,7 @@ public class BeanHelper
    */
   public static Object setProperty(final Object bean, final String property, final Object value)
   {
-    final Method setter = determineSetter(bean.getClass(), property);
-    if (setter == null) {
-      throw new RuntimeException("Getter for property '" + property + "' not found.");
-    }
-    try {
-      return setter.invoke(bean, value);
-    } catch (final IllegalArgumentException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    } catch (final IllegalAccessException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    } catch (final InvocationTargetException ex) {
-      throw new RuntimeException("For property '" + property + "'.", ex);
-    }
+    return PropertyAccessor.get(bean.getClass(), property).setValue(bean, value);
   }
 
   /**
@@ -522,7 +503,7 @@ public class BeanHelper
 
   /**
    * Later Genome SimpleProperty should be used. Property or nested property can be null. Indexed properties are also
-   * supported.
+   * supported. The path is compiled only once per class and path.
    *
    * @param bean
    * @param property
@@ -533,22 +514,7 @@ public class BeanHelper
    */
   public static Object getNestedProperty(final Object bean, final String property)
   {
-    if (StringUtils.isEmpty(property) == true || bean == null) {
-      return null;
-    }
-    final String[] props = StringUtils.split(property, '.');
-    Object value = bean;
-    for (final String prop : props) {
-      if (prop.indexOf('[') > 0) {
-        value = getIndexedProperty(value, prop);
-      } else {
-        value = getProperty(value, prop);
-      }
-      if (value == null) {
-        return null;
-      }
-    }
-    return value;
+    return NestedPropertyAccessor.getValue(bean, property);
   }
 
   /**
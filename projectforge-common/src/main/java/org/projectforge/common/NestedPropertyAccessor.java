@@ -0,0 +1,170 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Getter of a nested property path, such as "task.projekt.kunde.name" (indexed elements such as "positions[2]" are
+ * supported). The path is parsed only once per class and path. Every element holds the accessor of the class of the
+ * last bean, so the registry of {@link PropertyAccessor} is only asked, if the class differs (e. g. for sub classes or
+ * proxies).
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class NestedPropertyAccessor
+{
+  /**
+   * Accessors by class and path. Paths are only registered after they were resolved completely, because the paths may
+   * be given by clients (sort and filter properties).
+   */
+  private static final ClassValue<Map<String, NestedPropertyAccessor>> registry = new ClassValue<Map<String, NestedPropertyAccessor>>()
+  {
+    @Override
+    protected Map<String, NestedPropertyAccessor> computeValue(final Class<?> type)
+    {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private final String path;
+
+  private final Element[] elements;
+
+  /**
+   * @param clazz
+   * @param path Nested path, such as "task.projekt.kunde.name".
+   * @return The accessor of the path.
+   */
+  public static NestedPropertyAccessor get(final Class<?> clazz, final String path)
+  {
+    final NestedPropertyAccessor accessor = registry.get(clazz).get(path);
+    return accessor != null ? accessor : new NestedPropertyAccessor(path);
+  }
+
+  /**
+   * Same as {@link BeanHelper#getNestedProperty(Object, String)}.
+   *
+   * @return The value or null, if the value or any value of the path is null.
+   */
+  public static Object getValue(final Object bean, final String path)
+  {
+    if (StringUtils.isEmpty(path) || bean == null) {
+      return null;
+    }
+    return get(bean.getClass(), path).getValue(bean);
+  }
+
+  private NestedPropertyAccessor(final String path)
+  {
+    this.path = path;
+    final String[] props = StringUtils.split(path, '.');
+    elements = new Element[props.length];
+    for (int i = 0; i < props.length; i++) {
+      elements[i] = new Element(props[i]);
+    }
+  }
+
+  /**
+   * @param bean Must be an instance of the class of this accessor.
+   * @return The value or null, if the value or any value of the path is null.
+   */
+  public Object getValue(final Object bean)
+  {
+    Object value = bean;
+    for (final Element element : elements) {
+      value = element.getValue(value);
+      if (value == null) {
+        return null;
+      }
+    }
+    registry.get(bean.getClass()).putIfAbsent(path, this);
+    return value;
+  }
+
+  private static class Element
+  {
+    private final String property;
+
+    /**
+     * The element as given in the path (including the index, if any).
+     */
+    private final String element;
+
+    private final boolean indexed;
+
+    /**
+     * Null, if the element isn't indexed or if the index isn't a number.
+     */
+    private final Integer index;
+
+    private volatile PropertyAccessor accessor;
+
+    private Element(final String element)
+    {
+      this.element = element;
+      final int pos = element.indexOf('[');
+      this.indexed = pos > 0;
+      if (indexed) {
+        this.property = element.substring(0, pos);
+        this.index = IntegerHelper.parseInteger(element.substring(pos + 1, element.length() - 1));
+      } else {
+        this.property = element;
+        this.index = null;
+      }
+    }
+
+    private Object getValue(final Object bean)
+    {
+      if (indexed && index == null) {
+        // Index isn't a number, BeanHelper throws the exception.
+        return BeanHelper.getIndexedProperty(bean, element);
+      }
+      PropertyAccessor accessor = this.accessor;
+      if (accessor == null || accessor.getBeanClass() != bean.getClass()) {
+        accessor = PropertyAccessor.get(bean.getClass(), property);
+        this.accessor = accessor;
+      }
+      final Object value = accessor.getValue(bean);
+      if (index == null || value == null) {
+        return value;
+      }
+      if (value instanceof Collection<?>) {
+        return BeanHelper.get((Collection<?>) value, index);
+      } else if (value.getClass().isArray()) {
+        return Array.get(value, index);
+      }
+      throw new UnsupportedOperationException("Collection or array from type '"
+          + value.getClass()
+          + "' not yet supported: '"
+          + element
+          + "'.");
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Getter and setter of a property of a class. The getter and setter methods are determined only once per class and
+ * property and are invoked via method handles.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class PropertyAccessor
+{
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PropertyAccessor.class);
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+  /**
+   * Accessors by class and property name. ClassValue doesn't prevent classes (and their class loaders) from being
+   * garbage collected.
+   */
+  private static final ClassValue<Map<String, PropertyAccessor>> registry = new ClassValue<Map<String, PropertyAccessor>>()
+  {
+    @Override
+    protected Map<String, PropertyAccessor> computeValue(final Class<?> type)
+    {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private final Class<?> clazz;
+
+  private final String property;
+
+  private final Method getter;
+
+  private final MethodHandle getterHandle;
+
+  private final Method setter;
+
+  private final MethodHandle setterHandle;
+
+  /**
+   * Type of the setter parameter (primitive types as wrapper class).
+   */
+  private final Class<?> setterParameterType;
+
+  /**
+   * @param clazz
+   * @param property Simple property name (not nested and not indexed).
+   * @return The accessor of the property (the accessor contains neither getter nor setter, if not found).
+   */
+  public static PropertyAccessor get(final Class<?> clazz, final String property)
+  {
+    final Map<String, PropertyAccessor> accessors = registry.get(clazz);
+    final PropertyAccessor accessor = accessors.get(property);
+    if (accessor != null) {
+      return accessor;
+    }
+    final PropertyAccessor newAccessor = new PropertyAccessor(clazz, property);
+    if (!newAccessor.hasGetter() && !newAccessor.hasSetter()) {
+      // Misses aren't cached: property names may be given by clients (sort and filter properties).
+      return newAccessor;
+    }
+    final PropertyAccessor existing = accessors.putIfAbsent(property, newAccessor);
+    return existing != null ? existing : newAccessor;
+  }
+
+  private PropertyAccessor(final Class<?> clazz, final String property)
+  {
+    this.clazz = clazz;
+    this.property = property;
+    this.getter = BeanHelper.determineGetter(clazz, property, true);
+    this.getterHandle = unreflect(getter, GETTER_TYPE);
+    this.setter = BeanHelper.determineSetter(clazz, property);
+    this.setterHandle = unreflect(setter, SETTER_TYPE);
+    this.setterParameterType = setter != null ? ClassUtils.primitiveToWrapper(setter.getParameterTypes()[0]) : null;
+  }
+
+  /**
+   * @return The method handle or null, if the method isn't accessible by method handles (reflection is used instead).
+   */
+  private static MethodHandle unreflect(final Method method, final MethodType type)
+  {
+    if (method == null) {
+      return null;
+    }
+    try {
+      return MethodHandles.lookup().unreflect(method).asType(type);
+    } catch (final IllegalAccessException | RuntimeException ex) {
+      log.debug("Can't create method handle for '" + method + "', using reflection instead: " + ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return The class of the beans of this accessor.
+   */
+  public Class<?> getBeanClass()
+  {
+    return clazz;
+  }
+
+  public Method getGetter()
+  {
+    return getter;
+  }
+
+  public Method getSetter()
+  {
+    return setter;
+  }
+
+  public boolean hasGetter()
+  {
+    return getter != null;
+  }
+
+  public boolean hasSetter()
+  {
+    return setter != null;
+  }
+
+  /**
+   * Invokes the getter of the given bean. Exceptions are wrapped as by {@link BeanHelper#getProperty(Object, String)}
+   * before: a RuntimeException with an {@link InvocationTargetException} as cause, if the getter throws an exception.
+   *
+   * @param bean Should be an instance of the class of this accessor, otherwise reflection is used.
+   */
+  public Object getValue(final Object bean)
+  {
+    if (getter == null) {
+      throw new RuntimeException("Getter for property '" + clazz + "." + property + "' not found.");
+    }
+    if (getterHandle != null && clazz.isInstance(bean)) {
+      try {
+        return getterHandle.invokeExact(bean);
+      } catch (final Throwable ex) {
+        throw new RuntimeException("For property '" + property + "'.", new InvocationTargetException(ex));
+      }
+    }
+    // Reflection for inaccessible getters and illegal arguments (reflection reports them as before).
+    try {
+      return getter.invoke(bean);
+    } catch (final IllegalArgumentException | IllegalAccessException | InvocationTargetException ex) {
+      throw new RuntimeException("For property '" + property + "'.", ex);
+    }
+  }
+
+  /**
+   * Invokes the setter of the given bean. Exceptions are wrapped as by {@link #getValue(Object)}.
+   *
+   * @param bean Should be an instance of the class of this accessor, otherwise reflection is used.
+   * @param value Values not assignable to the parameter type (e. g. null for primitive parameters or values requiring
+   *              widening conversions) are passed via reflection.
+   * @return The return value of the setter (null for void setters).
+   */
+  public Object setValue(final Object bean, final Object value)
+  {
+    if (setter == null) {
+      throw new RuntimeException("Setter for property '" + clazz + "." + property + "' not found.");
+    }
+    if (setterHandle != null && clazz.isInstance(bean)
+        && (value == null ? !setter.getParameterTypes()[0].isPrimitive() : setterParameterType.isInstance(value))) {
+      try {
+        return setterHandle.invokeExact(bean, value);
+      } catch (final Throwable ex) {
+        throw new RuntimeException("For property '" + property + "'.", new InvocationTargetException(ex));
+      }
+    }
+    // Reflection for inaccessible setters and illegal arguments (reflection converts or reports them as before).
+    try {
+      return setter.invoke(bean, value);
+    } catch (final IllegalArgumentException | IllegalAccessException | InvocationTargetException ex) {
+      throw new RuntimeException("For property '" + property + "'.", ex);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropertyAccessorTest
+{
+  @Test
+  public void getterAndSetterTest()
+  {
+    final Bean bean = new Bean();
+    final PropertyAccessor accessor = PropertyAccessor.get(Bean.class, "name");
+    assertSame(accessor, PropertyAccessor.get(Bean.class, "name"), "Accessor should be cached.");
+    assertSame(Bean.class, accessor.getBeanClass());
+    assertTrue(accessor.hasGetter());
+    assertTrue(accessor.hasSetter());
+    assertNull(accessor.setValue(bean, "Kai"), "Void setter should return null.");
+    assertEquals("Kai", accessor.getValue(bean));
+    assertEquals("Kai", BeanHelper.getProperty(bean, "name"));
+
+    // Chained setter:
+    assertSame(bean, BeanHelper.setProperty(bean, "chained", "test"));
+    assertEquals("test", bean.chained);
+
+    // Boolean getters with is-prefix:
+    BeanHelper.setProperty(bean, "enabled", true);
+    assertEquals(true, BeanHelper.getProperty(bean, "enabled"));
+  }
+
+  @Test
+  public void primitiveTest()
+  {
+    final Bean bean = new Bean();
+    BeanHelper.setProperty(bean, "number", 42L);
+    assertEquals(42L, BeanHelper.getProperty(bean, "number"));
+    // Widening conversion is done by reflection:
+    BeanHelper.setProperty(bean, "number", 5);
+    assertEquals(5L, bean.number);
+    // null for primitive parameter:
+    final RuntimeException ex = assertThrows(RuntimeException.class, () -> BeanHelper.setProperty(bean, "number", null));
+    assertTrue(ex.getCause() instanceof IllegalArgumentException);
+    assertEquals(5L, bean.number);
+    // Wrong type:
+    assertThrows(RuntimeException.class, () -> BeanHelper.setProperty(bean, "number", "42"));
+  }
+
+  @Test
+  public void exceptionTest()
+  {
+    final Bean bean = new Bean();
+    RuntimeException ex = assertThrows(RuntimeException.class, () -> BeanHelper.getProperty(bean, "failing"));
+    assertTrue(ex.getCause() instanceof InvocationTargetException, "Exceptions of getters should be wrapped as by reflection.");
+    assertTrue(ex.getCause().getCause() instanceof IllegalStateException);
+    ex = assertThrows(RuntimeException.class, () -> BeanHelper.setProperty(bean, "failing", "test"));
+    assertTrue(ex.getCause() instanceof InvocationTargetException);
+    assertEquals("setFailing", ex.getCause().getCause().getMessage());
+
+    // Bean of another class: reflection reports the illegal argument.
+    ex = assertThrows(RuntimeException.class, () -> PropertyAccessor.get(Bean.class, "name").getValue("no bean"));
+    assertTrue(ex.getCause() instanceof IllegalArgumentException);
+  }
+
+  @Test
+  public void missesTest()
+  {
+    final PropertyAccessor accessor = PropertyAccessor.get(Bean.class, "unknown");
+    assertFalse(accessor.hasGetter());
+    assertFalse(accessor.hasSetter());
+    assertNotSame(accessor, PropertyAccessor.get(Bean.class, "unknown"), "Misses shouldn't be cached.");
+    assertThrows(RuntimeException.class, () -> accessor.getValue(new Bean()));
+    assertThrows(RuntimeException.class, () -> accessor.setValue(new Bean(), "test"));
+    assertNull(BeanHelper.determineGetter(Bean.class, "unknown"));
+  }
+
+  @Test
+  public void nestedPropertyTest()
+  {
+    final Bean bean = new Bean();
+    bean.child = new Bean();
+    bean.child.name = "child";
+    bean.children = Arrays.asList(new SubBean("first"), new SubBean("second"));
+    assertEquals("child", BeanHelper.getNestedProperty(bean, "child.name"));
+    assertSame(NestedPropertyAccessor.get(Bean.class, "child.name"), NestedPropertyAccessor.get(Bean.class, "child.name"),
+        "Resolved paths should be cached.");
+    assertEquals("second", BeanHelper.getNestedProperty(bean, "children[1].name"));
+    assertEquals("java.lang.String", BeanHelper.getNestedProperty(bean, "children[1].name.class.name"));
+    // Different classes of the nested beans:
+    bean.child = new SubBean("sub");
+    assertEquals("sub", BeanHelper.getNestedProperty(bean, "child.name"));
+    assertEquals("sub bean", BeanHelper.getNestedProperty(bean, "child.type"));
+    bean.child = null;
+    assertNull(BeanHelper.getNestedProperty(bean, "child.name"));
+    assertNull(BeanHelper.getNestedProperty(bean, "child.unknown"));
+    assertNotSame(NestedPropertyAccessor.get(Bean.class, "child.unknown"), NestedPropertyAccessor.get(Bean.class, "child.unknown"),
+        "Paths not resolved completely shouldn't be cached.");
+    bean.child = new Bean();
+    assertThrows(RuntimeException.class, () -> BeanHelper.getNestedProperty(bean, "child.unknown"));
+    assertThrows(UnsupportedOperationException.class, () -> BeanHelper.getNestedProperty(bean, "children[x].name"));
+  }
+
+  public static class Bean
+  {
+    private String name;
+
+    private String chained;
+
+    private boolean enabled;
+
+    private long number;
+
+    private Bean child;
+
+    private List<Bean> children;
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public void setName(final String name)
+    {
+      this.name = name;
+    }
+
+    public String getChained()
+    {
+      return chained;
+    }
+
+    public Bean setChained(final String chained)
+    {
+      this.chained = chained;
+      return this;
+    }
+
+    public boolean isEnabled()
+    {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled)
+    {
+      this.enabled = enabled;
+    }
+
+    public long getNumber()
+    {
+      return number;
+    }
+
+    public void setNumber(final long number)
+    {
+      this.number = number;
+    }
+
+    public String getFailing()
+    {
+      throw new IllegalStateException("getFailing");
+    }
+
+    public void setFailing(final String value)
+    {
+      throw new IllegalStateException("setFailing");
+    }
+
+    public Bean getChild()
+    {
+      return child;
+    }
+
+    public List<Bean> getChildren()
+    {
+      return children;
+    }
+  }
+
+  public static class SubBean extends Bean
+  {
+    SubBean(final String name)
+    {
+      setName(name);
+    }
+
+    public String getType()
+    {
+      return "sub bean";
+    }
+  }
+}
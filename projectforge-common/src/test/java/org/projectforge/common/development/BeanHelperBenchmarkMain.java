@@ -0,0 +1,91 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common.development;
+
+import org.projectforge.common.BeanHelper;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compares the cached property accessors of BeanHelper with the former implementation (determining the getter via
+ * reflection on every call).
+ */
+public class BeanHelperBenchmarkMain {
+  private static final int WARMUP_ITERATIONS = 200_000;
+
+  private static final int ITERATIONS = 2_000_000;
+
+  public static void main(final String[] args) throws Exception {
+    final Bean bean = new Bean("Kai", new Bean("Berta", null));
+    for (int run = 0; run < 2; run++) {
+      benchmark("BeanHelper.getNestedProperty", WARMUP_ITERATIONS, () -> BeanHelper.getNestedProperty(bean, "parent.name"));
+      benchmark("Reflection (former implementation)", WARMUP_ITERATIONS, () -> legacyGetNestedProperty(bean));
+    }
+    System.out.println("Results:");
+    benchmark("BeanHelper.getNestedProperty", ITERATIONS, () -> BeanHelper.getNestedProperty(bean, "parent.name"));
+    benchmark("Reflection (former implementation)", ITERATIONS, () -> legacyGetNestedProperty(bean));
+  }
+
+  private static Object legacyGetNestedProperty(final Bean bean) throws Exception {
+    Object value = bean;
+    for (final String prop : new String[]{"parent", "name"}) {
+      final Method getter = BeanHelper.determineGetter(value.getClass(), prop, true);
+      value = getter.invoke(value);
+    }
+    return value;
+  }
+
+  private static void benchmark(final String name, final int iterations, final Call call) throws Exception {
+    Object result = null;
+    final long begin = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      result = call.call();
+    }
+    final long duration = System.nanoTime() - begin;
+    System.out.println(String.format("%-40s %8.1f ns/op (result=%s)", name, (double) duration / iterations, result));
+  }
+
+  private interface Call {
+    Object call() throws Exception;
+  }
+
+  public static class Bean {
+    private final String name;
+
+    private final Bean parent;
+
+    Bean(final String name, final Bean parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Bean getParent() {
+      return parent;
+    }
+  }
+}
@@ -24,18 +24,23 @@
 package org.projectforge.rest
 
 import org.projectforge.business.address.AddressImageDao
+import org.projectforge.business.address.AddressImageRendition
 import org.projectforge.rest.config.Rest
 import org.projectforge.rest.core.ExpiringSessionAttributes
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.core.io.ByteArrayResource
-import org.springframework.core.io.Resource
+import org.springframework.http.CacheControl
 import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpStatus
-import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.context.request.WebRequest
 import org.springframework.web.multipart.MultipartFile
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.TimeUnit
 import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
 
 
 /**
@@ -47,6 +52,11 @@ class AddressImageServicesRest() {
 
     companion object {
         internal val SESSION_IMAGE_ATTR = "uploadedAddressImage"
+
+        private const val SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support"
+        private const val SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename"
+        private const val SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start"
+        private const val SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end"
     }
 
     private val log = org.slf4j.LoggerFactory.getLogger(AddressImageServicesRest::class.java)
@@ -80,26 +90,77 @@ class AddressImageServicesRest() {
      * @param id The id of the address the image is assigned to.
      */
     @GetMapping("image/{id}")
-    fun getImage(@PathVariable("id") id: Int): ResponseEntity<Resource> {
-        val image = addressImageDao.getImage(id) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
-        val resource = ByteArrayResource(image)
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=ProjectForge-addressImage_$id.png")
-                .body(resource)
+    fun getImage(@PathVariable("id") id: Int, webRequest: WebRequest, request: HttpServletRequest, response: HttpServletResponse) {
+        writeImage(id, AddressImageRendition.ORIGINAL, "ProjectForge-addressImage_$id", webRequest, request, response)
     }
 
     /**
      * @param id The id of the address the image is assigned to.
      */
     @GetMapping("imagePreview/{id}")
-    fun getImagePreview(@PathVariable("id") id: Int): ResponseEntity<Resource> {
-        val image = addressImageDao.getPreviewImage(id) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
-        val resource = ByteArrayResource(image)
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=ProjectForge-addressImagePreview_$id.png")
-                .body(resource)
+    fun getImagePreview(@PathVariable("id") id: Int, webRequest: WebRequest, request: HttpServletRequest, response: HttpServletResponse) {
+        writeImage(id, AddressImageRendition.PREVIEW, "ProjectForge-addressImagePreview_$id", webRequest, request, response)
+    }
+
+    /**
+     * @param id The id of the address the image is assigned to.
+     * @param rendition The size of the image (original, preview, small or medium).
+     */
+    @GetMapping("image/{id}/{rendition}")
+    fun getImageRendition(@PathVariable("id") id: Int, @PathVariable("rendition") rendition: String,
+                          webRequest: WebRequest, request: HttpServletRequest, response: HttpServletResponse) {
+        val imageRendition = AddressImageRendition.values().find { it.name.equals(rendition, true) }
+        if (imageRendition == null) {
+            response.status = HttpStatus.NOT_FOUND.value()
+            return
+        }
+        writeImage(id, imageRendition, "ProjectForge-addressImage_${id}_$rendition", webRequest, request, response)
+    }
+
+    /**
+     * The images are served with strong ETags (hash of the content). Clients have to revalidate them, but unchanged
+     * images aren't transferred again (304). Urls containing the current version (v, time stamp of the last image
+     * modification) are cached for a year, the version changes with every modification of the address image. Urls with
+     * outdated or unknown versions have to be revalidated as well.
+     * @param filename The file name without extension (the extension depends on the image type).
+     *
+     * The files are sent by Tomcat's sendfile (zero-copy) if supported, otherwise by channel transfer.
+     */
+    private fun writeImage(id: Int, rendition: AddressImageRendition, filename: String, webRequest: WebRequest,
+                           request: HttpServletRequest, response: HttpServletResponse) {
+        val imageFile = addressImageDao.getImageFile(id, rendition)
+        if (imageFile == null) {
+            response.status = HttpStatus.NOT_FOUND.value()
+            return
+        }
+        val version = request.getParameter("v")
+        if (version != null && version == imageFile.imageLastUpdate?.time?.toString()) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().headerValue + ", immutable")
+        } else {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().headerValue)
+        }
+        if (webRequest.checkNotModified(imageFile.eTag)) {
+            return // 304, ETag header already set.
+        }
+        val file = imageFile.file
+        val length = file.length()
+        val imageType = imageFile.imageType
+        response.contentType = imageType.contentType
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=$filename.${imageType.extension}")
+        response.setContentLengthLong(length)
+        if (request.getAttribute(SENDFILE_SUPPORT_ATTR) == true) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.absolutePath)
+            request.setAttribute(SENDFILE_START_ATTR, 0L)
+            request.setAttribute(SENDFILE_END_ATTR, length)
+            return
+        }
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val out = Channels.newChannel(response.outputStream)
+            var position = 0L
+            while (position < length) {
+                position += channel.transferTo(position, length - position, out)
+            }
+        }
     }
 
     /**
@@ -74,6 +74,9 @@ class AddressPagesRest
     @Autowired
     private lateinit var addressbookDao: AddressbookDao
 
+    @Autowired
+    private lateinit var addressDuplicateIndex: AddressDuplicateIndex
+
     @Autowired
     private lateinit var addressImageDao: AddressImageDao
 
@@ -142,7 +145,7 @@ class AddressPagesRest
         imagesFilterEntry?.synthetic = true
         val filters = mutableListOf<CustomResultFilter<AddressDO>>()
         if (doubletFilterEntry?.isTrueValue == true) {
-            filters.add(DoubletsResultFilter())
+            filters.add(DoubletsResultFilter(addressDuplicateIndex))
         }
         if (myFavoritesFilterEntry?.isTrueValue == true) {
             filters.add(FavoritesResultFilter(personalAddressDao))
@@ -391,13 +394,13 @@ class AddressPagesRest
                     id = it.id,
                     deleted = it.isDeleted,
                     imageUrl = if (it.image == true) "address/image/${it.id}" else null,
-                    previewImageUrl = if (it.image == true) "address/imagePreview/${it.id}" else null)
+                    previewImageUrl = if (it.image == true) "address/imagePreview/${it.id}?v=${it.imageLastUpdate?.time}" else null)
         }
         newList.forEach {
             it.address.imageData = null
             it.address.imageDataPreview = null
         }
-        return ResultSet(newList, newList.size)
+        return ResultSet(newList, newList.size, nextPageAfterId = resultSet.nextPageAfterId)
     }
 
     private fun createFavoriteRow(id: String, inputElement: UIElement): UIRow {
@@ -27,14 +27,18 @@ import mu.KotlinLogging
 import org.projectforge.SystemStatus
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.menu.Menu
+import org.projectforge.menu.MenuBadgeCounterService
 import org.projectforge.menu.MenuItem
 import org.projectforge.menu.MenuItemTargetType
 import org.projectforge.menu.builder.*
 import org.projectforge.rest.config.Rest
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.http.MediaType
 import org.springframework.web.bind.annotation.GetMapping
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import java.io.IOException
 
 private val log = KotlinLogging.logger {}
 
@@ -52,6 +56,9 @@ class MenuRest {
     @Autowired
     private lateinit var systemStatus: SystemStatus;
 
+    @Autowired
+    private lateinit var menuBadgeCounterService: MenuBadgeCounterService
+
     @GetMapping
     fun getMenu(): Menus {
         val mainMenu = menuCreator.build(MenuCreatorContext(ThreadLocalUserContext.getUser()))
@@ -69,4 +76,38 @@ class MenuRest {
         item.subMenu?.forEach { it.postProcess() }
         return Menus(mainMenu, favoritesMenu, myAccountMenu)
     }
+
+    /**
+     * Server sent events with the badge counters of the user's menu (map of menu item id to counter). The current
+     * counters are sent initially, after that all counters are sent on any change. So the client doesn't need to
+     * reload the whole menu for getting the current badges. The client should reconnect after the timeout.
+     */
+    @GetMapping("badges", produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    fun getBadges(): SseEmitter {
+        val emitter = SseEmitter(BADGES_TIMEOUT_MILLIS)
+        val userId = ThreadLocalUserContext.getUserId()
+        if (userId == null) {
+            emitter.complete()
+            return emitter
+        }
+        val listener: (Map<String, Int>) -> Unit = { counters ->
+            emitter.send(SseEmitter.event().name("badges").data(counters, MediaType.APPLICATION_JSON))
+        }
+        emitter.onCompletion { menuBadgeCounterService.removeListener(userId, listener) }
+        emitter.onTimeout { menuBadgeCounterService.removeListener(userId, listener) }
+        emitter.onError { menuBadgeCounterService.removeListener(userId, listener) }
+        try {
+            listener(menuBadgeCounterService.getCounters(userId))
+        } catch (ex: IOException) {
+            log.info("Can't send menu badges to client: ${ex.message}")
+            emitter.completeWithError(ex)
+            return emitter
+        }
+        menuBadgeCounterService.addListener(userId, listener)
+        return emitter
+    }
+
+    companion object {
+        private const val BADGES_TIMEOUT_MILLIS = 10 * 60 * 1000L
+    }
 }
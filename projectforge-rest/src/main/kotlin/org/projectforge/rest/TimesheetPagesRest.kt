@@ -201,7 +201,7 @@ class TimesheetPagesRest : AbstractDTOPagesRest<TimesheetDO, Timesheet, Timeshee
                     timePeriod = dateTimeFormatter.getFormattedTimePeriodOfDay(it.timePeriod),
                     duration = dateTimeFormatter.getFormattedDuration(it.timePeriod))
         }
-        return ResultSet(list, list.size)
+        return ResultSet(list, list.size, nextPageAfterId = resultSet.nextPageAfterId)
     }
 
     override fun isAutocompletionPropertyEnabled(property: String): Boolean {
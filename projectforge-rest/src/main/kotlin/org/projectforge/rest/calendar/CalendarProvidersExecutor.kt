@@ -0,0 +1,181 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2020 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+package org.projectforge.rest.calendar
+
+import mu.KotlinLogging
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.slf4j.MDC
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+import javax.annotation.PreDestroy
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Runs the event providers of the calendar concurrently on a bounded thread pool. The user context (and the logging
+ * context) of the calling thread is propagated to each provider, every provider gets its own list of events. The lists
+ * are merged in the order of registration, so the result doesn't depend on the execution order.
+ *
+ * The database queries of the providers are done by the daos, each in its own (read only) entity manager, so there is
+ * no transaction of the calling thread to propagate.
+ */
+@Component
+class CalendarProvidersExecutor {
+    /**
+     * Max. time in millis to wait for all providers of a request. The events of providers not finished in time are skipped.
+     */
+    @Value("\${calendar.providers.timeoutMillis:30000}")
+    private var timeoutMillis: Long = 30000
+
+    private val threadCounter = AtomicInteger()
+
+    private val executor = ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, LinkedBlockingQueue(QUEUE_CAPACITY),
+            ThreadFactory { runnable ->
+                val thread = Thread(runnable, "CalendarProvider-${threadCounter.incrementAndGet()}")
+                thread.isDaemon = true
+                thread
+            },
+            // Queue full (high load): run the provider in the calling thread.
+            ThreadPoolExecutor.CallerRunsPolicy()).also { it.allowCoreThreadTimeOut(true) }
+
+    private val statisticsMap = ConcurrentHashMap<String, ProviderStatistics>()
+
+    /**
+     * Latency metric of one provider.
+     */
+    class ProviderStatistics {
+        private val counter = LongAdder()
+        private val totalMillis = LongAdder()
+        private val maxMillis = LongAccumulator(Math::max, 0)
+        private val timeoutCounter = LongAdder()
+
+        val count: Long
+            get() = counter.sum()
+
+        val averageMillis: Long
+            get() = counter.sum().let { if (it == 0L) 0 else totalMillis.sum() / it }
+
+        val maxDurationMillis: Long
+            get() = maxMillis.get()
+
+        val timeouts: Long
+            get() = timeoutCounter.sum()
+
+        internal fun add(millis: Long) {
+            counter.increment()
+            totalMillis.add(millis)
+            maxMillis.accumulate(millis)
+        }
+
+        internal fun timeout() {
+            timeoutCounter.increment()
+        }
+
+        override fun toString(): String {
+            return "count=$count, avg=${averageMillis}ms, max=${maxDurationMillis}ms, timeouts=$timeouts"
+        }
+    }
+
+    /**
+     * Collects the providers of one request.
+     */
+    inner class Run {
+        private val tasks = mutableListOf<Pair<String, Future<List<BigCalendarEvent>>>>()
+        private val userContext = ThreadLocalUserContext.getUserContext()
+        private val mdcContext = MDC.getCopyOfContextMap()
+        private val callerThread = Thread.currentThread()
+
+        /**
+         * Submits the given provider. The provider should add its events to the given list.
+         */
+        fun submit(name: String, provider: (events: MutableList<BigCalendarEvent>) -> Unit) {
+            val statistics = statisticsMap.computeIfAbsent(name) { ProviderStatistics() }
+            val future = executor.submit(Callable<List<BigCalendarEvent>> {
+                // The task runs in the caller's thread, if the queue is full (CallerRunsPolicy):
+                val poolThread = Thread.currentThread() !== callerThread
+                try {
+                    if (poolThread) {
+                        ThreadLocalUserContext.setUserContext(userContext)
+                        mdcContext?.let { MDC.setContextMap(it) }
+                    }
+                    val started = System.currentTimeMillis()
+                    val events = mutableListOf<BigCalendarEvent>()
+                    provider(events)
+                    val duration = System.currentTimeMillis() - started
+                    statistics.add(duration)
+                    log.debug { "Calendar provider '$name' done in ${duration}ms (${events.size} events): $statistics" }
+                    events
+                } finally {
+                    if (poolThread) {
+                        ThreadLocalUserContext.clear()
+                        MDC.clear()
+                    }
+                }
+            })
+            tasks.add(Pair(name, future))
+        }
+
+        /**
+         * Waits for all submitted providers (but not longer than the configured timeout) and adds their events in
+         * the order of submission to the given list.
+         */
+        fun awaitAll(events: MutableList<BigCalendarEvent>) {
+            val deadline = System.currentTimeMillis() + timeoutMillis
+            tasks.forEach { (name, future) ->
+                try {
+                    events.addAll(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                } catch (ex: TimeoutException) {
+                    future.cancel(true)
+                    statisticsMap[name]?.timeout()
+                    log.warn { "Calendar provider '$name' timed out after ${timeoutMillis}ms, its events are skipped." }
+                } catch (ex: ExecutionException) {
+                    throw ex.cause ?: ex
+                }
+            }
+        }
+    }
+
+    fun newRun(): Run {
+        return Run()
+    }
+
+    /**
+     * @return The latency metrics of all providers (by name).
+     */
+    val statistics: Map<String, ProviderStatistics>
+        get() = statisticsMap
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdownNow()
+    }
+
+    companion object {
+        private const val POOL_SIZE = 8
+        private const val QUEUE_CAPACITY = 100
+    }
+}
@@ -86,6 +86,9 @@ class CalendarServicesRest {
     @Autowired
     private lateinit var calendarFilterServicesRest: CalendarFilterServicesRest
 
+    @Autowired
+    private lateinit var calendarProvidersExecutor: CalendarProvidersExecutor
+
     @Autowired
     private lateinit var userPrefService: UserPrefService
 
@@ -180,7 +183,11 @@ class CalendarServicesRest {
         val range = DateTimeRange(PFDateTime.fromOrNow(filter.start, timeZone = timeZone),
                 PFDateTime.fromOrNull(filter.end, timeZone = timeZone))
         adjustRange(range, view)
-        timesheetsProvider.addTimesheetEvents(range.start, range.end!!, filter.timesheetUserId, events)
+        val start = range.start
+        val end = range.end!!
+        // All providers are running concurrently, the events are merged in the order of submission:
+        val run = calendarProvidersExecutor.newRun()
+        run.submit("timesheets") { timesheetsProvider.addTimesheetEvents(start, end, filter.timesheetUserId, it) }
         var visibleCalendarIds = filter.activeCalendarIds
         if (filter.useVisibilityState == true && !visibleCalendarIds.isNullOrEmpty()) {
             val currentFilter = CalendarFilterServicesRest.getCurrentFilter(userPrefService)
@@ -195,33 +202,38 @@ class CalendarServicesRest {
 
         }
         val visibleTeamCalendarIds = visibleCalendarIds?.filter { it >= 0 } // calendars with id < 0 are pseudo calendars (such as birthdays etc.)
+        val styleMap = calendarFilterServicesRest.getStyleMap()
         if (useNewCalendarEvents) {
-            calendarEventsProvider.addEvents(range.start, range.end!!, events, visibleTeamCalendarIds, calendarFilterServicesRest.getStyleMap())
+            run.submit("calendarEvents") { calendarEventsProvider.addEvents(start, end, it, visibleTeamCalendarIds, styleMap) }
         } else {
-            teamCalEventsProvider.addEvents(range.start, range.end!!, events, visibleTeamCalendarIds, calendarFilterServicesRest.getStyleMap())
+            run.submit("teamEvents") { teamCalEventsProvider.addEvents(start, end, it, visibleTeamCalendarIds, styleMap) }
         }
 
         val showFavoritesBirthdays = visibleCalendarIds?.contains(TeamCalendar.BIRTHDAYS_FAVS_CAL_ID) ?: false
         val showAllBirthdays = visibleCalendarIds?.contains(TeamCalendar.BIRTHDAYS_ALL_CAL_ID) ?: false
         if (showAllBirthdays || showFavoritesBirthdays) {
-            BirthdaysProvider.addEvents(addressDao, range.start, range.end!!, events, calendarFilterServicesRest.getStyleMap(),
-                    showFavoritesBirthdays,
-                    showAllBirthdays,
-                    !accessChecker.isLoggedInUserMemberOfGroup(
-                            ProjectForgeGroup.FINANCE_GROUP,
-                            ProjectForgeGroup.HR_GROUP,
-                            ProjectForgeGroup.ORGA_TEAM))
+            val dataProtection = !accessChecker.isLoggedInUserMemberOfGroup(
+                    ProjectForgeGroup.FINANCE_GROUP,
+                    ProjectForgeGroup.HR_GROUP,
+                    ProjectForgeGroup.ORGA_TEAM)
+            run.submit("birthdays") {
+                BirthdaysProvider.addEvents(addressDao, start, end, it, styleMap,
+                        showFavoritesBirthdays,
+                        showAllBirthdays,
+                        dataProtection)
+            }
         }
-        vacationProvider.addEvents(range.start, range.end!!, events, filter.vacationGroupIds, filter.vacationUserIds)
+        run.submit("vacations") { vacationProvider.addEvents(start, end, it, filter.vacationGroupIds, filter.vacationUserIds) }
 
-        val specialDays = HolidayAndWeekendProvider.getSpecialDayInfos(range.start, range.end!!)
+        val specialDays = HolidayAndWeekendProvider.getSpecialDayInfos(start, end)
+        val holidayEvents = mutableListOf<BigCalendarEvent>()
         if (view != CalendarView.MONTH) {
             specialDays.forEach { entry ->
                 val date = entry.key
                 val specialDay = entry.value
                 if (specialDay.holidayTitle.isNotBlank()) {
                     val dateTime = PFDateTime.from(date) // not null
-                    events.add(BigCalendarEvent(
+                    holidayEvents.add(BigCalendarEvent(
                             title = specialDay.holidayTitle,
                             start = dateTime.beginOfDay.utilDate,
                             end = dateTime.endOfDay.utilDate,
@@ -232,6 +244,8 @@ class CalendarServicesRest {
                 }
             }
         }
+        run.awaitAll(events)
+        events.addAll(holidayEvents)
         var counter = 0
         events.forEach {
             it.key = "e-${counter++}"
@@ -37,7 +37,8 @@ private val log = KotlinLogging.logger {}
 object RestUtils {
     @JvmStatic
     fun registerFilter(sc: ServletContext, name: String, filterClass: Class<out Filter?>, isMatchAfter: Boolean, vararg patterns: String?): FilterRegistration {
-        val filterRegistration: FilterRegistration = sc.addFilter(name, filterClass)
+        val filterRegistration = sc.addFilter(name, filterClass)
+        filterRegistration.setAsyncSupported(true) // Needed for asynchronous requests, such as server sent events.
         filterRegistration.addMappingForUrlPatterns(null, isMatchAfter, *patterns)
         log.info("Registering filter '" + name + "' of class '" + filterClass.name + "' for urls: " + StringHelper.listToString(", ", *patterns))
         return filterRegistration
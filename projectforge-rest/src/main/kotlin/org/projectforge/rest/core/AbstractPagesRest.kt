@@ -40,6 +40,7 @@ import org.projectforge.framework.jcr.AttachmentsDaoAccessChecker
 import org.projectforge.framework.jcr.AttachmentsService
 import org.projectforge.framework.persistence.api.*
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter
+import org.projectforge.framework.persistence.history.HistoryCursor
 import org.projectforge.menu.MenuItem
 import org.projectforge.menu.MenuItemTargetType
 import org.projectforge.model.rest.RestPaths
@@ -108,6 +109,8 @@ constructor(private val baseDaoClazz: Class<B>,
         const val CLASSIC_VERSION_MENU = "CLASSIC"
         const val CREATE_MENU = "CREATE"
         const val USER_PREF_PARAM_HIGHLIGHT_ROW = "highlightedRow"
+        private const val HISTORY_PAGE_SIZE = 50
+        private const val MAX_HISTORY_PAGE_SIZE = 500
     }
 
     class DisplayObject(val id: Any?, override val displayName: String?) : DisplayNameCapable
@@ -404,6 +407,7 @@ constructor(private val baseDaoClazz: Class<B>,
         filter.autoWildcardSearch = true
         fixMagicFilterFromClient(filter)
         val list = getList(this, baseDao, filter)
+        filter.pageAfterId = null // Paging cursor shouldn't be stored in the user's filter.
         saveCurrentFilter(filter)
         val resultSet = processResultSetBeforeExport(list)
         resultSet.highlightRowId = userPrefService.getEntry(category, USER_PREF_PARAM_HIGHLIGHT_ROW, Int::class.java)
@@ -730,6 +734,28 @@ constructor(private val baseDaoClazz: Class<B>,
         return ResponseEntity(historyService.format(historyEntries), HttpStatus.OK)
     }
 
+    /**
+     * Gets one page of the history items of the given entity, newest first.
+     * @param id Id of the item to get the history entries for.
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param size The page size.
+     */
+    @GetMapping("history/{id}/page")
+    fun getHistoryPage(@PathVariable("id") id: Int?,
+                       @RequestParam("cursor", required = false) cursor: String?,
+                       @RequestParam("size", required = false) size: Int?)
+            : ResponseEntity<HistoryService.DisplayHistoryPage> {
+        if (id == null) {
+            return ResponseEntity(HttpStatus.BAD_REQUEST)
+        }
+        val item = baseDao.getById(id) ?: return ResponseEntity(HttpStatus.BAD_REQUEST)
+        val pageSize = (size ?: HISTORY_PAGE_SIZE).coerceIn(1, MAX_HISTORY_PAGE_SIZE)
+        val historyEntries = baseDao.getHistoryEntries(item, HistoryCursor.parse(cursor), pageSize)
+        val nextCursor = if (historyEntries.size >= pageSize) HistoryCursor.of(historyEntries.last()).toString() else null
+        val propertyPrefixes = baseDao.getHistoryPropertyPrefixes(item)
+        return ResponseEntity(HistoryService.DisplayHistoryPage(historyService.format(historyEntries, propertyPrefixes), nextCursor), HttpStatus.OK)
+    }
+
     /**
      * Will be called by clone button. Sets the id of the form data object to null and deleted to false.
      * @return ResponseAction with [TargetType.UPDATE] and variable "initial" with all the initial data of [getItemAndLayout] as given for new objects.
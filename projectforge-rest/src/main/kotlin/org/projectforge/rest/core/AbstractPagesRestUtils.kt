@@ -48,7 +48,7 @@ fun <O : ExtendedBaseDO<Int>, DTO : Any, B : BaseDao<O>>
     MagicFilterProcessor.doIt(baseDao.doClass, magicFilter, queryFilter)
     pagesRest.postProcessMagicFilter(queryFilter, magicFilter)
     val list = baseDao.getList(queryFilter, customResultFilters)
-    val resultSet = ResultSet(pagesRest.filterList(list, magicFilter), list.size)
+    val resultSet = ResultSet(pagesRest.filterList(list, magicFilter), list.size, nextPageAfterId = queryFilter.nextPageAfterId)
     return resultSet
 }
 
@@ -23,7 +23,6 @@
 
 package org.projectforge.rest.core
 
-import de.micromata.genome.db.jpa.history.api.DiffEntry
 import de.micromata.genome.db.jpa.history.api.HistoryEntry
 import de.micromata.genome.db.jpa.history.entities.EntityOpType
 import de.micromata.genome.db.jpa.history.entities.PropertyOpType
@@ -34,10 +33,14 @@ import org.projectforge.common.i18n.I18nEnum
 import org.projectforge.common.props.PropUtils
 import org.projectforge.framework.i18n.TimeAgo
 import org.projectforge.framework.i18n.translate
+import org.projectforge.framework.persistence.api.BaseDao
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.springframework.stereotype.Component
 import java.lang.reflect.Field
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 private val log = KotlinLogging.logger {}
 
@@ -62,11 +65,53 @@ class HistoryService {
             var oldValue: String? = null,
             var newValue: String? = null)
 
+    data class DisplayHistoryPage(
+            var entries: List<DisplayHistoryEntry> = listOf(),
+            /**
+             * Cursor for getting the next page or null, if there are no more entries.
+             */
+            var nextCursor: String? = null)
+
+    /**
+     * Class of a history entity, resolved once per entity name.
+     */
+    private class EntityMetadata(val clazz: Class<*>?) {
+        val properties = ConcurrentHashMap<String, PropertyMetadata>()
+    }
+
+    /**
+     * @param enumType The type of the property field, if it's an enum.
+     * @param i18nKey The i18n key of the property (from its PropertyInfo annotation), if any.
+     */
+    private class PropertyMetadata(val enumType: Class<*>?, val i18nKey: String?)
+
+    private val entityMetadataMap = ConcurrentHashMap<String, EntityMetadata>()
+
+    /**
+     * The formatted diff entries by history entry (pk) and locale. History entries aren't modified after creation, so
+     * the cache needs no expiring, only a limit.
+     */
+    private val formattedDiffEntriesCache = object : LinkedHashMap<Pair<Long, Locale>, List<DisplayHistoryDiffEntry>>(1000, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<Long, Locale>, List<DisplayHistoryDiffEntry>>?): Boolean {
+            return size > MAX_CACHED_ENTRIES
+        }
+    }
+
     /**
      * Creates a list of formatted history entries (get the user names etc.)
      */
     fun format(orig: Array<HistoryEntry<*>>): List<DisplayHistoryEntry> {
+        return format(orig.asList())
+    }
+
+    /**
+     * Creates a list of formatted history entries (get the user names etc.)
+     * @param propertyPrefixes The prefixes of the property names of dependent objects (e. g. "Pos#1") by history object
+     * key, see [BaseDao.getHistoryPropertyPrefixes].
+     */
+    fun format(orig: List<HistoryEntry<*>>, propertyPrefixes: Map<String, String>? = null): List<DisplayHistoryEntry> {
         val userGroupCache = TenantRegistryMap.getInstance().tenantRegistry.userGroupCache
+        val locale = ThreadLocalUserContext.getLocale()
         val entries = mutableListOf<DisplayHistoryEntry>()
         orig.forEach {
             var user: PFUserDO? = null
@@ -82,65 +127,86 @@ class HistoryService {
                     modifiedByUser = user?.getFullname(),
                     operationType = it.entityOpType,
                     operation = translate(it.entityOpType))
+            val pk = (it as? PfHistoryMasterDO)?.pk
+            val diffEntries = if (pk != null) {
+                val key = Pair(pk, locale)
+                synchronized(formattedDiffEntriesCache) { formattedDiffEntriesCache[key] }
+                        ?: formatDiffEntries(it).also { formatted ->
+                            synchronized(formattedDiffEntriesCache) { formattedDiffEntriesCache[key] = formatted }
+                        }
+            } else {
+                formatDiffEntries(it)
+            }
+            // Copies, because the cached entries must not be modified by the caller:
+            diffEntries.mapTo(entry.diffEntries) { de -> de.copy() }
+            propertyPrefixes?.get(BaseDao.getHistoryObjectKey(it.entityName, it.entityId))?.let { prefix ->
+                entry.diffEntries.forEach { de -> de.property = if (de.property != null) "$prefix:${de.property}" else prefix }
+            }
+            entries.add(entry)
+        }
+        return entries
+    }
+
+    private fun formatDiffEntries(entry: HistoryEntry<*>): List<DisplayHistoryDiffEntry> {
+        val clazz = getEntityMetadata(entry.entityName)?.clazz
+        return entry.diffEntries?.map { de ->
+            val diffEntry = DisplayHistoryDiffEntry(
+                    operationType = de.propertyOpType,
+                    operation = translate(de.propertyOpType),
+                    property = de.propertyName,
+                    oldValue = de.oldValue,
+                    newValue = de.newValue)
+            if (clazz != null && !de.propertyName.isNullOrBlank()) {
+                val propertyMetadata = getPropertyMetadata(entry.entityName, clazz, de.propertyName)
+                if (propertyMetadata.enumType != null) {
+                    diffEntry.oldValue = getI18nEnumTranslation(propertyMetadata.enumType, diffEntry.oldValue)
+                    diffEntry.newValue = getI18nEnumTranslation(propertyMetadata.enumType, diffEntry.newValue)
+                }
+                // Translate the i18n key of the property, if any:
+                diffEntry.property = propertyMetadata.i18nKey?.let { translate(it) } ?: de.propertyName
+            }
+            diffEntry
+        } ?: emptyList()
+    }
+
+    private fun getEntityMetadata(entityName: String?): EntityMetadata? {
+        entityName ?: return null
+        return entityMetadataMap.computeIfAbsent(entityName) {
             var clazz: Class<*>? = null
             try {
-                clazz = Class.forName(it.entityName)
+                clazz = Class.forName(entityName)
             } catch (ex: ClassNotFoundException) {
-                log.warn("Class '${it.entityName}' not found.")
+                log.warn("Class '$entityName' not found.")
             }
-            it.diffEntries?.forEach { de ->
-                val diffEntry = DisplayHistoryDiffEntry(
-                        operationType = de.propertyOpType,
-                        operation = translate(de.propertyOpType),
-                        property = de.propertyName,
-                        oldValue = de.oldValue,
-                        newValue = de.newValue)
-                if (clazz != null && !de.propertyName.isNullOrBlank()) {
-                    val field = BeanHelper.getDeclaredField(clazz, de.propertyName)
-                    if (field == null) {
-                        if (log.isDebugEnabled) {
-                            log.debug("No such field '${it.entityName}.${de.propertyName}'.")
-                        }
-                    } else {
-                        field.isAccessible = true
-                        if (field.type.isEnum) {
-                            diffEntry.oldValue = getI18nEnumTranslation(field, diffEntry.oldValue)
-                            diffEntry.newValue = getI18nEnumTranslation(field, diffEntry.newValue)
-                        }
-                    }
-                    diffEntry.property = translateProperty(de, clazz)
+            EntityMetadata(clazz)
+        }
+    }
+
+    private fun getPropertyMetadata(entityName: String, clazz: Class<*>, propertyName: String): PropertyMetadata {
+        return getEntityMetadata(entityName)!!.properties.computeIfAbsent(propertyName) {
+            val field = BeanHelper.getDeclaredField(clazz, propertyName)
+            if (field == null) {
+                if (log.isDebugEnabled) {
+                    log.debug("No such field '$entityName.$propertyName'.")
                 }
-                entry.diffEntries.add(diffEntry)
             }
-            entries.add(entry)
+            // Try to get the PropertyInfo containing the i18n key of the property for translation.
+            PropertyMetadata(if (field?.type?.isEnum == true) field.type else null, PropUtils.get(clazz, propertyName)?.i18nKey)
         }
-        return entries
     }
 
     fun getI18nEnumTranslation(field: Field, value: String?): String? {
+        return getI18nEnumTranslation(field.type, value)
+    }
+
+    private fun getI18nEnumTranslation(enumType: Class<*>, value: String?): String? {
         if (value == null) {
             return ""
         }
-        val i18nEnum = I18nEnum.create(field.type, value) as? I18nEnum ?: return value
+        val i18nEnum = I18nEnum.create(enumType, value) as? I18nEnum ?: return value
         return translate(i18nEnum.i18nKey)
     }
 
-    /**
-     * Tries to find a PropertyInfo annotation for the property field referred in the given diffEntry.
-     * If found, the property name will be returned translated, if not, the property will be returned unmodified.
-     */
-    private fun translateProperty(diffEntry: DiffEntry, clazz: Class<*>): String? {
-        // Try to get the PropertyInfo containing the i18n key of the property for translation.
-        var propertyName = PropUtils.get(clazz, diffEntry.propertyName)?.i18nKey
-        if (propertyName != null) {
-            // translate the i18n key:
-            propertyName = translate(propertyName)
-        } else {
-            propertyName = diffEntry.propertyName
-        }
-        return propertyName
-    }
-
     private fun translate(opType: EntityOpType?): String {
         when (opType) {
             EntityOpType.Insert -> return translate("operation.inserted")
@@ -161,4 +227,8 @@ class HistoryService {
             else -> ""
         }
     }
+
+    companion object {
+        private const val MAX_CACHED_ENTRIES = 10000
+    }
 }
@@ -28,6 +28,11 @@ package org.projectforge.rest.core
  */
 class ResultSet<O : Any>(var resultSet: List<O>,
                          var totalSize: Int? = null,
-                         var highlightRowId: Int? = null) {
+                         var highlightRowId: Int? = null,
+                         /**
+                          * If more entries are available, the client may get the next page by setting this id as
+                          * pageAfterId of the magic filter. Null, if no more entries are available.
+                          */
+                         var nextPageAfterId: Int? = null) {
     val size = resultSet.size
 }
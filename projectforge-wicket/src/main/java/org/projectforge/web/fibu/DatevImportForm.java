@@ -88,6 +88,15 @@ public class DatevImportForm extends AbstractImportForm<ImportFilter, DatevImpor
         parentPage.importAccountRecords();
       }
     }, getString("finance.datev.uploadAccountingRecords"), SingleButtonPanel.NORMAL).setTooltip(getString("common.import.upload.tooltip")));
+    fs.add(new SingleButtonPanel(fs.newChildId(), new Button(SingleButtonPanel.WICKET_ID, new Model<String>("uploadRecordsStreaming"))
+    {
+      @Override
+      public final void onSubmit()
+      {
+        parentPage.importAccountRecordsStreaming();
+      }
+    }, getString("finance.datev.uploadAccountingRecords.streaming"), SingleButtonPanel.NORMAL)
+        .setTooltip(getString("finance.datev.uploadAccountingRecords.streaming.tooltip")));
     addClearButton(fs);
 
     addImportFilterRadio(gridBuilder);
@@ -29,6 +29,7 @@ import org.apache.commons.lang3.Validate;
 import org.apache.wicket.markup.html.form.upload.FileUpload;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.projectforge.business.fibu.datev.BuchungssatzStreamingImporter;
 import org.projectforge.business.fibu.datev.DatevImportDao;
 import org.projectforge.business.fibu.kost.AccountingConfig;
 import org.projectforge.business.fibu.kost.BuchungssatzDO;
@@ -47,6 +48,8 @@ public class DatevImportPage extends AbstractImportPage<DatevImportForm>
 
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DatevImportPage.class);
 
+  private static final int MAX_SHOWN_ERROR_MESSAGES = 50;
+
   @SpringBean
   private DatevImportDao datevImportDao;
 
@@ -86,6 +89,29 @@ public class DatevImportPage extends AbstractImportPage<DatevImportForm>
     }
   }
 
+  /**
+   * Imports huge xlsx files without reconciling: the records are written directly, only the statistics and the errors
+   * are shown.
+   */
+  protected void importAccountRecordsStreaming()
+  {
+    checkAccess();
+    final FileUpload fileUpload = form.fileUploadField.getFileUpload();
+    if (fileUpload != null) {
+      clear();
+      doImportWithExcelExceptionHandling(() -> {
+        final InputStream is = fileUpload.getInputStream();
+        final String clientFileName = fileUpload.getClientFileName();
+        final BuchungssatzStreamingImporter.Result result = datevImportDao.importBuchungsdatenStreaming(is, clientFileName,
+            false, null);
+        info(getLocalizedMessage("finance.datev.uploadAccountingRecords.streaming.result", result.getNumberOfSheets(),
+            result.getNumberOfInsertedRecords(), result.getNumberOfUpdatedRecords(), result.getNumberOfErrorRows()));
+        result.getErrorMessages().stream().limit(MAX_SHOWN_ERROR_MESSAGES).forEach(this::error);
+        return null;
+      });
+    }
+  }
+
   @Override
   protected ImportedSheet<?> reconcile(final String sheetName)
   {
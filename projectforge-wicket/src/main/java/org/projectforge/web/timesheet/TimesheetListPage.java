@@ -40,6 +40,8 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
+import org.apache.wicket.util.resource.IResourceStream;
 import org.hibernate.Hibernate;
 import org.projectforge.business.systeminfo.SystemInfoCache;
 import org.projectforge.business.task.TaskDO;
@@ -73,6 +75,8 @@ import org.projectforge.web.wicket.components.ContentMenuEntryPanel;
 import org.projectforge.web.wicket.flowlayout.CheckBoxPanel;
 import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.*;
 
@@ -553,22 +557,33 @@ public class TimesheetListPage extends AbstractListPage<TimesheetListForm, Times
     DownloadUtils.setDownloadTarget(content, filename);
   }
 
+  /**
+   * The time sheets are streamed from the data base directly into the response (huge lists for financial staff). They
+   * aren't loaded before for checking if there is anything to export, so an empty result is exported as sheet
+   * containing only the head row.
+   */
   protected void exportExcel()
   {
-    refresh();
-    final List<TimesheetDO> timeSheets = getList();
-    if (timeSheets == null || timeSheets.size() == 0) {
-      // Nothing to export.
-      form.addError("validation.error.nothingToExport");
-      return;
-    }
-    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xls";
-    final byte[] xls = timesheetExport.export(timeSheets);
-    if (xls == null || xls.length == 0) {
-      log.error("Oups, xls has zero size. Filename: " + filename);
-      return;
-    }
-    DownloadUtils.setDownloadTarget(xls, filename);
+    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xlsx";
+    final TimesheetFilter filter = form.getSearchFilter();
+    final IResourceStream resourceStream = new AbstractResourceStreamWriter()
+    {
+      private static final long serialVersionUID = -3567211358245096426L;
+
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+
+      @Override
+      public void write(final OutputStream output) throws IOException
+      {
+        final int counter = timesheetExport.export(filter, output);
+        log.info("Timesheet export finished: " + counter + " entries exported. Filename: " + filename);
+      }
+    };
+    DownloadUtils.setDownloadTarget(filename, resourceStream);
   }
 
   /**